@@ -0,0 +1,88 @@
+package com.demo.upload.aop.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.demo.upload.domain.User;
+import com.demo.upload.service.dto.UserDTO;
+import com.demo.upload.service.mapper.UserMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * Benchmarks the overhead of {@link LoggingAspect#logAround} and of {@link MethodTimingInterceptor} on a cheap service
+ * method, with the debug logs of the service disabled, as in production, and enabled without any appender.
+ * <p>
+ * The {@code proxied} benchmark calls the method through a proxy with an interceptor doing nothing: it is the floor of
+ * any Spring AOP advice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingAspectBenchmark {
+
+    @Param({ "INFO", "DEBUG" })
+    public String level;
+
+    private UserMapper target;
+
+    private UserMapper advised;
+
+    private UserMapper proxied;
+
+    private UserMapper timed;
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        Logger logger = (Logger) LoggerFactory.getLogger(UserMapper.class);
+        logger.setLevel(Level.toLevel(level));
+        logger.setAdditive(false);
+        target = new UserMapper();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new LoggingAspect(new MockEnvironment()));
+        advised = proxyFactory.getProxy();
+        ProxyFactory proxiedProxyFactory = new ProxyFactory(target);
+        proxiedProxyFactory.setProxyTargetClass(true);
+        proxiedProxyFactory.addAdvice((MethodInterceptor) MethodInvocation::proceed);
+        proxied = (UserMapper) proxiedProxyFactory.getProxy();
+        ProxyFactory timedProxyFactory = new ProxyFactory(target);
+        timedProxyFactory.setProxyTargetClass(true);
+        timedProxyFactory.addAdvisor(new MethodTimingInterceptor(new SimpleMeterRegistry(), 10, 100, 10).advisor());
+        timed = (UserMapper) timedProxyFactory.getProxy();
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user");
+    }
+
+    @Benchmark
+    public UserDTO direct() {
+        return target.userToUserDTO(user);
+    }
+
+    @Benchmark
+    public UserDTO advised() {
+        return advised.userToUserDTO(user);
+    }
+
+    @Benchmark
+    public UserDTO proxied() {
+        return proxied.userToUserDTO(user);
+    }
+
+    @Benchmark
+    public UserDTO timed() {
+        return timed.userToUserDTO(user);
+    }
+}
@@ -0,0 +1,161 @@
+package com.demo.upload.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the JMH results of a benchmark run with a baseline run, and fails when a benchmark regressed.
+ * <p>
+ * A benchmark regressed when its score got worse by more than the threshold, relative to the baseline, and by more
+ * than the sum of both score errors, so that noisy benchmarks do not fail the build. Throughput scores are better when
+ * higher, all other modes when lower. The comparison of each benchmark is written to a JSON report.
+ * <p>
+ * Usage: {@code BenchmarkComparison <results.json> <baseline.json> <report.json> <threshold> <record>}. When there is
+ * no baseline, the comparison is skipped, every benchmark being reported as new, so that a fresh checkout still
+ * builds. When {@code record} is {@code true}, the results are copied to the baseline path instead of being compared.
+ */
+public final class BenchmarkComparison {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    enum Status {
+        REGRESSED,
+        IMPROVED,
+        UNCHANGED,
+        NEW,
+        REMOVED,
+    }
+
+    private BenchmarkComparison() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("Usage: BenchmarkComparison <results.json> <baseline.json> <report.json> <threshold> <record>");
+            System.exit(2);
+        }
+        Path resultsPath = Paths.get(args[0]);
+        Path baselinePath = Paths.get(args[1]);
+        if (Boolean.parseBoolean(args[4])) {
+            Files.copy(resultsPath, baselinePath, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Recorded " + resultsPath + " as the baseline at " + baselinePath);
+            return;
+        }
+        Map<String, JsonNode> results = read(resultsPath);
+        Map<String, JsonNode> baseline = Map.of();
+        if (Files.exists(baselinePath)) {
+            baseline = read(baselinePath);
+        } else {
+            System.out.println(
+                "SKIPPED comparison, no baseline at " + baselinePath + ": record one on the reference machine with -Djmh.record-baseline=true"
+            );
+        }
+        ArrayNode report = compare(results, baseline, Double.parseDouble(args[3]));
+        MAPPER.writeValue(Paths.get(args[2]).toFile(), report);
+
+        long regressions = 0;
+        for (JsonNode comparison : report) {
+            System.out.printf(
+                "%-10s %-90s %14s %14s %8s%n",
+                comparison.get("status").asText(),
+                comparison.get("benchmark").asText(),
+                format(comparison.get("baseline")),
+                format(comparison.get("score")),
+                comparison.has("change") ? String.format("%+.1f%%", comparison.get("change").asDouble() * 100) : "-"
+            );
+            if (Status.REGRESSED.name().equals(comparison.get("status").asText())) {
+                regressions++;
+            }
+        }
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmarks regressed, see " + args[2]);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the comparison of each benchmark, the results first, then the benchmarks only in the baseline.
+     */
+    static ArrayNode compare(Map<String, JsonNode> results, Map<String, JsonNode> baseline, double threshold) {
+        ArrayNode report = MAPPER.createArrayNode();
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            JsonNode result = entry.getValue();
+            ObjectNode comparison = report.addObject();
+            comparison.put("benchmark", entry.getKey());
+            comparison.put("mode", result.get("mode").asText());
+            comparison.put("unit", result.at("/primaryMetric/scoreUnit").asText());
+            double score = result.at("/primaryMetric/score").asDouble();
+            comparison.put("score", score);
+            JsonNode base = baseline.get(entry.getKey());
+            if (base == null) {
+                comparison.put("status", Status.NEW.name());
+                continue;
+            }
+            double baseScore = base.at("/primaryMetric/score").asDouble();
+            double error = finite(result.at("/primaryMetric/scoreError").asDouble()) + finite(base.at("/primaryMetric/scoreError").asDouble());
+            // Positive when worse
+            double slowdown = "thrpt".equals(result.get("mode").asText()) ? baseScore - score : score - baseScore;
+            double change = baseScore == 0 ? 0 : slowdown / baseScore;
+            comparison.put("baseline", baseScore);
+            comparison.put("change", change);
+            Status status;
+            if (Math.abs(slowdown) <= error || Math.abs(change) <= threshold) {
+                status = Status.UNCHANGED;
+            } else {
+                status = change > 0 ? Status.REGRESSED : Status.IMPROVED;
+            }
+            comparison.put("status", status.name());
+        }
+        for (Map.Entry<String, JsonNode> entry : baseline.entrySet()) {
+            if (!results.containsKey(entry.getKey())) {
+                ObjectNode comparison = report.addObject();
+                comparison.put("benchmark", entry.getKey());
+                comparison.put("status", Status.REMOVED.name());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @return the results of a JMH JSON file, by benchmark name and parameters.
+     */
+    static Map<String, JsonNode> read(Path file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : MAPPER.readTree(file.toFile())) {
+            results.put(key(result), result);
+        }
+        return results;
+    }
+
+    private static String key(JsonNode result) {
+        StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+        Map<String, String> params = new TreeMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields(); fields.hasNext();) {
+            Map.Entry<String, JsonNode> param = fields.next();
+            params.put(param.getKey(), param.getValue().asText());
+        }
+        if (!params.isEmpty()) {
+            key.append(params);
+        }
+        return key.toString();
+    }
+
+    private static String format(JsonNode score) {
+        return score == null ? "-" : String.format("%.3f", score.asDouble());
+    }
+
+    private static double finite(double value) {
+        return Double.isFinite(value) ? value : 0;
+    }
+}
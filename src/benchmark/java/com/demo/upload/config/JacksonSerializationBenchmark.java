@@ -0,0 +1,73 @@
+package com.demo.upload.config;
+
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.service.dto.AdminUserDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Benchmarks the serialization of pages of {@link AdminUserDTO}, with the modules of {@link JacksonConfiguration}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonSerializationBenchmark {
+
+    @Param({ "20", "2000" })
+    public int pageSize;
+
+    private ObjectWriter writer;
+
+    private List<AdminUserDTO> page;
+
+    @Setup
+    public void setup() {
+        JacksonConfiguration jacksonConfiguration = new JacksonConfiguration();
+        writer =
+            Jackson2ObjectMapperBuilder
+                .json()
+                .modules(
+                    jacksonConfiguration.javaTimeModule(),
+                    jacksonConfiguration.jdk8TimeModule(),
+                    jacksonConfiguration.hibernate5Module(),
+                    jacksonConfiguration.problemModule(),
+                    jacksonConfiguration.constraintViolationProblemModule()
+                )
+                .build()
+                .writerFor(new TypeReference<List<AdminUserDTO>>() {});
+        Instant now = Instant.now();
+        page = new ArrayList<>(pageSize);
+        for (long i = 0; i < pageSize; i++) {
+            AdminUserDTO user = new AdminUserDTO();
+            user.setId(i);
+            user.setLogin("user-" + i);
+            user.setFirstName("First" + i);
+            user.setLastName("Last" + i);
+            user.setEmail("user-" + i + "@localhost");
+            user.setImageUrl("http://placehold.it/50x50");
+            user.setActivated(true);
+            user.setLangKey("en");
+            user.setCreatedBy("system");
+            user.setCreatedDate(now);
+            user.setLastModifiedBy("system");
+            user.setLastModifiedDate(now);
+            user.setAuthorities(Set.of(AuthoritiesConstants.USER));
+            page.add(user);
+        }
+    }
+
+    @Benchmark
+    public byte[] writePage() throws Exception {
+        return writer.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,120 @@
+package com.demo.upload.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.service.dto.UserExtraDTO;
+import com.demo.upload.service.dto.UserExtraPatchResultDTO;
+import com.demo.upload.service.mapper.UserExtraMapperImpl;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks patching many user extras one request at a time with {@link UserExtraService#partialUpdate}, against
+ * patching them at once with {@link UserExtraService#partialUpdateAll}.
+ * <p>
+ * The repository is stubbed, and each statement sent to the database is charged a simulated round trip: a select and
+ * an update per single patch, and a select and a JDBC batch of updates for the bulk patch. With no round trip, this
+ * measures the overhead of the service itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserExtraPatchBenchmark {
+
+    @Param({ "100" })
+    public int patchCount;
+
+    @Param({ "0", "250" })
+    public long roundTripMicros;
+
+    private UserExtraService userExtraService;
+
+    private List<UserExtraDTO> patches;
+
+    @Setup
+    public void setup() {
+        Map<Long, UserExtra> userExtras = new HashMap<>();
+        patches = new ArrayList<>(patchCount);
+        for (long id = 1; id <= patchCount; id++) {
+            userExtras.put(id, new UserExtra().id(id).frontImage("front-" + id).backImage("back-" + id));
+            UserExtraDTO patch = new UserExtraDTO();
+            patch.setId(id);
+            patch.setFrontImage("patched-" + id);
+            patches.add(patch);
+        }
+
+        UserExtraRepository userExtraRepository = mock(UserExtraRepository.class, withSettings().stubOnly());
+        when(userExtraRepository.findOneWithUserById(anyLong()))
+            .thenAnswer(invocation -> {
+                roundTrip();
+                return Optional.ofNullable(userExtras.get(invocation.<Long>getArgument(0)));
+            });
+        when(userExtraRepository.save(any(UserExtra.class)))
+            .thenAnswer(invocation -> {
+                roundTrip();
+                return invocation.getArgument(0);
+            });
+        when(userExtraRepository.findAllById(anyIterable()))
+            .thenAnswer(invocation -> {
+                roundTrip();
+                List<UserExtra> found = new ArrayList<>();
+                for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                    Optional.ofNullable(userExtras.get(id)).ifPresent(found::add);
+                }
+                return found;
+            });
+        when(userExtraRepository.saveAll(anyIterable())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userExtraService =
+            new UserExtraService(
+                userExtraRepository,
+                mock(UserRepository.class, withSettings().stubOnly()),
+                mock(ContentAddressedImageStore.class, withSettings().stubOnly()),
+                mock(ImageBlobService.class, withSettings().stubOnly()),
+                mock(ImageDerivativeService.class, withSettings().stubOnly()),
+                new UserExtraMapperImpl(),
+                new ObjectMapper()
+            );
+    }
+
+    @Benchmark
+    public void singlePatches(Blackhole blackhole) {
+        for (UserExtraDTO patch : patches) {
+            blackhole.consume(userExtraService.partialUpdate(patch));
+        }
+    }
+
+    @Benchmark
+    public List<UserExtraPatchResultDTO> bulkPatch() {
+        List<UserExtraPatchResultDTO> results = userExtraService.partialUpdateAll(patches);
+        // The batch of updates flushed on commit
+        roundTrip();
+        return results;
+    }
+
+    private void roundTrip() {
+        if (roundTripMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.demo.upload.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.service.mapper.UserExtraMapperImpl;
+import com.demo.upload.service.storage.FileSystemImageStorage;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.ImageDecoder;
+import com.demo.upload.service.upload.StoredImage;
+import com.demo.upload.service.upload.StreamingFileWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Benchmarks {@link UserExtraService#saveFrontImage} storing images of various sizes on the filesystem storage.
+ * <p>
+ * The image references and derivatives are mocked out, so this measures receiving, hashing and storing the bytes. The
+ * images start with a valid PNG header, the only part read when storing them, followed by random bytes.
+ * Each image differs from the previous one, so it is never deduplicated, and is deleted once stored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserExtraServiceBenchmark {
+
+    /**
+     * Signature, then the length, type, data and checksum of the IHDR chunk.
+     */
+    private static final int PNG_HEADER_LENGTH = 8 + 4 + 4 + 13 + 4;
+
+    @Param({ "16384", "524288", "8388608" })
+    public int imageSize;
+
+    private Path directory;
+
+    private ContentAddressedImageStore imageStore;
+
+    private UserExtraService userExtraService;
+
+    private byte[] image;
+
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("image-store");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUpload().setStoreDirectory(directory.toString());
+        applicationProperties.getUpload().setMaxPartSize(DataSize.ofMegabytes(16));
+        imageStore =
+            new ContentAddressedImageStore(
+                applicationProperties,
+                new StreamingFileWriter(applicationProperties),
+                new FileSystemImageStorage(directory),
+                new ImageDecoder(applicationProperties, new SimpleMeterRegistry())
+            );
+        userExtraService =
+            new UserExtraService(
+                mock(UserExtraRepository.class, withSettings().stubOnly()),
+                mock(UserRepository.class, withSettings().stubOnly()),
+                imageStore,
+                mock(ImageBlobService.class, withSettings().stubOnly()),
+                mock(ImageDerivativeService.class, withSettings().stubOnly()),
+                new UserExtraMapperImpl(),
+                new ObjectMapper()
+            );
+        userExtraService.init();
+        image = new byte[imageSize];
+        ThreadLocalRandom.current().nextBytes(image);
+        byte[] header = pngHeader();
+        System.arraycopy(header, 0, image, 0, header.length);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public StoredImage saveFrontImage() throws IOException {
+        ByteBuffer.wrap(image).putLong(imageSize - Long.BYTES, sequence++);
+        StoredImage storedImage = userExtraService.saveFrontImage("image.png", new ByteArrayInputStream(image));
+        imageStore.delete(storedImage.getContentKey());
+        return storedImage;
+    }
+
+    /**
+     * @return the signature and header chunk of a PNG image.
+     */
+    private static byte[] pngHeader() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "png", output);
+        return Arrays.copyOf(output.toByteArray(), PNG_HEADER_LENGTH);
+    }
+}
@@ -0,0 +1,73 @@
+package com.demo.upload.service.mapper;
+
+import com.demo.upload.domain.Authority;
+import com.demo.upload.domain.User;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.service.dto.AdminUserDTO;
+import com.demo.upload.service.dto.UserDTO;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks {@link UserMapper} mapping large lists of users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private final UserMapper userMapper = new UserMapper();
+
+    private List<User> users;
+
+    @Setup
+    public void setup() {
+        Authority user = new Authority();
+        user.setName(AuthoritiesConstants.USER);
+        Authority admin = new Authority();
+        admin.setName(AuthoritiesConstants.ADMIN);
+        Instant now = Instant.now();
+        users = new ArrayList<>(size);
+        for (long i = 0; i < size; i++) {
+            users.add(user(i, now, i % 10 == 0 ? Set.of(user, admin) : Set.of(user)));
+        }
+    }
+
+    @Benchmark
+    public List<UserDTO> usersToUserDTOs() {
+        return userMapper.usersToUserDTOs(users);
+    }
+
+    @Benchmark
+    public List<AdminUserDTO> usersToAdminUserDTOs() {
+        return userMapper.usersToAdminUserDTOs(users);
+    }
+
+    static User user(long id, Instant now, Set<Authority> authorities) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user-" + id);
+        user.setFirstName("First" + id);
+        user.setLastName("Last" + id);
+        user.setEmail("user-" + id + "@localhost");
+        user.setImageUrl("http://placehold.it/50x50");
+        user.setActivated(true);
+        user.setLangKey("en");
+        user.setCreatedBy("system");
+        user.setCreatedDate(now);
+        user.setLastModifiedBy("system");
+        user.setLastModifiedDate(now);
+        user.setAuthorities(authorities);
+        return user;
+    }
+}
@@ -0,0 +1,102 @@
+package com.demo.upload.loadtest;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Synthetic JPEG and PNG images, so that load tests need neither network access nor real user data.
+ * <p>
+ * Images are gradients with random shapes, which compress like photos and scans rather than like noise, in a few
+ * common camera and scanner resolutions, small enough for two of them to fit in an upload request.
+ */
+final class ImageCorpus {
+
+    private static final int[][] DIMENSIONS = { { 320, 240 }, { 640, 480 }, { 1024, 768 }, { 1280, 960 } };
+
+    private final List<Image> images;
+
+    private ImageCorpus(List<Image> images) {
+        this.images = images;
+    }
+
+    static ImageCorpus generate(int size, long seed) {
+        Random random = new Random(seed);
+        List<Image> images = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int[] dimension = DIMENSIONS[(i / 2) % DIMENSIONS.length];
+            String format = i % 2 == 0 ? "jpg" : "png";
+            images.add(new Image("image-" + i + "." + format, format, encode(draw(dimension[0], dimension[1], random), format)));
+        }
+        return new ImageCorpus(images);
+    }
+
+    List<Image> getImages() {
+        return images;
+    }
+
+    Image pick(Random random) {
+        return images.get(random.nextInt(images.size()));
+    }
+
+    private static BufferedImage draw(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, randomColor(random), width, height, randomColor(random)));
+            graphics.fillRect(0, 0, width, height);
+            for (int i = 0; i < 24; i++) {
+                graphics.setColor(randomColor(random));
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                if (random.nextBoolean()) {
+                    graphics.fillOval(x, y, 1 + random.nextInt(width / 4), 1 + random.nextInt(height / 4));
+                } else {
+                    graphics.drawLine(x, y, random.nextInt(width), random.nextInt(height));
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static Color randomColor(Random random) {
+        return new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+    }
+
+    private static byte[] encode(BufferedImage image, String format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (!ImageIO.write(image, format, out)) {
+                throw new IllegalStateException("No ImageIO writer for " + format);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static final class Image {
+
+        final String filename;
+
+        final String contentType;
+
+        final byte[] bytes;
+
+        private Image(String filename, String format, byte[] bytes) {
+            this.filename = filename;
+            this.contentType = "jpg".equals(format) ? "image/jpeg" : "image/png";
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.demo.upload.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Writes the results of a load test to a directory:
+ * <ul>
+ *     <li>{@code <scenario>.hgrm}: the full latency distribution of a scenario, in milliseconds, in the HdrHistogram
+ *     percentile format, which can be plotted with the HdrHistogram plotter;</li>
+ *     <li>{@code report.json}: the throughput, counters and main percentiles of each scenario.</li>
+ * </ul>
+ */
+final class LoadTestReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private LoadTestReport() {}
+
+    static void write(Path directory, LoadTestSettings settings, Map<Scenario, OpenModelLoadGenerator.ScenarioResult> results)
+        throws IOException {
+        Files.createDirectories(directory);
+        StringBuilder json = new StringBuilder();
+        json
+            .append("{\n  \"rate\": ")
+            .append(settings.rate)
+            .append(",\n  \"durationSeconds\": ")
+            .append(settings.duration.getSeconds())
+            .append(",\n  \"users\": ")
+            .append(settings.users)
+            .append(",\n  \"scenarios\": {");
+        String separator = "\n";
+        for (Map.Entry<Scenario, OpenModelLoadGenerator.ScenarioResult> entry : results.entrySet()) {
+            String name = entry.getKey().getName();
+            OpenModelLoadGenerator.ScenarioResult result = entry.getValue();
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")), false, StandardCharsets.UTF_8)) {
+                result.latencies.outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+            Histogram latencies = result.latencies;
+            json
+                .append(separator)
+                .append("    \"")
+                .append(name)
+                .append("\": {")
+                .append("\"requests\": ")
+                .append(result.requests())
+                .append(", \"errors\": ")
+                .append(result.errors.sum())
+                .append(", \"dropped\": ")
+                .append(result.dropped.sum())
+                .append(", \"throughput\": ")
+                .append(format(result.throughput()))
+                .append(", \"p50Millis\": ")
+                .append(millis(latencies, 50))
+                .append(", \"p90Millis\": ")
+                .append(millis(latencies, 90))
+                .append(", \"p99Millis\": ")
+                .append(millis(latencies, 99))
+                .append(", \"p999Millis\": ")
+                .append(millis(latencies, 99.9))
+                .append(", \"maxMillis\": ")
+                .append(format(latencies.getMaxValue() / MICROS_PER_MILLI))
+                .append("}");
+            separator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        Files.writeString(directory.resolve("report.json"), json);
+    }
+
+    /**
+     * Formats the results as a table, one line per scenario.
+     */
+    static String summary(Map<Scenario, OpenModelLoadGenerator.ScenarioResult> results) {
+        StringBuilder summary = new StringBuilder(
+            String.format(
+                Locale.ROOT,
+                "%-14s %9s %7s %8s %10s %9s %9s %9s %9s %9s%n",
+                "scenario",
+                "requests",
+                "errors",
+                "dropped",
+                "req/s",
+                "p50 ms",
+                "p90 ms",
+                "p99 ms",
+                "p99.9 ms",
+                "max ms"
+            )
+        );
+        results.forEach((scenario, result) ->
+            summary.append(
+                String.format(
+                    Locale.ROOT,
+                    "%-14s %9d %7d %8d %10s %9s %9s %9s %9s %9s%n",
+                    scenario.getName(),
+                    result.requests(),
+                    result.errors.sum(),
+                    result.dropped.sum(),
+                    format(result.throughput()),
+                    millis(result.latencies, 50),
+                    millis(result.latencies, 90),
+                    millis(result.latencies, 99),
+                    millis(result.latencies, 99.9),
+                    format(result.latencies.getMaxValue() / MICROS_PER_MILLI)
+                )
+            )
+        );
+        return summary.toString();
+    }
+
+    private static String millis(Histogram latencies, double percentile) {
+        return format(latencies.getValueAtPercentile(percentile) / MICROS_PER_MILLI);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -0,0 +1,135 @@
+package com.demo.upload.loadtest;
+
+import com.demo.upload.domain.Authority;
+import com.demo.upload.domain.User;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.AuthorityRepository;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.service.ImageBlobService;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.StoredImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Seeds the users of a load test, each with a {@link UserExtra} pointing to images of the corpus.
+ */
+final class LoadTestSeeder {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final UserRepository userRepository;
+
+    private final UserExtraRepository userExtraRepository;
+
+    private final AuthorityRepository authorityRepository;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageBlobService imageBlobService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    LoadTestSeeder(
+        UserRepository userRepository,
+        UserExtraRepository userExtraRepository,
+        AuthorityRepository authorityRepository,
+        PasswordEncoder passwordEncoder,
+        ContentAddressedImageStore imageStore,
+        ImageBlobService imageBlobService,
+        TransactionTemplate transactionTemplate
+    ) {
+        this.userRepository = userRepository;
+        this.userExtraRepository = userExtraRepository;
+        this.authorityRepository = authorityRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.imageStore = imageStore;
+        this.imageBlobService = imageBlobService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Creates {@code count} activated users, named {@code loadtest-<n>} and sharing the same password, whose front and
+     * back images are assigned round-robin from the corpus.
+     */
+    SeededUsers seed(int count, String password, ImageCorpus corpus) throws IOException {
+        List<String> contentKeys = storeCorpus(count, corpus);
+        // Hashing is deliberately slow: every user gets the same hash
+        String encodedPassword = passwordEncoder.encode(password);
+        Authority userAuthority = authorityRepository.findById(AuthoritiesConstants.USER).orElseThrow();
+
+        List<String> logins = new ArrayList<>(count);
+        List<Long> userExtraIds = new ArrayList<>(count);
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            int to = Math.min(count, from + BATCH_SIZE);
+            int batchStart = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<User> users = new ArrayList<>(to - batchStart);
+                for (int i = batchStart; i < to; i++) {
+                    User user = new User();
+                    user.setLogin("loadtest-" + i);
+                    user.setPassword(encodedPassword);
+                    user.setEmail("loadtest-" + i + "@localhost");
+                    user.setActivated(true);
+                    user.setLangKey("en");
+                    user.setAuthorities(Set.of(userAuthority));
+                    users.add(user);
+                }
+                List<UserExtra> userExtras = new ArrayList<>(users.size());
+                for (User user : userRepository.saveAll(users)) {
+                    int i = batchStart + userExtras.size();
+                    userExtras.add(
+                        new UserExtra()
+                            .user(user)
+                            .frontImage(contentKeys.get((2 * i) % contentKeys.size()))
+                            .backImage(contentKeys.get((2 * i + 1) % contentKeys.size()))
+                    );
+                    logins.add(user.getLogin());
+                }
+                userExtraRepository.saveAll(userExtras).forEach(userExtra -> userExtraIds.add(userExtra.getId()));
+            });
+        }
+        return new SeededUsers(Collections.unmodifiableList(logins), Collections.unmodifiableList(userExtraIds));
+    }
+
+    /**
+     * Stores the images of the corpus, retaining each of them once per user image pointing to it.
+     */
+    private List<String> storeCorpus(int count, ImageCorpus corpus) throws IOException {
+        List<ImageCorpus.Image> images = corpus.getImages();
+        List<String> contentKeys = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            ImageCorpus.Image image = images.get(i);
+            StoredImage storedImage = imageStore.put(image.filename, new ByteArrayInputStream(image.bytes));
+            // Number of the 2 * count image slots, filled round-robin, that get this image
+            int references = Math.max(0, (2 * count - i + images.size() - 1) / images.size());
+            if (references > 0) {
+                transactionTemplate.executeWithoutResult(status -> imageBlobService.retain(storedImage, references));
+            }
+            contentKeys.add(storedImage.getContentKey());
+        }
+        return contentKeys;
+    }
+
+    static final class SeededUsers {
+
+        final List<String> logins;
+
+        final List<Long> userExtraIds;
+
+        private SeededUsers(List<String> logins, List<Long> userExtraIds) {
+            this.logins = logins;
+            this.userExtraIds = userExtraIds;
+        }
+    }
+}
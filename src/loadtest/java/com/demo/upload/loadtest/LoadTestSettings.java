@@ -0,0 +1,126 @@
+package com.demo.upload.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from the {@code loadtest.*} system properties.
+ */
+final class LoadTestSettings {
+
+    /**
+     * Number of users seeded, each with a {@code UserExtra}.
+     */
+    final int users;
+
+    /**
+     * Mean number of requests started per second, whatever the response times.
+     */
+    final double rate;
+
+    /**
+     * Time the load is applied before measuring, for the JIT and the pools to warm up.
+     */
+    final Duration warmup;
+
+    /**
+     * Time the load is measured for.
+     */
+    final Duration duration;
+
+    /**
+     * Number of distinct synthetic images, half JPEG and half PNG.
+     */
+    final int corpusSize;
+
+    /**
+     * Relative weight of each scenario, e.g. {@code authenticate=1,upload=2,list-users=3,fetch-image=4}.
+     */
+    final Map<Scenario, Integer> mix;
+
+    /**
+     * Number of requests in flight above which new arrivals are dropped and counted, instead of exhausting memory.
+     */
+    final int maxOutstanding;
+
+    /**
+     * Seed of the random arrivals, scenario picks and images, so that runs can be repeated.
+     */
+    final long seed;
+
+    final Path reportDirectory;
+
+    private LoadTestSettings(
+        int users,
+        double rate,
+        Duration warmup,
+        Duration duration,
+        int corpusSize,
+        Map<Scenario, Integer> mix,
+        int maxOutstanding,
+        long seed,
+        Path reportDirectory
+    ) {
+        this.users = users;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.corpusSize = corpusSize;
+        this.mix = mix;
+        this.maxOutstanding = maxOutstanding;
+        this.seed = seed;
+        this.reportDirectory = reportDirectory;
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+            Integer.getInteger("loadtest.users", 1000),
+            Double.parseDouble(System.getProperty("loadtest.rate", "50")),
+            Duration.parse(System.getProperty("loadtest.warmup", "PT15S")),
+            Duration.parse(System.getProperty("loadtest.duration", "PT60S")),
+            Integer.getInteger("loadtest.corpus-size", 20),
+            parseMix(System.getProperty("loadtest.mix", "authenticate=1,upload=2,list-users=3,fetch-image=4")),
+            Integer.getInteger("loadtest.max-outstanding", 2000),
+            Long.getLong("loadtest.seed", 42L),
+            Paths.get(System.getProperty("loadtest.report-directory", "target/load-test"))
+        );
+    }
+
+    private static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry: " + entry);
+            }
+            weights.put(Scenario.fromName(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "LoadTestSettings{users=" +
+            users +
+            ", rate=" +
+            rate +
+            ", warmup=" +
+            warmup +
+            ", duration=" +
+            duration +
+            ", corpusSize=" +
+            corpusSize +
+            ", mix=" +
+            mix +
+            ", maxOutstanding=" +
+            maxOutstanding +
+            ", seed=" +
+            seed +
+            "}"
+        );
+    }
+}
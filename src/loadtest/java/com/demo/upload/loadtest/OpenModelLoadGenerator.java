@@ -0,0 +1,133 @@
+package com.demo.upload.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Sends requests following an open model: arrivals are a Poisson process at the target rate, whatever the response
+ * times, the way independent users reach a server.
+ * <p>
+ * The latency of a request is measured from the time it was due to be sent, not from the time it was actually sent,
+ * so that a stalled generator or client does not hide the stall from the results (coordinated omission). Arrivals
+ * beyond the maximum number of outstanding requests are not sent, and counted as dropped.
+ */
+final class OpenModelLoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final HttpClient httpClient;
+
+    private final Scenario.Target target;
+
+    private final Scenario[] weightedScenarios;
+
+    private final double rate;
+
+    private final int maxOutstanding;
+
+    private final Random random;
+
+    OpenModelLoadGenerator(HttpClient httpClient, Scenario.Target target, LoadTestSettings settings) {
+        this.httpClient = httpClient;
+        this.target = target;
+        this.weightedScenarios =
+            settings.mix
+                .entrySet()
+                .stream()
+                .flatMap(weight -> Collections.nCopies(weight.getValue(), weight.getKey()).stream())
+                .toArray(Scenario[]::new);
+        if (weightedScenarios.length == 0) {
+            throw new IllegalArgumentException("The scenario mix is empty");
+        }
+        this.rate = settings.rate;
+        this.maxOutstanding = settings.maxOutstanding;
+        this.random = new Random(settings.seed);
+    }
+
+    /**
+     * Applies the load for the given duration, then waits for the outstanding requests.
+     *
+     * @return the results of every scenario of the mix.
+     */
+    Map<Scenario, ScenarioResult> run(Duration duration) {
+        Map<Scenario, ScenarioResult> results = new EnumMap<>(Scenario.class);
+        for (Scenario scenario : weightedScenarios) {
+            results.computeIfAbsent(scenario, key -> new ScenarioResult());
+        }
+        AtomicInteger outstanding = new AtomicInteger();
+        // Registers the generator itself, then one party per request in flight
+        Phaser inFlight = new Phaser(1);
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long meanInterarrivalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long intendedStart = start;
+        while (true) {
+            intendedStart += (long) (-Math.log(1 - random.nextDouble()) * meanInterarrivalNanos);
+            if (intendedStart >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Scenario scenario = weightedScenarios[random.nextInt(weightedScenarios.length)];
+            ScenarioResult result = results.get(scenario);
+            if (outstanding.incrementAndGet() > maxOutstanding) {
+                outstanding.decrementAndGet();
+                result.dropped.increment();
+                continue;
+            }
+            long due = intendedStart;
+            inFlight.register();
+            httpClient
+                .sendAsync(scenario.request(target, random), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    result.latencies.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due)));
+                    if (error != null || response.statusCode() >= 400) {
+                        result.errors.increment();
+                    }
+                    outstanding.decrementAndGet();
+                    inFlight.arriveAndDeregister();
+                });
+        }
+        inFlight.arriveAndAwaitAdvance();
+        long elapsed = System.nanoTime() - start;
+        results.values().forEach(result -> result.elapsedNanos = elapsed);
+        return results;
+    }
+
+    /**
+     * Latencies, in microseconds, and counters of a scenario.
+     */
+    static final class ScenarioResult {
+
+        final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        final LongAdder errors = new LongAdder();
+
+        final LongAdder dropped = new LongAdder();
+
+        long elapsedNanos;
+
+        long requests() {
+            return latencies.getTotalCount();
+        }
+
+        double throughput() {
+            return elapsedNanos == 0 ? 0 : requests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+}
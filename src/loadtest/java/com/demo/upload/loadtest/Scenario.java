@@ -0,0 +1,147 @@
+package com.demo.upload.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Requests a load test sends, each on behalf of a random seeded user.
+ */
+enum Scenario {
+    /**
+     * Signs in, with the password hashing it implies.
+     */
+    AUTHENTICATE("authenticate") {
+        @Override
+        HttpRequest request(Target target, Random random) {
+            String login = target.logins.get(random.nextInt(target.logins.size()));
+            String body = "{\"username\":\"" + login + "\",\"password\":\"" + target.password + "\",\"rememberMe\":false}";
+            return builder(target, "/api/authenticate")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        }
+    },
+
+    /**
+     * Replaces the front and back images of the user, sent as a multipart request.
+     */
+    UPLOAD("upload") {
+        @Override
+        HttpRequest request(Target target, Random random) {
+            int user = random.nextInt(target.logins.size());
+            String boundary = "loadtest" + Long.toHexString(random.nextLong());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writePart(body, boundary, "frontImage", target.corpus.pick(random));
+            writePart(body, boundary, "backImage", target.corpus.pick(random));
+            body.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            return authenticated(target, user, "/api/upload/user-extra/image")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        }
+    },
+
+    /**
+     * Lists the first page of users.
+     */
+    LIST_USERS("list-users") {
+        @Override
+        HttpRequest request(Target target, Random random) {
+            return authenticated(target, random.nextInt(target.logins.size()), "/api/users?page=0&size=20").GET().build();
+        }
+    },
+
+    /**
+     * Downloads the front or back image of a user.
+     */
+    FETCH_IMAGE("fetch-image") {
+        @Override
+        HttpRequest request(Target target, Random random) {
+            Long userExtraId = target.userExtraIds.get(random.nextInt(target.userExtraIds.size()));
+            String side = random.nextBoolean() ? "front-image" : "back-image";
+            return authenticated(target, random.nextInt(target.logins.size()), "/api/user-extras/" + userExtraId + "/" + side).GET().build();
+        }
+    };
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String name;
+
+    Scenario(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    abstract HttpRequest request(Target target, Random random);
+
+    static Scenario fromName(String name) {
+        for (Scenario scenario : values()) {
+            if (scenario.name.equals(name)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario: " + name);
+    }
+
+    private static HttpRequest.Builder builder(Target target, String path) {
+        return HttpRequest.newBuilder(target.baseUri.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private static HttpRequest.Builder authenticated(Target target, int user, String path) {
+        return builder(target, path).header("Authorization", "Bearer " + target.tokens.get(user));
+    }
+
+    private static void writePart(ByteArrayOutputStream body, String boundary, String name, ImageCorpus.Image image) {
+        String headers =
+            "--" +
+            boundary +
+            "\r\nContent-Disposition: form-data; name=\"" +
+            name +
+            "\"; filename=\"" +
+            image.filename +
+            "\"\r\nContent-Type: " +
+            image.contentType +
+            "\r\n\r\n";
+        body.writeBytes(headers.getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(image.bytes);
+        body.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * The application under load and its seeded data.
+     */
+    static final class Target {
+
+        final URI baseUri;
+
+        final List<String> logins;
+
+        /**
+         * Tokens of the seeded users, in the order of {@link #logins}.
+         */
+        final List<String> tokens;
+
+        final String password;
+
+        final List<Long> userExtraIds;
+
+        final ImageCorpus corpus;
+
+        Target(URI baseUri, List<String> logins, List<String> tokens, String password, List<Long> userExtraIds, ImageCorpus corpus) {
+            this.baseUri = baseUri;
+            this.logins = logins;
+            this.tokens = tokens;
+            this.password = password;
+            this.userExtraIds = userExtraIds;
+            this.corpus = corpus;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.demo.upload.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.UploadImageApp;
+import com.demo.upload.config.AsyncSyncConfiguration;
+import com.demo.upload.config.EmbeddedSQL;
+import com.demo.upload.repository.AuthorityRepository;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.security.jwt.TokenProvider;
+import com.demo.upload.service.ImageBlobService;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Load test of the upload, authentication, user list and image download endpoints.
+ * <p>
+ * Boots the application on a random port against the test database, seeds the users and images, then applies an open
+ * model load, first to warm up and then to measure. See {@link LoadTestSettings} for the settings, and the "Load tests"
+ * section of the README to run it.
+ */
+@SpringBootTest(
+    classes = { UploadImageApp.class, AsyncSyncConfiguration.class },
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "application.upload.store-directory=target/load-test/images"
+)
+@EmbeddedSQL
+class UploadLoadTest {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    private final Logger log = LoggerFactory.getLogger(UploadLoadTest.class);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserExtraRepository userExtraRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void applyLoad() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        log.info("Running load test with {}", settings);
+
+        ImageCorpus corpus = ImageCorpus.generate(settings.corpusSize, settings.seed);
+        LoadTestSeeder.SeededUsers seededUsers = new LoadTestSeeder(
+            userRepository,
+            userExtraRepository,
+            authorityRepository,
+            passwordEncoder,
+            imageStore,
+            imageBlobService,
+            new TransactionTemplate(transactionManager)
+        )
+            .seed(settings.users, PASSWORD, corpus);
+        Scenario.Target target = new Scenario.Target(
+            URI.create("http://localhost:" + port),
+            seededUsers.logins,
+            tokens(seededUsers.logins),
+            PASSWORD,
+            seededUsers.userExtraIds,
+            corpus
+        );
+
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        new OpenModelLoadGenerator(httpClient, target, settings).run(settings.warmup);
+        Map<Scenario, OpenModelLoadGenerator.ScenarioResult> results = new OpenModelLoadGenerator(httpClient, target, settings)
+            .run(settings.duration);
+
+        LoadTestReport.write(settings.reportDirectory, settings, results);
+        log.info("Load test results, written to {}:\n{}", settings.reportDirectory.toAbsolutePath(), LoadTestReport.summary(results));
+        assertThat(results.values()).allSatisfy(result -> assertThat(result.requests()).isPositive());
+    }
+
+    /**
+     * Issues the tokens of the seeded users directly, so that only the authenticate scenario pays for password hashing.
+     */
+    private List<String> tokens(List<String> logins) {
+        List<String> tokens = new ArrayList<>(logins.size());
+        for (String login : logins) {
+            tokens.add(
+                tokenProvider.createToken(
+                    new UsernamePasswordAuthenticationToken(login, null, List.of(new SimpleGrantedAuthority(AuthoritiesConstants.USER))),
+                    false
+                )
+            );
+        }
+        return tokens;
+    }
+}
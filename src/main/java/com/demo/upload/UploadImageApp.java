@@ -3,7 +3,6 @@ package com.demo.upload;
 import com.demo.upload.config.ApplicationProperties;
 import com.demo.upload.config.CRLFLogConverter;
 import com.demo.upload.service.UserExtraService;
-import com.demo.upload.service.UserService;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -33,9 +32,6 @@ public class UploadImageApp implements CommandLineRunner{
 
     private final Environment env;
     
-    @Resource
-    UserService userService;
-    
     @Resource
     UserExtraService userExtraService;
 
@@ -121,14 +117,8 @@ public class UploadImageApp implements CommandLineRunner{
 
     @Override
 	  public void run(String... arg) throws Exception {
-	    userService.deleteAll();
-	    userService.init();
-	    
-	    
-	    userExtraService.deleteAll();
-
-	    userExtraService.initFrontImageDirectory();
-	    userExtraService.initBackImageDirectory();
+	    // Images are content-addressed and referenced from the database, so they are kept across restarts
+	    userExtraService.init();
 
 
 	  }
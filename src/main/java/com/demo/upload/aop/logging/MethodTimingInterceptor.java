@@ -0,0 +1,217 @@
+package com.demo.upload.aop.logging;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.AspectJExpressionPointcutAdvisor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Interceptor timing the methods matched by {@link LoggingAspect}, cheap enough to run in production.
+ * <p>
+ * Unlike {@link LoggingAspect#logAround}, it builds neither a join point nor a logger per call: the logger and counters
+ * of each method are looked up once and cached. Every call is counted, but only one call in {@code timeOneIn} is timed,
+ * as reading the clock twice costs more than many of the timed methods: the total time is extrapolated from the timed
+ * calls. Calls are read by the {@value #DURATION_METER_NAME} function timer, tagged with the layer, class and method,
+ * which are bounded by the code base, and the outcome. The class is the one of the target bean, or the interface of a
+ * Spring Data repository, so that inherited methods are told apart.
+ * <p>
+ * When debug logging is enabled for the class, the arguments and result of a sample of the calls are logged: one call
+ * in {@code sampleOneIn}, and no more than {@code maxSamplesPerSecond}.
+ */
+public class MethodTimingInterceptor implements MethodInterceptor {
+
+    public static final String DURATION_METER_NAME = "method.duration";
+    public static final String DURATION_METER_DESCRIPTION = "Indicates the time spent in repository, service and REST methods.";
+
+    public static final String LAYER_DIMENSION = "layer";
+    public static final String CLASS_DIMENSION = "class";
+    public static final String METHOD_DIMENSION = "method";
+    public static final String OUTCOME_DIMENSION = "outcome";
+
+    /**
+     * Same methods as the pointcuts of {@link LoggingAspect}.
+     */
+    public static final String POINTCUT =
+        "(within(@org.springframework.stereotype.Repository *)" +
+        " || within(@org.springframework.stereotype.Service *)" +
+        " || within(@org.springframework.web.bind.annotation.RestController *))" +
+        " && (within(com.demo.upload.repository..*) || within(com.demo.upload.service..*) || within(com.demo.upload.web.rest..*))";
+
+    /**
+     * Spring Data repositories are proxies of a shared implementation, and are named after the interface they proxy.
+     */
+    private static final ClassValue<Class<?>> REPOSITORY_INTERFACE = new ClassValue<>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            for (Class<?> proxiedInterface : type.getInterfaces()) {
+                if (proxiedInterface != Repository.class && Repository.class.isAssignableFrom(proxiedInterface)) {
+                    return proxiedInterface;
+                }
+            }
+            return null;
+        }
+    };
+
+    private final Map<Class<?>, Map<Method, MethodMetadata>> metadata = new ConcurrentHashMap<>();
+
+    /**
+     * Earliest {@link System#nanoTime()} at which the next sample may be logged.
+     */
+    private final AtomicLong nextSampleNanos = new AtomicLong(System.nanoTime());
+
+    private final MeterRegistry registry;
+
+    private final int timeOneIn;
+
+    private final int sampleOneIn;
+
+    private final long sampleIntervalNanos;
+
+    public MethodTimingInterceptor(MeterRegistry registry, int timeOneIn, int sampleOneIn, int maxSamplesPerSecond) {
+        this.registry = registry;
+        this.timeOneIn = timeOneIn;
+        this.sampleOneIn = sampleOneIn;
+        this.sampleIntervalNanos = maxSamplesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxSamplesPerSecond : 0;
+    }
+
+    /**
+     * @return an advisor applying the interceptor to the methods matched by {@link #POINTCUT}.
+     */
+    public AspectJExpressionPointcutAdvisor advisor() {
+        AspectJExpressionPointcutAdvisor advisor = new AspectJExpressionPointcutAdvisor();
+        advisor.setExpression(POINTCUT);
+        advisor.setAdvice(this);
+        return advisor;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Class<?> targetClass = targetClass(invocation.getThis());
+        Map<Method, MethodMetadata> classMetadata = metadata.get(targetClass);
+        if (classMetadata == null) {
+            classMetadata = metadata.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>());
+        }
+        MethodMetadata methodMetadata = classMetadata.get(method);
+        if (methodMetadata == null) {
+            methodMetadata = classMetadata.computeIfAbsent(method, key -> new MethodMetadata(targetClass, key, registry));
+        }
+        boolean sampled = methodMetadata.log.isDebugEnabled() && sample();
+        if (sampled) {
+            methodMetadata.log.debug("Enter: {}() with argument[s] = {}", methodMetadata.name, Arrays.toString(invocation.getArguments()));
+        }
+        boolean timed = timeOneIn <= 1 || ThreadLocalRandom.current().nextInt(timeOneIn) == 0;
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            Object result = invocation.proceed();
+            methodMetadata.success.record(timed, start);
+            if (sampled) {
+                methodMetadata.log.debug("Exit: {}() with result = {}", methodMetadata.name, result);
+            }
+            return result;
+        } catch (Throwable e) {
+            methodMetadata.error.record(timed, start);
+            if (e instanceof IllegalArgumentException) {
+                methodMetadata.log.error("Illegal argument: {} in {}()", Arrays.toString(invocation.getArguments()), methodMetadata.name);
+            }
+            throw e;
+        }
+    }
+
+    private static Class<?> targetClass(Object target) {
+        Class<?> repositoryInterface = REPOSITORY_INTERFACE.get(target.getClass());
+        return repositoryInterface != null ? repositoryInterface : AopUtils.getTargetClass(target);
+    }
+
+    private boolean sample() {
+        if (sampleOneIn <= 0 || (sampleOneIn > 1 && ThreadLocalRandom.current().nextInt(sampleOneIn) != 0)) {
+            return false;
+        }
+        if (sampleIntervalNanos == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long next = nextSampleNanos.get();
+        // Losing the race means another thread took this sample
+        return now - next >= 0 && nextSampleNanos.compareAndSet(next, now + sampleIntervalNanos);
+    }
+
+    private static final class MethodMetadata {
+
+        private final Logger log;
+
+        private final String name;
+
+        private final Calls success = new Calls();
+
+        private final Calls error = new Calls();
+
+        private MethodMetadata(Class<?> targetClass, Method method, MeterRegistry registry) {
+            this.log = LoggerFactory.getLogger(targetClass);
+            this.name = method.getName();
+            register(registry, targetClass, name, "success", success);
+            register(registry, targetClass, name, "error", error);
+        }
+
+        private static void register(MeterRegistry registry, Class<?> targetClass, String name, String outcome, Calls calls) {
+            FunctionTimer
+                .builder(DURATION_METER_NAME, calls, Calls::count, Calls::totalNanos, TimeUnit.NANOSECONDS)
+                .description(DURATION_METER_DESCRIPTION)
+                .tag(LAYER_DIMENSION, layer(targetClass))
+                .tag(CLASS_DIMENSION, targetClass.getSimpleName())
+                .tag(METHOD_DIMENSION, name)
+                .tag(OUTCOME_DIMENSION, outcome)
+                .register(registry);
+        }
+
+        private static String layer(Class<?> targetClass) {
+            String packageName = targetClass.getPackageName();
+            if (packageName.startsWith("com.demo.upload.repository") || Repository.class.isAssignableFrom(targetClass)) {
+                return "repository";
+            }
+            if (packageName.startsWith("com.demo.upload.web.rest")) {
+                return "rest";
+            }
+            return "service";
+        }
+    }
+
+    private static final class Calls {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder timedCount = new LongAdder();
+
+        private final LongAdder timedNanos = new LongAdder();
+
+        private void record(boolean timed, long start) {
+            count.increment();
+            if (timed) {
+                timedNanos.add(System.nanoTime() - start);
+                timedCount.increment();
+            }
+        }
+
+        private long count() {
+            return count.sum();
+        }
+
+        private double totalNanos() {
+            long timed = timedCount.sum();
+            return timed == 0 ? 0 : (double) timedNanos.sum() * count.sum() / timed;
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.demo.upload.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Properties specific to Upload Image.
@@ -10,7 +16,960 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Upload upload = new Upload();
+
+    private final Derivatives derivatives = new Derivatives();
+
+    private final ImageCache imageCache = new ImageCache();
+
+    private final Storage storage = new Storage();
+
+    private final Bulk bulk = new Bulk();
+
+    private final ResumableUpload resumableUpload = new ResumableUpload();
+
+    private final TokenCache tokenCache = new TokenCache();
+
+    private final Jwt jwt = new Jwt();
+
+    private final PasswordHashing passwordHashing = new PasswordHashing();
+
+    private final EntityCache entityCache = new EntityCache();
+
+    private final Execution execution = new Execution();
+
+    private final MailOutbox mailOutbox = new MailOutbox();
+
+    private final MethodTiming methodTiming = new MethodTiming();
+
     // jhipster-needle-application-properties-property
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public Derivatives getDerivatives() {
+        return derivatives;
+    }
+
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public ResumableUpload getResumableUpload() {
+        return resumableUpload;
+    }
+
+    public TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    public Jwt getJwt() {
+        return jwt;
+    }
+
+    public PasswordHashing getPasswordHashing() {
+        return passwordHashing;
+    }
+
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    public Execution getExecution() {
+        return execution;
+    }
+
+    public MailOutbox getMailOutbox() {
+        return mailOutbox;
+    }
+
+    public MethodTiming getMethodTiming() {
+        return methodTiming;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Upload {
+
+        /**
+         * Maximum size of a single multipart part, enforced while the bytes are being received.
+         */
+        private DataSize maxPartSize = DataSize.ofKilobytes(500);
+
+        /**
+         * Size of each direct buffer used to copy request bytes to disk.
+         */
+        private DataSize bufferSize = DataSize.ofKilobytes(64);
+
+        /**
+         * Number of direct buffers shared by all concurrent uploads.
+         */
+        private int bufferCount = 64;
+
+        /**
+         * Directory where uploads are staged while they are hashed, and where the filesystem storage keeps images.
+         */
+        private String storeDirectory = "uploadsImages";
+
+        /**
+         * Image formats accepted by the upload endpoints, as sniffed from the content.
+         */
+        private List<String> imageFormats = new ArrayList<>(List.of("png", "jpeg", "gif", "bmp"));
+
+        /**
+         * Maximum width declared by an image header, checked before the image is stored or decoded.
+         */
+        private int maxImageWidth = 8192;
+
+        /**
+         * Maximum height declared by an image header, checked before the image is stored or decoded.
+         */
+        private int maxImageHeight = 8192;
+
+        /**
+         * Maximum number of pixels declared by an image header, checked before the image is stored or decoded.
+         */
+        private int maxImagePixels = 25_000_000;
+
+        /**
+         * Number of pixels of all the images decoded at once, raised to {@code max-image-pixels} if lower.
+         */
+        private int decodePixelBudget = 50_000_000;
+
+        /**
+         * Longest wait for the pixels of an image to fit in the decode budget, after which the decode is rejected.
+         */
+        private Duration decodeWaitTimeout = Duration.ofSeconds(10);
+
+        public DataSize getMaxPartSize() {
+            return maxPartSize;
+        }
+
+        public void setMaxPartSize(DataSize maxPartSize) {
+            this.maxPartSize = maxPartSize;
+        }
+
+        public DataSize getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(DataSize bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public int getBufferCount() {
+            return bufferCount;
+        }
+
+        public void setBufferCount(int bufferCount) {
+            this.bufferCount = bufferCount;
+        }
+
+        public String getStoreDirectory() {
+            return storeDirectory;
+        }
+
+        public void setStoreDirectory(String storeDirectory) {
+            this.storeDirectory = storeDirectory;
+        }
+
+        public List<String> getImageFormats() {
+            return imageFormats;
+        }
+
+        public void setImageFormats(List<String> imageFormats) {
+            this.imageFormats = imageFormats;
+        }
+
+        public int getMaxImageWidth() {
+            return maxImageWidth;
+        }
+
+        public void setMaxImageWidth(int maxImageWidth) {
+            this.maxImageWidth = maxImageWidth;
+        }
+
+        public int getMaxImageHeight() {
+            return maxImageHeight;
+        }
+
+        public void setMaxImageHeight(int maxImageHeight) {
+            this.maxImageHeight = maxImageHeight;
+        }
+
+        public int getMaxImagePixels() {
+            return maxImagePixels;
+        }
+
+        public void setMaxImagePixels(int maxImagePixels) {
+            this.maxImagePixels = maxImagePixels;
+        }
+
+        public int getDecodePixelBudget() {
+            return decodePixelBudget;
+        }
+
+        public void setDecodePixelBudget(int decodePixelBudget) {
+            this.decodePixelBudget = decodePixelBudget;
+        }
+
+        public Duration getDecodeWaitTimeout() {
+            return decodeWaitTimeout;
+        }
+
+        public void setDecodeWaitTimeout(Duration decodeWaitTimeout) {
+            this.decodeWaitTimeout = decodeWaitTimeout;
+        }
+    }
+
+    public static class Derivatives {
+
+        /**
+         * Derivatives generated for every stored image, as the largest dimension in pixels keyed by size name.
+         */
+        private Map<String, Integer> sizes = new LinkedHashMap<>(Map.of("thumb", 128, "medium", 512));
+
+        /**
+         * Number of threads generating derivatives.
+         */
+        private int poolSize = 2;
+
+        /**
+         * Number of images waiting for their derivatives before uploads generate them on the request thread.
+         */
+        private int queueCapacity = 100;
+
+        public Map<String, Integer> getSizes() {
+            return sizes;
+        }
+
+        public void setSizes(Map<String, Integer> sizes) {
+            this.sizes = sizes;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class ImageCache {
+
+        /**
+         * Total size of the image bytes kept off-heap for hot images, 0 to disable the cache.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Size above which an image is never cached and always sent from disk.
+         */
+        private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public DataSize getMaxEntrySize() {
+            return maxEntrySize;
+        }
+
+        public void setMaxEntrySize(DataSize maxEntrySize) {
+            this.maxEntrySize = maxEntrySize;
+        }
+    }
+
+    public static class Storage {
+
+        public enum Type {
+            /**
+             * One file per image, under {@code application.upload.store-directory}.
+             */
+            FILESYSTEM,
+            /**
+             * Images appended to large segment files, for small images.
+             */
+            SEGMENT,
+            /**
+             * An S3-compatible object store.
+             */
+            S3
+        }
+
+        private Type type = Type.FILESYSTEM;
+
+        private final Segment segment = new Segment();
+
+        private final S3 s3 = new S3();
+
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(Type type) {
+            this.type = type;
+        }
+
+        public Segment getSegment() {
+            return segment;
+        }
+
+        public S3 getS3() {
+            return s3;
+        }
+
+        public static class Segment {
+
+            private String directory = "uploadsSegments";
+
+            private DataSize maxSegmentSize = DataSize.ofMegabytes(64);
+
+            /**
+             * Share of deleted bytes above which a sealed segment is compacted.
+             */
+            private double compactionThreshold = 0.5;
+
+            /**
+             * Delay between two compaction runs.
+             */
+            private Duration compactionInterval = Duration.ofMinutes(10);
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public DataSize getMaxSegmentSize() {
+                return maxSegmentSize;
+            }
+
+            public void setMaxSegmentSize(DataSize maxSegmentSize) {
+                this.maxSegmentSize = maxSegmentSize;
+            }
+
+            public double getCompactionThreshold() {
+                return compactionThreshold;
+            }
+
+            public void setCompactionThreshold(double compactionThreshold) {
+                this.compactionThreshold = compactionThreshold;
+            }
+
+            public Duration getCompactionInterval() {
+                return compactionInterval;
+            }
+
+            public void setCompactionInterval(Duration compactionInterval) {
+                this.compactionInterval = compactionInterval;
+            }
+        }
+
+        public static class S3 {
+
+            private String endpoint = "http://localhost:9000";
+
+            private String region = "us-east-1";
+
+            private String bucket = "images";
+
+            /**
+             * Prefix of the object keys, e.g. {@code images/}.
+             */
+            private String prefix = "";
+
+            private String accessKey;
+
+            private String secretKey;
+
+            private Duration timeout = Duration.ofSeconds(30);
+
+            public String getEndpoint() {
+                return endpoint;
+            }
+
+            public void setEndpoint(String endpoint) {
+                this.endpoint = endpoint;
+            }
+
+            public String getRegion() {
+                return region;
+            }
+
+            public void setRegion(String region) {
+                this.region = region;
+            }
+
+            public String getBucket() {
+                return bucket;
+            }
+
+            public void setBucket(String bucket) {
+                this.bucket = bucket;
+            }
+
+            public String getPrefix() {
+                return prefix;
+            }
+
+            public void setPrefix(String prefix) {
+                this.prefix = prefix;
+            }
+
+            public String getAccessKey() {
+                return accessKey;
+            }
+
+            public void setAccessKey(String accessKey) {
+                this.accessKey = accessKey;
+            }
+
+            public String getSecretKey() {
+                return secretKey;
+            }
+
+            public void setSecretKey(String secretKey) {
+                this.secretKey = secretKey;
+            }
+
+            public Duration getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(Duration timeout) {
+                this.timeout = timeout;
+            }
+        }
+    }
+
+    public static class Bulk {
+
+        /**
+         * Parallelism of the fork-join pool storing and reading the images of bulk imports and exports.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Number of finished jobs kept for the {@code imagebulk} management endpoint.
+         */
+        private int retainedJobs = 20;
+
+        /**
+         * Maximum number of userExtras patched by one {@code POST /api/user-extras/bulk} request.
+         */
+        private int maxPatchSize = 1000;
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getRetainedJobs() {
+            return retainedJobs;
+        }
+
+        public void setRetainedJobs(int retainedJobs) {
+            this.retainedJobs = retainedJobs;
+        }
+
+        public int getMaxPatchSize() {
+            return maxPatchSize;
+        }
+
+        public void setMaxPatchSize(int maxPatchSize) {
+            this.maxPatchSize = maxPatchSize;
+        }
+    }
+
+    public static class ResumableUpload {
+
+        /**
+         * Maximum size of an image uploaded in chunks.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(10);
+
+        /**
+         * Time after its last chunk at which an unfinished upload is discarded.
+         */
+        private Duration expiry = Duration.ofHours(24);
+
+        /**
+         * Delay between two runs discarding expired uploads.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(5);
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getExpiry() {
+            return expiry;
+        }
+
+        public void setExpiry(Duration expiry) {
+            this.expiry = expiry;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+    }
+
+    public static class TokenCache {
+
+        /**
+         * Maximum number of verified JWT tokens remembered, 0 to verify every token on every request.
+         */
+        private int maxSize = 10000;
+
+        /**
+         * Time a verified token is remembered, capped by the expiration of the token.
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    public static class Jwt {
+
+        public enum Algorithm {
+            /**
+             * Tokens are signed and verified with the shared {@code jhipster.security.authentication.jwt} secret.
+             */
+            HS512,
+            /**
+             * Tokens are signed with rotating ECDSA P-256 keys, whose public keys are published at {@code /management/jwks}.
+             */
+            ES256
+        }
+
+        private Algorithm algorithm = Algorithm.HS512;
+
+        /**
+         * Directory holding the signing keys, shared by all the nodes signing tokens.
+         */
+        private String keyDirectory = "jwtKeys";
+
+        /**
+         * Time a key signs new tokens before the next key takes over.
+         */
+        private Duration rotationInterval = Duration.ofDays(7);
+
+        /**
+         * Delay between two reloads of the key directory, which also create the next key when it is due.
+         */
+        private Duration refreshInterval = Duration.ofMinutes(1);
+
+        public Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public String getKeyDirectory() {
+            return keyDirectory;
+        }
+
+        public void setKeyDirectory(String keyDirectory) {
+            this.keyDirectory = keyDirectory;
+        }
+
+        public Duration getRotationInterval() {
+            return rotationInterval;
+        }
+
+        public void setRotationInterval(Duration rotationInterval) {
+            this.rotationInterval = rotationInterval;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    public static class PasswordHashing {
+
+        public enum Algorithm {
+            BCRYPT,
+            ARGON2
+        }
+
+        /**
+         * Algorithm of new hashes; stored hashes of another algorithm or of a lower cost are upgraded when their user logs in.
+         */
+        private Algorithm algorithm = Algorithm.BCRYPT;
+
+        /**
+         * Log2 of the number of BCrypt rounds.
+         */
+        private int bcryptStrength = 10;
+
+        /**
+         * Memory used by each Argon2id hash.
+         */
+        private DataSize argon2Memory = DataSize.ofMegabytes(16);
+
+        /**
+         * Number of Argon2id passes over the memory.
+         */
+        private int argon2Iterations = 2;
+
+        /**
+         * Number of threads hashing passwords.
+         */
+        private int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        /**
+         * Number of hashes running or waiting for a thread above which new hashes are refused.
+         */
+        private int maxPending = 4 * poolSize;
+
+        public Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public int getBcryptStrength() {
+            return bcryptStrength;
+        }
+
+        public void setBcryptStrength(int bcryptStrength) {
+            this.bcryptStrength = bcryptStrength;
+        }
+
+        public DataSize getArgon2Memory() {
+            return argon2Memory;
+        }
+
+        public void setArgon2Memory(DataSize argon2Memory) {
+            this.argon2Memory = argon2Memory;
+        }
+
+        public int getArgon2Iterations() {
+            return argon2Iterations;
+        }
+
+        public void setArgon2Iterations(int argon2Iterations) {
+            this.argon2Iterations = argon2Iterations;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    public static class EntityCache {
+
+        /**
+         * Whether the caches of the other instances registered in Eureka are cleared when a cached entity changes.
+         */
+        private boolean peerInvalidation = false;
+
+        /**
+         * Interval at which the changes are sent to the other instances, coalescing the changes in between.
+         */
+        private Duration peerInvalidationInterval = Duration.ofSeconds(1);
+
+        public boolean isPeerInvalidation() {
+            return peerInvalidation;
+        }
+
+        public void setPeerInvalidation(boolean peerInvalidation) {
+            this.peerInvalidation = peerInvalidation;
+        }
+
+        public Duration getPeerInvalidationInterval() {
+            return peerInvalidationInterval;
+        }
+
+        public void setPeerInvalidationInterval(Duration peerInvalidationInterval) {
+            this.peerInvalidationInterval = peerInvalidationInterval;
+        }
+    }
+
+    public static class Execution {
+
+        public enum Mode {
+            PLATFORM,
+            VIRTUAL,
+        }
+
+        /**
+         * Threads running servlet requests and {@code @Async} tasks: pooled platform threads, or one virtual thread
+         * per request or task. The virtual mode falls back to platform threads on a JVM without virtual threads.
+         */
+        private Mode mode = Mode.PLATFORM;
+
+        /**
+         * Maximum number of connections used at once in the virtual mode, or 0 for the maximum size of the Hikari pool.
+         */
+        private int databasePermits = 0;
+
+        /**
+         * Maximum time a thread waits for a database permit before its request fails.
+         */
+        private Duration databaseAcquireTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Minimum time a virtual thread stays pinned to its carrier before it is reported.
+         */
+        private Duration pinnedThreshold = Duration.ofMillis(20);
+
+        /**
+         * Interval at which pinned virtual threads are reported.
+         */
+        private Duration pinningReportInterval = Duration.ofSeconds(10);
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public int getDatabasePermits() {
+            return databasePermits;
+        }
+
+        public void setDatabasePermits(int databasePermits) {
+            this.databasePermits = databasePermits;
+        }
+
+        public Duration getDatabaseAcquireTimeout() {
+            return databaseAcquireTimeout;
+        }
+
+        public void setDatabaseAcquireTimeout(Duration databaseAcquireTimeout) {
+            this.databaseAcquireTimeout = databaseAcquireTimeout;
+        }
+
+        public Duration getPinnedThreshold() {
+            return pinnedThreshold;
+        }
+
+        public void setPinnedThreshold(Duration pinnedThreshold) {
+            this.pinnedThreshold = pinnedThreshold;
+        }
+
+        public Duration getPinningReportInterval() {
+            return pinningReportInterval;
+        }
+
+        public void setPinningReportInterval(Duration pinningReportInterval) {
+            this.pinningReportInterval = pinningReportInterval;
+        }
+    }
+
+    public static class MailOutbox {
+
+        /**
+         * Maximum number of emails sent through one SMTP connection.
+         */
+        private int batchSize = 50;
+
+        /**
+         * Interval at which the outbox is checked for emails to send.
+         */
+        private Duration pollInterval = Duration.ofSeconds(5);
+
+        /**
+         * Number of attempts to send an email before it is dead-lettered.
+         */
+        private int maxAttempts = 8;
+
+        /**
+         * Delay before the second attempt, doubled at every attempt after it.
+         */
+        private Duration initialBackoff = Duration.ofSeconds(30);
+
+        /**
+         * Maximum delay between two attempts.
+         */
+        private Duration maxBackoff = Duration.ofHours(1);
+
+        /**
+         * How long a batch of emails is reserved for the instance sending it: the emails of an instance which did not
+         * record the results of its send in time are sent again.
+         */
+        private Duration sendLease = Duration.ofMinutes(5);
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public Duration getSendLease() {
+            return sendLease;
+        }
+
+        public void setSendLease(Duration sendLease) {
+            this.sendLease = sendLease;
+        }
+    }
+
+    public static class MethodTiming {
+
+        /**
+         * Whether repository, service and REST methods are timed in every profile, instead of only being logged with the
+         * "dev" profile.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time one call in this many, the total time of all calls being extrapolated from them, or all calls with 1.
+         */
+        private int timeOneIn = 10;
+
+        /**
+         * When debug logging is enabled, log the arguments and result of one call in this many, or none with 0.
+         */
+        private int sampleOneIn = 100;
+
+        /**
+         * Maximum number of calls whose arguments and result are logged per second, or 0 for no limit.
+         */
+        private int maxSamplesPerSecond = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTimeOneIn() {
+            return timeOneIn;
+        }
+
+        public void setTimeOneIn(int timeOneIn) {
+            this.timeOneIn = timeOneIn;
+        }
+
+        public int getSampleOneIn() {
+            return sampleOneIn;
+        }
+
+        public void setSampleOneIn(int sampleOneIn) {
+            this.sampleOneIn = sampleOneIn;
+        }
+
+        public int getMaxSamplesPerSecond() {
+            return maxSamplesPerSecond;
+        }
+
+        public void setMaxSamplesPerSecond(int maxSamplesPerSecond) {
+            this.maxSamplesPerSecond = maxSamplesPerSecond;
+        }
+    }
+
     // jhipster-needle-application-properties-property-class
 }
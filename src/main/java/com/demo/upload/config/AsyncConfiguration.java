@@ -1,6 +1,9 @@
 package com.demo.upload.config;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
@@ -9,6 +12,7 @@ import org.springframework.boot.autoconfigure.task.TaskExecutionProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -25,13 +29,28 @@ public class AsyncConfiguration implements AsyncConfigurer {
 
     private final TaskExecutionProperties taskExecutionProperties;
 
-    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties, ApplicationProperties applicationProperties) {
         this.taskExecutionProperties = taskExecutionProperties;
+        this.applicationProperties = applicationProperties;
     }
 
+    /**
+     * Executor of the {@code @Async} tasks, such as sending mails.
+     * <p>
+     * In the {@code virtual} execution mode, each task runs on its own virtual thread, so tasks blocked on SMTP or the
+     * database do not hold a pooled thread. Otherwise, tasks are queued for a pool of platform threads.
+     */
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
+        if (ExecutionModeConfiguration.isVirtual(applicationProperties)) {
+            log.debug("Creating Async Task Executor on virtual threads");
+            return new ExceptionHandlingAsyncTaskExecutor(
+                new SimpleAsyncTaskExecutor(VirtualThreads.factory(taskExecutionProperties.getThreadNamePrefix()).orElseThrow())
+            );
+        }
         log.debug("Creating Async Task Executor");
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(taskExecutionProperties.getPool().getCoreSize());
@@ -41,6 +60,62 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    /**
+     * Executor generating image derivatives, kept apart from the {@code taskExecutor} so that a burst of
+     * uploads cannot delay mails and other asynchronous tasks.
+     * <p>
+     * Its queue is bounded: once it is full, the uploading thread generates the derivatives itself,
+     * which slows clients down instead of piling up decoded images in memory.
+     */
+    @Bean(name = "imageDerivativeExecutor")
+    public ThreadPoolTaskExecutor imageDerivativeExecutor() {
+        log.debug("Creating Image Derivative Task Executor");
+        ApplicationProperties.Derivatives derivatives = applicationProperties.getDerivatives();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(derivatives.getPoolSize());
+        executor.setMaxPoolSize(derivatives.getPoolSize());
+        executor.setQueueCapacity(derivatives.getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("upload-image-derivative-");
+        return executor;
+    }
+
+    /**
+     * Fork-join pool storing and reading the images of bulk imports and exports, so that a large job
+     * does not starve the request threads nor the common pool.
+     */
+    @Bean(name = "imageBulkPool", destroyMethod = "shutdown")
+    public ForkJoinPool imageBulkPool() {
+        log.debug("Creating Image Bulk Fork-Join Pool");
+        return new ForkJoinPool(
+            applicationProperties.getBulk().getParallelism(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("upload-image-bulk-" + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false
+        );
+    }
+
+    /**
+     * Executor hashing passwords, so that a burst of logins cannot take the CPU of every request thread.
+     * <p>
+     * Its queue holds at most {@code max-pending} hashes, which the password encoder enforces before submitting.
+     */
+    @Bean(name = "passwordHashingExecutor")
+    public ThreadPoolTaskExecutor passwordHashingExecutor() {
+        log.debug("Creating Password Hashing Task Executor");
+        ApplicationProperties.PasswordHashing passwordHashing = applicationProperties.getPasswordHashing();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(passwordHashing.getPoolSize());
+        executor.setMaxPoolSize(passwordHashing.getPoolSize());
+        executor.setQueueCapacity(passwordHashing.getMaxPending());
+        executor.setThreadNamePrefix("upload-image-password-");
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
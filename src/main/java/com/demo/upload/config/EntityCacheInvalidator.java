@@ -0,0 +1,299 @@
+package com.demo.upload.config;
+
+import com.demo.upload.domain.User;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.security.jwt.TokenProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Keeps the user lookup caches, and optionally the caches of the other instances, in line with the database.
+ * <p>
+ * The users cached by login and email are detached copies that Hibernate does not know about: they are evicted once the
+ * transaction writing to the user completes, even when it rolls back, as it may have cached its own uncommitted state.
+ * <p>
+ * When {@code application.entity-cache.peer-invalidation} is enabled, the cache regions written to by committed
+ * transactions are collected, and cleared every {@code peer-invalidation-interval} on the other instances registered
+ * in Eureka, through their {@code caches} management endpoint, authenticated with an admin token that only lives as
+ * long as the requests to each instance may take.
+ */
+@Component
+public class EntityCacheInvalidator
+    implements
+        PostInsertEventListener,
+        PostUpdateEventListener,
+        PostDeleteEventListener,
+        PostCollectionRecreateEventListener,
+        PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener {
+
+    private static final Duration PEER_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Logger log = LoggerFactory.getLogger(EntityCacheInvalidator.class);
+
+    private final Set<String> pendingRegions = ConcurrentHashMap.newKeySet();
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final CacheManager cacheManager;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+
+    private final ObjectProvider<Registration> registration;
+
+    private final TokenProvider tokenProvider;
+
+    private final RestTemplate restTemplate;
+
+    private final String applicationName;
+
+    private final String managementBasePath;
+
+    public EntityCacheInvalidator(
+        EntityManagerFactory entityManagerFactory,
+        CacheManager cacheManager,
+        ApplicationProperties applicationProperties,
+        ObjectProvider<DiscoveryClient> discoveryClient,
+        ObjectProvider<Registration> registration,
+        TokenProvider tokenProvider,
+        RestTemplateBuilder restTemplateBuilder,
+        @Value("${spring.application.name}") String applicationName,
+        @Value("${management.endpoints.web.base-path:/actuator}") String managementBasePath
+    ) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheManager = cacheManager;
+        this.applicationProperties = applicationProperties;
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+        this.tokenProvider = tokenProvider;
+        this.restTemplate = restTemplateBuilder.setConnectTimeout(PEER_TIMEOUT).setReadTimeout(PEER_TIMEOUT).build();
+        this.applicationName = applicationName;
+        this.managementBasePath = managementBasePath;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        onEntityChange(event.getSession(), event.getPersister(), event.getEntity(), null);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        onEntityChange(event.getSession(), event.getPersister(), event.getEntity(), event.getOldState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        onEntityChange(event.getSession(), event.getPersister(), event.getEntity(), null);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        onCollectionChange(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        onCollectionChange(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        onCollectionChange(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void onEntityChange(EventSource session, EntityPersister persister, Object entity, Object[] oldState) {
+        Set<String> regions = new HashSet<>();
+        if (persister.getCacheAccessStrategy() != null) {
+            regions.add(persister.getCacheAccessStrategy().getRegion().getName());
+        }
+        Set<String> logins = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        if (entity instanceof User) {
+            User user = (User) entity;
+            logins.add(user.getLogin());
+            emails.add(user.getEmail());
+            if (oldState != null) {
+                logins.add((String) oldState[persister.getEntityMetamodel().getPropertyIndex("login")]);
+                emails.add((String) oldState[persister.getEntityMetamodel().getPropertyIndex("email")]);
+            }
+            regions.add(UserRepository.USERS_BY_LOGIN_CACHE);
+            regions.add(UserRepository.USERS_BY_EMAIL_CACHE);
+        }
+        afterCompletion(session, regions, logins, emails);
+    }
+
+    private void onCollectionChange(AbstractCollectionEvent event) {
+        CollectionPersister persister = event.getSession().getFactory().getMetamodel().collectionPersister(event.getCollection().getRole());
+        Set<String> regions = new HashSet<>();
+        if (persister.hasCache()) {
+            regions.add(persister.getCacheAccessStrategy().getRegion().getName());
+        }
+        Set<String> logins = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        if (event.getAffectedOwnerOrNull() instanceof User) {
+            User user = (User) event.getAffectedOwnerOrNull();
+            logins.add(user.getLogin());
+            emails.add(user.getEmail());
+            regions.add(UserRepository.USERS_BY_LOGIN_CACHE);
+            regions.add(UserRepository.USERS_BY_EMAIL_CACHE);
+        }
+        afterCompletion(event.getSession(), regions, logins, emails);
+    }
+
+    private void afterCompletion(EventSource session, Set<String> regions, Set<String> logins, Set<String> emails) {
+        if (regions.isEmpty()) {
+            return;
+        }
+        session
+            .getActionQueue()
+            .registerProcess((success, completedSession) -> {
+                evict(UserRepository.USERS_BY_LOGIN_CACHE, logins);
+                evict(UserRepository.USERS_BY_EMAIL_CACHE, emails);
+                if (success && applicationProperties.getEntityCache().isPeerInvalidation()) {
+                    pendingRegions.addAll(regions);
+                    // Entities are cached in query results too
+                    pendingRegions.add(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+                }
+            });
+    }
+
+    private void evict(String cacheName, Set<String> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        keys.stream().filter(Objects::nonNull).forEach(cache::evict);
+    }
+
+    /**
+     * Clears the regions written to since the last run on the other instances.
+     * <p>
+     * A failure is only logged: the entries of the unreachable instance still expire after
+     * {@code jhipster.cache.ehcache.time-to-live-seconds}.
+     */
+    @Scheduled(
+        initialDelayString = "${application.entity-cache.peer-invalidation-interval:PT1S}",
+        fixedDelayString = "${application.entity-cache.peer-invalidation-interval:PT1S}"
+    )
+    public void invalidatePeers() {
+        if (pendingRegions.isEmpty()) {
+            return;
+        }
+        List<String> regions = new ArrayList<>();
+        for (Iterator<String> iterator = pendingRegions.iterator(); iterator.hasNext();) {
+            regions.add(iterator.next());
+            iterator.remove();
+        }
+        List<ServiceInstance> peers = getPeers();
+        if (peers.isEmpty()) {
+            return;
+        }
+        // Each request may take up to the connect and read timeouts: the token only has to outlive the requests to a peer
+        Duration tokenValidity = PEER_TIMEOUT.multipliedBy(2L * regions.size());
+        for (ServiceInstance peer : peers) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setBearerAuth(tokenProvider.createToken(systemAuthentication(), tokenValidity));
+            HttpEntity<Void> request = new HttpEntity<>(headers);
+            for (String region : regions) {
+                URI uri = UriComponentsBuilder
+                    .fromUri(peer.getUri())
+                    .path(managementBasePath)
+                    .path("/caches/{cache}")
+                    .buildAndExpand(region)
+                    .toUri();
+                try {
+                    restTemplate.exchange(uri, HttpMethod.DELETE, request, Void.class);
+                } catch (RestClientException e) {
+                    log.warn("Could not clear cache {} of instance {}: {}", region, peer.getInstanceId(), e.getMessage());
+                }
+            }
+        }
+        log.debug("Cleared caches {} of {} other instances", regions, peers.size());
+    }
+
+    private List<ServiceInstance> getPeers() {
+        DiscoveryClient client = discoveryClient.getIfAvailable();
+        if (client == null) {
+            return List.of();
+        }
+        Registration self = registration.getIfAvailable();
+        return client
+            .getInstances(applicationName)
+            .stream()
+            .filter(instance -> self == null || !Objects.equals(instance.getInstanceId(), self.getInstanceId()))
+            .collect(Collectors.toList());
+    }
+
+    private static Authentication systemAuthentication() {
+        return new UsernamePasswordAuthenticationToken(
+            Constants.SYSTEM,
+            null,
+            List.of(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN))
+        );
+    }
+}
@@ -0,0 +1,112 @@
+package com.demo.upload.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Configures the {@code application.execution.mode}.
+ * <p>
+ * In the {@code virtual} mode, each servlet request runs on its own virtual thread instead of an Undertow worker
+ * thread, so slow uploads no longer need a large pool of platform threads. The number of connections used at once is
+ * then limited by a {@link ConcurrencyLimitedDataSource}. The {@code @Async} tasks are configured by
+ * {@link AsyncConfiguration}, and pinned threads are reported by
+ * {@link com.demo.upload.management.VirtualThreadPinningMonitor}.
+ */
+@Configuration
+public class ExecutionModeConfiguration {
+
+    public static final String REQUEST_THREAD_NAME_PREFIX = "upload-image-request-";
+
+    public static final String DATABASE_PERMITS_METER_NAME = "executor.database.permits";
+    public static final String DATABASE_PERMITS_METER_DESCRIPTION = "Indicates the database permits available to the request threads.";
+
+    public static final String DATABASE_PERMITS_WAITING_METER_NAME = "executor.database.permits.waiting";
+    public static final String DATABASE_PERMITS_WAITING_METER_DESCRIPTION = "Indicates the threads waiting for a database permit.";
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionModeConfiguration.class);
+
+    /**
+     * @return whether the {@code virtual} mode is configured and the JVM has virtual threads.
+     */
+    static boolean isVirtual(ApplicationProperties applicationProperties) {
+        return applicationProperties.getExecution().getMode() == ApplicationProperties.Execution.Mode.VIRTUAL && VirtualThreads.isSupported();
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<UndertowServletWebServerFactory> virtualThreadRequestsCustomizer(
+        ApplicationProperties applicationProperties
+    ) {
+        return factory -> {
+            if (applicationProperties.getExecution().getMode() != ApplicationProperties.Execution.Mode.VIRTUAL) {
+                return;
+            }
+            if (!VirtualThreads.isSupported()) {
+                log.warn("Virtual threads are not available on Java {}, requests run on platform threads", Runtime.version());
+                return;
+            }
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(VirtualThreads.factory(REQUEST_THREAD_NAME_PREFIX).orElseThrow());
+            factory.addDeploymentInfoCustomizers(deploymentInfo -> deploymentInfo.setExecutor(executor));
+            log.info("Requests run on virtual threads");
+        };
+    }
+
+    /**
+     * Wraps the data source into a {@link ConcurrencyLimitedDataSource} in the {@code virtual} mode.
+     * <p>
+     * Static, as post-processors are created before the other beans of the configuration.
+     */
+    @Bean
+    public static BeanPostProcessor databaseConcurrencyLimiter(ObjectProvider<ApplicationProperties> applicationProperties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof ConcurrencyLimitedDataSource) {
+                    return bean;
+                }
+                if (!isVirtual(applicationProperties.getObject())) {
+                    return bean;
+                }
+                ApplicationProperties.Execution execution = applicationProperties.getObject().getExecution();
+                int permits = execution.getDatabasePermits();
+                if (permits <= 0 && bean instanceof HikariDataSource) {
+                    permits = ((HikariDataSource) bean).getMaximumPoolSize();
+                }
+                if (permits <= 0) {
+                    return bean;
+                }
+                log.debug("Limiting data source {} to {} concurrent connections", beanName, permits);
+                return new ConcurrencyLimitedDataSource((DataSource) bean, permits, execution.getDatabaseAcquireTimeout());
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder databasePermitsMetrics(ObjectProvider<DataSource> dataSources) {
+        return registry ->
+            dataSources.forEach(dataSource -> {
+                if (!(dataSource instanceof ConcurrencyLimitedDataSource)) {
+                    return;
+                }
+                ConcurrencyLimitedDataSource limited = (ConcurrencyLimitedDataSource) dataSource;
+                Gauge
+                    .builder(DATABASE_PERMITS_METER_NAME, limited, ConcurrencyLimitedDataSource::getAvailablePermits)
+                    .description(DATABASE_PERMITS_METER_DESCRIPTION)
+                    .register(registry);
+                Gauge
+                    .builder(DATABASE_PERMITS_WAITING_METER_NAME, limited, ConcurrencyLimitedDataSource::getWaitingThreads)
+                    .description(DATABASE_PERMITS_WAITING_METER_DESCRIPTION)
+                    .register(registry);
+            });
+    }
+}
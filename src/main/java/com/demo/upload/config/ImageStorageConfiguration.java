@@ -0,0 +1,55 @@
+package com.demo.upload.config;
+
+import com.demo.upload.service.storage.FileSystemImageStorage;
+import com.demo.upload.service.storage.ImageStorage;
+import com.demo.upload.service.storage.S3ImageStorage;
+import com.demo.upload.service.storage.SegmentImageStorage;
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link ImageStorage} selected by {@code application.storage.type}.
+ */
+@Configuration
+public class ImageStorageConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(ImageStorageConfiguration.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    public ImageStorageConfiguration(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ImageStorage imageStorage() {
+        ApplicationProperties.Storage storage = applicationProperties.getStorage();
+        log.debug("Configuring {} image storage", storage.getType());
+        switch (storage.getType()) {
+            case SEGMENT:
+                return new SegmentImageStorage(
+                    Paths.get(storage.getSegment().getDirectory()),
+                    storage.getSegment().getMaxSegmentSize().toBytes(),
+                    storage.getSegment().getCompactionThreshold()
+                );
+            case S3:
+                ApplicationProperties.Storage.S3 s3 = storage.getS3();
+                return new S3ImageStorage(
+                    HttpClient.newBuilder().connectTimeout(s3.getTimeout()).build(),
+                    s3.getEndpoint(),
+                    s3.getRegion(),
+                    s3.getBucket(),
+                    s3.getPrefix(),
+                    s3.getAccessKey(),
+                    s3.getSecretKey(),
+                    s3.getTimeout()
+                );
+            default:
+                return new FileSystemImageStorage(Paths.get(applicationProperties.getUpload().getStoreDirectory()));
+        }
+    }
+}
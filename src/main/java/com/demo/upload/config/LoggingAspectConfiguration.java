@@ -1,6 +1,10 @@
 package com.demo.upload.config;
 
 import com.demo.upload.aop.logging.LoggingAspect;
+import com.demo.upload.aop.logging.MethodTimingInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.Environment;
 import tech.jhipster.config.JHipsterConstants;
@@ -11,7 +15,21 @@ public class LoggingAspectConfiguration {
 
     @Bean
     @Profile(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)
+    @ConditionalOnProperty(prefix = "application.method-timing", name = "enabled", havingValue = "false", matchIfMissing = true)
     public LoggingAspect loggingAspect(Environment env) {
         return new LoggingAspect(env);
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "application.method-timing", name = "enabled", havingValue = "true")
+    public Advisor methodTimingAdvisor(MeterRegistry meterRegistry, ApplicationProperties applicationProperties) {
+        ApplicationProperties.MethodTiming methodTiming = applicationProperties.getMethodTiming();
+        return new MethodTimingInterceptor(
+            meterRegistry,
+            methodTiming.getTimeOneIn(),
+            methodTiming.getSampleOneIn(),
+            methodTiming.getMaxSamplesPerSecond()
+        )
+            .advisor();
+    }
 }
@@ -0,0 +1,54 @@
+package com.demo.upload.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the JVM running the application has them.
+ * <p>
+ * The application is compiled for Java 11, so {@code Thread.ofVirtual()} is looked up by reflection. It is missing
+ * before Java 19, and throws {@link UnsupportedOperationException} on Java 19 and 20 without {@code --enable-preview}.
+ */
+final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = lookupOfVirtual();
+
+    private VirtualThreads() {}
+
+    static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param namePrefix the prefix of the names of the threads, followed by a counter.
+     * @return a factory of virtual threads, or empty if the JVM does not have them.
+     */
+    static Optional<ThreadFactory> factory(String namePrefix) {
+        if (OF_VIRTUAL == null) {
+            return Optional.empty();
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Method lookupOfVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // Preview feature not enabled
+            return null;
+        }
+    }
+}
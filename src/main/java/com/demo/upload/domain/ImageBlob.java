@@ -0,0 +1,108 @@
+package com.demo.upload.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * A stored image blob, shared by every entity referencing the same content.
+ */
+@Entity
+@Table(name = "image_blob")
+public class ImageBlob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @NotNull
+    @Size(min = 64, max = 64)
+    @Column(name = "content_key", length = 64, nullable = false)
+    private String contentKey;
+
+    @NotNull
+    @Column(name = "jhi_size", nullable = false)
+    private Long size;
+
+    @NotNull
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_date", updatable = false)
+    private Instant createdDate = Instant.now();
+
+    public String getContentKey() {
+        return this.contentKey;
+    }
+
+    public ImageBlob contentKey(String contentKey) {
+        this.setContentKey(contentKey);
+        return this;
+    }
+
+    public void setContentKey(String contentKey) {
+        this.contentKey = contentKey;
+    }
+
+    public Long getSize() {
+        return this.size;
+    }
+
+    public ImageBlob size(Long size) {
+        this.setSize(size);
+        return this;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Integer getRefCount() {
+        return this.refCount;
+    }
+
+    public ImageBlob refCount(Integer refCount) {
+        this.setRefCount(refCount);
+        return this;
+    }
+
+    public void setRefCount(Integer refCount) {
+        this.refCount = refCount;
+    }
+
+    public Instant getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageBlob)) {
+            return false;
+        }
+        return contentKey != null && contentKey.equals(((ImageBlob) o).contentKey);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ImageBlob{" +
+            "contentKey='" + getContentKey() + "'" +
+            ", size=" + getSize() +
+            ", refCount=" + getRefCount() +
+            "}";
+    }
+}
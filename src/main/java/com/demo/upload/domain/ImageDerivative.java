@@ -0,0 +1,153 @@
+package com.demo.upload.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * A resized copy of a stored image.
+ * <p>
+ * Derivatives are keyed by the content key of their source, so every {@link UserExtra} or {@link User}
+ * referencing the same image shares them.
+ */
+@Entity
+@Table(name = "image_derivative", uniqueConstraints = @UniqueConstraint(columnNames = { "source_key", "variant" }))
+public class ImageDerivative implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Size(min = 64, max = 64)
+    @Column(name = "source_key", length = 64, nullable = false)
+    private String sourceKey;
+
+    @NotNull
+    @Size(max = 16)
+    @Column(name = "variant", length = 16, nullable = false)
+    private String variant;
+
+    @NotNull
+    @Size(min = 64, max = 64)
+    @Column(name = "derivative_key", length = 64, nullable = false)
+    private String derivativeKey;
+
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public ImageDerivative id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSourceKey() {
+        return this.sourceKey;
+    }
+
+    public ImageDerivative sourceKey(String sourceKey) {
+        this.setSourceKey(sourceKey);
+        return this;
+    }
+
+    public void setSourceKey(String sourceKey) {
+        this.sourceKey = sourceKey;
+    }
+
+    public String getVariant() {
+        return this.variant;
+    }
+
+    public ImageDerivative variant(String variant) {
+        this.setVariant(variant);
+        return this;
+    }
+
+    public void setVariant(String variant) {
+        this.variant = variant;
+    }
+
+    public String getDerivativeKey() {
+        return this.derivativeKey;
+    }
+
+    public ImageDerivative derivativeKey(String derivativeKey) {
+        this.setDerivativeKey(derivativeKey);
+        return this;
+    }
+
+    public void setDerivativeKey(String derivativeKey) {
+        this.derivativeKey = derivativeKey;
+    }
+
+    public Integer getWidth() {
+        return this.width;
+    }
+
+    public ImageDerivative width(Integer width) {
+        this.setWidth(width);
+        return this;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return this.height;
+    }
+
+    public ImageDerivative height(Integer height) {
+        this.setHeight(height);
+        return this;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageDerivative)) {
+            return false;
+        }
+        return id != null && id.equals(((ImageDerivative) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ImageDerivative{" +
+            "id=" + getId() +
+            ", sourceKey='" + getSourceKey() + "'" +
+            ", variant='" + getVariant() + "'" +
+            ", derivativeKey='" + getDerivativeKey() + "'" +
+            ", width=" + getWidth() +
+            ", height=" + getHeight() +
+            "}";
+    }
+}
@@ -2,12 +2,15 @@ package com.demo.upload.domain;
 
 import java.io.Serializable;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * A UserExtra.
  */
 @Entity
 @Table(name = "user_extra")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class UserExtra implements Serializable {
 
@@ -24,7 +27,7 @@ public class UserExtra implements Serializable {
     @Column(name = "back_image")
     private String backImage;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(unique = true)
     private User user;
 
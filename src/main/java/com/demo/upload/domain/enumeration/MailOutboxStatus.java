@@ -0,0 +1,19 @@
+package com.demo.upload.domain.enumeration;
+
+/**
+ * The MailOutboxStatus enumeration.
+ */
+public enum MailOutboxStatus {
+    /**
+     * Waiting to be sent, at its next attempt.
+     */
+    PENDING,
+    /**
+     * Being sent by an instance, until its next attempt at the latest.
+     */
+    SENDING,
+    /**
+     * Failed every attempt, and will not be sent.
+     */
+    DEAD,
+}
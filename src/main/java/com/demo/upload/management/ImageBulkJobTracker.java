@@ -0,0 +1,236 @@
+package com.demo.upload.management;
+
+import com.demo.upload.config.ApplicationProperties;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps track of the progress of bulk image imports and exports, exposed by the {@code imagebulk} management endpoint.
+ */
+@Service
+public class ImageBulkJobTracker {
+
+    public enum Direction {
+        IMPORT,
+        EXPORT,
+    }
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED,
+    }
+
+    private final Deque<Job> jobs = new ConcurrentLinkedDeque<>();
+
+    private final int retainedJobs;
+
+    public ImageBulkJobTracker(ApplicationProperties applicationProperties) {
+        this.retainedJobs = applicationProperties.getBulk().getRetainedJobs();
+    }
+
+    /**
+     * Starts tracking a new job, forgetting the oldest finished jobs.
+     *
+     * @param direction the direction of the job.
+     * @return the job, to update while it runs.
+     */
+    public Job start(Direction direction) {
+        Job job = new Job(direction);
+        jobs.addFirst(job);
+        int finished = 0;
+        for (Iterator<Job> iterator = jobs.iterator(); iterator.hasNext();) {
+            if (iterator.next().status != Status.RUNNING && ++finished > retainedJobs) {
+                iterator.remove();
+            }
+        }
+        return job;
+    }
+
+    /**
+     * @return the progress of the running and recently finished jobs, most recent first.
+     */
+    public List<Progress> getJobs() {
+        List<Progress> progress = new ArrayList<>();
+        jobs.forEach(job -> progress.add(job.progress()));
+        return progress;
+    }
+
+    public Optional<Progress> getJob(String id) {
+        return jobs.stream().filter(job -> job.id.equals(id)).findFirst().map(Job::progress);
+    }
+
+    /**
+     * A running job. Counters may be updated concurrently by the workers of the job.
+     */
+    public static class Job {
+
+        private final String id = UUID.randomUUID().toString();
+
+        private final Direction direction;
+
+        private final Instant startedAt = Instant.now();
+
+        private final long startNanos = System.nanoTime();
+
+        private final LongAdder images = new LongAdder();
+
+        private final LongAdder bytes = new LongAdder();
+
+        private final LongAdder users = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private volatile Status status = Status.RUNNING;
+
+        private volatile Instant finishedAt;
+
+        private volatile long durationNanos;
+
+        private volatile String error;
+
+        Job(Direction direction) {
+            this.direction = direction;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void imageTransferred(long size) {
+            images.increment();
+            bytes.add(size);
+        }
+
+        public void userProcessed() {
+            users.increment();
+        }
+
+        public void failed() {
+            failures.increment();
+        }
+
+        public void complete() {
+            finish(Status.COMPLETED, null);
+        }
+
+        public void fail(Throwable cause) {
+            finish(Status.FAILED, cause.getMessage());
+        }
+
+        private void finish(Status status, String error) {
+            this.durationNanos = System.nanoTime() - startNanos;
+            this.finishedAt = Instant.now();
+            this.error = error;
+            this.status = status;
+        }
+
+        public Progress progress() {
+            Status currentStatus = status;
+            long elapsedNanos = currentStatus == Status.RUNNING ? System.nanoTime() - startNanos : durationNanos;
+            return new Progress(this, currentStatus, elapsedNanos);
+        }
+    }
+
+    /**
+     * A snapshot of the progress of a job.
+     */
+    public static class Progress {
+
+        private final String id;
+
+        private final Direction direction;
+
+        private final Status status;
+
+        private final Instant startedAt;
+
+        private final Instant finishedAt;
+
+        private final String error;
+
+        private final long images;
+
+        private final long bytes;
+
+        private final long users;
+
+        private final long failures;
+
+        private final double elapsedSeconds;
+
+        Progress(Job job, Status status, long elapsedNanos) {
+            this.id = job.id;
+            this.direction = job.direction;
+            this.status = status;
+            this.startedAt = job.startedAt;
+            this.finishedAt = job.finishedAt;
+            this.error = job.error;
+            this.images = job.images.sum();
+            this.bytes = job.bytes.sum();
+            this.users = job.users.sum();
+            this.failures = job.failures.sum();
+            this.elapsedSeconds = elapsedNanos / 1e9;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+
+        public Instant getFinishedAt() {
+            return finishedAt;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getImages() {
+            return images;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getUsers() {
+            return users;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedSeconds;
+        }
+
+        public double getImagesPerSecond() {
+            return elapsedSeconds > 0 ? images / elapsedSeconds : 0;
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedSeconds > 0 ? bytes / elapsedSeconds : 0;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.demo.upload.management;
+
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint reporting the progress and throughput of bulk image imports and exports,
+ * at {@code /management/imagebulk}.
+ */
+@Component
+@Endpoint(id = "imagebulk")
+public class ImageBulkJobsEndpoint {
+
+    private final ImageBulkJobTracker imageBulkJobTracker;
+
+    public ImageBulkJobsEndpoint(ImageBulkJobTracker imageBulkJobTracker) {
+        this.imageBulkJobTracker = imageBulkJobTracker;
+    }
+
+    @ReadOperation
+    public List<ImageBulkJobTracker.Progress> jobs() {
+        return imageBulkJobTracker.getJobs();
+    }
+
+    /**
+     * @return the progress of the job, or {@code null} for a {@code 404 (Not Found)} if it is unknown.
+     */
+    @ReadOperation
+    public ImageBulkJobTracker.Progress job(@Selector String id) {
+        return imageBulkJobTracker.getJob(id).orElse(null);
+    }
+}
@@ -0,0 +1,127 @@
+package com.demo.upload.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MailMetersService {
+
+    public static final String OUTBOX_METER_NAME = "mail.outbox";
+    public static final String OUTBOX_METER_DESCRIPTION = "Indicates the number of emails in the outbox, as of the last dispatch.";
+    public static final String OUTBOX_METER_STATUS_DIMENSION = "status";
+
+    public static final String SEND_METER_NAME = "mail.send";
+    public static final String SEND_METER_DESCRIPTION = "Indicates the time spent sending a batch of emails through one SMTP connection.";
+
+    public static final String DELIVERY_METER_NAME = "mail.delivery";
+    public static final String DELIVERY_METER_DESCRIPTION = "Indicates the time between the queuing of an email and its sending.";
+
+    public static final String RESULTS_METER_NAME = "mail.send.results";
+    public static final String RESULTS_METER_DESCRIPTION = "Indicates the outcome of the attempts to send an email.";
+    public static final String RESULTS_METER_BASE_UNIT = "emails";
+    public static final String RESULTS_METER_RESULT_DIMENSION = "result";
+
+    public static final String RENDER_METER_NAME = "mail.render";
+    public static final String RENDER_METER_DESCRIPTION = "Indicates the time spent rendering the content of an email.";
+    public static final String RENDER_METER_MODE_DIMENSION = "mode";
+
+    public static final String RENDER_CACHE_METER_NAME = "mail.render.cache";
+    public static final String RENDER_CACHE_METER_DESCRIPTION = "Indicates the lookups of precompiled email templates.";
+    public static final String RENDER_CACHE_METER_RESULT_DIMENSION = "result";
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+
+    private final Timer sendTimer;
+    private final Timer deliveryTimer;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final Timer precompiledRenderTimer;
+    private final Timer fullRenderTimer;
+    private final Counter renderCacheHitCounter;
+    private final Counter renderCacheMissCounter;
+
+    public MailMetersService(MeterRegistry registry) {
+        outboxGaugeForStatusBuilder("pending", pending).register(registry);
+        outboxGaugeForStatusBuilder("dead", dead).register(registry);
+        this.sendTimer = Timer.builder(SEND_METER_NAME).description(SEND_METER_DESCRIPTION).register(registry);
+        this.deliveryTimer = Timer.builder(DELIVERY_METER_NAME).description(DELIVERY_METER_DESCRIPTION).register(registry);
+        this.sentCounter = resultsCounterForResultBuilder("sent").register(registry);
+        this.retriedCounter = resultsCounterForResultBuilder("retried").register(registry);
+        this.deadCounter = resultsCounterForResultBuilder("dead").register(registry);
+        this.precompiledRenderTimer = renderTimerForModeBuilder("precompiled").register(registry);
+        this.fullRenderTimer = renderTimerForModeBuilder("full").register(registry);
+        this.renderCacheHitCounter = renderCacheCounterForResultBuilder("hit").register(registry);
+        this.renderCacheMissCounter = renderCacheCounterForResultBuilder("miss").register(registry);
+    }
+
+    private Gauge.Builder<AtomicLong> outboxGaugeForStatusBuilder(String status, AtomicLong value) {
+        return Gauge
+            .builder(OUTBOX_METER_NAME, value, AtomicLong::get)
+            .description(OUTBOX_METER_DESCRIPTION)
+            .tag(OUTBOX_METER_STATUS_DIMENSION, status);
+    }
+
+    private Counter.Builder resultsCounterForResultBuilder(String result) {
+        return Counter
+            .builder(RESULTS_METER_NAME)
+            .baseUnit(RESULTS_METER_BASE_UNIT)
+            .description(RESULTS_METER_DESCRIPTION)
+            .tag(RESULTS_METER_RESULT_DIMENSION, result);
+    }
+
+    private Timer.Builder renderTimerForModeBuilder(String mode) {
+        return Timer.builder(RENDER_METER_NAME).description(RENDER_METER_DESCRIPTION).tag(RENDER_METER_MODE_DIMENSION, mode);
+    }
+
+    private Counter.Builder renderCacheCounterForResultBuilder(String result) {
+        return Counter
+            .builder(RENDER_CACHE_METER_NAME)
+            .description(RENDER_CACHE_METER_DESCRIPTION)
+            .tag(RENDER_CACHE_METER_RESULT_DIMENSION, result);
+    }
+
+    public void setOutboxDepth(long pendingCount, long deadCount) {
+        this.pending.set(pendingCount);
+        this.dead.set(deadCount);
+    }
+
+    public void recordSend(long nanos) {
+        this.sendTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void mailSent(Duration sinceQueued) {
+        this.sentCounter.increment();
+        this.deliveryTimer.record(sinceQueued);
+    }
+
+    public void mailRetried() {
+        this.retriedCounter.increment();
+    }
+
+    public void mailDead() {
+        this.deadCounter.increment();
+    }
+
+    /**
+     * @param precompiled whether the email was rendered from a precompiled template, or by a full template run.
+     */
+    public void recordRender(long nanos, boolean precompiled) {
+        (precompiled ? this.precompiledRenderTimer : this.fullRenderTimer).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void renderCacheHit() {
+        this.renderCacheHitCounter.increment();
+    }
+
+    public void renderCacheMiss() {
+        this.renderCacheMissCounter.increment();
+    }
+}
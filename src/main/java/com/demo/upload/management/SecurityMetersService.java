@@ -1,7 +1,11 @@
 package com.demo.upload.management;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -13,16 +17,50 @@ public class SecurityMetersService {
     public static final String INVALID_TOKENS_METER_BASE_UNIT = "errors";
     public static final String INVALID_TOKENS_METER_CAUSE_DIMENSION = "cause";
 
+    public static final String TOKEN_CACHE_METER_NAME = "security.authentication.token-cache";
+    public static final String TOKEN_CACHE_METER_DESCRIPTION = "Indicates lookups of the tokens presented by the clients in the verified token cache.";
+    public static final String TOKEN_CACHE_METER_RESULT_DIMENSION = "result";
+
+    public static final String TOKEN_CACHE_SIZE_METER_NAME = "security.authentication.token-cache.size";
+    public static final String TOKEN_CACHE_SIZE_METER_DESCRIPTION = "Indicates the number of verified tokens in the cache.";
+
+    public static final String PASSWORD_HASHING_METER_NAME = "security.password.hashing";
+    public static final String PASSWORD_HASHING_METER_DESCRIPTION = "Indicates the time spent hashing or verifying a password.";
+    public static final String PASSWORD_HASHING_METER_OPERATION_DIMENSION = "operation";
+
+    public static final String PASSWORD_HASHING_QUEUE_METER_NAME = "security.password.hashing.queue";
+    public static final String PASSWORD_HASHING_QUEUE_METER_DESCRIPTION = "Indicates the time a password hash waited for a hashing thread.";
+
+    public static final String PASSWORD_HASHING_REJECTED_METER_NAME = "security.password.hashing.rejected";
+    public static final String PASSWORD_HASHING_REJECTED_METER_DESCRIPTION =
+        "Indicates the password hashes refused because too many were already pending.";
+
+    private final MeterRegistry registry;
+
     private final Counter tokenInvalidSignatureCounter;
     private final Counter tokenExpiredCounter;
     private final Counter tokenUnsupportedCounter;
     private final Counter tokenMalformedCounter;
+    private final Counter tokenCacheHitCounter;
+    private final Counter tokenCacheMissCounter;
+    private final Timer passwordEncodeTimer;
+    private final Timer passwordMatchesTimer;
+    private final Timer passwordQueueTimer;
+    private final Counter passwordRejectedCounter;
 
     public SecurityMetersService(MeterRegistry registry) {
+        this.registry = registry;
         this.tokenInvalidSignatureCounter = invalidTokensCounterForCauseBuilder("invalid-signature").register(registry);
         this.tokenExpiredCounter = invalidTokensCounterForCauseBuilder("expired").register(registry);
         this.tokenUnsupportedCounter = invalidTokensCounterForCauseBuilder("unsupported").register(registry);
         this.tokenMalformedCounter = invalidTokensCounterForCauseBuilder("malformed").register(registry);
+        this.tokenCacheHitCounter = tokenCacheCounterForResultBuilder("hit").register(registry);
+        this.tokenCacheMissCounter = tokenCacheCounterForResultBuilder("miss").register(registry);
+        this.passwordEncodeTimer = passwordHashingTimerForOperationBuilder("encode").register(registry);
+        this.passwordMatchesTimer = passwordHashingTimerForOperationBuilder("matches").register(registry);
+        this.passwordQueueTimer = Timer.builder(PASSWORD_HASHING_QUEUE_METER_NAME).description(PASSWORD_HASHING_QUEUE_METER_DESCRIPTION).register(registry);
+        this.passwordRejectedCounter =
+            Counter.builder(PASSWORD_HASHING_REJECTED_METER_NAME).description(PASSWORD_HASHING_REJECTED_METER_DESCRIPTION).register(registry);
     }
 
     private Counter.Builder invalidTokensCounterForCauseBuilder(String cause) {
@@ -33,6 +71,17 @@ public class SecurityMetersService {
             .tag(INVALID_TOKENS_METER_CAUSE_DIMENSION, cause);
     }
 
+    private Counter.Builder tokenCacheCounterForResultBuilder(String result) {
+        return Counter.builder(TOKEN_CACHE_METER_NAME).description(TOKEN_CACHE_METER_DESCRIPTION).tag(TOKEN_CACHE_METER_RESULT_DIMENSION, result);
+    }
+
+    private Timer.Builder passwordHashingTimerForOperationBuilder(String operation) {
+        return Timer
+            .builder(PASSWORD_HASHING_METER_NAME)
+            .description(PASSWORD_HASHING_METER_DESCRIPTION)
+            .tag(PASSWORD_HASHING_METER_OPERATION_DIMENSION, operation);
+    }
+
     public void trackTokenInvalidSignature() {
         this.tokenInvalidSignatureCounter.increment();
     }
@@ -48,4 +97,32 @@ public class SecurityMetersService {
     public void trackTokenMalformed() {
         this.tokenMalformedCounter.increment();
     }
+
+    public void trackTokenCacheHit() {
+        this.tokenCacheHitCounter.increment();
+    }
+
+    public void trackTokenCacheMiss() {
+        this.tokenCacheMissCounter.increment();
+    }
+
+    public <T> void trackTokenCacheSize(T cache, ToDoubleFunction<T> size) {
+        Gauge.builder(TOKEN_CACHE_SIZE_METER_NAME, cache, size).description(TOKEN_CACHE_SIZE_METER_DESCRIPTION).register(registry);
+    }
+
+    public void trackPasswordEncode(long durationNanos) {
+        this.passwordEncodeTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackPasswordMatches(long durationNanos) {
+        this.passwordMatchesTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackPasswordQueueWait(long durationNanos) {
+        this.passwordQueueTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackPasswordRejected() {
+        this.passwordRejectedCounter.increment();
+    }
 }
@@ -0,0 +1,222 @@
+package com.demo.upload.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+@Service
+public class UploadMetersService {
+
+    public static final String BYTES_RECEIVED_METER_NAME = "upload.bytes-received";
+    public static final String BYTES_RECEIVED_METER_DESCRIPTION = "Indicates the size of the image parts received by the upload endpoints.";
+    public static final String BYTES_RECEIVED_METER_BASE_UNIT = "bytes";
+
+    public static final String DURATION_METER_NAME = "upload.duration";
+    public static final String DURATION_METER_DESCRIPTION = "Indicates the time spent streaming an upload request to storage.";
+
+    public static final String TIME_TO_FIRST_BYTE_METER_NAME = "upload.time-to-first-byte";
+    public static final String TIME_TO_FIRST_BYTE_METER_DESCRIPTION =
+        "Indicates the time between the start of reading an upload request and the first byte of its first image part.";
+
+    public static final String WRITE_METER_NAME = "upload.write";
+    public static final String WRITE_METER_DESCRIPTION = "Indicates the time spent streaming an image part to storage.";
+
+    public static final String IMAGE_WIDTH_METER_NAME = "upload.image.width";
+    public static final String IMAGE_WIDTH_METER_DESCRIPTION = "Indicates the width of the uploaded images.";
+
+    public static final String IMAGE_HEIGHT_METER_NAME = "upload.image.height";
+    public static final String IMAGE_HEIGHT_METER_DESCRIPTION = "Indicates the height of the uploaded images.";
+
+    public static final String IMAGE_DIMENSION_METER_BASE_UNIT = "pixels";
+
+    public static final String FAILURES_METER_NAME = "upload.failures";
+    public static final String FAILURES_METER_DESCRIPTION = "Indicates the upload requests rejected or failed, by cause.";
+    public static final String FAILURES_METER_BASE_UNIT = "errors";
+
+    public static final String ENDPOINT_DIMENSION = "endpoint";
+    public static final String CAUSE_DIMENSION = "cause";
+
+    /**
+     * Histogram buckets of the image sizes, for storage capacity planning.
+     */
+    private static final double[] BYTES_RECEIVED_BUCKETS = {
+        DataSize.ofKilobytes(16).toBytes(),
+        DataSize.ofKilobytes(64).toBytes(),
+        DataSize.ofKilobytes(256).toBytes(),
+        DataSize.ofKilobytes(512).toBytes(),
+        DataSize.ofMegabytes(1).toBytes(),
+        DataSize.ofMegabytes(4).toBytes(),
+        DataSize.ofMegabytes(16).toBytes(),
+    };
+
+    /**
+     * Histogram buckets of the image widths and heights.
+     */
+    private static final double[] IMAGE_DIMENSION_BUCKETS = { 256, 512, 1024, 2048, 4096, 8192 };
+
+    /**
+     * The upload endpoints being measured, used as the {@value #ENDPOINT_DIMENSION} tag.
+     */
+    public enum UploadEndpoint {
+        USER_EXTRA("user-extra"),
+        ACCOUNT("account"),
+        RESUMABLE("resumable");
+
+        private final String tag;
+
+        UploadEndpoint(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * The reasons an upload fails, used as the {@value #CAUSE_DIMENSION} tag.
+     */
+    public enum FailureCause {
+        /**
+         * A part is larger than the maximum part size.
+         */
+        SIZE_LIMIT("size-limit"),
+        /**
+         * The request is not a valid multipart request.
+         */
+        MALFORMED("malformed"),
+        /**
+         * A required part is missing.
+         */
+        MISSING_PART("missing-part"),
+        /**
+         * A part was sent more than once.
+         */
+        DUPLICATE_PART("duplicate-part"),
+        /**
+         * A part is not an image in a supported format.
+         */
+        DECODE("decode"),
+        /**
+         * A part is an image declaring larger dimensions than the configured limits.
+         */
+        DIMENSION_LIMIT("dimension-limit"),
+        /**
+         * The request could not be read or the image could not be stored.
+         */
+        IO("io"),
+        /**
+         * The images were stored, but could not be referenced in the database.
+         */
+        DATABASE("database"),
+        /**
+         * Any other failure.
+         */
+        OTHER("other");
+
+        private final String tag;
+
+        FailureCause(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final Map<UploadEndpoint, DistributionSummary> bytesReceivedSummaries = new EnumMap<>(UploadEndpoint.class);
+    private final Map<UploadEndpoint, Timer> durationTimers = new EnumMap<>(UploadEndpoint.class);
+    private final Map<UploadEndpoint, Timer> timeToFirstByteTimers = new EnumMap<>(UploadEndpoint.class);
+    private final Map<UploadEndpoint, Timer> writeTimers = new EnumMap<>(UploadEndpoint.class);
+    private final Map<UploadEndpoint, DistributionSummary> imageWidthSummaries = new EnumMap<>(UploadEndpoint.class);
+    private final Map<UploadEndpoint, DistributionSummary> imageHeightSummaries = new EnumMap<>(UploadEndpoint.class);
+    private final Map<UploadEndpoint, Map<FailureCause, Counter>> failureCounters = new EnumMap<>(UploadEndpoint.class);
+
+    public UploadMetersService(MeterRegistry registry) {
+        for (UploadEndpoint endpoint : UploadEndpoint.values()) {
+            bytesReceivedSummaries.put(
+                endpoint,
+                DistributionSummary
+                    .builder(BYTES_RECEIVED_METER_NAME)
+                    .baseUnit(BYTES_RECEIVED_METER_BASE_UNIT)
+                    .description(BYTES_RECEIVED_METER_DESCRIPTION)
+                    .serviceLevelObjectives(BYTES_RECEIVED_BUCKETS)
+                    .tag(ENDPOINT_DIMENSION, endpoint.getTag())
+                    .register(registry)
+            );
+            durationTimers.put(endpoint, timerForEndpoint(DURATION_METER_NAME, DURATION_METER_DESCRIPTION, endpoint).register(registry));
+            timeToFirstByteTimers.put(
+                endpoint,
+                timerForEndpoint(TIME_TO_FIRST_BYTE_METER_NAME, TIME_TO_FIRST_BYTE_METER_DESCRIPTION, endpoint).register(registry)
+            );
+            writeTimers.put(endpoint, timerForEndpoint(WRITE_METER_NAME, WRITE_METER_DESCRIPTION, endpoint).register(registry));
+            imageWidthSummaries.put(
+                endpoint,
+                imageDimensionSummaryForEndpoint(IMAGE_WIDTH_METER_NAME, IMAGE_WIDTH_METER_DESCRIPTION, endpoint).register(registry)
+            );
+            imageHeightSummaries.put(
+                endpoint,
+                imageDimensionSummaryForEndpoint(IMAGE_HEIGHT_METER_NAME, IMAGE_HEIGHT_METER_DESCRIPTION, endpoint).register(registry)
+            );
+            Map<FailureCause, Counter> counters = new EnumMap<>(FailureCause.class);
+            for (FailureCause cause : FailureCause.values()) {
+                counters.put(cause, failuresCounterForEndpointAndCauseBuilder(endpoint, cause).register(registry));
+            }
+            failureCounters.put(endpoint, counters);
+        }
+    }
+
+    private Timer.Builder timerForEndpoint(String name, String description, UploadEndpoint endpoint) {
+        return Timer.builder(name).description(description).tag(ENDPOINT_DIMENSION, endpoint.getTag());
+    }
+
+    private DistributionSummary.Builder imageDimensionSummaryForEndpoint(String name, String description, UploadEndpoint endpoint) {
+        return DistributionSummary
+            .builder(name)
+            .baseUnit(IMAGE_DIMENSION_METER_BASE_UNIT)
+            .description(description)
+            .serviceLevelObjectives(IMAGE_DIMENSION_BUCKETS)
+            .tag(ENDPOINT_DIMENSION, endpoint.getTag());
+    }
+
+    private Counter.Builder failuresCounterForEndpointAndCauseBuilder(UploadEndpoint endpoint, FailureCause cause) {
+        return Counter
+            .builder(FAILURES_METER_NAME)
+            .baseUnit(FAILURES_METER_BASE_UNIT)
+            .description(FAILURES_METER_DESCRIPTION)
+            .tag(ENDPOINT_DIMENSION, endpoint.getTag())
+            .tag(CAUSE_DIMENSION, cause.getTag());
+    }
+
+    public void trackBytesReceived(UploadEndpoint endpoint, long bytes) {
+        this.bytesReceivedSummaries.get(endpoint).record(bytes);
+    }
+
+    public void trackDuration(UploadEndpoint endpoint, long durationNanos) {
+        this.durationTimers.get(endpoint).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackTimeToFirstByte(UploadEndpoint endpoint, long durationNanos) {
+        this.timeToFirstByteTimers.get(endpoint).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackWrite(UploadEndpoint endpoint, long durationNanos) {
+        this.writeTimers.get(endpoint).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackImageDimensions(UploadEndpoint endpoint, int width, int height) {
+        this.imageWidthSummaries.get(endpoint).record(width);
+        this.imageHeightSummaries.get(endpoint).record(height);
+    }
+
+    public void trackFailure(UploadEndpoint endpoint, FailureCause cause) {
+        this.failureCounters.get(endpoint).get(cause).increment();
+    }
+}
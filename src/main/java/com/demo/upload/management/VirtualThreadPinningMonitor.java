@@ -0,0 +1,156 @@
+package com.demo.upload.management;
+
+import com.demo.upload.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the virtual threads pinned to their carrier thread, typically by a {@code synchronized} block around
+ * blocking I/O, which stops the carrier from running other virtual threads.
+ * <p>
+ * In the {@code virtual} execution mode, and on a JVM recording the {@code jdk.VirtualThreadPinned} event, the events
+ * longer than {@code application.execution.pinned-threshold} are recorded with Java Flight Recorder. They are read
+ * every {@code pinning-report-interval}, timed in the {@value #PINNED_METER_NAME} meter, and the code that pinned
+ * the thread is logged.
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+
+    public static final String PINNED_METER_NAME = "executor.virtual.pinned";
+    public static final String PINNED_METER_DESCRIPTION = "Indicates the time virtual threads stayed pinned to their carrier thread.";
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final String APPLICATION_PACKAGE = "com.demo.upload.";
+
+    private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+    private final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    private final Timer pinnedTimer;
+
+    private Recording recording;
+
+    private Instant reportedUntil = Instant.MIN;
+
+    public VirtualThreadPinningMonitor(ApplicationProperties applicationProperties, MeterRegistry registry) {
+        this.applicationProperties = applicationProperties;
+        this.pinnedTimer = Timer.builder(PINNED_METER_NAME).description(PINNED_METER_DESCRIPTION).register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (applicationProperties.getExecution().getMode() != ApplicationProperties.Execution.Mode.VIRTUAL || !isPinningRecorded()) {
+            return;
+        }
+        recording = new Recording();
+        recording.setName(getClass().getSimpleName());
+        recording.setMaxAge(MAX_AGE);
+        recording.enable(PINNED_EVENT).withThreshold(applicationProperties.getExecution().getPinnedThreshold()).withStackTrace();
+        recording.start();
+        log.debug("Recording virtual threads pinned for more than {}", applicationProperties.getExecution().getPinnedThreshold());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Times and logs the pinned threads recorded since the last report.
+     */
+    @Scheduled(
+        initialDelayString = "${application.execution.pinning-report-interval:PT10S}",
+        fixedDelayString = "${application.execution.pinning-report-interval:PT10S}"
+    )
+    public void report() {
+        if (recording == null) {
+            return;
+        }
+        Path dump = null;
+        try {
+            dump = Files.createTempFile("pinned-", ".jfr");
+            recording.dump(dump);
+            report(RecordingFile.readAllEvents(dump));
+        } catch (IOException e) {
+            log.warn("Could not read the pinned virtual threads: {}", e.getMessage());
+        } finally {
+            if (dump != null) {
+                try {
+                    Files.deleteIfExists(dump);
+                } catch (IOException e) {
+                    log.debug("Could not delete {}", dump, e);
+                }
+            }
+        }
+    }
+
+    private void report(List<RecordedEvent> events) {
+        Instant until = reportedUntil;
+        Map<String, Integer> pinnedBy = new HashMap<>();
+        for (RecordedEvent event : events) {
+            // The recording keeps the events of the last minutes, skip those already reported
+            if (!PINNED_EVENT.equals(event.getEventType().getName()) || !event.getEndTime().isAfter(reportedUntil)) {
+                continue;
+            }
+            pinnedTimer.record(event.getDuration());
+            pinnedBy.merge(pinningFrame(event), 1, Integer::sum);
+            if (event.getEndTime().isAfter(until)) {
+                until = event.getEndTime();
+            }
+        }
+        reportedUntil = until;
+        pinnedBy.forEach((frame, count) -> log.warn("{} virtual threads pinned at {}", count, frame));
+    }
+
+    private static boolean isPinningRecorded() {
+        return (
+            FlightRecorder.isAvailable() &&
+            FlightRecorder.getFlightRecorder().getEventTypes().stream().anyMatch(type -> PINNED_EVENT.equals(type.getName()))
+        );
+    }
+
+    /**
+     * @return the first frame of the application, or else the top frame, of the pinned thread.
+     */
+    private static String pinningFrame(RecordedEvent event) {
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+            return "unknown";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        RecordedFrame frame = frames
+            .stream()
+            .filter(candidate -> candidate.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+            .findFirst()
+            .orElse(frames.get(0));
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
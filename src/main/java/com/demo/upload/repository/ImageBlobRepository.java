@@ -0,0 +1,46 @@
+package com.demo.upload.repository;
+
+import com.demo.upload.domain.ImageBlob;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the {@link ImageBlob} entity.
+ */
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select imageBlob from ImageBlob imageBlob where imageBlob.contentKey = :contentKey")
+    Optional<ImageBlob> findOneForUpdate(@Param("contentKey") String contentKey);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select imageBlob from ImageBlob imageBlob where imageBlob.contentKey in :contentKeys")
+    List<ImageBlob> findAllForUpdate(@Param("contentKeys") Collection<String> contentKeys);
+
+    /**
+     * Inserts a blob without any reference, unless it already exists.
+     * <p>
+     * Unlike a lookup followed by an insert, concurrent calls for the same content key do not conflict: the later ones
+     * wait for the first to complete, and leave its row untouched.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(
+        value = "insert into image_blob (content_key, jhi_size, ref_count, created_date) values (:contentKey, :size, 0, :createdDate)" +
+        " on duplicate key update content_key = content_key",
+        nativeQuery = true
+    )
+    // Only the blobs are affected, the second-level cache regions of the other entities are kept
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.NATIVE_SPACES, value = "image_blob"))
+    void insertIfAbsent(@Param("contentKey") String contentKey, @Param("size") long size, @Param("createdDate") Instant createdDate);
+}
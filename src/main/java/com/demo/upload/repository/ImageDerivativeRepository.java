@@ -0,0 +1,17 @@
+package com.demo.upload.repository;
+
+import com.demo.upload.domain.ImageDerivative;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the {@link ImageDerivative} entity.
+ */
+@Repository
+public interface ImageDerivativeRepository extends JpaRepository<ImageDerivative, Long> {
+    Optional<ImageDerivative> findOneBySourceKeyAndVariant(String sourceKey, String variant);
+
+    List<ImageDerivative> findAllBySourceKey(String sourceKey);
+}
@@ -0,0 +1,37 @@
+package com.demo.upload.repository;
+
+import com.demo.upload.domain.MailOutboxMessage;
+import com.demo.upload.domain.enumeration.MailOutboxStatus;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.hibernate.LockOptions;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the {@link MailOutboxMessage} entity.
+ */
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutboxMessage, Long> {
+    /**
+     * Locks the messages in one of the given statuses due at the given instant, oldest first.
+     * <p>
+     * Messages already locked by another instance are skipped rather than waited for, so that several instances
+     * claim distinct batches.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "" + LockOptions.SKIP_LOCKED))
+    List<MailOutboxMessage> findAllByStatusInAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+        Collection<MailOutboxStatus> statuses,
+        Instant now,
+        Pageable pageable
+    );
+
+    long countByStatus(MailOutboxStatus status);
+}
@@ -3,8 +3,15 @@ package com.demo.upload.repository;
 import com.demo.upload.domain.User;
 import com.demo.upload.domain.UserExtra;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -14,9 +21,44 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface UserExtraRepository extends JpaRepository<UserExtra, Long> {
+    String SUMMARY_QUERY =
+        "select userExtra.id as id, userExtra.frontImage as frontImage, userExtra.backImage as backImage, " +
+        "user.id as userId, user.login as userLogin " +
+        "from UserExtra userExtra left join userExtra.user user";
 	
     Optional<UserExtra> findOneById(Long id);
 
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
 	Optional<UserExtra> findByUserId(Long id);
 
+    List<UserExtra> findAllByUserIdIn(Collection<Long> userIds);
+
+    List<UserExtra> findAllByIdInOrUserIdIn(Collection<Long> ids, Collection<Long> userIds);
+
+    @EntityGraph(attributePaths = "user")
+    Slice<UserExtra> findAllWithUserBy(Pageable pageable);
+
+    /**
+     * Fetch plan of the detail view: the userExtra and its user, in one query.
+     */
+    @EntityGraph(attributePaths = "user")
+    Optional<UserExtra> findOneWithUserById(Long id);
+
+    /**
+     * Fetch plan of the list view: the columns of the userExtras and the logins of their users, in one query.
+     */
+    @Query(SUMMARY_QUERY)
+    List<UserExtraSummary> findAllSummariesBy();
+
+    /**
+     * Streams the same rows as {@link #findAllSummariesBy()}, through a forward-only cursor.
+     * <p>
+     * A fetch size of {@code Integer.MIN_VALUE} makes MySQL send the rows one by one instead of buffering the whole
+     * result. The rows are plain values that the persistence context does not track, so memory stays flat. The
+     * stream must be consumed and closed within a transaction.
+     */
+    @Query(SUMMARY_QUERY)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    Stream<UserExtraSummary> streamAllSummariesBy();
+
 }
@@ -0,0 +1,19 @@
+package com.demo.upload.repository;
+
+/**
+ * Projection of a {@link com.demo.upload.domain.UserExtra} on the columns its REST representation needs.
+ * <p>
+ * The login of the user is read through a join of the same query, so no {@link com.demo.upload.domain.User} is
+ * loaded, nor any of its authorities.
+ */
+public interface UserExtraSummary {
+    Long getId();
+
+    String getFrontImage();
+
+    String getBackImage();
+
+    Long getUserId();
+
+    String getUserLogin();
+}
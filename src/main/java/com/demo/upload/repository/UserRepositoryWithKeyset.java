@@ -0,0 +1,22 @@
+package com.demo.upload.repository;
+
+import com.demo.upload.domain.User;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Keyset pagination of the {@link User} entity, whose cost does not depend on how deep the page is.
+ */
+public interface UserRepositoryWithKeyset {
+    /**
+     * Get the users following a given one, ordered by a property and then by id.
+     *
+     * @param activatedOnly whether to only return activated users.
+     * @param order the order of the users, on a property holding no null value.
+     * @param lastValue the value of the property for the last user of the previous slice, ignored if {@code lastId} is {@code null}.
+     * @param lastId the id of the last user of the previous slice, or {@code null} for the first slice.
+     * @param size the maximum number of users to return.
+     * @return the slice of users, without any total count.
+     */
+    Slice<User> findAllByKeyset(boolean activatedOnly, Sort.Order order, Object lastValue, Long lastId, int size);
+}
@@ -0,0 +1,76 @@
+package com.demo.upload.repository;
+
+import com.demo.upload.domain.User;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Seeks to the users following the last one of the previous slice with a {@code (value, id)} comparison on indexed
+ * columns, instead of skipping the previous rows, and fetches one extra row to know whether there is a next slice.
+ */
+public class UserRepositoryWithKeysetImpl implements UserRepositoryWithKeyset {
+
+    private static final String ID = "id";
+
+    private final EntityManager entityManager;
+
+    public UserRepositoryWithKeysetImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Slice<User> findAllByKeyset(boolean activatedOnly, Sort.Order order, Object lastValue, Long lastId, int size) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<User> query = builder.createQuery(User.class);
+        Root<User> user = query.from(User.class);
+        Expression<Comparable<Object>> value = user.get(order.getProperty());
+        Expression<Long> id = user.get(ID);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (activatedOnly) {
+            predicates.add(builder.isTrue(user.get("activated")));
+        }
+        if (lastId != null) {
+            predicates.add(after(builder, order, value, id, lastValue, lastId));
+        }
+        List<Order> orders = new ArrayList<>();
+        if (!ID.equals(order.getProperty())) {
+            orders.add(order.isAscending() ? builder.asc(value) : builder.desc(value));
+        }
+        orders.add(order.isAscending() ? builder.asc(id) : builder.desc(id));
+        query.select(user).where(predicates.toArray(new Predicate[0])).orderBy(orders);
+
+        List<User> users = entityManager.createQuery(query).setMaxResults(size + 1).getResultList();
+        boolean hasNext = users.size() > size;
+        return new SliceImpl<>(hasNext ? users.subList(0, size) : users, PageRequest.of(0, size, Sort.by(order)), hasNext);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate after(
+        CriteriaBuilder builder,
+        Sort.Order order,
+        Expression<Comparable<Object>> value,
+        Expression<Long> id,
+        Object lastValue,
+        Long lastId
+    ) {
+        Predicate idAfter = order.isAscending() ? builder.greaterThan(id, lastId) : builder.lessThan(id, lastId);
+        if (ID.equals(order.getProperty())) {
+            return idAfter;
+        }
+        Comparable<Object> last = (Comparable<Object>) lastValue;
+        Predicate valueAfter = order.isAscending() ? builder.greaterThan(value, last) : builder.lessThan(value, last);
+        return builder.or(valueAfter, builder.and(builder.equal(value, last), idAfter));
+    }
+}
@@ -0,0 +1,134 @@
+package com.demo.upload.security;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.management.SecurityMetersService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Hashes passwords on a dedicated pool of threads, refusing new hashes once too many are pending.
+ * <p>
+ * Hashing is deliberately expensive: running it on the request threads lets a burst of logins starve every other
+ * endpoint of CPU. Here at most {@code application.password-hashing.pool-size} hashes run at once, and once
+ * {@code max-pending} hashes are running or queued, further ones fail fast with a
+ * {@link PasswordHashingUnavailableException}.
+ * <p>
+ * New hashes use the configured algorithm and cost. Stored hashes are recognized by their format, and
+ * {@link #upgradeEncoding(String)} flags those of another algorithm or of a lower cost, so that they are
+ * re-hashed the next time their user logs in.
+ */
+public class OffloadedPasswordEncoder implements PasswordEncoder {
+
+    private static final String ARGON2_PREFIX = "$argon2";
+
+    private static final int ARGON2_SALT_LENGTH = 16;
+
+    private static final int ARGON2_HASH_LENGTH = 32;
+
+    private static final int ARGON2_PARALLELISM = 1;
+
+    private final PasswordEncoder bcrypt;
+
+    private final PasswordEncoder argon2;
+
+    private final PasswordEncoder target;
+
+    private final Executor executor;
+
+    private final Semaphore pending;
+
+    private final SecurityMetersService securityMetersService;
+
+    public OffloadedPasswordEncoder(
+        ApplicationProperties applicationProperties,
+        Executor executor,
+        SecurityMetersService securityMetersService
+    ) {
+        ApplicationProperties.PasswordHashing passwordHashing = applicationProperties.getPasswordHashing();
+        this.bcrypt = new BCryptPasswordEncoder(passwordHashing.getBcryptStrength());
+        this.argon2 =
+            new Argon2PasswordEncoder(
+                ARGON2_SALT_LENGTH,
+                ARGON2_HASH_LENGTH,
+                ARGON2_PARALLELISM,
+                (int) passwordHashing.getArgon2Memory().toKilobytes(),
+                passwordHashing.getArgon2Iterations()
+            );
+        this.target = passwordHashing.getAlgorithm() == ApplicationProperties.PasswordHashing.Algorithm.ARGON2 ? argon2 : bcrypt;
+        this.executor = executor;
+        this.pending = new Semaphore(passwordHashing.getMaxPending());
+        this.securityMetersService = securityMetersService;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return offload(() -> target.encode(rawPassword), securityMetersService::trackPasswordEncode);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        PasswordEncoder encoder = encoderFor(encodedPassword);
+        return offload(() -> encoder.matches(rawPassword, encodedPassword), securityMetersService::trackPasswordMatches);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        PasswordEncoder encoder = encoderFor(encodedPassword);
+        return encoder != target || target.upgradeEncoding(encodedPassword);
+    }
+
+    private PasswordEncoder encoderFor(String encodedPassword) {
+        return encodedPassword.startsWith(ARGON2_PREFIX) ? argon2 : bcrypt;
+    }
+
+    private <T> T offload(Supplier<T> hash, LongConsumer timer) {
+        if (!pending.tryAcquire()) {
+            securityMetersService.trackPasswordRejected();
+            throw new PasswordHashingUnavailableException("Too many password hashes are pending, try again later");
+        }
+        try {
+            long submitted = System.nanoTime();
+            return CompletableFuture
+                .supplyAsync(
+                    () -> {
+                        long start = System.nanoTime();
+                        securityMetersService.trackPasswordQueueWait(start - submitted);
+                        try {
+                            return hash.get();
+                        } finally {
+                            timer.accept(System.nanoTime() - start);
+                        }
+                    },
+                    executor
+                )
+                .get();
+        } catch (RejectedExecutionException e) {
+            securityMetersService.trackPasswordRejected();
+            throw new PasswordHashingUnavailableException("The password hashing pool is saturated", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingUnavailableException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pending.release();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.demo.upload.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * This exception is thrown when too many password hashes are already pending, so the request is refused
+ * with a {@code 503 (Service Unavailable)} instead of waiting.
+ */
+public class PasswordHashingUnavailableException extends ResponseStatusException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingUnavailableException(String message) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, message);
+    }
+
+    public PasswordHashingUnavailableException(String message, Throwable t) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, message, t);
+    }
+}
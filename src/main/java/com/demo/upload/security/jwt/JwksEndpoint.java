@@ -0,0 +1,28 @@
+package com.demo.upload.security.jwt;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint publishing the public keys verifying tokens as a JSON Web Key Set, at {@code /management/jwks}.
+ * <p>
+ * The set is empty unless {@code application.jwt.algorithm} is {@code es256}: shared secrets are never published.
+ */
+@Component
+@Endpoint(id = "jwks")
+public class JwksEndpoint {
+
+    private final JwtKeyRing jwtKeyRing;
+
+    public JwksEndpoint(JwtKeyRing jwtKeyRing) {
+        this.jwtKeyRing = jwtKeyRing;
+    }
+
+    @ReadOperation
+    public Map<String, List<Map<String, Object>>> jwks() {
+        return Map.of("keys", jwtKeyRing.getJsonWebKeys());
+    }
+}
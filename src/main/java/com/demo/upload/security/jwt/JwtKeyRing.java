@@ -0,0 +1,332 @@
+package com.demo.upload.security.jwt;
+
+import com.demo.upload.config.ApplicationProperties;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * The rotating ECDSA keys signing and verifying tokens when {@code application.jwt.algorithm} is {@code es256}.
+ * <p>
+ * Every key pair is a file in {@code application.jwt.key-directory}, named after its key id, which is the epoch second
+ * at which it started signing. The directory is shared by the nodes signing tokens: each node reloads it every
+ * {@code application.jwt.refresh-interval}. The first node noticing that the next {@code rotation-interval} starts
+ * within two refresh intervals creates its key ahead of time: every node has loaded the key by the time any of them
+ * signs with it, so tokens signed with a new key are verified everywhere. A key is kept for verification until the
+ * longest-lived token it may have signed has expired, then deleted.
+ * <p>
+ * Key files are parsed once, and each reload publishes the verification keys as an immutable map, so resolving the key
+ * of a token is a single lookup. Their public part is published as a JSON Web Key Set by {@link JwksEndpoint}.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final String KEY_ALGORITHM = "EC";
+
+    private static final String FILE_SUFFIX = ".pem";
+
+    private static final Pattern PEM_BLOCK = Pattern.compile("-----BEGIN ([A-Z ]+)-----([A-Za-z0-9+/=\\s]+)-----END \\1-----");
+
+    private static final String PRIVATE_KEY_BLOCK = "PRIVATE KEY";
+
+    private static final String PUBLIC_KEY_BLOCK = "PUBLIC KEY";
+
+    private static final int P256_COORDINATE_SIZE = 32;
+
+    private final Logger log = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private final boolean enabled;
+
+    private final Path directory;
+
+    private final long rotationSeconds;
+
+    private final long publicationSeconds;
+
+    private final long retentionSeconds;
+
+    private final Clock clock;
+
+    /**
+     * Key files never change once created, so each is only parsed by the first reload seeing it.
+     */
+    private final Map<Long, KeyPair> parsedKeys = new HashMap<>();
+
+    private volatile SigningKey signingKey;
+
+    private volatile Map<String, PublicKey> verificationKeys = Collections.emptyMap();
+
+    private volatile List<Map<String, Object>> jsonWebKeys = Collections.emptyList();
+
+    @Autowired
+    public JwtKeyRing(ApplicationProperties applicationProperties, JHipsterProperties jHipsterProperties) {
+        this(applicationProperties, jHipsterProperties, Clock.systemUTC());
+    }
+
+    JwtKeyRing(ApplicationProperties applicationProperties, JHipsterProperties jHipsterProperties, Clock clock) {
+        ApplicationProperties.Jwt jwt = applicationProperties.getJwt();
+        JHipsterProperties.Security.Authentication.Jwt tokens = jHipsterProperties.getSecurity().getAuthentication().getJwt();
+        this.enabled = jwt.getAlgorithm() == ApplicationProperties.Jwt.Algorithm.ES256;
+        this.directory = Paths.get(jwt.getKeyDirectory());
+        this.rotationSeconds = jwt.getRotationInterval().getSeconds();
+        // Two refreshes, so that a node refreshing just before the key is created still loads it in time
+        this.publicationSeconds = Math.min(2 * jwt.getRefreshInterval().getSeconds(), rotationSeconds);
+        this.retentionSeconds = rotationSeconds + Math.max(tokens.getTokenValidityInSeconds(), tokens.getTokenValidityInSecondsForRememberMe());
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (enabled) {
+            Files.createDirectories(directory);
+            load();
+        }
+    }
+
+    /**
+     * Reloads the key directory, creating the next key ahead of the rotation of the current one
+     * and deleting the keys which can no longer have signed a valid token.
+     * <p>
+     * This is scheduled to run every {@code application.jwt.refresh-interval}.
+     */
+    @Scheduled(
+        initialDelayString = "${application.jwt.refresh-interval:PT1M}",
+        fixedDelayString = "${application.jwt.refresh-interval:PT1M}"
+    )
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            load();
+        } catch (IOException e) {
+            log.warn("Could not refresh the JWT signing keys, keeping the current ones", e);
+        }
+    }
+
+    /**
+     * @return the key new tokens are signed with.
+     * @throws IllegalStateException if the key ring is not enabled.
+     */
+    public SigningKey getSigningKey() {
+        SigningKey key = signingKey;
+        if (key == null) {
+            throw new IllegalStateException("No JWT signing key is available");
+        }
+        return key;
+    }
+
+    /**
+     * @param keyId the {@code kid} header of a token.
+     * @return the public key verifying the token, or {@code null} if the key is unknown or retired.
+     */
+    public PublicKey getVerificationKey(String keyId) {
+        return keyId == null ? null : verificationKeys.get(keyId);
+    }
+
+    /**
+     * @return the public keys, as JSON Web Keys.
+     */
+    public List<Map<String, Object>> getJsonWebKeys() {
+        return jsonWebKeys;
+    }
+
+    private synchronized void load() throws IOException {
+        long now = clock.instant().getEpochSecond();
+        TreeMap<Long, Path> files = listKeyFiles();
+        long windowStart = now - Math.floorMod(now, rotationSeconds);
+        if (files.isEmpty() || files.lastKey() < windowStart) {
+            files.put(windowStart, createKey(windowStart));
+        }
+        long nextWindowStart = windowStart + rotationSeconds;
+        // Only signed with once its window starts, see below
+        if (nextWindowStart - now <= publicationSeconds && files.lastKey() < nextWindowStart) {
+            files.put(nextWindowStart, createKey(nextWindowStart));
+        }
+
+        parsedKeys.keySet().retainAll(files.keySet());
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        List<Map<String, Object>> webKeys = new ArrayList<>();
+        SigningKey current = null;
+        for (Map.Entry<Long, Path> file : files.descendingMap().entrySet()) {
+            String keyId = Long.toString(file.getKey());
+            if (file.getKey() + retentionSeconds < now) {
+                log.info("Deleting retired JWT signing key {}", keyId);
+                Files.deleteIfExists(file.getValue());
+                parsedKeys.remove(file.getKey());
+                continue;
+            }
+            KeyPair keyPair = parsedKeys.get(file.getKey());
+            if (keyPair == null) {
+                keyPair = readKey(file.getValue());
+                parsedKeys.put(file.getKey(), keyPair);
+            }
+            if (current == null && file.getKey() <= now) {
+                current = new SigningKey(keyId, keyPair.getPrivate());
+            }
+            publicKeys.put(keyId, keyPair.getPublic());
+            webKeys.add(toJsonWebKey(keyId, (ECPublicKey) keyPair.getPublic()));
+        }
+        this.verificationKeys = Collections.unmodifiableMap(publicKeys);
+        this.jsonWebKeys = Collections.unmodifiableList(webKeys);
+        this.signingKey = current;
+    }
+
+    private TreeMap<Long, Path> listKeyFiles() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file {} in the JWT key directory", path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private Path createKey(long keyId) throws IOException {
+        Path target = directory.resolve(keyId + FILE_SUFFIX);
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        String content =
+            pem(PRIVATE_KEY_BLOCK, keyPair.getPrivate().getEncoded()) + pem(PUBLIC_KEY_BLOCK, keyPair.getPublic().getEncoded());
+        Path temporary = Files.createTempFile(directory, "key-", ".tmp");
+        try {
+            restrictToOwner(temporary);
+            Files.writeString(temporary, content);
+            // Linking fails if another node created the key of this window first, in which case its key is used
+            Files.createLink(target, temporary);
+            log.info("Created JWT signing key {}", keyId);
+        } catch (FileAlreadyExistsException e) {
+            log.debug("JWT signing key {} was created by another node", keyId);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return target;
+    }
+
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system, the permissions of the directory apply
+        }
+    }
+
+    private static KeyPair readKey(Path file) throws IOException {
+        Map<String, byte[]> blocks = new LinkedHashMap<>();
+        Matcher matcher = PEM_BLOCK.matcher(Files.readString(file, StandardCharsets.US_ASCII));
+        while (matcher.find()) {
+            blocks.put(matcher.group(1), Base64.getMimeDecoder().decode(matcher.group(2).trim()));
+        }
+        if (!blocks.containsKey(PRIVATE_KEY_BLOCK) || !blocks.containsKey(PUBLIC_KEY_BLOCK)) {
+            throw new IOException("Invalid JWT key file " + file);
+        }
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(blocks.get(PRIVATE_KEY_BLOCK)));
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(blocks.get(PUBLIC_KEY_BLOCK)));
+            return new KeyPair(publicKey, privateKey);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Invalid JWT key file " + file, e);
+        }
+    }
+
+    private static String pem(String type, byte[] encoded) {
+        return (
+            "-----BEGIN " +
+            type +
+            "-----\n" +
+            Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(encoded) +
+            "\n-----END " +
+            type +
+            "-----\n"
+        );
+    }
+
+    private static Map<String, Object> toJsonWebKey(String keyId, ECPublicKey publicKey) {
+        Map<String, Object> jsonWebKey = new LinkedHashMap<>();
+        jsonWebKey.put("kty", "EC");
+        jsonWebKey.put("crv", "P-256");
+        jsonWebKey.put("use", "sig");
+        jsonWebKey.put("alg", SignatureAlgorithm.ES256.getValue());
+        jsonWebKey.put("kid", keyId);
+        jsonWebKey.put("x", coordinate(publicKey.getW().getAffineX()));
+        jsonWebKey.put("y", coordinate(publicKey.getW().getAffineY()));
+        return Collections.unmodifiableMap(jsonWebKey);
+    }
+
+    /**
+     * Encodes a curve coordinate as an unsigned, fixed-size big-endian number, as required by RFC 7518.
+     */
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[P256_COORDINATE_SIZE];
+        int length = Math.min(bytes.length, P256_COORDINATE_SIZE);
+        System.arraycopy(bytes, bytes.length - length, fixed, P256_COORDINATE_SIZE - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+
+    /**
+     * A private key and the id under which its public key is published.
+     */
+    public static final class SigningKey {
+
+        private final String keyId;
+
+        private final PrivateKey privateKey;
+
+        SigningKey(String keyId, PrivateKey privateKey) {
+            this.keyId = keyId;
+            this.privateKey = privateKey;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.demo.upload.security.jwt;
 
+import com.demo.upload.config.ApplicationProperties;
 import com.demo.upload.management.SecurityMetersService;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
@@ -7,7 +8,10 @@ import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +33,11 @@ public class TokenProvider {
 
     private static final String INVALID_JWT_TOKEN = "Invalid JWT token.";
 
+    /**
+     * Maximum number of distinct authority claims whose parsed authorities are shared between requests.
+     */
+    private static final int MAX_INTERNED_AUTHORITIES = 256;
+
     private final Key key;
 
     private final JwtParser jwtParser;
@@ -39,7 +48,18 @@ public class TokenProvider {
 
     private final SecurityMetersService securityMetersService;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties, SecurityMetersService securityMetersService) {
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    private final JwtKeyRing jwtKeyRing;
+
+    private final Map<String, List<GrantedAuthority>> internedAuthorities = new ConcurrentHashMap<>();
+
+    public TokenProvider(
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        SecurityMetersService securityMetersService,
+        JwtKeyRing jwtKeyRing
+    ) {
         byte[] keyBytes;
         String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret();
         if (!ObjectUtils.isEmpty(secret)) {
@@ -54,53 +74,95 @@ public class TokenProvider {
             keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         }
         key = Keys.hmacShaKeyFor(keyBytes);
-        jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.jwtKeyRing = jwtKeyRing;
+        if (jwtKeyRing.isEnabled()) {
+            log.debug("Signing JWT tokens with the rotating ES256 keys");
+            jwtParser = Jwts.parserBuilder().setSigningKeyResolver(new KeyRingResolver(jwtKeyRing)).build();
+        } else {
+            jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        }
         this.tokenValidityInMilliseconds = 1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
         this.tokenValidityInMillisecondsForRememberMe =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
 
         this.securityMetersService = securityMetersService;
+        ApplicationProperties.TokenCache tokenCache = applicationProperties.getTokenCache();
+        this.verifiedTokenCache =
+            new VerifiedTokenCache(tokenCache.getMaxSize(), tokenCache.getTimeToLive().toMillis(), Clock.systemUTC());
+        securityMetersService.trackTokenCacheSize(verifiedTokenCache, VerifiedTokenCache::size);
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
+        long validityInMilliseconds = rememberMe ? this.tokenValidityInMillisecondsForRememberMe : this.tokenValidityInMilliseconds;
+        return createToken(authentication, new Date((new Date()).getTime() + validityInMilliseconds));
+    }
+
+    /**
+     * Creates a token valid for the given duration, rather than for the configured token validity.
+     *
+     * @param authentication the authentication to create the token for.
+     * @param validity how long the token is valid.
+     * @return the token.
+     */
+    public String createToken(Authentication authentication, Duration validity) {
+        return createToken(authentication, new Date((new Date()).getTime() + validity.toMillis()));
+    }
+
+    private String createToken(Authentication authentication, Date validity) {
         String authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(","));
 
-        long now = (new Date()).getTime();
-        Date validity;
-        if (rememberMe) {
-            validity = new Date(now + this.tokenValidityInMillisecondsForRememberMe);
+        JwtBuilder builder = Jwts.builder().setSubject(authentication.getName()).claim(AUTHORITIES_KEY, authorities);
+        if (jwtKeyRing.isEnabled()) {
+            JwtKeyRing.SigningKey signingKey = jwtKeyRing.getSigningKey();
+            builder.setHeaderParam(JwsHeader.KEY_ID, signingKey.getKeyId()).signWith(signingKey.getPrivateKey(), SignatureAlgorithm.ES256);
         } else {
-            validity = new Date(now + this.tokenValidityInMilliseconds);
+            builder.signWith(key, SignatureAlgorithm.HS512);
         }
-
-        return Jwts
-            .builder()
-            .setSubject(authentication.getName())
-            .claim(AUTHORITIES_KEY, authorities)
-            .signWith(key, SignatureAlgorithm.HS512)
-            .setExpiration(validity)
-            .compact();
+        return builder.setExpiration(validity).compact();
     }
 
     public Authentication getAuthentication(String token) {
         Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        return authentication(principal(claims), token);
+    }
 
-        Collection<? extends GrantedAuthority> authorities = Arrays
-            .stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-            .filter(auth -> !auth.trim().isEmpty())
-            .map(SimpleGrantedAuthority::new)
-            .collect(Collectors.toList());
-
-        User principal = new User(claims.getSubject(), "", authorities);
+    public boolean validateToken(String authToken) {
+        return parseClaims(authToken) != null;
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    /**
+     * Verifies the token and builds its authentication in a single parse.
+     * <p>
+     * The principal of a verified token is cached until the token expires, so later requests presenting the same
+     * token skip both the signature verification and the claims parsing.
+     *
+     * @param token the JWT token.
+     * @return the authentication, or empty if the token is not valid.
+     */
+    public Optional<Authentication> authenticate(String token) {
+        if (!verifiedTokenCache.isEnabled()) {
+            return Optional.ofNullable(parseClaims(token)).map(claims -> authentication(principal(claims), token));
+        }
+        String cacheKey = VerifiedTokenCache.key(token);
+        User principal = verifiedTokenCache.get(cacheKey);
+        if (principal != null) {
+            securityMetersService.trackTokenCacheHit();
+            return Optional.of(authentication(principal, token));
+        }
+        securityMetersService.trackTokenCacheMiss();
+        Claims claims = parseClaims(token);
+        if (claims == null) {
+            return Optional.empty();
+        }
+        principal = principal(claims);
+        Date expiration = claims.getExpiration();
+        verifiedTokenCache.put(cacheKey, principal, expiration == null ? null : expiration.getTime());
+        return Optional.of(authentication(principal, token));
     }
 
-    public boolean validateToken(String authToken) {
+    private Claims parseClaims(String authToken) {
         try {
-            jwtParser.parseClaimsJws(authToken);
-
-            return true;
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (ExpiredJwtException e) {
             this.securityMetersService.trackTokenExpired();
 
@@ -121,6 +183,57 @@ public class TokenProvider {
             log.error("Token validation error {}", e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    private User principal(Claims claims) {
+        return new User(claims.getSubject(), "", authorities(claims.get(AUTHORITIES_KEY).toString()));
+    }
+
+    /**
+     * Parses an authorities claim, sharing the result between the tokens carrying the same claim.
+     */
+    private List<GrantedAuthority> authorities(String claim) {
+        List<GrantedAuthority> authorities = internedAuthorities.get(claim);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities =
+            Arrays
+                .stream(claim.split(","))
+                .filter(auth -> !auth.trim().isEmpty())
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toUnmodifiableList());
+        if (internedAuthorities.size() < MAX_INTERNED_AUTHORITIES) {
+            List<GrantedAuthority> interned = internedAuthorities.putIfAbsent(claim, authorities);
+            return interned != null ? interned : authorities;
+        }
+        return authorities;
+    }
+
+    private static Authentication authentication(User principal, String token) {
+        return new UsernamePasswordAuthenticationToken(principal, token, principal.getAuthorities());
+    }
+
+    /**
+     * Resolves the verification key of a token from its {@code kid} header.
+     */
+    private static final class KeyRingResolver extends SigningKeyResolverAdapter {
+
+        private final JwtKeyRing jwtKeyRing;
+
+        private KeyRingResolver(JwtKeyRing jwtKeyRing) {
+            this.jwtKeyRing = jwtKeyRing;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            Key verificationKey = jwtKeyRing.getVerificationKey(header.getKeyId());
+            if (verificationKey == null) {
+                throw new SignatureException("Unknown JWT key id: " + header.getKeyId());
+            }
+            return verificationKey;
+        }
     }
 }
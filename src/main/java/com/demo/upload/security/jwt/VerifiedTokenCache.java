@@ -0,0 +1,125 @@
+package com.demo.upload.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * Remembers the principal of tokens whose signature was already verified.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the token, so the cache never holds a usable credential, and expire at the
+ * earliest of the token's own expiration and the configured time to live. When the cache is full, expired entries are
+ * dropped first, then arbitrary ones, by a single thread while the others keep reading.
+ */
+class VerifiedTokenCache {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final int maxSize;
+
+    private final long timeToLiveMillis;
+
+    private final Clock clock;
+
+    VerifiedTokenCache(int maxSize, long timeToLiveMillis, Clock clock) {
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the principal of the token, or {@code null} if the token is not in the cache or expired.
+     */
+    User get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= clock.millis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    /**
+     * @param key the key of the token, see {@link #key(String)}.
+     * @param principal the principal of the verified token.
+     * @param expiration the expiration of the token, in epoch milliseconds, or {@code null} if it never expires.
+     */
+    void put(String key, User principal, Long expiration) {
+        if (maxSize <= 0) {
+            return;
+        }
+        long now = clock.millis();
+        long expiresAt = expiration == null ? now + timeToLiveMillis : Math.min(expiration, now + timeToLiveMillis);
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(key, new Entry(principal, expiresAt));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Hashes a token into its cache key.
+     */
+    static String key(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance(HASH_ALGORITHM).digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+            // Still full of live tokens: make room for a tenth of the cache at once, so eviction stays rare
+            Iterator<String> keys = entries.keySet().iterator();
+            int target = maxSize - Math.max(1, maxSize / 10);
+            while (entries.size() > target && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+
+        private final User principal;
+
+        private final long expiresAt;
+
+        private Entry(User principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.demo.upload.service;
+
+import com.demo.upload.domain.ImageBlob;
+import com.demo.upload.domain.ImageDerivative;
+import com.demo.upload.repository.ImageBlobRepository;
+import com.demo.upload.repository.ImageDerivativeRepository;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.ImageBytesCache;
+import com.demo.upload.service.upload.StoredImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service class keeping track of the references to the blobs of the {@link ContentAddressedImageStore}.
+ * <p>
+ * A blob is deleted from disk once the transaction releasing its last reference has committed, unless another
+ * transaction has referenced it again in the meantime. So is a blob stored by a transaction which rolled back before
+ * anything else referenced it.
+ */
+@Service
+@Transactional
+public class ImageBlobService {
+
+    private final Logger log = LoggerFactory.getLogger(ImageBlobService.class);
+
+    private final Object pendingDeletionsResource = new Object();
+
+    private final ImageBlobRepository imageBlobRepository;
+
+    private final ImageDerivativeRepository imageDerivativeRepository;
+
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageBytesCache imageBytesCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ImageBlobService(
+        ImageBlobRepository imageBlobRepository,
+        ImageDerivativeRepository imageDerivativeRepository,
+        ContentAddressedImageStore imageStore,
+        ImageBytesCache imageBytesCache,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageDerivativeRepository = imageDerivativeRepository;
+        this.imageStore = imageStore;
+        this.imageBytesCache = imageBytesCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Deletion runs from an afterCommit callback, where the committed transaction is still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Adds a reference to a stored image.
+     *
+     * @param storedImage the image, as returned by the store.
+     */
+    public void retain(StoredImage storedImage) {
+        retain(storedImage, 1);
+    }
+
+    /**
+     * Adds several references to a stored image at once.
+     * <p>
+     * The first reference to some content may race the deletion of the same content by a transaction releasing it:
+     * if the content was deleted after it was stored, the retain fails rather than referencing a missing blob.
+     *
+     * @param storedImage the image, as returned by the store.
+     * @param references the number of references to add.
+     * @throws ConcurrencyFailureException if the content was deleted while being stored.
+     */
+    public void retain(StoredImage storedImage, int references) {
+        String contentKey = storedImage.getContentKey();
+        // Inserting first keeps concurrent first references to the same content from conflicting on the primary key
+        imageBlobRepository.insertIfAbsent(contentKey, storedImage.getSize(), Instant.now());
+        ImageBlob imageBlob = imageBlobRepository.findOneForUpdate(contentKey).orElseThrow();
+        if (imageBlob.getRefCount() == 0) {
+            if (!cancelDeleteAfterCommit(contentKey) && !isStored(contentKey)) {
+                throw new ConcurrencyFailureException("Image " + contentKey + " was deleted while being stored");
+            }
+            deleteAfterRollback(contentKey);
+        }
+        imageBlob.setRefCount(imageBlob.getRefCount() + references);
+        imageBlobRepository.save(imageBlob);
+        log.debug("Retained {}", imageBlob);
+    }
+
+    /**
+     * Finds which of the given images are stored, locking their blobs in a single query so that they are not deleted
+     * before the end of the transaction.
+     *
+     * @param contentKeys the content keys of the images, values which are not content keys being ignored.
+     * @return the content keys of the stored images.
+     */
+    public Set<String> findStored(Collection<String> contentKeys) {
+        Set<String> keys = contentKeys.stream().filter(ContentAddressedImageStore::isContentKey).collect(Collectors.toSet());
+        if (keys.isEmpty()) {
+            return Set.of();
+        }
+        return imageBlobRepository.findAllForUpdate(keys).stream().map(ImageBlob::getContentKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * Adds a reference to images which are already referenced, such as the images sent by a client rather than uploaded.
+     * <p>
+     * Values which are not content keys are ignored, and a content key given several times gets several references.
+     * The blobs are locked in a single query, and must be retained before the images they replace are released.
+     *
+     * @param contentKeys the content keys of the images.
+     * @throws InvalidImageReferenceException if one of the images is not referenced by anything.
+     */
+    public void retainReferenced(Collection<String> contentKeys) {
+        List<String> keys = contentKeys.stream().filter(ContentAddressedImageStore::isContentKey).collect(Collectors.toList());
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<String, ImageBlob> imageBlobs = imageBlobRepository
+            .findAllForUpdate(Set.copyOf(keys))
+            .stream()
+            .collect(Collectors.toMap(ImageBlob::getContentKey, Function.identity()));
+        for (String contentKey : keys) {
+            ImageBlob imageBlob = imageBlobs.get(contentKey);
+            if (imageBlob == null) {
+                throw new InvalidImageReferenceException("Image " + contentKey + " does not exist");
+            }
+            imageBlob.setRefCount(imageBlob.getRefCount() + 1);
+        }
+        imageBlobRepository.saveAll(imageBlobs.values());
+        log.debug("Retained {}", keys);
+    }
+
+    private boolean isStored(String contentKey) {
+        try {
+            return imageStore.exists(contentKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Removes a reference to a stored image, deleting the blob and its derivatives when it was the last one.
+     * <p>
+     * Values which are not content keys, such as paths stored before the content-addressed store
+     * was introduced, are ignored.
+     *
+     * @param contentKey the content key of the image.
+     */
+    public void release(String contentKey) {
+        if (!ContentAddressedImageStore.isContentKey(contentKey)) {
+            return;
+        }
+        imageBlobRepository
+            .findOneForUpdate(contentKey)
+            .ifPresent(imageBlob -> {
+                imageBlob.setRefCount(imageBlob.getRefCount() - 1);
+                log.debug("Released {}", imageBlob);
+                if (imageBlob.getRefCount() > 0) {
+                    return;
+                }
+                imageBlobRepository.delete(imageBlob);
+                deleteAfterCommit(contentKey);
+                releaseDerivatives(contentKey);
+            });
+    }
+
+    private void releaseDerivatives(String sourceKey) {
+        for (ImageDerivative derivative : imageDerivativeRepository.findAllBySourceKey(sourceKey)) {
+            imageDerivativeRepository.delete(derivative);
+            // Images which did not need resizing are their own derivative, and hold no reference to themselves
+            if (!sourceKey.equals(derivative.getDerivativeKey())) {
+                release(derivative.getDerivativeKey());
+            }
+        }
+    }
+
+    /**
+     * Collects the blobs released by the current transaction, to delete them in a single batch once it has committed.
+     */
+    private void deleteAfterCommit(String contentKey) {
+        pendingDeletions().released.add(contentKey);
+    }
+
+    /**
+     * Collects the blobs first referenced by the current transaction, whose rows go away if it rolls back, to delete
+     * them in a single batch once it has rolled back, unless another transaction has referenced them since.
+     */
+    private void deleteAfterRollback(String contentKey) {
+        pendingDeletions().firstRetained.add(contentKey);
+    }
+
+    /**
+     * @return whether the blob was released earlier in the current transaction, and is no longer deleted once it commits.
+     */
+    private boolean cancelDeleteAfterCommit(String contentKey) {
+        PendingDeletions pendingDeletions = (PendingDeletions) TransactionSynchronizationManager.getResource(pendingDeletionsResource);
+        return pendingDeletions != null && pendingDeletions.released.remove(contentKey);
+    }
+
+    private PendingDeletions pendingDeletions() {
+        PendingDeletions pendingDeletions = (PendingDeletions) TransactionSynchronizationManager.getResource(pendingDeletionsResource);
+        if (pendingDeletions != null) {
+            return pendingDeletions;
+        }
+        PendingDeletions newPendingDeletions = new PendingDeletions();
+        TransactionSynchronizationManager.bindResource(pendingDeletionsResource, newPendingDeletions);
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (!newPendingDeletions.released.isEmpty()) {
+                        deleteUnreferenced(newPendingDeletions.released);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingDeletionsResource);
+                    if (status == STATUS_ROLLED_BACK && !newPendingDeletions.firstRetained.isEmpty()) {
+                        deleteUnreferenced(newPendingDeletions.firstRetained);
+                    }
+                }
+            }
+        );
+        return newPendingDeletions;
+    }
+
+    private void deleteUnreferenced(Set<String> contentKeys) {
+        contentKeys.forEach(imageBytesCache::invalidate);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Locking the keys, even those without a row, keeps the first retain of the same content by another
+                // transaction waiting until the blobs are deleted, after which it finds them missing
+                List<String> unreferenced = contentKeys
+                    .stream()
+                    .filter(contentKey -> imageBlobRepository.findOneForUpdate(contentKey).isEmpty())
+                    .collect(Collectors.toList());
+                try {
+                    imageStore.deleteAll(unreferenced);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                log.debug("Deleted unreferenced blobs {}", unreferenced);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not delete unreferenced blobs {}", contentKeys, e);
+        }
+    }
+
+    /**
+     * The blobs to delete once the current transaction has completed, depending on its outcome.
+     */
+    private static final class PendingDeletions {
+
+        private final Set<String> released = new LinkedHashSet<>();
+
+        private final Set<String> firstRetained = new LinkedHashSet<>();
+    }
+}
@@ -0,0 +1,559 @@
+package com.demo.upload.service;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.domain.User;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.management.ImageBulkJobTracker;
+import com.demo.upload.management.ImageBulkJobTracker.Direction;
+import com.demo.upload.repository.ImageBlobRepository;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.service.storage.ImageContent;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.StoredImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service importing and exporting the images of {@link UserExtra} in bulk.
+ * <p>
+ * Archives are zip or tar streams holding the images and a {@value #MANIFEST_NAME} whose lines are
+ * {@code login,frontImage,backImage}, images being referred to by their path in the archive. Exports use
+ * the same layout, with images named {@code images/<content key>}, so that they can be imported back.
+ * <p>
+ * The archive itself is read or written sequentially, while images are stored or read on the
+ * {@code imageBulkPool}. {@link UserExtra} rows are updated in transactions of {@code hibernate.jdbc.batch_size}
+ * rows, also run on the pool.
+ * <p>
+ * Images which no line of the manifest references are not kept: once the manifest has been read, as it is first in
+ * exports, they are skipped, and those stored before it are discarded once the manifest has been applied.
+ */
+@Service
+public class ImageBulkService {
+
+    public static final String MANIFEST_NAME = "manifest.csv";
+
+    static final String MANIFEST_HEADER = "login,front_image,back_image";
+
+    static final String IMAGES_DIRECTORY = "images/";
+
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    private final Logger log = LoggerFactory.getLogger(ImageBulkService.class);
+
+    private final UserRepository userRepository;
+
+    private final UserExtraRepository userExtraRepository;
+
+    private final ImageBlobRepository imageBlobRepository;
+
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageBlobService imageBlobService;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final ImageBulkJobTracker imageBulkJobTracker;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ForkJoinPool pool;
+
+    private final int batchSize;
+
+    private final int maxImageSize;
+
+    public ImageBulkService(
+        UserRepository userRepository,
+        UserExtraRepository userExtraRepository,
+        ImageBlobRepository imageBlobRepository,
+        ContentAddressedImageStore imageStore,
+        ImageBlobService imageBlobService,
+        ImageDerivativeService imageDerivativeService,
+        ImageBulkJobTracker imageBulkJobTracker,
+        PlatformTransactionManager transactionManager,
+        @Qualifier("imageBulkPool") ForkJoinPool pool,
+        ApplicationProperties applicationProperties,
+        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:25}") int batchSize
+    ) {
+        this.userRepository = userRepository;
+        this.userExtraRepository = userExtraRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageStore = imageStore;
+        this.imageBlobService = imageBlobService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.imageBulkJobTracker = imageBulkJobTracker;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.maxImageSize = (int) applicationProperties.getUpload().getMaxPartSize().toBytes();
+    }
+
+    /**
+     * Imports an archive of images, pointing the {@link UserExtra} of each user of the manifest to its images.
+     * <p>
+     * Images which cannot be stored and manifest lines which cannot be applied are counted as failures
+     * and skipped.
+     *
+     * @param archive the zip or tar stream.
+     * @return the progress of the finished job.
+     * @throws IllegalArgumentException if the stream is not a zip or tar archive, or has no manifest.
+     * @throws IOException if the archive could not be read.
+     */
+    public ImageBulkJobTracker.Progress importArchive(InputStream archive) throws IOException {
+        ImageBulkJobTracker.Job job = imageBulkJobTracker.start(Direction.IMPORT);
+        log.info("Starting bulk image import {}", job.getId());
+        try {
+            Map<String, StoredImage> images = new ConcurrentHashMap<>();
+            List<ManifestRow> manifest = storeImages(archive, images, job);
+            if (manifest == null) {
+                images.values().forEach(this::discardIfUnreferenced);
+                throw new IllegalArgumentException("The archive has no " + MANIFEST_NAME);
+            }
+            applyManifest(manifest, images, job);
+            job.complete();
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+            throw e;
+        }
+        ImageBulkJobTracker.Progress progress = job.progress();
+        log.info(
+            "Finished bulk image import {}: {} images, {} users, {} failures",
+            job.getId(),
+            progress.getImages(),
+            progress.getUsers(),
+            progress.getFailures()
+        );
+        return progress;
+    }
+
+    /**
+     * Stores the images of the archive on the pool, at most two per worker at a time.
+     *
+     * @return the manifest, or {@code null} if the archive has none.
+     */
+    private List<ManifestRow> storeImages(InputStream archive, Map<String, StoredImage> images, ImageBulkJobTracker.Job job)
+        throws IOException {
+        int permits = pool.getParallelism() * 2;
+        Semaphore inFlight = new Semaphore(permits);
+        List<ManifestRow> manifest = null;
+        Set<String> referenced = null;
+        try (ArchiveInputStream in = openArchive(archive)) {
+            ArchiveEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = normalizeName(entry.getName());
+                if (!in.canReadEntryData(entry)) {
+                    log.warn("Skipping {}, which uses an unsupported archive feature", name);
+                    job.failed();
+                    continue;
+                }
+                if (MANIFEST_NAME.equals(name)) {
+                    // The reader is not closed, as it would close the archive
+                    manifest = parseManifest(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), job);
+                    referenced = imageNames(manifest);
+                    continue;
+                }
+                if (referenced != null && !referenced.contains(name)) {
+                    log.debug("Skipping {}, which no line of the manifest references", name);
+                    continue;
+                }
+                byte[] content = in.readNBytes(maxImageSize + 1);
+                if (content.length > maxImageSize) {
+                    log.warn("Skipping {}, which is larger than {} bytes", name, maxImageSize);
+                    job.failed();
+                    continue;
+                }
+                acquire(inFlight, 1);
+                CompletableFuture.runAsync(() -> storeImage(name, content, images, job), pool).whenComplete((result, e) -> inFlight.release());
+            }
+        } finally {
+            acquire(inFlight, permits);
+        }
+        return manifest;
+    }
+
+    private void storeImage(String name, byte[] content, Map<String, StoredImage> images, ImageBulkJobTracker.Job job) {
+        try {
+            images.put(name, imageStore.putImage(name, new ByteArrayInputStream(content)));
+            job.imageTransferred(content.length);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not store {}: {}", name, e.getMessage());
+            job.failed();
+        }
+    }
+
+    private void applyManifest(List<ManifestRow> manifest, Map<String, StoredImage> images, ImageBulkJobTracker.Job job) {
+        List<ManifestRow> rows = new ArrayList<>();
+        for (ManifestRow row : manifest) {
+            if (isMissing(row.frontImage, images) || isMissing(row.backImage, images)) {
+                log.warn("Skipping the images of {}, which are not in the archive", row.login);
+                job.failed();
+            } else {
+                rows.add(row);
+            }
+        }
+        retainReferences(rows, images);
+        // Only images of the rows were retained, the others were stored before the manifest was read
+        Set<String> retained = imageNames(rows).stream().map(name -> images.get(name).getContentKey()).collect(Collectors.toSet());
+        images.values().stream().filter(storedImage -> !retained.contains(storedImage.getContentKey())).forEach(this::discardIfUnreferenced);
+        List<List<ManifestRow>> batches = partition(rows);
+        pool.submit(() -> batches.parallelStream().forEach(batch -> updateUserExtras(batch, images, job))).join();
+    }
+
+    private static Set<String> imageNames(List<ManifestRow> rows) {
+        Set<String> names = new HashSet<>();
+        for (ManifestRow row : rows) {
+            if (row.frontImage != null) {
+                names.add(row.frontImage);
+            }
+            if (row.backImage != null) {
+                names.add(row.backImage);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Deletes an image stored by the import, unless something else references the same content.
+     */
+    private void discardIfUnreferenced(StoredImage storedImage) {
+        if (imageBlobRepository.existsById(storedImage.getContentKey())) {
+            return;
+        }
+        try {
+            imageStore.delete(storedImage.getContentKey());
+        } catch (IOException e) {
+            log.warn("Could not delete unreferenced image {}", storedImage.getContentKey(), e);
+        }
+    }
+
+    /**
+     * Adds the references of all the rows to the blobs up front, in key order, so that the batches updating
+     * the rows concurrently only ever lock existing blobs.
+     */
+    private void retainReferences(List<ManifestRow> rows, Map<String, StoredImage> images) {
+        Map<String, Integer> references = new TreeMap<>();
+        Map<String, StoredImage> storedImages = new HashMap<>();
+        for (ManifestRow row : rows) {
+            for (String name : new String[] { row.frontImage, row.backImage }) {
+                if (name != null) {
+                    StoredImage storedImage = images.get(name);
+                    references.merge(storedImage.getContentKey(), 1, Integer::sum);
+                    storedImages.put(storedImage.getContentKey(), storedImage);
+                }
+            }
+        }
+        List<String> contentKeys = new ArrayList<>(references.keySet());
+        for (int from = 0; from < contentKeys.size(); from += batchSize) {
+            List<String> batch = contentKeys.subList(from, Math.min(contentKeys.size(), from + batchSize));
+            transactionTemplate.executeWithoutResult(status ->
+                batch.forEach(contentKey -> imageBlobService.retain(storedImages.get(contentKey), references.get(contentKey)))
+            );
+        }
+    }
+
+    private void updateUserExtras(List<ManifestRow> batch, Map<String, StoredImage> images, ImageBulkJobTracker.Job job) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, User> users = userRepository
+                .findAllByLoginIn(batch.stream().map(row -> row.login).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(User::getLogin, Function.identity()));
+            Map<Long, UserExtra> userExtras = userExtraRepository
+                .findAllByUserIdIn(users.values().stream().map(User::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(userExtra -> userExtra.getUser().getId(), Function.identity()));
+            List<UserExtra> updated = new ArrayList<>();
+            List<String> released = new ArrayList<>();
+            Set<String> stored = new LinkedHashSet<>();
+            for (ManifestRow row : batch) {
+                String frontImage = contentKey(row.frontImage, images);
+                String backImage = contentKey(row.backImage, images);
+                User user = users.get(row.login);
+                if (user == null) {
+                    log.warn("Skipping the images of {}, which is not a user", row.login);
+                    job.failed();
+                    released.add(frontImage);
+                    released.add(backImage);
+                    continue;
+                }
+                UserExtra userExtra = userExtras.computeIfAbsent(user.getId(), id -> new UserExtra().user(user));
+                released.add(userExtra.getFrontImage());
+                released.add(userExtra.getBackImage());
+                userExtra.setFrontImage(frontImage);
+                userExtra.setBackImage(backImage);
+                updated.add(userExtra);
+                stored.add(frontImage);
+                stored.add(backImage);
+                job.userProcessed();
+            }
+            userExtraRepository.saveAll(updated);
+            released.stream().filter(ContentAddressedImageStore::isContentKey).sorted().forEach(imageBlobService::release);
+            stored.stream().filter(Objects::nonNull).forEach(imageDerivativeService::requestDerivatives);
+        });
+    }
+
+    /**
+     * Exports all the images of {@link UserExtra} as a zip stream.
+     * <p>
+     * The manifest is written first; images are then read on the pool ahead of the entry being written,
+     * and stored without compression since image formats are already compressed.
+     *
+     * @param out the stream to write to, which is not closed by this method.
+     * @throws IOException if the archive could not be written.
+     */
+    public void exportArchive(OutputStream out) throws IOException {
+        ImageBulkJobTracker.Job job = imageBulkJobTracker.start(Direction.EXPORT);
+        log.info("Starting bulk image export {}", job.getId());
+        try {
+            ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out);
+            writeManifest(zip, job);
+            writeImages(zip, job);
+            zip.finish();
+            zip.flush();
+            job.complete();
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+            throw e;
+        }
+        log.info("Finished bulk image export {}", job.getId());
+    }
+
+    private void writeManifest(ZipArchiveOutputStream zip, ImageBulkJobTracker.Job job) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(MANIFEST_NAME);
+        entry.setMethod(ZipEntry.DEFLATED);
+        zip.putArchiveEntry(entry);
+        // The writer is only flushed, as closing it would close the archive
+        Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        writer.write(MANIFEST_HEADER + "\n");
+        forEachPage(userExtras -> {
+            for (UserExtra userExtra : userExtras) {
+                writer.write(userExtra.getUser().getLogin() + "," + entryName(userExtra.getFrontImage()) + "," + entryName(userExtra.getBackImage()) + "\n");
+                job.userProcessed();
+            }
+        });
+        writer.flush();
+        zip.closeArchiveEntry();
+    }
+
+    private void writeImages(ZipArchiveOutputStream zip, ImageBulkJobTracker.Job job) throws IOException {
+        int window = pool.getParallelism() * 2;
+        Deque<CompletableFuture<ExportedImage>> reads = new ArrayDeque<>();
+        forEachPage(userExtras -> {
+            Set<String> contentKeys = new LinkedHashSet<>();
+            for (UserExtra userExtra : userExtras) {
+                contentKeys.add(userExtra.getFrontImage());
+                contentKeys.add(userExtra.getBackImage());
+            }
+            for (String contentKey : contentKeys) {
+                if (ContentAddressedImageStore.isContentKey(contentKey)) {
+                    reads.add(CompletableFuture.supplyAsync(() -> readImage(contentKey), pool));
+                    if (reads.size() >= window) {
+                        writeImage(zip, reads.poll().join(), job);
+                    }
+                }
+            }
+        });
+        while (!reads.isEmpty()) {
+            writeImage(zip, reads.poll().join(), job);
+        }
+    }
+
+    private ExportedImage readImage(String contentKey) {
+        try (ImageContent content = imageStore.open(contentKey); InputStream in = content.openStream(0, content.size())) {
+            return new ExportedImage(contentKey, in.readAllBytes());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read image {}: {}", contentKey, e.getMessage());
+            return new ExportedImage(contentKey, null);
+        }
+    }
+
+    private static void writeImage(ZipArchiveOutputStream zip, ExportedImage image, ImageBulkJobTracker.Job job) throws IOException {
+        if (image.content == null) {
+            job.failed();
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(image.content);
+        ZipArchiveEntry entry = new ZipArchiveEntry(IMAGES_DIRECTORY + image.contentKey);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(image.content.length);
+        entry.setCrc(crc.getValue());
+        zip.putArchiveEntry(entry);
+        zip.write(image.content);
+        zip.closeArchiveEntry();
+        job.imageTransferred(image.content.length);
+    }
+
+    @FunctionalInterface
+    private interface PageConsumer {
+        void accept(List<UserExtra> userExtras) throws IOException;
+    }
+
+    private void forEachPage(PageConsumer consumer) throws IOException {
+        Pageable pageable = PageRequest.of(0, EXPORT_PAGE_SIZE, Sort.by("id"));
+        Slice<UserExtra> page;
+        do {
+            page = userExtraRepository.findAllWithUserBy(pageable);
+            consumer.accept(page.getContent());
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+    }
+
+    /**
+     * Parses a manifest, keeping the last line of each login.
+     *
+     * @param reader the manifest.
+     * @param job the job, counting malformed lines as failures.
+     * @return the rows of the manifest.
+     * @throws IOException if the manifest could not be read.
+     */
+    static List<ManifestRow> parseManifest(BufferedReader reader, ImageBulkJobTracker.Job job) throws IOException {
+        Map<String, ManifestRow> rows = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith(MANIFEST_HEADER)) {
+                continue;
+            }
+            String[] columns = line.split(",", -1);
+            if (columns.length != 3 || columns[0].isBlank()) {
+                job.failed();
+                continue;
+            }
+            String login = columns[0].trim().toLowerCase(Locale.ENGLISH);
+            rows.put(login, new ManifestRow(login, imageName(columns[1]), imageName(columns[2])));
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private static String imageName(String column) {
+        String name = column.trim();
+        return name.isEmpty() ? null : normalizeName(name);
+    }
+
+    private static String normalizeName(String name) {
+        String normalized = name;
+        while (normalized.startsWith("./") || normalized.startsWith("/")) {
+            normalized = normalized.substring(normalized.indexOf('/') + 1);
+        }
+        return normalized;
+    }
+
+    private static String entryName(String contentKey) {
+        return ContentAddressedImageStore.isContentKey(contentKey) ? IMAGES_DIRECTORY + contentKey : "";
+    }
+
+    private static boolean isMissing(String name, Map<String, StoredImage> images) {
+        return name != null && !images.containsKey(name);
+    }
+
+    private static String contentKey(String name, Map<String, StoredImage> images) {
+        return name == null ? null : images.get(name).getContentKey();
+    }
+
+    private List<List<ManifestRow>> partition(List<ManifestRow> rows) {
+        List<List<ManifestRow>> batches = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            batches.add(rows.subList(from, Math.min(rows.size(), from + batchSize)));
+        }
+        return batches;
+    }
+
+    private static ArchiveInputStream openArchive(InputStream archive) throws IOException {
+        InputStream in = new BufferedInputStream(archive);
+        try {
+            String format = ArchiveStreamFactory.detect(in);
+            if (!ArchiveStreamFactory.ZIP.equals(format) && !ArchiveStreamFactory.TAR.equals(format)) {
+                throw new IllegalArgumentException("Unsupported archive format " + format + ", expected zip or tar");
+            }
+            return new ArchiveStreamFactory().createArchiveInputStream(format, in);
+        } catch (ArchiveException e) {
+            throw new IllegalArgumentException("Unsupported archive format, expected zip or tar", e);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore, int permits) throws InterruptedIOException {
+        try {
+            semaphore.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the images being stored");
+        }
+    }
+
+    static class ManifestRow {
+
+        final String login;
+
+        final String frontImage;
+
+        final String backImage;
+
+        ManifestRow(String login, String frontImage, String backImage) {
+            this.login = login;
+            this.frontImage = frontImage;
+            this.backImage = backImage;
+        }
+    }
+
+    private static class ExportedImage {
+
+        private final String contentKey;
+
+        private final byte[] content;
+
+        ExportedImage(String contentKey, byte[] content) {
+            this.contentKey = contentKey;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.demo.upload.service;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.domain.ImageDerivative;
+import com.demo.upload.repository.ImageBlobRepository;
+import com.demo.upload.repository.ImageDerivativeRepository;
+import com.demo.upload.service.storage.ImageContent;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.ImageDecodeException;
+import com.demo.upload.service.upload.ImageDecoder;
+import com.demo.upload.service.upload.ImageDecoder.DecodedImage;
+import com.demo.upload.service.upload.ImageDimensionLimitExceededException;
+import com.demo.upload.service.upload.ImageResizer;
+import com.demo.upload.service.upload.StoredImage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service class generating the resized copies of stored images configured in {@code application.derivatives.sizes}.
+ * <p>
+ * Derivatives are generated on the {@code imageDerivativeExecutor} once the transaction storing an image
+ * has committed. Requests for an image whose derivatives are already being generated share the same task,
+ * and the number of such images is published as the {@value #PENDING_METER_NAME} gauge. Images are decoded by the
+ * {@link ImageDecoder}, so the pixels decoded at once by all the tasks stay within its budget.
+ */
+@Service
+@Transactional
+public class ImageDerivativeService {
+
+    public static final String PENDING_METER_NAME = "image.derivatives.pending";
+
+    private static final String PENDING_METER_DESCRIPTION = "Number of images waiting for or generating their derivatives";
+
+    private final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private final ImageDerivativeRepository imageDerivativeRepository;
+
+    private final ImageBlobRepository imageBlobRepository;
+
+    private final ImageBlobService imageBlobService;
+
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageDecoder imageDecoder;
+
+    private final Executor executor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, Integer> sizes;
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    public ImageDerivativeService(
+        ImageDerivativeRepository imageDerivativeRepository,
+        ImageBlobRepository imageBlobRepository,
+        ImageBlobService imageBlobService,
+        ContentAddressedImageStore imageStore,
+        ImageDecoder imageDecoder,
+        @Qualifier("imageDerivativeExecutor") Executor executor,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.imageDerivativeRepository = imageDerivativeRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageBlobService = imageBlobService;
+        this.imageStore = imageStore;
+        this.imageDecoder = imageDecoder;
+        this.executor = executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Generation may run from an afterCommit callback, where the committed transaction is still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sizes = new LinkedHashMap<>(applicationProperties.getDerivatives().getSizes());
+
+        Gauge.builder(PENDING_METER_NAME, pending, Map::size).description(PENDING_METER_DESCRIPTION).register(meterRegistry);
+    }
+
+    /**
+     * @return the names of the configured derivative sizes.
+     */
+    public Set<String> getSizes() {
+        return sizes.keySet();
+    }
+
+    /**
+     * Schedules the generation of the derivatives of an image, once the current transaction has committed.
+     *
+     * @param sourceKey the content key of the image.
+     */
+    public void requestDerivatives(String sourceKey) {
+        if (!ContentAddressedImageStore.isContentKey(sourceKey) || sizes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(sourceKey);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(sourceKey);
+                }
+            }
+        );
+    }
+
+    /**
+     * Looks up a derivative of an image, scheduling its generation if it does not exist yet.
+     *
+     * @param sourceKey the content key of the image.
+     * @param size the name of the derivative size.
+     * @return the content key of the derivative, or empty while it is being generated.
+     */
+    public Optional<String> resolveDerivative(String sourceKey, String size) {
+        Optional<String> derivativeKey = imageDerivativeRepository
+            .findOneBySourceKeyAndVariant(sourceKey, size)
+            .map(ImageDerivative::getDerivativeKey);
+        if (derivativeKey.isEmpty()) {
+            requestDerivatives(sourceKey);
+        }
+        return derivativeKey;
+    }
+
+    CompletableFuture<Void> submit(String sourceKey) {
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pending.putIfAbsent(sourceKey, task);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(sourceKey);
+                    task.complete(null);
+                } catch (Exception e) {
+                    log.warn("Could not generate the derivatives of {}", sourceKey, e);
+                    task.completeExceptionally(e);
+                } finally {
+                    pending.remove(sourceKey, task);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not schedule the derivatives of {}", sourceKey, e);
+            pending.remove(sourceKey, task);
+            task.completeExceptionally(e);
+        }
+        return task;
+    }
+
+    private void generate(String sourceKey) throws IOException {
+        Set<String> existing = imageDerivativeRepository
+            .findAllBySourceKey(sourceKey)
+            .stream()
+            .map(ImageDerivative::getVariant)
+            .collect(Collectors.toSet());
+        if (existing.containsAll(sizes.keySet())) {
+            return;
+        }
+
+        DecodedImage decoded;
+        try (ImageContent content = imageStore.open(sourceKey); InputStream in = content.openStream(0, content.size())) {
+            decoded = imageDecoder.decode(in);
+        } catch (NoSuchFileException e) {
+            log.debug("Image {} was deleted before its derivatives were generated", sourceKey);
+            return;
+        } catch (ImageDecodeException | ImageDimensionLimitExceededException e) {
+            log.debug("Content {} is not an accepted image, no derivatives generated: {}", sourceKey, e.getMessage());
+            return;
+        }
+
+        List<ImageDerivative> derivatives = new ArrayList<>();
+        Map<String, StoredImage> storedImages = new LinkedHashMap<>();
+        // Closing the decoded image gives its pixels back to the decode budget
+        try (DecodedImage source = decoded) {
+            for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+                if (existing.contains(size.getKey())) {
+                    continue;
+                }
+                BufferedImage image = ImageResizer.scaleDown(source.getImage(), size.getValue());
+                ImageDerivative derivative = new ImageDerivative().sourceKey(sourceKey).variant(size.getKey());
+                if (image == null) {
+                    // The image already fits, the derivative is the image itself
+                    image = source.getImage();
+                    derivative.setDerivativeKey(sourceKey);
+                } else {
+                    byte[] content = ImageResizer.encode(image, source.getFormatName());
+                    StoredImage storedImage = imageStore.put(
+                        size.getKey() + "-" + sourceKey,
+                        new ByteArrayInputStream(content),
+                        Long.MAX_VALUE
+                    );
+                    storedImages.put(size.getKey(), storedImage);
+                    derivative.setDerivativeKey(storedImage.getContentKey());
+                }
+                derivatives.add(derivative.width(image.getWidth()).height(image.getHeight()));
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> save(sourceKey, derivatives, storedImages));
+        log.debug("Generated derivatives {}", derivatives);
+    }
+
+    private void save(String sourceKey, List<ImageDerivative> derivatives, Map<String, StoredImage> storedImages) {
+        // Locking the source blob keeps it from being released while its derivatives are saved
+        if (imageBlobRepository.findOneForUpdate(sourceKey).isEmpty()) {
+            log.debug("Image {} was released before its derivatives were saved", sourceKey);
+            storedImages.values().forEach(this::discardIfUnreferenced);
+            return;
+        }
+        for (ImageDerivative derivative : derivatives) {
+            StoredImage storedImage = storedImages.get(derivative.getVariant());
+            if (imageDerivativeRepository.findOneBySourceKeyAndVariant(sourceKey, derivative.getVariant()).isPresent()) {
+                if (storedImage != null) {
+                    discardIfUnreferenced(storedImage);
+                }
+                continue;
+            }
+            imageDerivativeRepository.save(derivative);
+            if (storedImage != null) {
+                imageBlobService.retain(storedImage);
+            }
+        }
+    }
+
+    private void discardIfUnreferenced(StoredImage storedImage) {
+        if (imageBlobRepository.existsById(storedImage.getContentKey())) {
+            return;
+        }
+        try {
+            imageStore.delete(storedImage.getContentKey());
+        } catch (IOException e) {
+            log.warn("Could not delete unreferenced derivative {}", storedImage.getContentKey(), e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.demo.upload.service;
+
+public class InvalidImageReferenceException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidImageReferenceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,122 @@
+package com.demo.upload.service;
+
+import com.demo.upload.domain.User;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Position of a keyset pagination of users: the order, and the sort value and id of the last user returned.
+ * <p>
+ * It is sent to clients as an opaque URL-safe token, which only resumes the pagination it was created for.
+ */
+final class KeysetCursor {
+
+    /**
+     * Properties users can be paginated on: they never hold null, which a {@code (value, id)} comparison could not seek past.
+     */
+    static final Set<String> PROPERTIES = Set.of("id", "login", "activated");
+
+    private static final String VERSION = "1";
+
+    private static final String SEPARATOR = ":";
+
+    private final Sort.Order order;
+
+    private final Object value;
+
+    private final Long id;
+
+    private KeysetCursor(Sort.Order order, Object value, Long id) {
+        this.order = order;
+        this.value = value;
+        this.id = id;
+    }
+
+    static KeysetCursor after(Sort.Order order, User user) {
+        return new KeysetCursor(order, valueOf(order.getProperty(), user), user.getId());
+    }
+
+    /**
+     * Decodes a token for the given order.
+     *
+     * @param token the token, empty for the first page.
+     * @param order the order of the pagination.
+     * @return the cursor, with a {@code null} id for the first page.
+     * @throws InvalidCursorException if the order cannot be paginated, or the token is malformed or was created for another order.
+     */
+    static KeysetCursor decode(String token, Sort.Order order) {
+        if (!PROPERTIES.contains(order.getProperty())) {
+            throw new InvalidCursorException("Users cannot be paginated with a cursor on " + order.getProperty());
+        }
+        if (token.isEmpty()) {
+            return new KeysetCursor(order, null, null);
+        }
+        String[] fields;
+        try {
+            fields = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, 5);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+        if (
+            fields.length != 5 ||
+            !VERSION.equals(fields[0]) ||
+            !order.getProperty().equals(fields[1]) ||
+            !order.getDirection().name().equals(fields[2])
+        ) {
+            throw new InvalidCursorException("The cursor does not belong to this pagination");
+        }
+        try {
+            return new KeysetCursor(order, parseValue(order.getProperty(), fields[4]), Long.valueOf(fields[3]));
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+    }
+
+    String encode() {
+        String payload = String.join(
+            SEPARATOR,
+            VERSION,
+            order.getProperty(),
+            order.getDirection().name(),
+            String.valueOf(id),
+            String.valueOf(value)
+        );
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Sort.Order getOrder() {
+        return order;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    private static Object valueOf(String property, User user) {
+        switch (property) {
+            case "login":
+                return user.getLogin();
+            case "activated":
+                return user.isActivated();
+            default:
+                return user.getId();
+        }
+    }
+
+    private static Object parseValue(String property, String value) {
+        switch (property) {
+            case "login":
+                return value;
+            case "activated":
+                return Boolean.valueOf(value);
+            default:
+                return Long.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.demo.upload.service;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.domain.MailOutboxMessage;
+import com.demo.upload.domain.enumeration.MailOutboxStatus;
+import com.demo.upload.management.MailMetersService;
+import com.demo.upload.repository.MailOutboxRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Sends the emails queued in the outbox by the {@link MailService}.
+ * <p>
+ * Due emails are claimed by batches of {@code application.mail-outbox.batch-size}, skipping those locked by another
+ * instance: a short transaction marks them {@link MailOutboxStatus#SENDING} until {@code send-lease} from now, so
+ * that no row lock or connection is held while the batch is sent through a single SMTP connection. The results are
+ * then recorded in a second short transaction, unless the lease expired in the meantime and the emails were claimed
+ * again. Emails whose lease expired, e.g. because their instance stopped, are sent again.
+ * <p>
+ * Sent emails are deleted. Failed ones are retried after a delay doubling at each attempt, and dead-lettered after
+ * {@code max-attempts} attempts: they stay in the outbox with the {@link MailOutboxStatus#DEAD} status and their last
+ * error.
+ */
+@Service
+public class MailDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(MailDispatcher.class);
+
+    private final MailOutboxRepository mailOutboxRepository;
+
+    private final JavaMailSender javaMailSender;
+
+    private final JHipsterProperties jHipsterProperties;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final MailMetersService mailMetersService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public MailDispatcher(
+        MailOutboxRepository mailOutboxRepository,
+        JavaMailSender javaMailSender,
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        MailMetersService mailMetersService,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.javaMailSender = javaMailSender;
+        this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.mailMetersService = mailMetersService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Sends the due emails, batch after batch until none is left.
+     */
+    @Scheduled(
+        initialDelayString = "${application.mail-outbox.poll-interval:PT5S}",
+        fixedDelayString = "${application.mail-outbox.poll-interval:PT5S}"
+    )
+    public void dispatch() {
+        int batchSize = applicationProperties.getMailOutbox().getBatchSize();
+        Integer dispatched;
+        do {
+            dispatched = dispatchBatch(batchSize);
+        } while (dispatched == batchSize);
+        mailMetersService.setOutboxDepth(
+            mailOutboxRepository.countByStatus(MailOutboxStatus.PENDING) + mailOutboxRepository.countByStatus(MailOutboxStatus.SENDING),
+            mailOutboxRepository.countByStatus(MailOutboxStatus.DEAD)
+        );
+    }
+
+    private int dispatchBatch(int batchSize) {
+        Instant now = Instant.now();
+        // Truncated to what the database stores, as the lease identifies the claim when the results are recorded
+        Instant leaseExpiry = now.plus(applicationProperties.getMailOutbox().getSendLease()).truncatedTo(ChronoUnit.MILLIS);
+        List<MailOutboxMessage> batch = transactionTemplate.execute(status -> claim(batchSize, now, leaseExpiry));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<MimeMessage, MailOutboxMessage> mimeMessages = new IdentityHashMap<>();
+        Map<MailOutboxMessage, Exception> failures = new IdentityHashMap<>();
+        for (MailOutboxMessage message : batch) {
+            try {
+                mimeMessages.put(toMimeMessage(message), message);
+            } catch (MessagingException e) {
+                failures.put(message, e);
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            javaMailSender.send(mimeMessages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                mimeMessages.values().forEach(message -> failures.put(message, e));
+            }
+            e.getFailedMessages().forEach((mimeMessage, failure) -> failures.put(mimeMessages.get(mimeMessage), failure));
+        } catch (MailException e) {
+            mimeMessages.values().forEach(message -> failures.put(message, e));
+        }
+        mailMetersService.recordSend(System.nanoTime() - start);
+
+        transactionTemplate.executeWithoutResult(status -> record(batch, failures, leaseExpiry));
+        return batch.size();
+    }
+
+    /**
+     * Marks the due emails as being sent until the lease expires, including those whose previous lease expired.
+     */
+    private List<MailOutboxMessage> claim(int batchSize, Instant now, Instant leaseExpiry) {
+        List<MailOutboxMessage> batch = mailOutboxRepository.findAllByStatusInAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+            List.of(MailOutboxStatus.PENDING, MailOutboxStatus.SENDING),
+            now,
+            PageRequest.of(0, batchSize)
+        );
+        for (MailOutboxMessage message : batch) {
+            message.setStatus(MailOutboxStatus.SENDING);
+            message.setNextAttemptAt(leaseExpiry);
+        }
+        mailOutboxRepository.saveAll(batch);
+        return batch;
+    }
+
+    /**
+     * Deletes the sent emails and schedules the failed ones, skipping those claimed again since their lease expired.
+     */
+    private void record(List<MailOutboxMessage> batch, Map<MailOutboxMessage, Exception> failures, Instant leaseExpiry) {
+        List<Long> ids = batch.stream().map(MailOutboxMessage::getId).collect(Collectors.toList());
+        Map<Long, MailOutboxMessage> claimed = new HashMap<>();
+        for (MailOutboxMessage message : mailOutboxRepository.findAllById(ids)) {
+            if (message.getStatus() == MailOutboxStatus.SENDING && leaseExpiry.equals(message.getNextAttemptAt())) {
+                claimed.put(message.getId(), message);
+            }
+        }
+        Instant now = Instant.now();
+        List<MailOutboxMessage> sent = new ArrayList<>();
+        for (MailOutboxMessage message : batch) {
+            Exception failure = failures.get(message);
+            MailOutboxMessage current = claimed.get(message.getId());
+            if (current == null) {
+                log.warn("Lease of the email to '{}' expired while it was being sent, it was claimed again", message.getRecipient());
+            } else if (failure == null) {
+                sent.add(current);
+                mailMetersService.mailSent(Duration.between(current.getCreatedDate(), now));
+            } else {
+                retryOrDeadLetter(current, failure, now);
+            }
+        }
+        mailOutboxRepository.deleteAll(sent);
+        log.debug("Sent {} emails, {} failed", sent.size(), failures.size());
+    }
+
+    private MimeMessage toMimeMessage(MailOutboxMessage message) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, message.isMultipart(), StandardCharsets.UTF_8.name());
+        helper.setTo(message.getRecipient());
+        helper.setFrom(jHipsterProperties.getMail().getFrom());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getContent(), message.isHtml());
+        return mimeMessage;
+    }
+
+    private void retryOrDeadLetter(MailOutboxMessage message, Exception failure, Instant now) {
+        ApplicationProperties.MailOutbox mailOutbox = applicationProperties.getMailOutbox();
+        message.setAttempts(message.getAttempts() + 1);
+        message.setLastError(abbreviate(String.valueOf(failure.getMessage())));
+        if (message.getAttempts() >= mailOutbox.getMaxAttempts()) {
+            message.setStatus(MailOutboxStatus.DEAD);
+            mailMetersService.mailDead();
+            log.error("Email to '{}' dead-lettered after {} attempts", message.getRecipient(), message.getAttempts(), failure);
+            return;
+        }
+        message.setStatus(MailOutboxStatus.PENDING);
+        message.setNextAttemptAt(now.plus(backoff(message.getAttempts(), mailOutbox)));
+        mailMetersService.mailRetried();
+        log.warn("Email to '{}' could not be sent, retrying at {}: {}", message.getRecipient(), message.getNextAttemptAt(), failure.getMessage());
+    }
+
+    /**
+     * @return the delay after the given number of failed attempts.
+     */
+    static Duration backoff(int attempts, ApplicationProperties.MailOutbox mailOutbox) {
+        Duration max = mailOutbox.getMaxBackoff();
+        Duration backoff = mailOutbox.getInitialBackoff();
+        for (int i = 1; i < attempts && backoff.compareTo(max) < 0; i++) {
+            backoff = backoff.multipliedBy(2);
+        }
+        return backoff.compareTo(max) < 0 ? backoff : max;
+    }
+
+    private static String abbreviate(String error) {
+        return error.length() <= MailOutboxMessage.LAST_ERROR_LENGTH ? error : error.substring(0, MailOutboxMessage.LAST_ERROR_LENGTH);
+    }
+}
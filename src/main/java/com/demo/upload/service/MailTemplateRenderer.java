@@ -0,0 +1,274 @@
+package com.demo.upload.service;
+
+import com.demo.upload.domain.User;
+import com.demo.upload.management.MailMetersService;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Renders the email templates, precompiled per template and locale.
+ * <p>
+ * A template is compiled by running it once for a placeholder user whose text properties are unique tokens: its output
+ * is split around the tokens into static fragments, and its subject resolved. Rendering an email for a user then only
+ * joins the fragments with the properties of the user.
+ * <p>
+ * The first {@value #VERIFIED_RENDERS} precompiled emails of each template and locale, then one in
+ * {@value #VERIFICATION_INTERVAL}, are checked against a full template run, and the template falls back to full runs
+ * as soon as they differ, e.g. when it branches on a property of the user. So do the users with a property that the
+ * template would have escaped, or without one of the properties it uses.
+ * <p>
+ * Compiled templates are only kept when {@code spring.thymeleaf.cache} is enabled, so that templates can be edited in
+ * dev; a batch of users is still rendered with one compilation per locale.
+ */
+@Service
+public class MailTemplateRenderer {
+
+    private static final String USER = "user";
+
+    private static final String BASE_URL = "baseUrl";
+
+    private static final int VERIFIED_RENDERS = 16;
+
+    private static final int VERIFICATION_INTERVAL = 100;
+
+    private static final List<UserProperty> USER_PROPERTIES = List.of(
+        new UserProperty(User::getLogin, User::setLogin),
+        new UserProperty(User::getFirstName, User::setFirstName),
+        new UserProperty(User::getLastName, User::setLastName),
+        new UserProperty(User::getEmail, User::setEmail),
+        new UserProperty(User::getImageUrl, User::setImageUrl),
+        new UserProperty(User::getActivationKey, User::setActivationKey),
+        new UserProperty(User::getResetKey, User::setResetKey)
+    );
+
+    private final Logger log = LoggerFactory.getLogger(MailTemplateRenderer.class);
+
+    private final Map<String, CompiledTemplate> compiledTemplates = new ConcurrentHashMap<>();
+
+    // Lower case letters and digits, which are neither escaped nor case-converted
+    private final String tokenPrefix = "mailvar" + Long.toHexString(new SecureRandom().nextLong()) + "n";
+
+    private final Pattern tokenPattern = Pattern.compile(Pattern.quote(tokenPrefix) + "(\\d+)x");
+
+    private final JHipsterProperties jHipsterProperties;
+
+    private final MessageSource messageSource;
+
+    private final SpringTemplateEngine templateEngine;
+
+    private final MailMetersService mailMetersService;
+
+    private final boolean cacheEnabled;
+
+    public MailTemplateRenderer(
+        JHipsterProperties jHipsterProperties,
+        MessageSource messageSource,
+        SpringTemplateEngine templateEngine,
+        MailMetersService mailMetersService,
+        @Value("${spring.thymeleaf.cache:true}") boolean cacheEnabled
+    ) {
+        this.jHipsterProperties = jHipsterProperties;
+        this.messageSource = messageSource;
+        this.templateEngine = templateEngine;
+        this.mailMetersService = mailMetersService;
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public RenderedEmail render(User user, String templateName, String titleKey) {
+        return render(List.of(user), templateName, titleKey).get(0);
+    }
+
+    /**
+     * Renders a template for each user, in the locale of the user.
+     *
+     * @return the emails, in the order of the users.
+     */
+    public List<RenderedEmail> render(List<User> users, String templateName, String titleKey) {
+        Map<Locale, CompiledTemplate> batchTemplates = new HashMap<>();
+        List<RenderedEmail> emails = new ArrayList<>(users.size());
+        for (User user : users) {
+            Locale locale = Locale.forLanguageTag(user.getLangKey());
+            CompiledTemplate template = batchTemplates.computeIfAbsent(locale, l -> getCompiledTemplate(templateName, titleKey, l));
+            emails.add(new RenderedEmail(template.subject, render(template, user)));
+        }
+        return emails;
+    }
+
+    private CompiledTemplate getCompiledTemplate(String templateName, String titleKey, Locale locale) {
+        if (!cacheEnabled) {
+            mailMetersService.renderCacheMiss();
+            return compile(templateName, titleKey, locale);
+        }
+        String key = templateName + '|' + titleKey + '|' + locale.toLanguageTag();
+        CompiledTemplate template = compiledTemplates.get(key);
+        if (template != null) {
+            mailMetersService.renderCacheHit();
+            return template;
+        }
+        mailMetersService.renderCacheMiss();
+        return compiledTemplates.computeIfAbsent(key, k -> compile(templateName, titleKey, locale));
+    }
+
+    private CompiledTemplate compile(String templateName, String titleKey, Locale locale) {
+        User placeholder = new User();
+        for (int i = 0; i < USER_PROPERTIES.size(); i++) {
+            USER_PROPERTIES.get(i).setter.accept(placeholder, tokenPrefix + i + "x");
+        }
+        String content = process(templateName, locale, placeholder);
+        List<String> fragments = new ArrayList<>();
+        List<UserProperty> properties = new ArrayList<>();
+        Matcher matcher = tokenPattern.matcher(content);
+        int start = 0;
+        while (matcher.find()) {
+            fragments.add(content.substring(start, matcher.start()));
+            properties.add(USER_PROPERTIES.get(Integer.parseInt(matcher.group(1))));
+            start = matcher.end();
+        }
+        fragments.add(content.substring(start));
+        log.debug("Compiled email template {} for locale {} into {} fragments", templateName, locale, fragments.size());
+        return new CompiledTemplate(templateName, locale, messageSource.getMessage(titleKey, null, locale), fragments, properties);
+    }
+
+    private String render(CompiledTemplate template, User user) {
+        long start = System.nanoTime();
+        String content = template.precompiled ? template.substitute(user) : null;
+        if (content != null && isVerified(template.renders.getAndIncrement())) {
+            String expected = process(template.templateName, template.locale, user);
+            if (!expected.equals(content)) {
+                log.warn("Email template {} cannot be precompiled for locale {}, rendering it in full", template.templateName, template.locale);
+                template.precompiled = false;
+                mailMetersService.recordRender(System.nanoTime() - start, false);
+                return expected;
+            }
+        }
+        boolean precompiled = content != null;
+        if (!precompiled) {
+            content = process(template.templateName, template.locale, user);
+        }
+        mailMetersService.recordRender(System.nanoTime() - start, precompiled);
+        return content;
+    }
+
+    private String process(String templateName, Locale locale, User user) {
+        Context context = new Context(locale);
+        context.setVariable(USER, user);
+        context.setVariable(BASE_URL, jHipsterProperties.getMail().getBaseUrl());
+        return templateEngine.process(templateName, context);
+    }
+
+    /**
+     * @return whether the given precompiled render of a template is to be checked against a full template run.
+     */
+    private static boolean isVerified(long render) {
+        return render < VERIFIED_RENDERS || render % VERIFICATION_INTERVAL == 0;
+    }
+
+    /**
+     * @return whether the value can be substituted as is, in HTML text or attributes.
+     */
+    private static boolean isVerbatim(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < ' ' || c > '~' || c == '&' || c == '<' || c == '>' || c == '"' || c == '\'') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The subject and content of an email.
+     */
+    public static final class RenderedEmail {
+
+        private final String subject;
+
+        private final String content;
+
+        RenderedEmail(String subject, String content) {
+            this.subject = subject;
+            this.content = content;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+
+    private static final class UserProperty {
+
+        private final Function<User, String> getter;
+
+        private final BiConsumer<User, String> setter;
+
+        private UserProperty(Function<User, String> getter, BiConsumer<User, String> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private static final class CompiledTemplate {
+
+        private final String templateName;
+
+        private final Locale locale;
+
+        private final String subject;
+
+        private final List<String> fragments;
+
+        private final List<UserProperty> properties;
+
+        private final int length;
+
+        private final AtomicLong renders = new AtomicLong();
+
+        private volatile boolean precompiled = true;
+
+        private CompiledTemplate(String templateName, Locale locale, String subject, List<String> fragments, List<UserProperty> properties) {
+            this.templateName = templateName;
+            this.locale = locale;
+            this.subject = subject;
+            this.fragments = fragments;
+            this.properties = properties;
+            this.length = fragments.stream().mapToInt(String::length).sum();
+        }
+
+        /**
+         * @return the content for the user, or {@code null} if one of its properties cannot be substituted.
+         */
+        private String substitute(User user) {
+            StringBuilder content = new StringBuilder(length + 32 * properties.size());
+            for (int i = 0; i < properties.size(); i++) {
+                String value = properties.get(i).getter.apply(user);
+                if (value == null || !isVerbatim(value)) {
+                    return null;
+                }
+                content.append(fragments.get(i)).append(value);
+            }
+            return content.append(fragments.get(properties.size())).toString();
+        }
+    }
+}
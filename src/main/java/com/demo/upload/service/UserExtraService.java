@@ -1,137 +1,477 @@
 package com.demo.upload.service;
 
+import com.demo.upload.domain.User;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserExtraSummary;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.security.SecurityUtils;
+import com.demo.upload.service.dto.UserExtraDTO;
+import com.demo.upload.service.dto.UserExtraPatchResultDTO;
+import com.demo.upload.service.dto.UserExtraPatchResultDTO.Status;
+import com.demo.upload.service.mapper.UserExtraMapper;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.StoredImage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.FileSystemUtils;
-import org.springframework.web.multipart.MultipartFile;
-
-import com.demo.upload.domain.User;
-import com.demo.upload.repository.UserExtraRepository;
-import com.demo.upload.repository.UserRepository;
-import com.demo.upload.security.SecurityUtils;
 
+/**
+ * Service class for managing the images of {@link UserExtra}.
+ * <p>
+ * Images are kept in the {@link ContentAddressedImageStore}, and {@link UserExtra#getFrontImage()} and
+ * {@link UserExtra#getBackImage()} hold their content keys.
+ */
 @Service
 @Transactional
 public class UserExtraService {
-	
-    private final Logger log = LoggerFactory.getLogger(UserService.class);
+
+    /**
+     * Number of userExtras written between two flushes of an export.
+     */
+    private static final int EXPORT_FLUSH_INTERVAL = 100;
+
+    private final Logger log = LoggerFactory.getLogger(UserExtraService.class);
 
     private final UserExtraRepository userExtraRepository;
-    
+
     private final UserRepository userRepository;
 
+    private final ContentAddressedImageStore imageStore;
 
-    private final Path rootFrontImage = Paths.get("uploadsFrontImage");
-    private final Path rootBackImage = Paths.get("uploadsBackImage");
-
-
-	
-	 public UserExtraService(UserExtraRepository userExtraRepository, UserRepository userRepository) {
-		this.userExtraRepository = userExtraRepository;
-		this.userRepository = userRepository;
-
-	}
-
-	 
-	 public void updateUserExtraWithImage(String frontImageUr, String backImageUr) {
-		 String userLogin = SecurityUtils
-		            .getCurrentUserLogin()
-		            .orElseThrow(null);
-	     User user = userRepository.findOneByLogin(userLogin).orElse(null);	     
-	     com.demo.upload.domain.UserExtra userExtra = (com.demo.upload.domain.UserExtra)userExtraRepository.findByUserId( user.getId() ).orElse(null);
-	 
-	     userExtra.setFrontImage(frontImageUr);
-	     userExtra.setBackImage(backImageUr);
-
-	     userExtraRepository.save(userExtra);
-	 
-	 }
-	 
-	 
-	 
-	 
-	 
-	 
-	 
-	 
-	 
-	
-	public void initFrontImageDirectory() {
-        try {
-          Files.createDirectory(rootFrontImage);
-        } catch (IOException e) {
-          throw new RuntimeException("Could not initialize folder for upload!");
+    private final ImageBlobService imageBlobService;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final UserExtraMapper userExtraMapper;
+
+    private final ObjectWriter userExtraWriter;
+
+    public UserExtraService(
+        UserExtraRepository userExtraRepository,
+        UserRepository userRepository,
+        ContentAddressedImageStore imageStore,
+        ImageBlobService imageBlobService,
+        ImageDerivativeService imageDerivativeService,
+        UserExtraMapper userExtraMapper,
+        ObjectMapper objectMapper
+    ) {
+        this.userExtraRepository = userExtraRepository;
+        this.userRepository = userRepository;
+        this.imageStore = imageStore;
+        this.imageBlobService = imageBlobService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.userExtraMapper = userExtraMapper;
+        this.userExtraWriter = objectMapper.writerFor(UserExtraDTO.class);
+    }
+
+    /**
+     * Save a userExtra.
+     *
+     * @param userExtraDTO the entity to save.
+     * @return the persisted entity.
+     */
+    public UserExtraDTO save(UserExtraDTO userExtraDTO) {
+        log.debug("Request to save UserExtra : {}", userExtraDTO);
+        UserExtra userExtra = userExtraMapper.toEntity(userExtraDTO);
+        replaceImages(images(null), images(userExtra));
+        userExtra = userExtraRepository.save(userExtra);
+        return userExtraMapper.toDto(userExtra);
+    }
+
+    /**
+     * Update a userExtra.
+     *
+     * @param userExtraDTO the entity to save.
+     * @return the persisted entity.
+     */
+    public UserExtraDTO update(UserExtraDTO userExtraDTO) {
+        log.debug("Request to update UserExtra : {}", userExtraDTO);
+        List<String> previousImages = images(userExtraRepository.findById(userExtraDTO.getId()).orElse(null));
+        UserExtra userExtra = userExtraMapper.toEntity(userExtraDTO);
+        replaceImages(previousImages, images(userExtra));
+        userExtra = userExtraRepository.save(userExtra);
+        return userExtraMapper.toDto(userExtra);
+    }
+
+    /**
+     * Partially update a userExtra.
+     *
+     * @param userExtraDTO the entity to update partially.
+     * @return the persisted entity.
+     */
+    public Optional<UserExtraDTO> partialUpdate(UserExtraDTO userExtraDTO) {
+        log.debug("Request to partially update UserExtra : {}", userExtraDTO);
+
+        return userExtraRepository
+            .findOneWithUserById(userExtraDTO.getId())
+            .map(existingUserExtra -> {
+                List<String> previousImages = images(existingUserExtra);
+                userExtraMapper.partialUpdate(existingUserExtra, userExtraDTO);
+                replaceImages(previousImages, images(existingUserExtra));
+
+                return existingUserExtra;
+            })
+            .map(userExtraRepository::save)
+            .map(userExtraMapper::toDto);
+    }
+
+    /**
+     * Partially update many userExtras at once.
+     * <p>
+     * A patch with an id updates that userExtra. A patch without an id but with a user updates the userExtra of that
+     * user, or creates it. The existing userExtras of all the patches are read in one query, and the updates are
+     * flushed as JDBC batches when the transaction commits. Patches that do not match anything, or that reference
+     * images which are not stored, are reported and skipped, without failing the others.
+     * <p>
+     * The images of the patches are checked in one query. The new images are retained, and the images they replace
+     * released, in the same transaction.
+     *
+     * @param patches the patches to apply, in order.
+     * @return the result of each patch, in the same order.
+     */
+    public List<UserExtraPatchResultDTO> partialUpdateAll(List<UserExtraDTO> patches) {
+        log.debug("Request to partially update {} UserExtras", patches.size());
+        Set<Long> ids = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (UserExtraDTO patch : patches) {
+            if (patch.getId() != null) {
+                ids.add(patch.getId());
+            } else if (patch.getUser() != null && patch.getUser().getId() != null) {
+                userIds.add(patch.getUser().getId());
+            }
         }
-      }
-	
-	public void initBackImageDirectory() {
-        try {
-          Files.createDirectory(rootBackImage);
+        Map<Long, UserExtra> byId = new HashMap<>();
+        Map<Long, UserExtra> byUserId = new HashMap<>();
+        for (UserExtra userExtra : findAllByIdOrUserId(ids, userIds)) {
+            byId.put(userExtra.getId(), userExtra);
+            // The id of a lazy user is read from the foreign key, without loading the user
+            if (userExtra.getUser() != null) {
+                byUserId.put(userExtra.getUser().getId(), userExtra);
+            }
+        }
+        userIds.removeAll(byUserId.keySet());
+        Map<Long, User> newUsers = userIds.isEmpty()
+            ? Map.of()
+            : userRepository.findAllById(userIds).stream().collect(Collectors.toMap(User::getId, Function.identity()));
 
-        } catch (IOException e) {
-          throw new RuntimeException("Could not initialize folder for upload!");
+        Set<String> storedImages = imageBlobService.findStored(
+            patches.stream().flatMap(patch -> Stream.of(patch.getFrontImage(), patch.getBackImage())).collect(Collectors.toList())
+        );
+
+        List<UserExtraPatchResultDTO> results = new ArrayList<>(patches.size());
+        List<UserExtra> patched = new ArrayList<>(patches.size());
+        List<UserExtra> created = new ArrayList<>();
+        List<String> previousImages = new ArrayList<>();
+        List<String> images = new ArrayList<>();
+        for (int index = 0; index < patches.size(); index++) {
+            UserExtraDTO patch = patches.get(index);
+            Long userId = patch.getUser() == null ? null : patch.getUser().getId();
+            UserExtra userExtra = null;
+            if (!isStoredOrExternal(patch.getFrontImage(), storedImages) || !isStoredOrExternal(patch.getBackImage(), storedImages)) {
+                results.add(result(index, patch.getId(), Status.INVALID, "Image not found"));
+            } else if (patch.getId() != null) {
+                userExtra = byId.get(patch.getId());
+                results.add(result(index, patch.getId(), userExtra == null ? Status.NOT_FOUND : Status.UPDATED, "Entity not found"));
+            } else if (userId == null) {
+                results.add(result(index, null, Status.INVALID, "Neither an id nor a user id"));
+            } else if (byUserId.containsKey(userId)) {
+                userExtra = byUserId.get(userId);
+                results.add(result(index, null, Status.UPDATED, null));
+            } else if (newUsers.containsKey(userId)) {
+                userExtra = new UserExtra().user(newUsers.get(userId));
+                byUserId.put(userId, userExtra);
+                created.add(userExtra);
+                results.add(result(index, null, Status.CREATED, null));
+            } else {
+                results.add(result(index, null, Status.NOT_FOUND, "User not found"));
+            }
+            if (userExtra != null) {
+                previousImages.addAll(images(userExtra));
+                userExtraMapper.partialUpdate(userExtra, patch);
+                images.addAll(images(userExtra));
+            }
+            patched.add(userExtra);
         }
-      }
+        replaceImages(previousImages, images);
+        // Identity ids are generated one insert at a time, only the updates are batched
+        userExtraRepository.saveAll(created);
+        for (int index = 0; index < patches.size(); index++) {
+            if (patched.get(index) != null) {
+                results.get(index).setId(patched.get(index).getId());
+            }
+        }
+        return results;
+    }
 
+    private static UserExtraPatchResultDTO result(int index, Long id, Status status, String failure) {
+        return new UserExtraPatchResultDTO(index, id, status, status == Status.CREATED || status == Status.UPDATED ? null : failure);
+    }
 
-    
-    public void saveFrontImage(MultipartFile frontImage) {
-      try {
-        Files.copy(frontImage.getInputStream(), this.rootFrontImage.resolve(frontImage.getOriginalFilename()));
+    private static boolean isStoredOrExternal(String image, Set<String> storedImages) {
+        return !ContentAddressedImageStore.isContentKey(image) || storedImages.contains(image);
+    }
 
-      } catch (Exception e) {
-        throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
-      }
+    private List<UserExtra> findAllByIdOrUserId(Set<Long> ids, Set<Long> userIds) {
+        // An empty "in" list is not valid SQL
+        if (ids.isEmpty()) {
+            return userIds.isEmpty() ? List.of() : userExtraRepository.findAllByUserIdIn(userIds);
+        }
+        if (userIds.isEmpty()) {
+            return userExtraRepository.findAllById(ids);
+        }
+        return userExtraRepository.findAllByIdInOrUserIdIn(ids, userIds);
     }
-    
-    public void saveBackImage(MultipartFile backImage) {
-        try {
-          Files.copy(backImage.getInputStream(), this.rootFrontImage.resolve(backImage.getOriginalFilename()));
-        } catch (Exception e) {
-          throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
+
+    /**
+     * Get all the userExtras, with the login of their user, in one query.
+     *
+     * @return the list of entities.
+     */
+    @Transactional(readOnly = true)
+    public List<UserExtraDTO> findAll() {
+        log.debug("Request to get all UserExtras");
+        return userExtraRepository.findAllSummariesBy().stream().map(userExtraMapper::toDto).collect(Collectors.toList());
+    }
+
+    /**
+     * Get one userExtra by id, with its user, in one query.
+     *
+     * @param id the id of the entity.
+     * @return the entity.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserExtraDTO> findOne(Long id) {
+        log.debug("Request to get UserExtra : {}", id);
+        return userExtraRepository.findOneWithUserById(id).map(userExtraMapper::toDto);
+    }
+
+    /**
+     * Delete the userExtra by id.
+     *
+     * @param id the id of the entity.
+     */
+    public void delete(Long id) {
+        log.debug("Request to delete UserExtra : {}", id);
+        userExtraRepository
+            .findById(id)
+            .ifPresent(userExtra -> {
+                userExtraRepository.delete(userExtra);
+                replaceImages(images(userExtra), images(null));
+            });
+    }
+
+    /**
+     * @return the front and back images of a userExtra, which are both {@code null} when there is no userExtra.
+     */
+    private static List<String> images(UserExtra userExtra) {
+        return userExtra == null ? Arrays.asList(null, null) : Arrays.asList(userExtra.getFrontImage(), userExtra.getBackImage());
+    }
+
+    /**
+     * Retains the images which changed, then releases the images they replace, so that an image moved from one side
+     * to the other keeps its reference.
+     *
+     * @param previousImages the images before the change.
+     * @param images the images after the change, in the same order.
+     * @throws InvalidImageReferenceException if one of the new images is not a stored image, or is not owned by the
+     * current user.
+     */
+    private void replaceImages(List<String> previousImages, List<String> images) {
+        List<String> retained = new ArrayList<>();
+        List<String> released = new ArrayList<>();
+        for (int index = 0; index < images.size(); index++) {
+            if (!Objects.equals(previousImages.get(index), images.get(index))) {
+                retained.add(images.get(index));
+                released.add(previousImages.get(index));
+            }
         }
-      }
+        requireOwnedImages(retained, previousImages);
+        imageBlobService.retainReferenced(retained);
+        released.forEach(imageBlobService::release);
+    }
+
+    /**
+     * Rejects the stored images which the current user does not reference already: a user only references the images
+     * it uploaded, or moves them around its own userExtra, so that it cannot pin the images of other users. Admins
+     * may reference any stored image.
+     */
+    private void requireOwnedImages(List<String> images, List<String> previousImages) {
+        List<String> contentKeys = images
+            .stream()
+            .filter(image -> ContentAddressedImageStore.isContentKey(image) && !previousImages.contains(image))
+            .collect(Collectors.toList());
+        if (contentKeys.isEmpty() || SecurityUtils.hasCurrentUserThisAuthority(AuthoritiesConstants.ADMIN)) {
+            return;
+        }
+        Set<String> ownedImages = new HashSet<>();
+        SecurityUtils
+            .getCurrentUserLogin()
+            .flatMap(userRepository::findOneByLogin)
+            .ifPresent(user -> {
+                ownedImages.add(user.getImageUrl());
+                userExtraRepository.findByUserId(user.getId()).ifPresent(userExtra -> ownedImages.addAll(images(userExtra)));
+            });
+        for (String contentKey : contentKeys) {
+            if (!ownedImages.contains(contentKey)) {
+                throw new InvalidImageReferenceException("Image " + contentKey + " was not uploaded by the current user");
+            }
+        }
+    }
+
+    /**
+     * Writes all the userExtras, with the login of their user, as newline-delimited JSON.
+     * <p>
+     * Rows are read through a forward-only cursor as plain values, and the output is flushed every
+     * {@value #EXPORT_FLUSH_INTERVAL} userExtras, so memory stays flat whatever the size of the table.
+     *
+     * @param out the stream to write to, which is left open.
+     * @throws IOException if the stream could not be written to.
+     */
+    @Transactional(readOnly = true)
+    public void exportUserExtras(OutputStream out) throws IOException {
+        int written = 0;
+        try (Stream<UserExtraSummary> userExtras = userExtraRepository.streamAllSummariesBy()) {
+            for (Iterator<UserExtraSummary> iterator = userExtras.iterator(); iterator.hasNext();) {
+                out.write(userExtraWriter.writeValueAsBytes(userExtraMapper.toDto(iterator.next())));
+                out.write('\n');
+                if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+        log.debug("Exported {} UserExtras", written);
+    }
+
+    /**
+     * Points the current user's extra information to the given images, releasing the images it replaces.
+     * <p>
+     * The given images must have been retained by the caller, once per image.
+     *
+     * @param frontImageKey the content key of the front image.
+     * @param backImageKey the content key of the back image.
+     */
+    public void updateUserExtraWithImage(String frontImageKey, String backImageKey) {
+        User user = currentUser();
+        UserExtra userExtra = userExtraRepository.findByUserId(user.getId()).orElseGet(() -> new UserExtra().user(user));
 
-    //------------------------------
-    public Resource load(String filename) {
-      try {
-        Path file = rootFrontImage.resolve(filename);
-        Resource resource = new UrlResource(file.toUri());
+        String previousFrontImage = userExtra.getFrontImage();
+        String previousBackImage = userExtra.getBackImage();
+        userExtra.setFrontImage(frontImageKey);
+        userExtra.setBackImage(backImageKey);
 
-        if (resource.exists() || resource.isReadable()) {
-          return resource;
+        userExtraRepository.save(userExtra);
+        log.debug("Changed images for UserExtra: {}", userExtra);
+
+        // The references to the new images were taken when they were stored: an image uploaded again holds two
+        imageBlobService.release(previousFrontImage);
+        imageBlobService.release(previousBackImage);
+    }
+
+    /**
+     * Stores a fully received image and points the current user's front image to it, releasing the image it replaces.
+     *
+     * @param filename the filename sent by the client.
+     * @param file the file holding the image, which is consumed by this method.
+     * @return the stored image.
+     * @throws IOException if the image could not be stored.
+     */
+    public StoredImage commitFrontImage(String filename, Path file) throws IOException {
+        return commit(filename, file, UserExtra::getFrontImage, UserExtra::setFrontImage);
+    }
+
+    /**
+     * Stores a fully received image and points the current user's back image to it, releasing the image it replaces.
+     *
+     * @param filename the filename sent by the client.
+     * @param file the file holding the image, which is consumed by this method.
+     * @return the stored image.
+     * @throws IOException if the image could not be stored.
+     */
+    public StoredImage commitBackImage(String filename, Path file) throws IOException {
+        return commit(filename, file, UserExtra::getBackImage, UserExtra::setBackImage);
+    }
+
+    private StoredImage commit(String filename, Path file, Function<UserExtra, String> getter, BiConsumer<UserExtra, String> setter)
+        throws IOException {
+        User user = currentUser();
+        StoredImage storedImage = imageStore.putFile(filename, file);
+        imageBlobService.retain(storedImage);
+
+        UserExtra userExtra = userExtraRepository.findByUserId(user.getId()).orElseGet(() -> new UserExtra().user(user));
+        String previousImage = getter.apply(userExtra);
+        setter.accept(userExtra, storedImage.getContentKey());
+        userExtraRepository.save(userExtra);
+        log.debug("Changed image for UserExtra: {}", userExtra);
+
+        if (!Objects.equals(previousImage, storedImage.getContentKey())) {
+            imageBlobService.release(previousImage);
         } else {
-          throw new RuntimeException("Could not read the file!");
+            // The image was already referenced by this user extra, drop the reference taken above
+            imageBlobService.release(storedImage.getContentKey());
         }
-      } catch (MalformedURLException e) {
-        throw new RuntimeException("Error: " + e.getMessage());
-      }
+        imageDerivativeService.requestDerivatives(storedImage.getContentKey());
+        return storedImage;
     }
 
-    
-    public void deleteAll() {
-      FileSystemUtils.deleteRecursively(rootFrontImage.toFile());
-      FileSystemUtils.deleteRecursively(rootBackImage.toFile());
+    private User currentUser() {
+        String userLogin = SecurityUtils
+            .getCurrentUserLogin()
+            .orElseThrow(() -> new AuthenticationCredentialsNotFoundException("No user is authenticated"));
+        return userRepository
+            .findOneByLogin(userLogin)
+            .orElseThrow(() -> new UsernameNotFoundException("User " + userLogin + " was not found in the database"));
+    }
 
+    public void init() {
+        imageStore.init();
     }
 
-    public Stream<Path> loadAll() {
-      try {
-        return Files.walk(this.rootFrontImage, 1).filter(path -> !path.equals(this.rootFrontImage)).map(this.rootFrontImage::relativize);
-      } catch (IOException e) {
-        throw new RuntimeException("Could not load the files!");
-      }
+    public StoredImage saveFrontImage(String filename, InputStream content) throws IOException {
+        return save(filename, content);
+    }
+
+    public StoredImage saveBackImage(String filename, InputStream content) throws IOException {
+        return save(filename, content);
+    }
+
+    private StoredImage save(String filename, InputStream content) throws IOException {
+        StoredImage storedImage = imageStore.putImage(filename, content);
+        imageBlobService.retain(storedImage);
+        imageDerivativeService.requestDerivatives(storedImage.getContentKey());
+        return storedImage;
+    }
+
+    public Stream<String> loadAll() {
+        try {
+            return imageStore.keys();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load the files!");
+        }
     }
 }
@@ -10,31 +10,30 @@ import com.demo.upload.repository.UserRepository;
 import com.demo.upload.security.AuthoritiesConstants;
 import com.demo.upload.security.SecurityUtils;
 import com.demo.upload.service.dto.AdminUserDTO;
+import com.demo.upload.service.dto.KeysetPage;
 import com.demo.upload.service.dto.UserDTO;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.StoredImage;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.FileSystemUtils;
-import org.springframework.web.multipart.MultipartFile;
 
 import tech.jhipster.security.RandomUtil;
 
@@ -55,13 +54,32 @@ public class UserService {
     
     private final UserExtraRepository userExtraRepository;
 
-    
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository, UserExtraRepository userExtraRepository) {
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageBlobService imageBlobService;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final MailService mailService;
+
+    public UserService(
+        UserRepository userRepository,
+        PasswordEncoder passwordEncoder,
+        AuthorityRepository authorityRepository,
+        UserExtraRepository userExtraRepository,
+        ContentAddressedImageStore imageStore,
+        ImageBlobService imageBlobService,
+        ImageDerivativeService imageDerivativeService,
+        MailService mailService
+    ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
         this.userExtraRepository = userExtraRepository;
-
+        this.imageStore = imageStore;
+        this.imageBlobService = imageBlobService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.mailService = mailService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -97,6 +115,7 @@ public class UserService {
             .map(user -> {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(Instant.now());
+                mailService.sendPasswordResetMail(user);
                 return user;
             });
     }
@@ -128,7 +147,7 @@ public class UserService {
         if (userDTO.getEmail() != null) {
             newUser.setEmail(userDTO.getEmail().toLowerCase());
         }
-        newUser.setImageUrl(userDTO.getImageUrl());
+        newUser.setImageUrl(requireExternalImageUrl(userDTO.getImageUrl()));
         newUser.setLangKey(userDTO.getLangKey());
         // new user is not active
         newUser.setActivated(false);
@@ -148,6 +167,7 @@ public class UserService {
         newUserExtra.setBackImage(backImage);
         userExtraRepository.save(newUserExtra);
         log.debug("Created Information for UserExtra: {}", newUserExtra);
+        mailService.sendActivationEmail(newUser);
         
         
         return newUser;
@@ -170,7 +190,7 @@ public class UserService {
         if (userDTO.getEmail() != null) {
             user.setEmail(userDTO.getEmail().toLowerCase());
         }
-        user.setImageUrl(userDTO.getImageUrl());
+        user.setImageUrl(requireExternalImageUrl(userDTO.getImageUrl()));
         if (userDTO.getLangKey() == null) {
             user.setLangKey(Constants.DEFAULT_LANGUAGE); // default language
         } else {
@@ -193,6 +213,7 @@ public class UserService {
         }
         userRepository.save(user);
         log.debug("Created Information for User: {}", user);
+        mailService.sendCreationEmail(user);
         return user;
     }
 
@@ -214,7 +235,7 @@ public class UserService {
                 if (userDTO.getEmail() != null) {
                     user.setEmail(userDTO.getEmail().toLowerCase());
                 }
-                user.setImageUrl(userDTO.getImageUrl());
+                replaceImageUrl(user, userDTO.getImageUrl());
                 user.setActivated(userDTO.isActivated());
                 user.setLangKey(userDTO.getLangKey());
                 Set<Authority> managedAuthorities = user.getAuthorities();
@@ -237,6 +258,7 @@ public class UserService {
             .findOneByLogin(login)
             .ifPresent(user -> {
                 userRepository.delete(user);
+                imageBlobService.release(user.getImageUrl());
                 log.debug("Deleted User: {}", user);
             });
     }
@@ -261,7 +283,7 @@ public class UserService {
                     user.setEmail(email.toLowerCase());
                 }
                 user.setLangKey(langKey);
-                user.setImageUrl(imageUrl);
+                replaceImageUrl(user, imageUrl);
                 log.debug("Changed Information for User: {}", user);
             });
     }
@@ -287,11 +309,52 @@ public class UserService {
         return userRepository.findAll(pageable).map(AdminUserDTO::new);
     }
 
+    /**
+     * Get a page of users following a cursor, in constant time whatever the depth of the page.
+     *
+     * @param cursor the cursor returned with the previous page, empty for the first page.
+     * @param order the order of the users, on one of {@code id}, {@code login} or {@code activated}; ties are broken by id.
+     * @param size the size of the page.
+     * @return the page of users, with the cursor of the next page.
+     * @throws InvalidCursorException if the cursor is malformed or belongs to another order.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<AdminUserDTO> getAllManagedUsers(String cursor, Sort.Order order, int size) {
+        return getUsersAfter(false, KeysetCursor.decode(cursor, order), size, AdminUserDTO::new);
+    }
+
+    @Transactional(readOnly = true)
+    public long countManagedUsers() {
+        return userRepository.count();
+    }
+
     @Transactional(readOnly = true)
     public Page<UserDTO> getAllPublicUsers(Pageable pageable) {
         return userRepository.findAllByIdNotNullAndActivatedIsTrue(pageable).map(UserDTO::new);
     }
 
+    /**
+     * Get a page of activated users following a cursor, see {@link #getAllManagedUsers(String, Sort.Order, int)}.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<UserDTO> getAllPublicUsers(String cursor, Sort.Order order, int size) {
+        return getUsersAfter(true, KeysetCursor.decode(cursor, order), size, UserDTO::new);
+    }
+
+    @Transactional(readOnly = true)
+    public long countPublicUsers() {
+        return userRepository.countByActivatedIsTrue();
+    }
+
+    private <T> KeysetPage<T> getUsersAfter(boolean activatedOnly, KeysetCursor cursor, int size, Function<User, T> mapper) {
+        Slice<User> users = userRepository.findAllByKeyset(activatedOnly, cursor.getOrder(), cursor.getValue(), cursor.getId(), size);
+        String nextCursor = null;
+        if (users.hasNext()) {
+            nextCursor = KeysetCursor.after(cursor.getOrder(), users.getContent().get(users.getNumberOfElements() - 1)).encode();
+        }
+        return new KeysetPage<>(users.getContent().stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+
     @Transactional(readOnly = true)
     public Optional<User> getUserWithAuthoritiesByLogin(String login) {
         return userRepository.findOneWithAuthoritiesByLogin(login);
@@ -327,81 +390,61 @@ public class UserService {
     }
 
 
-
-//-----------------------------
-
-    
-
-    
-    public void updateUserWithImage(String imageUrl) {
-        SecurityUtils
+    /**
+     * Points the current user's image URL to an uploaded image, releasing the image it replaces.
+     *
+     * @param imageKey the content key of the image, retained by {@link #saveImage(String, InputStream)}.
+     * @throws UsernameNotFoundException if there is no current user, which would leave the image retained.
+     */
+    public void updateUserWithImage(String imageKey) {
+        User user = SecurityUtils
             .getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
-            .ifPresent(user -> {
-                user.setImageUrl(imageUrl);
-                log.debug("Changed Information for User: {}", user);
-            });
+            .orElseThrow(() -> new UsernameNotFoundException("The current user was not found in the database"));
+        String previousImageUrl = user.getImageUrl();
+        user.setImageUrl(imageKey);
+        // The reference to the new image was taken when it was stored: an image uploaded again holds two
+        imageBlobService.release(previousImageUrl);
+        log.debug("Changed Information for User: {}", user);
     }
 
-    
-    
-    
-    
-    
-    
-
-    private final Path root = Paths.get("uploads");
-
-    public void init() {
-        try {
-          Files.createDirectory(root);
-        } catch (IOException e) {
-          throw new RuntimeException("Could not initialize folder for upload!");
-        }
-      }
-
-
-    
-    public void save(MultipartFile file) {
-      try {
-        Files.copy(file.getInputStream(), this.root.resolve(file.getOriginalFilename()));
-      } catch (Exception e) {
-        throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
-      }
+    /**
+     * Streams a profile image into the image store.
+     *
+     * @param filename the filename sent by the client.
+     * @param content the image content.
+     * @return the stored image, whose content key is meant to be used as the user's image URL.
+     * @throws com.demo.upload.service.upload.ImageDecodeException if the content is not an image.
+     * @throws com.demo.upload.service.upload.ImageDimensionLimitExceededException if the image is too large.
+     * @throws IOException if the image could not be stored.
+     */
+    public StoredImage saveImage(String filename, InputStream content) throws IOException {
+        StoredImage storedImage = imageStore.putImage(filename, content);
+        imageBlobService.retain(storedImage);
+        imageDerivativeService.requestDerivatives(storedImage.getContentKey());
+        return storedImage;
     }
 
-    
-    public Resource load(String filename) {
-      try {
-        Path file = root.resolve(filename);
-        Resource resource = new UrlResource(file.toUri());
-
-        if (resource.exists() || resource.isReadable()) {
-          return resource;
-        } else {
-          throw new RuntimeException("Could not read the file!");
+    /**
+     * Sets an image URL sent by a client, which may keep the current image, drop it or point to an external image.
+     */
+    private void replaceImageUrl(User user, String imageUrl) {
+        String previousImageUrl = user.getImageUrl();
+        if (Objects.equals(previousImageUrl, imageUrl)) {
+            return;
         }
-      } catch (MalformedURLException e) {
-        throw new RuntimeException("Error: " + e.getMessage());
-      }
+        user.setImageUrl(requireExternalImageUrl(imageUrl));
+        imageBlobService.release(previousImageUrl);
     }
 
-    
-    public void deleteAll() {
-      FileSystemUtils.deleteRecursively(root.toFile());
-    }
-
-    public Stream<Path> loadAll() {
-      try {
-        return Files.walk(this.root, 1).filter(path -> !path.equals(this.root)).map(this.root::relativize);
-      } catch (IOException e) {
-        throw new RuntimeException("Could not load the files!");
-      }
+    /**
+     * Rejects the content keys of stored images: a user only references the images it uploaded, through
+     * {@link #updateUserWithImage(String)}, so that it never releases a reference it does not hold.
+     */
+    private static String requireExternalImageUrl(String imageUrl) {
+        if (ContentAddressedImageStore.isContentKey(imageUrl)) {
+            throw new InvalidImageReferenceException("A stored image can only be referenced by uploading it");
+        }
+        return imageUrl;
     }
-
-
-  //-----------------------------
-   
-
-
 }
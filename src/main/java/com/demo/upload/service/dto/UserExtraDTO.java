@@ -0,0 +1,85 @@
+package com.demo.upload.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.demo.upload.domain.UserExtra} entity.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class UserExtraDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String frontImage;
+
+    private String backImage;
+
+    private UserDTO user;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFrontImage() {
+        return frontImage;
+    }
+
+    public void setFrontImage(String frontImage) {
+        this.frontImage = frontImage;
+    }
+
+    public String getBackImage() {
+        return backImage;
+    }
+
+    public void setBackImage(String backImage) {
+        this.backImage = backImage;
+    }
+
+    public UserDTO getUser() {
+        return user;
+    }
+
+    public void setUser(UserDTO user) {
+        this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UserExtraDTO)) {
+            return false;
+        }
+
+        UserExtraDTO userExtraDTO = (UserExtraDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, userExtraDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserExtraDTO{" +
+            "id=" + getId() +
+            ", frontImage='" + getFrontImage() + "'" +
+            ", backImage='" + getBackImage() + "'" +
+            ", user=" + getUser() +
+            "}";
+    }
+}
@@ -0,0 +1,56 @@
+package com.demo.upload.service.mapper;
+
+import com.demo.upload.domain.User;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.UserExtraSummary;
+import com.demo.upload.service.dto.UserDTO;
+import com.demo.upload.service.dto.UserExtraDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link UserExtra} and its DTO {@link UserExtraDTO}.
+ * <p>
+ * Only the id and login of the user are mapped, so that the DTO never needs more of the user than a join brings.
+ */
+@Mapper(componentModel = "spring")
+public interface UserExtraMapper extends EntityMapper<UserExtraDTO, UserExtra> {
+    @Mapping(target = "user", source = "user", qualifiedByName = "userLogin")
+    UserExtraDTO toDto(UserExtra s);
+
+    @Mapping(target = "user", source = ".", qualifiedByName = "summaryUserLogin")
+    UserExtraDTO toDto(UserExtraSummary s);
+
+    @Mapping(target = "user", source = "user", qualifiedByName = "userId")
+    UserExtra toEntity(UserExtraDTO dto);
+
+    /**
+     * Partial updates never change the user of a userExtra.
+     */
+    @Override
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "user", ignore = true)
+    void partialUpdate(@MappingTarget UserExtra entity, UserExtraDTO dto);
+
+    @Named("userLogin")
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "login", source = "login")
+    UserDTO toDtoUserLogin(User user);
+
+    @Named("userId")
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    User toEntityUserId(UserDTO userDTO);
+
+    @Named("summaryUserLogin")
+    default UserDTO toDtoUserLogin(UserExtraSummary s) {
+        if (s.getUserId() == null) {
+            return null;
+        }
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(s.getUserId());
+        userDTO.setLogin(s.getUserLogin());
+        return userDTO;
+    }
+}
@@ -0,0 +1,73 @@
+package com.demo.upload.service.storage;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Image content held in memory, typically a slice of a memory-mapped file, which can be written
+ * to the response without being copied to the heap.
+ */
+public class ByteBufferContent implements ImageContent {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferContent(ByteBuffer buffer) {
+        this.buffer = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read-only view of the content, positioned at its first byte.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    @Override
+    public long size() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public InputStream openStream(long position, long length) {
+        ByteBuffer region = buffer.duplicate();
+        region.position((int) Math.min(position, region.limit()));
+        region.limit((int) Math.min(region.limit(), region.position() + length));
+        return new ByteBufferInputStream(region);
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer region;
+
+        ByteBufferInputStream(ByteBuffer region) {
+            this.region = region;
+        }
+
+        @Override
+        public int read() {
+            return region.hasRemaining() ? region.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!region.hasRemaining()) {
+                return len == 0 ? 0 : -1;
+            }
+            int read = Math.min(len, region.remaining());
+            region.get(bytes, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, region.remaining()));
+            region.position(region.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return region.remaining();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.demo.upload.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Image content held in a region of a local file, which can be sent with zero-copy transfers.
+ */
+public class FileRegionContent implements ImageContent {
+
+    private final FileChannel channel;
+
+    private final long offset;
+
+    private final long size;
+
+    private final boolean dedicatedChannel;
+
+    /**
+     * @param channel the channel of the file.
+     * @param offset the position of the content in the file.
+     * @param size the size of the content.
+     * @param dedicatedChannel {@code true} if the channel holds nothing but this content and is closed with it,
+     * {@code false} if it is shared and must neither be closed nor have its position changed.
+     */
+    public FileRegionContent(FileChannel channel, long offset, long size, boolean dedicatedChannel) {
+        this.channel = channel;
+        this.offset = offset;
+        this.size = size;
+        this.dedicatedChannel = dedicatedChannel;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isDedicatedChannel() {
+        return dedicatedChannel;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream openStream(long position, long length) {
+        return new RegionInputStream(offset + position, offset + Math.min(size, position + length));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dedicatedChannel) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the region with positional reads, so that a shared channel can be read concurrently.
+     */
+    private class RegionInputStream extends InputStream {
+
+        private long position;
+
+        private final long end;
+
+        RegionInputStream(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+}
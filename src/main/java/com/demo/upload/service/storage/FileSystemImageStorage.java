@@ -0,0 +1,97 @@
+package com.demo.upload.service.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Stores each image in its own file, laid out as {@code <root>/ab/cd/abcd...} so that no directory holds
+ * more than a few thousand entries.
+ * <p>
+ * Operations are performed on the calling thread.
+ */
+public class FileSystemImageStorage implements ImageStorage {
+
+    private final Path root;
+
+    public FileSystemImageStorage(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public void init() throws IOException {
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, Path content) {
+        try {
+            Path target = resolve(key);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                move(content, target);
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void move(Path content, Path target) throws IOException {
+        try {
+            Files.move(content, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The content is on another file system: copy it next to the target first, so readers never see a partial file
+            Path partial = target.resolveSibling(target.getFileName() + ".part");
+            Files.copy(content, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ImageContent> get(String key) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+            return CompletableFuture.completedFuture(new FileRegionContent(channel, 0, channel.size(), true));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        return CompletableFuture.completedFuture(Files.exists(resolve(key)));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(Collection<String> keys) {
+        try {
+            for (String key : keys) {
+                Files.deleteIfExists(resolve(key));
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public Stream<String> keys() throws IOException {
+        return Files
+            .walk(root, 3)
+            .filter(path -> path.getNameCount() - root.getNameCount() == 3 && Files.isRegularFile(path))
+            .map(path -> path.getFileName().toString())
+            .filter(name -> !name.endsWith(".part"));
+    }
+
+    Path resolve(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
@@ -0,0 +1,30 @@
+package com.demo.upload.service.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The content of an image read from an {@link ImageStorage}.
+ * <p>
+ * Content must be closed once it has been consumed, to release the connection or file it is read from.
+ */
+public interface ImageContent extends Closeable {
+    /**
+     * @return the size of the content in bytes.
+     */
+    long size();
+
+    /**
+     * Opens a stream over part of the content.
+     *
+     * @param position the position of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return the stream, which must be closed by the caller.
+     * @throws IOException if the content could not be read.
+     */
+    InputStream openStream(long position, long length) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+}
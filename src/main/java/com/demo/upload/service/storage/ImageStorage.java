@@ -0,0 +1,69 @@
+package com.demo.upload.service.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Backend storing the bytes of images under their content key.
+ * <p>
+ * Keys are validated by {@link com.demo.upload.service.upload.ContentAddressedImageStore} before reaching
+ * the storage, and content stored under a key never changes. Operations are asynchronous so that remote
+ * backends do not hold a thread while waiting for the network; local backends may complete them immediately.
+ */
+public interface ImageStorage extends Closeable {
+    /**
+     * Prepares the storage, e.g. by creating its directories or recovering its index.
+     *
+     * @throws IOException if the storage could not be initialized.
+     */
+    default void init() throws IOException {}
+
+    /**
+     * Stores content.
+     *
+     * @param key the content key.
+     * @param content a temporary file holding the content, which the storage may move instead of copying.
+     * @return a future completed once the content is durably stored.
+     */
+    CompletableFuture<Void> put(String key, Path content);
+
+    /**
+     * Reads content.
+     *
+     * @param key the content key.
+     * @return a future completed with the content, or failed with {@link java.nio.file.NoSuchFileException} if there is none.
+     */
+    CompletableFuture<ImageContent> get(String key);
+
+    CompletableFuture<Boolean> exists(String key);
+
+    /**
+     * Deletes content, ignoring keys which are not stored.
+     *
+     * @param keys the content keys.
+     * @return a future completed once all the content is deleted.
+     */
+    CompletableFuture<Void> delete(Collection<String> keys);
+
+    /**
+     * Lists the keys of all stored content.
+     *
+     * @return the keys, as a stream which must be closed.
+     * @throws IOException if the keys could not be listed.
+     */
+    Stream<String> keys() throws IOException;
+
+    /**
+     * Reclaims the space held by deleted content, for storages which do not free it on deletion.
+     *
+     * @throws IOException if the space could not be reclaimed.
+     */
+    default void compact() throws IOException {}
+
+    @Override
+    default void close() throws IOException {}
+}
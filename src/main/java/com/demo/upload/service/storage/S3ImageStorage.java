@@ -0,0 +1,301 @@
+package com.demo.upload.service.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Stores images in a bucket of an S3-compatible object store, such as AWS S3 or MinIO.
+ * <p>
+ * Requests are signed with {@link AwsV4Signer} and sent with the JDK HTTP client, using path-style URLs
+ * ({@code <endpoint>/<bucket>/<prefix><key>}) which every S3-compatible server accepts. As keys are the
+ * SHA-256 of the content, they are sent as the {@code x-amz-content-sha256} of uploads and the store
+ * verifies the integrity of every image it receives.
+ */
+public class S3ImageStorage implements ImageStorage {
+
+    static final int MAX_KEYS_PER_DELETE = 1000;
+
+    private static final String CONTENT_SHA256_HEADER = "x-amz-content-sha256";
+
+    private static final String DATE_HEADER = "x-amz-date";
+
+    private final HttpClient httpClient;
+
+    private final AwsV4Signer signer;
+
+    private final String endpoint;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    private final Duration timeout;
+
+    public S3ImageStorage(
+        HttpClient httpClient,
+        String endpoint,
+        String region,
+        String bucket,
+        String prefix,
+        String accessKey,
+        String secretKey,
+        Duration timeout
+    ) {
+        this.httpClient = httpClient;
+        this.signer = new AwsV4Signer(accessKey, secretKey, region, "s3");
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, Path content) {
+        HttpRequest.BodyPublisher body;
+        try {
+            body = HttpRequest.BodyPublishers.ofFile(content);
+        } catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = signed("PUT", objectUri(key), Map.of(), key).PUT(body).build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(response -> check(response, "PUT", key));
+    }
+
+    @Override
+    public CompletableFuture<ImageContent> get(String key) {
+        HttpRequest request = signed("GET", objectUri(key), Map.of(), AwsV4Signer.EMPTY_PAYLOAD_HASH).GET().build();
+        return httpClient
+            .sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+            .thenApply(response -> {
+                if (response.statusCode() == 404) {
+                    closeQuietly(response.body());
+                    throw new CompletionException(new NoSuchFileException(key));
+                }
+                check(response, "GET", key);
+                long size = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                return new S3ImageContent(key, size, response.body());
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        HttpRequest request = signed("HEAD", objectUri(key), Map.of(), AwsV4Signer.EMPTY_PAYLOAD_HASH)
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+        return httpClient
+            .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .thenApply(response -> {
+                if (response.statusCode() == 404) {
+                    return false;
+                }
+                check(response, "HEAD", key);
+                return true;
+            });
+    }
+
+    /**
+     * Deletes the objects with DeleteObjects requests of up to {@value #MAX_KEYS_PER_DELETE} keys, sent concurrently.
+     */
+    @Override
+    public CompletableFuture<Void> delete(Collection<String> keys) {
+        List<String> remaining = new ArrayList<>(keys);
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (int from = 0; from < remaining.size(); from += MAX_KEYS_PER_DELETE) {
+            requests.add(deleteBatch(remaining.subList(from, Math.min(remaining.size(), from + MAX_KEYS_PER_DELETE))));
+        }
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> deleteBatch(List<String> keys) {
+        StringBuilder xml = new StringBuilder("<Delete><Quiet>true</Quiet>");
+        keys.forEach(key -> xml.append("<Object><Key>").append(prefix).append(key).append("</Key></Object>"));
+        byte[] body = xml.append("</Delete>").toString().getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = signed(
+            "POST",
+            URI.create(bucketUrl() + "?delete="),
+            Map.of("content-md5", Base64.getEncoder().encodeToString(md5(body))),
+            AwsV4Signer.sha256Hex(body)
+        )
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(response -> check(response, "DELETE", keys.size() + " keys"));
+    }
+
+    /**
+     * Lists the keys with ListObjectsV2 requests, following continuation tokens.
+     */
+    @Override
+    public Stream<String> keys() throws IOException {
+        List<String> keys = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            String query = "list-type=2&prefix=" + AwsV4Signer.uriEncode(prefix, true);
+            if (continuationToken != null) {
+                query = "continuation-token=" + AwsV4Signer.uriEncode(continuationToken, true) + "&" + query;
+            }
+            HttpRequest request = signed("GET", URI.create(bucketUrl() + "?" + query), Map.of(), AwsV4Signer.EMPTY_PAYLOAD_HASH).GET().build();
+            HttpResponse<byte[]> response = send(request);
+            check(response, "LIST", bucket);
+            Document document = parse(response.body());
+            NodeList contents = document.getElementsByTagName("Key");
+            for (int i = 0; i < contents.getLength(); i++) {
+                keys.add(contents.item(i).getTextContent().substring(prefix.length()));
+            }
+            NodeList nextToken = document.getElementsByTagName("NextContinuationToken");
+            continuationToken = nextToken.getLength() > 0 ? nextToken.item(0).getTextContent() : null;
+        } while (continuationToken != null);
+        return keys.stream();
+    }
+
+    private InputStream getRange(String key, long position, long length) throws IOException {
+        HttpRequest request = signed(
+            "GET",
+            objectUri(key),
+            Map.of("range", "bytes=" + position + "-" + (position + length - 1)),
+            AwsV4Signer.EMPTY_PAYLOAD_HASH
+        )
+            .GET()
+            .build();
+        HttpResponse<byte[]> response = send(request);
+        check(response, "GET", key);
+        return new ByteArrayInputStream(response.body());
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the object store", e);
+        }
+    }
+
+    private HttpRequest.Builder signed(String method, URI uri, Map<String, String> headers, String payloadHash) {
+        Map<String, String> signedHeaders = new LinkedHashMap<>(headers);
+        signedHeaders.put(CONTENT_SHA256_HEADER, payloadHash);
+        signedHeaders.put(DATE_HEADER, AwsV4Signer.amzDate(ZonedDateTime.now(ZoneOffset.UTC)));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout);
+        signedHeaders.forEach(builder::header);
+        return builder.header("Authorization", signer.authorization(method, uri, signedHeaders, payloadHash));
+    }
+
+    private URI objectUri(String key) {
+        return URI.create(bucketUrl() + "/" + AwsV4Signer.uriEncode(prefix + key, false));
+    }
+
+    private String bucketUrl() {
+        return endpoint + "/" + AwsV4Signer.uriEncode(bucket, true);
+    }
+
+    /**
+     * @throws CompletionException wrapping an {@link IOException} if the request failed.
+     */
+    private static <T> Void check(HttpResponse<T> response, String operation, String target) {
+        if (response.statusCode() / 100 != 2) {
+            if (response.body() instanceof InputStream) {
+                closeQuietly((InputStream) response.body());
+            }
+            throw new CompletionException(new IOException(operation + " " + target + " failed with status " + response.statusCode()));
+        }
+        return null;
+    }
+
+    private static Document parse(byte[] xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse the object store response", e);
+        }
+    }
+
+    private static byte[] md5(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // the response is discarded anyway
+        }
+    }
+
+    /**
+     * Content of an object, streamed from the response of the {@code GET} request.
+     * Other ranges than the whole object are fetched with ranged requests.
+     */
+    private class S3ImageContent implements ImageContent {
+
+        private final String key;
+
+        private final long size;
+
+        private InputStream body;
+
+        S3ImageContent(String key, long size, InputStream body) {
+            this.key = key;
+            this.size = size;
+            this.body = body;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public InputStream openStream(long position, long length) throws IOException {
+            if (body != null && position == 0 && length >= size) {
+                InputStream stream = body;
+                body = null;
+                return stream;
+            }
+            close();
+            return getRange(key, position, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+                body = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.demo.upload.service.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends images to large segment files, which suits small images: a few files hold millions of avatars,
+ * and each image is read from a memory-mapped segment instead of opening a file.
+ * <p>
+ * Each record is a header ({@code magic, type, key, length}) followed by the image bytes. Deletions append
+ * a tombstone record, whose body is the id of the segment holding the deleted image. When a segment is
+ * sealed, its records are written to a hint file ({@code segment-N.idx}), so the index of sealed segments
+ * is loaded without reading their content on startup. The active segment is scanned, and a record truncated
+ * by a crash at its end is discarded.
+ * <p>
+ * Sealed segments are memory-mapped and never change. {@link #compact()} rewrites the live images of the
+ * sealed segments holding mostly deleted images at the end of the active segment, then removes them;
+ * readers still holding a slice of a removed segment keep reading its mapping.
+ * <p>
+ * Writes are serialized; reads go straight to the index and the mappings and are never blocked by writes.
+ */
+public class SegmentImageStorage implements ImageStorage {
+
+    static final int RECORD_MAGIC = 0x494d4731;
+
+    static final int HINT_MAGIC = 0x494d4849;
+
+    static final byte PUT_RECORD = 1;
+
+    static final byte DELETE_RECORD = 2;
+
+    static final int KEY_LENGTH = 64;
+
+    static final int HEADER_SIZE = Integer.BYTES + 1 + KEY_LENGTH + Long.BYTES;
+
+    static final int TOMBSTONE_SIZE = HEADER_SIZE + Integer.BYTES;
+
+    private static final int HINT_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private static final int HINT_RECORD_SIZE = 1 + KEY_LENGTH + Long.BYTES + Long.BYTES;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final String HINT_SUFFIX = ".idx";
+
+    private final Logger log = LoggerFactory.getLogger(SegmentImageStorage.class);
+
+    private final Path directory;
+
+    private final long maxSegmentSize;
+
+    private final double compactionThreshold;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    private final ConcurrentNavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param directory the directory of the segment files.
+     * @param maxSegmentSize the size above which a new segment is started, which must allow segments to be mapped.
+     * @param compactionThreshold the share of deleted bytes above which a sealed segment is compacted.
+     */
+    public SegmentImageStorage(Path directory, long maxSegmentSize, double compactionThreshold) {
+        if (maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segments cannot be larger than 2GB");
+        }
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public synchronized void init() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids =
+                files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        int hinted = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            boolean active = i == ids.size() - 1;
+            Segment segment = new Segment(ids.get(i), FileChannel.open(segmentPath(ids.get(i)), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segments.put(segment.id, segment);
+            List<Record> records = active ? null : readHint(segment);
+            boolean fromHint = records != null;
+            if (fromHint) {
+                hinted++;
+            } else {
+                records = scan(segment, active);
+            }
+            for (Record record : records) {
+                apply(segment, record);
+            }
+            if (active) {
+                segment.records = records;
+            } else {
+                if (!fromHint) {
+                    writeHint(segment, records);
+                }
+                segment.seal();
+            }
+        }
+        if (segments.isEmpty()) {
+            roll();
+        }
+        log.debug("Recovered {} images from {} segments in {}, {} from hint files", index.size(), segments.size(), directory, hinted);
+    }
+
+    private List<Record> scan(Segment segment, boolean active) throws IOException {
+        List<Record> records = new ArrayList<>();
+        long size = segment.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(TOMBSTONE_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear().limit(HEADER_SIZE);
+            readFully(segment.channel, header, position);
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            byte type = header.get();
+            String key = readKey(header);
+            long length = header.getLong();
+            if (position + HEADER_SIZE + length > size) {
+                break;
+            }
+            if (type == DELETE_RECORD) {
+                header.clear().limit(Integer.BYTES);
+                readFully(segment.channel, header, position + HEADER_SIZE);
+                records.add(new Record(DELETE_RECORD, key, header.flip().getInt(), 0));
+            } else {
+                records.add(new Record(PUT_RECORD, key, position + HEADER_SIZE, length));
+            }
+            position += HEADER_SIZE + length;
+        }
+        if (position < size) {
+            if (active) {
+                log.warn("Discarding {} bytes of incomplete records at the end of segment {}", size - position, segment.id);
+                segment.channel.truncate(position);
+            } else {
+                log.warn("Ignoring {} bytes of unreadable records at the end of segment {}", size - position, segment.id);
+            }
+        }
+        segment.size = position;
+        return records;
+    }
+
+    private void apply(Segment segment, Record record) {
+        Location previous;
+        if (record.type == PUT_RECORD) {
+            previous = index.put(record.key, new Location(segment.id, record.offset, record.length));
+        } else {
+            previous = index.remove(record.key);
+            segment.deadBytes.addAndGet(TOMBSTONE_SIZE);
+        }
+        markDead(previous);
+    }
+
+    private void markDead(Location location) {
+        Segment segment = location == null ? null : segments.get(location.segment);
+        if (segment != null) {
+            segment.deadBytes.addAndGet(HEADER_SIZE + location.length);
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> put(String key, Path content) {
+        if (index.containsKey(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try (FileChannel source = FileChannel.open(content, StandardOpenOption.READ)) {
+            long length = source.size();
+            Location location = append(
+                PUT_RECORD,
+                key,
+                length,
+                (target, position) -> {
+                    long transferred = 0;
+                    while (transferred < length) {
+                        transferred += target.transferFrom(source.position(transferred), position + transferred, length - transferred);
+                    }
+                }
+            );
+            segments.lastEntry().getValue().channel.force(false);
+            index.put(key, location);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ImageContent> get(String key) {
+        // A compaction may remove the segment between the two lookups, in which case the index already points to the copy
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Location location = index.get(key);
+            if (location == null) {
+                break;
+            }
+            Segment segment = segments.get(location.segment);
+            if (segment != null) {
+                return CompletableFuture.completedFuture(segment.content(location));
+            }
+        }
+        return CompletableFuture.failedFuture(new NoSuchFileException(key));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        return CompletableFuture.completedFuture(index.containsKey(key));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> delete(Collection<String> keys) {
+        try {
+            boolean deleted = false;
+            for (String key : keys) {
+                Location previous = index.remove(key);
+                if (previous != null) {
+                    appendTombstone(key, previous.segment);
+                    markDead(previous);
+                    deleted = true;
+                }
+            }
+            if (deleted) {
+                segments.lastEntry().getValue().channel.force(false);
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public Stream<String> keys() {
+        return new ArrayList<>(index.keySet()).stream();
+    }
+
+    /**
+     * Compacts the sealed segments whose share of deleted bytes reached the compaction threshold.
+     * <p>
+     * Live images are copied one at a time, so uploads are only delayed by the copy of a single image.
+     */
+    @Override
+    public void compact() throws IOException {
+        Segment active = segments.lastEntry().getValue();
+        for (Segment segment : new ArrayList<>(segments.headMap(active.id).values())) {
+            if (segment.size > 0 && (double) segment.deadBytes.get() / segment.size >= compactionThreshold) {
+                compact(segment);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        List<Record> records = readHint(segment);
+        if (records == null) {
+            records = scan(segment, false);
+        }
+        int moved = 0;
+        for (Record record : records) {
+            synchronized (this) {
+                if (record.type == PUT_RECORD) {
+                    Location current = index.get(record.key);
+                    if (current != null && current.segment == segment.id && current.offset == record.offset) {
+                        ByteBuffer body = segment.slice(record.offset, record.length);
+                        index.put(record.key, append(PUT_RECORD, record.key, record.length, (target, position) -> writeFully(target, body, position)));
+                        moved++;
+                    }
+                } else if (record.offset != segment.id && segments.containsKey((int) record.offset) && !index.containsKey(record.key)) {
+                    // The deleted image is still in an older segment, which must not resurrect it on startup
+                    appendTombstone(record.key, (int) record.offset);
+                }
+            }
+        }
+        synchronized (this) {
+            segments.lastEntry().getValue().channel.force(false);
+            segments.remove(segment.id);
+        }
+        segment.channel.close();
+        try {
+            Files.deleteIfExists(hintPath(segment.id));
+            Files.delete(segmentPath(segment.id));
+        } catch (IOException e) {
+            // The copies are newer, so the segment is only replayed as deleted images on startup
+            log.warn("Could not delete compacted segment {}: {}", segment.id, e.getMessage());
+        }
+        log.info("Compacted segment {}, {} live images moved and {} bytes reclaimed", segment.id, moved, segment.size);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(FileChannel target, long position) throws IOException;
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new segment if it is full. Callers hold the lock.
+     *
+     * @return the location of the body of the record.
+     */
+    private Location append(byte type, String key, long length, BodyWriter body) throws IOException {
+        Segment active = segments.lastEntry().getValue();
+        if (active.size > 0 && active.size + HEADER_SIZE + length > maxSegmentSize) {
+            active = roll();
+        }
+        long position = active.size;
+        writeFully(active.channel, header(type, key, length), position);
+        body.write(active.channel, position + HEADER_SIZE);
+        active.size = position + HEADER_SIZE + length;
+        if (type == PUT_RECORD) {
+            active.records.add(new Record(PUT_RECORD, key, position + HEADER_SIZE, length));
+        }
+        return new Location(active.id, position + HEADER_SIZE, length);
+    }
+
+    private void appendTombstone(String key, int deletedSegment) throws IOException {
+        ByteBuffer body = ByteBuffer.allocate(Integer.BYTES).putInt(deletedSegment).flip();
+        Location location = append(DELETE_RECORD, key, Integer.BYTES, (target, position) -> writeFully(target, body, position));
+        Segment segment = segments.get(location.segment);
+        segment.records.add(new Record(DELETE_RECORD, key, deletedSegment, 0));
+        segment.deadBytes.addAndGet(TOMBSTONE_SIZE);
+    }
+
+    private Segment roll() throws IOException {
+        Map.Entry<Integer, Segment> last = segments.lastEntry();
+        if (last != null) {
+            Segment sealed = last.getValue();
+            writeHint(sealed, sealed.records);
+            sealed.seal();
+        }
+        int id = last == null ? 0 : last.getKey() + 1;
+        Segment segment = new Segment(
+            id,
+            FileChannel.open(segmentPath(id), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        );
+        segment.records = new ArrayList<>();
+        segments.put(id, segment);
+        log.debug("Started segment {}", id);
+        return segment;
+    }
+
+    private void writeHint(Segment segment, List<Record> records) throws IOException {
+        ByteBuffer hint = ByteBuffer.allocate(HINT_HEADER_SIZE + records.size() * HINT_RECORD_SIZE);
+        hint.putInt(HINT_MAGIC).putLong(segment.size);
+        for (Record record : records) {
+            hint.put(record.type).put(record.key.getBytes(StandardCharsets.US_ASCII)).putLong(record.offset).putLong(record.length);
+        }
+        hint.flip();
+        Path target = hintPath(segment.id);
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (
+            FileChannel channel = FileChannel.open(
+                partial,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            writeFully(channel, hint, 0);
+            channel.force(false);
+        }
+        try {
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the records of a sealed segment, or {@code null} if it has no valid hint file.
+     */
+    private List<Record> readHint(Segment segment) throws IOException {
+        Path path = hintPath(segment.id);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ByteBuffer hint = ByteBuffer.wrap(Files.readAllBytes(path));
+        long segmentSize = segment.channel.size();
+        if (
+            hint.remaining() < HINT_HEADER_SIZE ||
+            (hint.remaining() - HINT_HEADER_SIZE) % HINT_RECORD_SIZE != 0 ||
+            hint.getInt() != HINT_MAGIC ||
+            hint.getLong() != segmentSize
+        ) {
+            log.warn("Ignoring invalid hint file of segment {}", segment.id);
+            return null;
+        }
+        List<Record> records = new ArrayList<>();
+        while (hint.hasRemaining()) {
+            records.add(new Record(hint.get(), readKey(hint), hint.getLong(), hint.getLong()));
+        }
+        segment.size = segmentSize;
+        return records;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private Path hintPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, HINT_SUFFIX));
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        byte[] key = new byte[KEY_LENGTH];
+        buffer.get(key);
+        return new String(key, StandardCharsets.US_ASCII);
+    }
+
+    private static ByteBuffer header(byte type, String key, long length) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(RECORD_MAGIC).put(type).put(key.getBytes(StandardCharsets.US_ASCII)).putLong(length);
+        return header.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("Unexpected end of segment");
+            }
+            position += read;
+        }
+    }
+
+    private static class Segment {
+
+        private final int id;
+
+        private final FileChannel channel;
+
+        private final AtomicLong deadBytes = new AtomicLong();
+
+        private volatile long size;
+
+        private volatile MappedByteBuffer mapping;
+
+        /**
+         * Records of the active segment, written to its hint file when it is sealed.
+         */
+        private List<Record> records;
+
+        Segment(int id, FileChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+
+        void seal() throws IOException {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            records = null;
+        }
+
+        ImageContent content(Location location) {
+            if (mapping == null) {
+                return new FileRegionContent(channel, location.offset, location.length, false);
+            }
+            return new ByteBufferContent(slice(location.offset, location.length));
+        }
+
+        ByteBuffer slice(long offset, long length) {
+            ByteBuffer slice = mapping.duplicate();
+            slice.position((int) offset).limit((int) (offset + length));
+            return slice.slice();
+        }
+    }
+
+    private static class Location {
+
+        private final int segment;
+
+        private final long offset;
+
+        private final long length;
+
+        Location(int segment, long offset, long length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A record of a segment. The offset of a tombstone is the id of the segment holding the deleted image.
+     */
+    private static class Record {
+
+        private final byte type;
+
+        private final String key;
+
+        private final long offset;
+
+        private final long length;
+
+        Record(byte type, String key, long offset, long length) {
+            this.type = type;
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
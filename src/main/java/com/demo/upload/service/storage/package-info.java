@@ -0,0 +1,4 @@
+/**
+ * Storage backends for uploaded images.
+ */
+package com.demo.upload.service.storage;
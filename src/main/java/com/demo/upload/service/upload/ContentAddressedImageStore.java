@@ -0,0 +1,262 @@
+package com.demo.upload.service.upload;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.storage.ImageContent;
+import com.demo.upload.service.storage.ImageStorage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores images under the SHA-256 hash of their content.
+ * <p>
+ * Content is hashed while it streams to a temporary file in {@code <store-directory>/tmp}, which is then
+ * handed to the configured {@link ImageStorage}: readers never observe a partial image, and uploading
+ * content that is already stored only costs the temporary write.
+ * <p>
+ * This class only manages content; reference counting is done by {@link com.demo.upload.service.ImageBlobService}.
+ */
+@Component
+public class ContentAddressedImageStore {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final Pattern CONTENT_KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Logger log = LoggerFactory.getLogger(ContentAddressedImageStore.class);
+
+    private final Path tmp;
+
+    private final StreamingFileWriter streamingFileWriter;
+
+    private final ImageStorage storage;
+
+    private final ImageDecoder imageDecoder;
+
+    public ContentAddressedImageStore(
+        ApplicationProperties applicationProperties,
+        StreamingFileWriter streamingFileWriter,
+        ImageStorage storage,
+        ImageDecoder imageDecoder
+    ) {
+        this.tmp = Paths.get(applicationProperties.getUpload().getStoreDirectory()).resolve("tmp");
+        this.streamingFileWriter = streamingFileWriter;
+        this.storage = storage;
+        this.imageDecoder = imageDecoder;
+    }
+
+    public void init() {
+        try {
+            Files.createDirectories(tmp);
+            storage.init();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize folder for upload!");
+        }
+    }
+
+    /**
+     * Streams the content into the store.
+     *
+     * @param originalFilename the filename sent by the client, only kept for reporting.
+     * @param content the content to store, which is not closed by this method.
+     * @return the stored image, identified by its content key.
+     * @throws UploadSizeLimitExceededException if the content is larger than the maximum part size.
+     * @throws IOException if the content could not be stored.
+     */
+    public StoredImage put(String originalFilename, InputStream content) throws IOException {
+        return put(originalFilename, content, streamingFileWriter.getMaxPartSize());
+    }
+
+    /**
+     * Variant of {@link #put(String, InputStream)} enforcing the given maximum size.
+     */
+    public StoredImage put(String originalFilename, InputStream content, long maxBytes) throws IOException {
+        return put(originalFilename, content, maxBytes, false);
+    }
+
+    /**
+     * Variant of {@link #put(String, InputStream)} only storing images, whose header is inspected by the
+     * {@link ImageDecoder} before the content is handed to the storage.
+     *
+     * @throws ImageDecodeException if the content is not an image in an accepted format.
+     * @throws ImageDimensionLimitExceededException if the image is larger than the configured limits.
+     */
+    public StoredImage putImage(String originalFilename, InputStream content) throws IOException {
+        return put(originalFilename, content, streamingFileWriter.getMaxPartSize(), true);
+    }
+
+    private StoredImage put(String originalFilename, InputStream content, long maxBytes, boolean image) throws IOException {
+        MessageDigest digest = newDigest();
+        Path temporary = Files.createTempFile(tmp, "upload-", ".part");
+        // createTempFile reserves a unique name, the writer expects to create the file itself
+        Files.delete(temporary);
+        try {
+            long size = streamingFileWriter.write(content, temporary, maxBytes, digest);
+            ImageHeader header = image ? imageDecoder.inspect(temporary) : null;
+            String contentKey = toHex(digest.digest());
+            if (await(storage.exists(contentKey))) {
+                log.debug("Content {} is already stored, discarding the duplicate upload", contentKey);
+            } else {
+                await(storage.put(contentKey, temporary));
+            }
+            return new StoredImage(originalFilename, contentKey, size, header);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Moves a complete image into the store, hashing it in place instead of copying it to a temporary file.
+     * <p>
+     * Like {@link #putImage(String, InputStream)}, the header of the image is inspected before it is stored.
+     *
+     * @param originalFilename the filename sent by the client, only kept for reporting.
+     * @param file the file to store, on the same file system as the store directory; it is consumed by this method.
+     * @return the stored image, identified by its content key.
+     * @throws ImageDecodeException if the content is not an image in an accepted format.
+     * @throws ImageDimensionLimitExceededException if the image is larger than the configured limits.
+     * @throws IOException if the file could not be stored.
+     */
+    public StoredImage putFile(String originalFilename, Path file) throws IOException {
+        try {
+            ImageHeader header = imageDecoder.inspect(file);
+            MessageDigest digest = newDigest();
+            long size;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                size = channel.size();
+                ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            String contentKey = toHex(digest.digest());
+            if (!await(storage.exists(contentKey))) {
+                await(storage.put(contentKey, file));
+            }
+            return new StoredImage(originalFilename, contentKey, size, header);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Opens stored content.
+     *
+     * @param contentKey the content key of the image.
+     * @return the content, which must be closed.
+     * @throws java.nio.file.NoSuchFileException if there is no content for this key.
+     * @throws IllegalArgumentException if the key is not a valid content key.
+     * @throws IOException if the content could not be opened.
+     */
+    public ImageContent open(String contentKey) throws IOException {
+        return await(storage.get(checkContentKey(contentKey)));
+    }
+
+    public boolean exists(String contentKey) throws IOException {
+        return isContentKey(contentKey) && await(storage.exists(contentKey));
+    }
+
+    public void delete(String contentKey) throws IOException {
+        await(storage.delete(List.of(checkContentKey(contentKey))));
+    }
+
+    /**
+     * Deletes stored content in a single batch.
+     *
+     * @param contentKeys the content keys of the images.
+     * @throws IOException if some content could not be deleted.
+     */
+    public void deleteAll(Collection<String> contentKeys) throws IOException {
+        contentKeys.forEach(ContentAddressedImageStore::checkContentKey);
+        await(storage.delete(contentKeys));
+    }
+
+    /**
+     * Lists the content keys of all stored images.
+     */
+    public Stream<String> keys() throws IOException {
+        return storage.keys().filter(ContentAddressedImageStore::isContentKey);
+    }
+
+    /**
+     * Reclaims the space held by deleted images, for storages which need it.
+     * <p>
+     * This is scheduled to run every {@code application.storage.segment.compaction-interval}.
+     */
+    @Scheduled(
+        initialDelayString = "${application.storage.segment.compaction-interval:PT10M}",
+        fixedDelayString = "${application.storage.segment.compaction-interval:PT10M}"
+    )
+    public void compact() {
+        try {
+            storage.compact();
+        } catch (IOException e) {
+            log.warn("Could not compact the image storage", e);
+        }
+    }
+
+    public static boolean isContentKey(String value) {
+        return value != null && CONTENT_KEY_PATTERN.matcher(value).matches();
+    }
+
+    private static String checkContentKey(String contentKey) {
+        if (!isContentKey(contentKey)) {
+            throw new IllegalArgumentException("Invalid content key: " + contentKey);
+        }
+        return contentKey;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,10 @@
+package com.demo.upload.service.upload;
+
+public class DuplicatePartException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DuplicatePartException(String fieldName) {
+        super("The " + fieldName + " part was sent more than once");
+    }
+}
@@ -0,0 +1,189 @@
+package com.demo.upload.service.upload;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.storage.ImageContent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Least-recently-used cache of the bytes of hot images, bounded by their total size.
+ * <p>
+ * Entries are direct buffers, so cached images add no pressure on the garbage collector, and are keyed
+ * by content key: as stored content never changes, entries only need to be invalidated when a blob is deleted.
+ * Images larger than {@code application.image-cache.max-entry-size} are not cached.
+ * <p>
+ * The usual {@code cache.*} meters are published with the {@value #CACHE_NAME} cache name,
+ * along with {@code cache.bytes}.
+ */
+@Component
+public class ImageBytesCache {
+
+    public static final String CACHE_NAME = "images";
+
+    private final long maxSize;
+
+    private final long maxEntrySize;
+
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public ImageBytesCache(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.ImageCache imageCache = applicationProperties.getImageCache();
+        this.maxSize = imageCache.getMaxSize().toBytes();
+        this.maxEntrySize = Math.min(imageCache.getMaxEntrySize().toBytes(), maxSize);
+        new ImageBytesCacheMetrics(this).bindTo(meterRegistry);
+    }
+
+    /**
+     * Returns the cached content of an image.
+     *
+     * @param contentKey the content key of the image.
+     * @return a read-only buffer over the content, or {@code null} on a miss.
+     */
+    public ByteBuffer get(String contentKey) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        ByteBuffer cached;
+        synchronized (this) {
+            cached = entries.get(contentKey);
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.duplicate();
+    }
+
+    /**
+     * Reads the content of an image into the cache, after a miss.
+     *
+     * @param contentKey the content key of the image.
+     * @param content the content of the image, which is left untouched if it is not cacheable.
+     * @return a read-only buffer over the content, or {@code null} if the image is not cacheable.
+     * @throws IOException if the content could not be read.
+     */
+    public ByteBuffer load(String contentKey, ImageContent content) throws IOException {
+        long length = content.size();
+        if (length < 0 || length > maxEntrySize) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        try (ReadableByteChannel channel = Channels.newChannel(content.openStream(0, length))) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the buffer is full
+            }
+        }
+        if (buffer.hasRemaining()) {
+            throw new EOFException("Image " + contentKey + " is shorter than its " + length + " bytes");
+        }
+        buffer.flip();
+        ByteBuffer cached = buffer.asReadOnlyBuffer();
+        put(contentKey, cached);
+        return cached.duplicate();
+    }
+
+    /**
+     * Removes an image from the cache.
+     *
+     * @param contentKey the content key of the image.
+     */
+    public synchronized void invalidate(String contentKey) {
+        ByteBuffer removed = entries.remove(contentKey);
+        if (removed != null) {
+            size -= removed.limit();
+        }
+    }
+
+    private synchronized void put(String contentKey, ByteBuffer content) {
+        ByteBuffer previous = entries.put(contentKey, content);
+        if (previous != null) {
+            size -= previous.limit();
+        }
+        size += content.limit();
+        puts.increment();
+        Iterator<ByteBuffer> eldest = entries.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            size -= eldest.next().limit();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private static class ImageBytesCacheMetrics extends CacheMeterBinder<ImageBytesCache> {
+
+        ImageBytesCacheMetrics(ImageBytesCache cache) {
+            super(cache, CACHE_NAME, Tags.empty());
+        }
+
+        @Override
+        protected Long size() {
+            ImageBytesCache cache = getCache();
+            return cache == null ? null : (long) cache.entryCount();
+        }
+
+        @Override
+        protected long hitCount() {
+            ImageBytesCache cache = getCache();
+            return cache == null ? 0 : cache.hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            ImageBytesCache cache = getCache();
+            return cache == null ? null : cache.misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            ImageBytesCache cache = getCache();
+            return cache == null ? null : cache.evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            ImageBytesCache cache = getCache();
+            return cache == null ? 0 : cache.puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+            Gauge
+                .builder("cache.bytes", getCache(), ImageBytesCache::size)
+                .tags(getTagsWithCacheName())
+                .description("The number of bytes held by the cache")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.demo.upload.service.upload;
+
+public class ImageDecodeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ImageDecodeException(String message) {
+        super(message);
+    }
+
+    public ImageDecodeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
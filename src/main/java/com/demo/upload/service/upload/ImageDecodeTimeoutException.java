@@ -0,0 +1,12 @@
+package com.demo.upload.service.upload;
+
+import java.time.Duration;
+
+public class ImageDecodeTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ImageDecodeTimeoutException(long pixels, Duration timeout) {
+        super("Image of " + pixels + " pixels did not fit in the decode budget within " + timeout);
+    }
+}
@@ -0,0 +1,178 @@
+package com.demo.upload.service.upload;
+
+import com.demo.upload.config.ApplicationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.springframework.stereotype.Component;
+
+/**
+ * Inspects and decodes images with {@code javax.imageio}, within the limits configured in {@code application.upload}.
+ * <p>
+ * Images are checked on their header alone: the format is sniffed from the content, and an image declaring more than
+ * {@code max-image-width}, {@code max-image-height} or {@code max-image-pixels} is rejected before any of its pixels
+ * are allocated, so that a small file declaring huge dimensions cannot exhaust the heap.
+ * <p>
+ * Full decodes share a budget of {@code decode-pixel-budget} pixels: a decode waits until its image fits in what
+ * is left of the budget, for at most {@code decode-wait-timeout}, and gives its pixels back once the
+ * {@link DecodedImage} is closed. The pixels currently decoded are published as the
+ * {@value #DECODED_PIXELS_METER_NAME} gauge.
+ */
+@Component
+public class ImageDecoder {
+
+    public static final String DECODED_PIXELS_METER_NAME = "image.decoded.pixels";
+
+    private static final String DECODED_PIXELS_METER_DESCRIPTION = "Number of pixels of the images decoded at the moment";
+
+    private final Set<String> formats;
+
+    private final int maxWidth;
+
+    private final int maxHeight;
+
+    private final int maxPixels;
+
+    private final int pixelBudget;
+
+    private final Semaphore availablePixels;
+
+    private final Duration waitTimeout;
+
+    public ImageDecoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Upload upload = applicationProperties.getUpload();
+        this.formats = upload.getImageFormats().stream().map(format -> format.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.maxWidth = upload.getMaxImageWidth();
+        this.maxHeight = upload.getMaxImageHeight();
+        this.maxPixels = upload.getMaxImagePixels();
+        // An accepted image must fit in the budget on its own, or its decode would wait forever
+        this.pixelBudget = Math.max(upload.getDecodePixelBudget(), maxPixels);
+        // Fair, so that large images are not starved by a stream of small ones
+        this.availablePixels = new Semaphore(pixelBudget, true);
+        this.waitTimeout = upload.getDecodeWaitTimeout();
+
+        Gauge
+            .builder(DECODED_PIXELS_METER_NAME, availablePixels, semaphore -> pixelBudget - semaphore.availablePermits())
+            .description(DECODED_PIXELS_METER_DESCRIPTION)
+            .baseUnit("pixels")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Reads and checks the header of the first image of a file, without decoding its pixels.
+     *
+     * @param file the file holding the image.
+     * @return the header of the image.
+     * @throws ImageDecodeException if the content is not an image in an accepted format.
+     * @throws ImageDimensionLimitExceededException if the image is larger than the configured limits.
+     * @throws IOException if the file could not be read.
+     */
+    public ImageHeader inspect(Path file) throws IOException {
+        return check(ImageHeader.read(file));
+    }
+
+    /**
+     * Decodes the first image of a stream once its header has been checked, waiting for its pixels to fit in the
+     * decode budget.
+     *
+     * @param content the stream to decode, which is not closed by this method.
+     * @return the decoded image, which must be closed once no longer used.
+     * @throws ImageDecodeException if the content is not an image in an accepted format.
+     * @throws ImageDimensionLimitExceededException if the image is larger than the configured limits.
+     * @throws ImageDecodeTimeoutException if the image did not fit in the decode budget in time.
+     * @throws IOException if the content could not be read or decoded, or the thread was interrupted while waiting.
+     */
+    public DecodedImage decode(InputStream content) throws IOException {
+        // Buffer in memory rather than in a temporary file, images are small
+        try (ImageInputStream input = new MemoryCacheImageInputStream(content)) {
+            ImageReader reader = ImageHeader.reader(input);
+            try {
+                ImageHeader header = check(ImageHeader.of(reader));
+                // Checked against maxPixels, which is an int
+                int pixels = (int) header.getPixels();
+                acquire(pixels);
+                try {
+                    return new DecodedImage(reader.read(0), header.getFormat(), () -> availablePixels.release(pixels));
+                } catch (IOException | RuntimeException e) {
+                    availablePixels.release(pixels);
+                    throw e;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageHeader check(ImageHeader header) {
+        if (!formats.contains(header.getFormat())) {
+            throw new ImageDecodeException("Unsupported image format " + header.getFormat());
+        }
+        if (header.getWidth() > maxWidth || header.getHeight() > maxHeight || header.getPixels() > maxPixels) {
+            throw new ImageDimensionLimitExceededException(header.getWidth(), header.getHeight(), maxWidth, maxHeight, maxPixels);
+        }
+        return header;
+    }
+
+    private void acquire(int pixels) throws InterruptedIOException {
+        try {
+            if (!availablePixels.tryAcquire(pixels, waitTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ImageDecodeTimeoutException(pixels, waitTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to decode an image of " + pixels + " pixels");
+        }
+    }
+
+    /**
+     * A decoded image, holding its pixels of the decode budget until it is closed.
+     */
+    public static class DecodedImage implements AutoCloseable {
+
+        private final BufferedImage image;
+
+        private final String formatName;
+
+        private final Runnable release;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private DecodedImage(BufferedImage image, String formatName, Runnable release) {
+            this.image = image;
+            this.formatName = formatName;
+            this.release = release;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public String getFormatName() {
+            return formatName;
+        }
+
+        /**
+         * Gives the pixels of the image back to the decode budget: the image must no longer be used.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release.run();
+            }
+        }
+    }
+}
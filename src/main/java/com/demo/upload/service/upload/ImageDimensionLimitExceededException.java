@@ -0,0 +1,12 @@
+package com.demo.upload.service.upload;
+
+public class ImageDimensionLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ImageDimensionLimitExceededException(int width, int height, int maxWidth, int maxHeight, long maxPixels) {
+        super(
+            "Image of " + width + "x" + height + " pixels exceeds the maximum of " + maxWidth + "x" + maxHeight + " and " + maxPixels + " pixels"
+        );
+    }
+}
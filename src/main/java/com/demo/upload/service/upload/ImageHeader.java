@@ -0,0 +1,112 @@
+package com.demo.upload.service.upload;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * The format and dimensions of an image, read from its header without decoding its pixels.
+ */
+public final class ImageHeader {
+
+    private final String format;
+
+    private final int width;
+
+    private final int height;
+
+    private ImageHeader(String format, int width, int height) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Reads the header of the first image of a file.
+     *
+     * @param file the file holding the image.
+     * @return the header of the image.
+     * @throws ImageDecodeException if no reader recognizes the content, or its header is invalid.
+     * @throws IOException if the file could not be read.
+     */
+    public static ImageHeader read(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                throw new IOException("Could not open " + file);
+            }
+            ImageReader reader = reader(input);
+            try {
+                return of(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @param input the stream holding the image.
+     * @return a reader of the first image of the stream, chosen from its content rather than any file name.
+     * @throws ImageDecodeException if no reader recognizes the content.
+     */
+    static ImageReader reader(ImageInputStream input) {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new ImageDecodeException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    /**
+     * @param reader a reader set on the image, from which only the header is read.
+     * @return the header of the first image.
+     * @throws ImageDecodeException if the header is invalid.
+     */
+    static ImageHeader of(ImageReader reader) {
+        String format;
+        int width;
+        int height;
+        try {
+            format = reader.getFormatName().toLowerCase(Locale.ROOT);
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+        } catch (IOException | RuntimeException e) {
+            throw new ImageDecodeException("Invalid image header", e);
+        }
+        if (width <= 0 || height <= 0) {
+            throw new ImageDecodeException("Invalid " + format + " image dimensions " + width + "x" + height);
+        }
+        return new ImageHeader(format, width, height);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getPixels() {
+        return (long) width * height;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ImageHeader{" +
+            "format='" + format + "'" +
+            ", width=" + width +
+            ", height=" + height +
+            "}";
+    }
+}
@@ -0,0 +1,66 @@
+package com.demo.upload.service.upload;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Scales down and encodes images with {@code javax.imageio}, once decoded by {@link ImageDecoder}.
+ */
+public final class ImageResizer {
+
+    private static final String JPEG_FORMAT = "jpeg";
+
+    private static final String PNG_FORMAT = "png";
+
+    private ImageResizer() {}
+
+    /**
+     * Scales an image down so that its largest dimension fits the given size, keeping its aspect ratio.
+     *
+     * @param image the image to scale.
+     * @param maxDimension the largest width or height of the result.
+     * @return the scaled image, or {@code null} if the image already fits.
+     */
+    public static BufferedImage scaleDown(BufferedImage image, int maxDimension) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (Math.max(width, height) <= maxDimension) {
+            return null;
+        }
+        double ratio = (double) maxDimension / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Encodes an image as JPEG when its source was a JPEG without transparency, and as PNG otherwise.
+     *
+     * @param image the image to encode.
+     * @param sourceFormat the format name of the source image.
+     * @return the encoded bytes.
+     * @throws IOException if the image could not be encoded.
+     */
+    public static byte[] encode(BufferedImage image, String sourceFormat) throws IOException {
+        boolean jpeg = JPEG_FORMAT.equalsIgnoreCase(sourceFormat) && !image.getColorModel().hasAlpha();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, jpeg ? JPEG_FORMAT : PNG_FORMAT, out)) {
+            throw new IOException("No image writer available for " + (jpeg ? JPEG_FORMAT : PNG_FORMAT));
+        }
+        return out.toByteArray();
+    }
+}
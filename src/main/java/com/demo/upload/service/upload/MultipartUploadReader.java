@@ -0,0 +1,137 @@
+package com.demo.upload.service.upload;
+
+import com.demo.upload.management.UploadMetersService;
+import com.demo.upload.management.UploadMetersService.UploadEndpoint;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Reads the file parts of a multipart request straight off the servlet input stream.
+ * <p>
+ * Parts are handed to a {@link PartWriter} one at a time while the request body is being received,
+ * so nothing is spooled to memory or to a temporary file before it reaches its final location.
+ */
+@Component
+public class MultipartUploadReader {
+
+    private final Logger log = LoggerFactory.getLogger(MultipartUploadReader.class);
+
+    private final UploadMetersService uploadMetersService;
+
+    public MultipartUploadReader(UploadMetersService uploadMetersService) {
+        this.uploadMetersService = uploadMetersService;
+    }
+
+    /**
+     * Stores a single file part.
+     */
+    @FunctionalInterface
+    public interface PartWriter {
+        /**
+         * @param fieldName the name of the form field.
+         * @param filename the original filename sent by the client.
+         * @param content the part content, positioned at its first byte.
+         * @return the stored image, or {@code null} if the part was ignored.
+         * @throws IOException if the part could not be stored.
+         */
+        StoredImage write(String fieldName, String filename, InputStream content) throws IOException;
+    }
+
+    /**
+     * Streams every file part of the request to the given writer.
+     *
+     * @param request the multipart request.
+     * @param endpoint the endpoint the request was received on, used to tag metrics.
+     * @param writer the writer storing each part.
+     * @return the stored images, keyed by form field name, in the order they were received.
+     * @throws MultipartException if the request is not a valid multipart request.
+     * @throws DuplicatePartException if a field has more than one file part.
+     * @throws IOException if a part could not be stored.
+     */
+    public Map<String, StoredImage> read(HttpServletRequest request, UploadEndpoint endpoint, PartWriter writer) throws IOException {
+        long start = System.nanoTime();
+        Map<String, StoredImage> storedImages = new LinkedHashMap<>();
+        try {
+            MultipartHttpServletRequest resolvedRequest = WebUtils.getNativeRequest(request, MultipartHttpServletRequest.class);
+            if (resolvedRequest != null) {
+                // The multipart resolver is enabled (e.g. with the "api-docs" profile), parts were already received.
+                log.debug("Multipart request already resolved, reading parts from the resolver");
+                for (Map.Entry<String, List<MultipartFile>> entry : resolvedRequest.getMultiFileMap().entrySet()) {
+                    for (MultipartFile file : entry.getValue()) {
+                        try (InputStream content = file.getInputStream()) {
+                            store(storedImages, endpoint, writer, entry.getKey(), file.getOriginalFilename(), content);
+                        }
+                    }
+                }
+                return storedImages;
+            }
+            if (!ServletFileUpload.isMultipartContent(request)) {
+                throw new MultipartException("Request is not a multipart request");
+            }
+            FileItemIterator items = new ServletFileUpload().getItemIterator(request);
+            boolean firstPart = true;
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    continue;
+                }
+                if (firstPart) {
+                    // The headers of the part were parsed, its content is the next byte of the body
+                    uploadMetersService.trackTimeToFirstByte(endpoint, System.nanoTime() - start);
+                    firstPart = false;
+                }
+                try (InputStream content = item.openStream()) {
+                    store(storedImages, endpoint, writer, item.getFieldName(), item.getName(), content);
+                }
+            }
+            return storedImages;
+        } catch (FileUploadException e) {
+            throw new MultipartException("Could not read the multipart request", e);
+        } finally {
+            uploadMetersService.trackDuration(endpoint, System.nanoTime() - start);
+        }
+    }
+
+    private void store(
+        Map<String, StoredImage> storedImages,
+        UploadEndpoint endpoint,
+        PartWriter writer,
+        String fieldName,
+        String filename,
+        InputStream content
+    ) throws IOException {
+        if (storedImages.containsKey(fieldName)) {
+            throw new DuplicatePartException(fieldName);
+        }
+        long start = System.nanoTime();
+        StoredImage storedImage;
+        try {
+            storedImage = writer.write(fieldName, filename, content);
+        } finally {
+            uploadMetersService.trackWrite(endpoint, System.nanoTime() - start);
+        }
+        if (storedImage != null) {
+            log.debug("Stored part '{}' as {}", fieldName, storedImage);
+            uploadMetersService.trackBytesReceived(endpoint, storedImage.getSize());
+            if (storedImage.getHeader() != null) {
+                uploadMetersService.trackImageDimensions(endpoint, storedImage.getHeader().getWidth(), storedImage.getHeader().getHeight());
+            }
+            storedImages.put(fieldName, storedImage);
+        }
+    }
+}
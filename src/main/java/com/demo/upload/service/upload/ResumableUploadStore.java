@@ -0,0 +1,299 @@
+package com.demo.upload.service.upload;
+
+import com.demo.upload.config.ApplicationProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the images being uploaded in chunks, so an interrupted upload can resume from the last received byte.
+ * <p>
+ * Each upload is a file in {@code <store-directory>/resumable}, preallocated to its announced length when the upload
+ * is created; chunks are written from the request straight into that file at their offset, and the offset of the
+ * upload advances with every write, so a dropped connection keeps the bytes it delivered. The state of an
+ * upload is a small in-memory record holding its offset and expiry, and uploads which did not receive a chunk
+ * for {@code application.resumable-upload.expiry} are discarded with their file.
+ * <p>
+ * Uploads do not survive a restart. Files without an upload in this instance are only discarded once they were not
+ * written to for the expiry, so that the uploads of other instances sharing the directory are left alone.
+ */
+@Component
+public class ResumableUploadStore {
+
+    private static final String FILE_SUFFIX = ".upload";
+
+    private static final int TRANSFER_BUFFER_SIZE = 8 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(ResumableUploadStore.class);
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final long expiryMillis;
+
+    private final Clock clock;
+
+    @Autowired
+    public ResumableUploadStore(ApplicationProperties applicationProperties) {
+        this(applicationProperties, Clock.systemUTC());
+    }
+
+    ResumableUploadStore(ApplicationProperties applicationProperties, Clock clock) {
+        this.directory = Paths.get(applicationProperties.getUpload().getStoreDirectory()).resolve("resumable");
+        this.maxSize = applicationProperties.getResumableUpload().getMaxSize().toBytes();
+        this.expiryMillis = applicationProperties.getResumableUpload().getExpiry().toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Creates an upload and preallocates its file.
+     *
+     * @param owner the login of the user uploading the image.
+     * @param part the name of the image being uploaded.
+     * @param filename the filename sent by the client, only kept for reporting.
+     * @param length the size of the image, in bytes.
+     * @return the new upload.
+     * @throws UploadSizeLimitExceededException if the length is larger than {@code application.resumable-upload.max-size}.
+     * @throws IOException if the file could not be created.
+     */
+    public Session create(String owner, String part, String filename, long length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid upload length: " + length);
+        }
+        if (length > maxSize) {
+            throw new UploadSizeLimitExceededException(maxSize);
+        }
+        Files.createDirectories(directory);
+        Session session = new Session(UUID.randomUUID().toString(), owner, part, filename, length, expiresAt());
+        // Registered before its file exists, so that a purge never takes the file for a leftover
+        sessions.put(session.getId(), session);
+        try (FileChannel channel = FileChannel.open(file(session), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            if (length > 0) {
+                channel.write(ByteBuffer.allocate(1), length - 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(session);
+            throw e;
+        }
+        log.debug("Created resumable upload {} of {} bytes for {}", session.getId(), length, owner);
+        return session;
+    }
+
+    /**
+     * Gets an upload which has not expired.
+     *
+     * @param id the id of the upload.
+     * @param owner the login of the user who created it.
+     * @return the upload, or empty if there is no such upload for this user.
+     */
+    public Optional<Session> get(String id, String owner) {
+        return Optional
+            .ofNullable(sessions.get(id))
+            .filter(session -> session.owner.equals(owner) && !session.completed && !isExpired(session));
+    }
+
+    /**
+     * Writes a chunk of the upload.
+     *
+     * @param session the upload.
+     * @param offset the offset of the chunk, which must be the current offset of the upload.
+     * @param content the chunk, read until its end.
+     * @return the number of bytes written.
+     * @throws UploadOffsetConflictException if the offset is not the current one or another chunk is being written.
+     * @throws UploadSizeLimitExceededException if the chunk goes past the length of the upload.
+     * @throws IOException if the chunk could not be read or written; the bytes written so far are kept.
+     */
+    public long append(Session session, long offset, InputStream content) throws IOException {
+        if (!session.writing.compareAndSet(false, true)) {
+            throw new UploadOffsetConflictException("A chunk is already being written for this upload");
+        }
+        try (FileChannel channel = FileChannel.open(file(session), StandardOpenOption.WRITE)) {
+            if (offset != session.offset) {
+                throw new UploadOffsetConflictException("Expected offset " + session.offset + " but got " + offset);
+            }
+            ReadableByteChannel source = Channels.newChannel(content);
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            long written = 0;
+            while (session.offset < session.length) {
+                buffer.limit((int) Math.min(buffer.capacity(), session.length - session.offset));
+                if (source.read(buffer) == -1) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    session.offset += channel.write(buffer, session.offset);
+                }
+                written += buffer.limit();
+                buffer.clear();
+            }
+            if (session.offset == session.length && content.read() != -1) {
+                throw new UploadSizeLimitExceededException(session.length);
+            }
+            return written;
+        } finally {
+            session.expiresAt = expiresAt();
+            session.writing.set(false);
+        }
+    }
+
+    /**
+     * Ends a complete upload and hands its file over to the caller.
+     * <p>
+     * The upload is no longer visible, but is kept until the caller deletes it once the file was moved, so that a
+     * purge does not discard the file in the meantime.
+     *
+     * @param session the upload.
+     * @return the file holding the image, which the caller must move, then {@link #delete(Session)} the upload.
+     * @throws UploadOffsetConflictException if some bytes were not received yet.
+     */
+    public Path complete(Session session) {
+        if (!session.writing.compareAndSet(false, true)) {
+            throw new UploadOffsetConflictException("A chunk is still being written for this upload");
+        }
+        if (session.offset != session.length) {
+            session.writing.set(false);
+            throw new UploadOffsetConflictException("The upload is not complete: " + session.offset + " of " + session.length + " bytes");
+        }
+        // The upload stays marked as being written, so a late chunk is rejected and a purge skips it
+        session.completed = true;
+        return file(session);
+    }
+
+    /**
+     * Abandons an upload and deletes its file.
+     */
+    public void delete(Session session) throws IOException {
+        sessions.remove(session.getId());
+        Files.deleteIfExists(file(session));
+    }
+
+    /**
+     * Discards the uploads which expired, and the files left by uploads unknown to this instance which were not
+     * written to for the expiry.
+     * <p>
+     * This is scheduled to run every {@code application.resumable-upload.purge-interval}.
+     */
+    @Scheduled(
+        initialDelayString = "${application.resumable-upload.purge-interval:PT5M}",
+        fixedDelayString = "${application.resumable-upload.purge-interval:PT5M}"
+    )
+    public void purge() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            for (Session session : sessions.values()) {
+                if (isExpired(session) && !session.writing.get()) {
+                    log.debug("Discarding expired resumable upload {}", session.getId());
+                    delete(session);
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (
+                        !sessions.containsKey(name.substring(0, name.length() - FILE_SUFFIX.length())) &&
+                        Files.getLastModifiedTime(file).toMillis() + expiryMillis <= clock.millis()
+                    ) {
+                        log.debug("Discarding expired resumable upload {}", file);
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not purge the expired resumable uploads", e);
+        }
+    }
+
+    private boolean isExpired(Session session) {
+        return session.expiresAt <= clock.millis();
+    }
+
+    private long expiresAt() {
+        return clock.millis() + expiryMillis;
+    }
+
+    private Path file(Session session) {
+        return directory.resolve(session.getId() + FILE_SUFFIX);
+    }
+
+    /**
+     * The state of an upload.
+     */
+    public static class Session {
+
+        private final String id;
+
+        private final String owner;
+
+        private final String part;
+
+        private final String filename;
+
+        private final long length;
+
+        private volatile long offset;
+
+        private volatile long expiresAt;
+
+        private volatile boolean completed;
+
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        Session(String id, String owner, String part, String filename, long length, long expiresAt) {
+            this.id = id;
+            this.owner = owner;
+            this.part = part;
+            this.filename = filename;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getPart() {
+            return part;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public Instant getExpiresAt() {
+            return Instant.ofEpochMilli(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.demo.upload.service.upload;
+
+/**
+ * An image part that has been streamed to the image storage, identified by the hash of its content.
+ */
+public class StoredImage {
+
+    private final String originalFilename;
+
+    private final String contentKey;
+
+    private final long size;
+
+    private final ImageHeader header;
+
+    public StoredImage(String originalFilename, String contentKey, long size) {
+        this(originalFilename, contentKey, size, null);
+    }
+
+    public StoredImage(String originalFilename, String contentKey, long size, ImageHeader header) {
+        this.originalFilename = originalFilename;
+        this.contentKey = contentKey;
+        this.size = size;
+        this.header = header;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public String getContentKey() {
+        return contentKey;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the header of the image, or {@code null} if the content was stored without being inspected.
+     */
+    public ImageHeader getHeader() {
+        return header;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StoredImage{" +
+            "originalFilename='" + originalFilename + "'" +
+            ", contentKey='" + contentKey + "'" +
+            ", size=" + size +
+            ", header=" + header +
+            "}";
+    }
+}
@@ -0,0 +1,147 @@
+package com.demo.upload.service.upload;
+
+import com.demo.upload.config.ApplicationProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams upload content to disk through a bounded pool of direct buffers.
+ * <p>
+ * Each byte is copied once from the request into a direct buffer and written once to the target file,
+ * and the size limit is checked while the bytes are arriving, so an oversized part is rejected
+ * without ever being fully received. When all buffers are in use, writers wait for one to be released,
+ * which keeps the off-heap footprint of concurrent uploads bounded.
+ */
+@Component
+public class StreamingFileWriter {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    private final AtomicInteger allocatedBuffers = new AtomicInteger();
+
+    private final int bufferCount;
+
+    private final int bufferSize;
+
+    private final long maxPartSize;
+
+    public StreamingFileWriter(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Upload upload = applicationProperties.getUpload();
+        this.bufferCount = upload.getBufferCount();
+        this.bufferSize = (int) upload.getBufferSize().toBytes();
+        this.maxPartSize = upload.getMaxPartSize().toBytes();
+        this.buffers = new ArrayBlockingQueue<>(bufferCount);
+    }
+
+    /**
+     * Writes the content to a new file, enforcing the configured maximum part size.
+     *
+     * @param content the stream to read, which is not closed by this method.
+     * @param target the file to create, which must not exist yet.
+     * @return the number of bytes written.
+     * @throws UploadSizeLimitExceededException if the content is larger than the maximum part size.
+     * @throws IOException if the content could not be read or written.
+     */
+    public long write(InputStream content, Path target) throws IOException {
+        return write(content, target, maxPartSize);
+    }
+
+    /**
+     * Writes the content to a new file, enforcing the given maximum size.
+     *
+     * @param content the stream to read, which is not closed by this method.
+     * @param target the file to create, which must not exist yet.
+     * @param maxBytes the maximum number of bytes accepted.
+     * @return the number of bytes written.
+     * @throws UploadSizeLimitExceededException if the content is larger than {@code maxBytes}.
+     * @throws IOException if the content could not be read or written.
+     */
+    public long write(InputStream content, Path target, long maxBytes) throws IOException {
+        return write(content, target, maxBytes, null);
+    }
+
+    /**
+     * Writes the content to a new file, enforcing the given maximum size and feeding every byte
+     * to the given digest while it is in the buffer, so the content is hashed without a second pass.
+     *
+     * @param content the stream to read, which is not closed by this method.
+     * @param target the file to create, which must not exist yet.
+     * @param maxBytes the maximum number of bytes accepted.
+     * @param digest the digest to update, or {@code null}.
+     * @return the number of bytes written.
+     * @throws UploadSizeLimitExceededException if the content is larger than {@code maxBytes}.
+     * @throws IOException if the content could not be read or written.
+     */
+    public long write(InputStream content, Path target, long maxBytes, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = acquire();
+        try {
+            return copy(content, target, maxBytes, digest, buffer);
+        } finally {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    private long copy(InputStream content, Path target, long maxBytes, MessageDigest digest, ByteBuffer buffer) throws IOException {
+        FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        boolean completed = false;
+        try (channel) {
+            ReadableByteChannel source = Channels.newChannel(content);
+            long written = 0;
+            while (source.read(buffer) != -1) {
+                written += buffer.position();
+                if (written > maxBytes) {
+                    throw new UploadSizeLimitExceededException(maxBytes);
+                }
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            completed = true;
+            return written;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    private ByteBuffer acquire() throws IOException {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers.incrementAndGet() <= bufferCount) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        allocatedBuffers.decrementAndGet();
+        try {
+            return buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upload buffer");
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.demo.upload.service.upload;
+
+public class UploadOffsetConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UploadOffsetConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.demo.upload.service.upload;
+
+public class UploadSizeLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UploadSizeLimitExceededException(long maxBytes) {
+        super("Uploaded part exceeds the maximum size of " + maxBytes + " bytes");
+    }
+}
@@ -4,13 +4,17 @@ import com.demo.upload.config.Constants;
 import com.demo.upload.domain.User;
 import com.demo.upload.repository.UserRepository;
 import com.demo.upload.security.SecurityUtils;
-import com.demo.upload.service.MailService;
 import com.demo.upload.service.UserService;
 import com.demo.upload.service.dto.AdminUserDTO;
 import com.demo.upload.service.dto.PasswordChangeDTO;
+import com.demo.upload.management.UploadMetersService.UploadEndpoint;
+import com.demo.upload.service.upload.MultipartUploadReader;
 import com.demo.upload.service.upload.ResponseMessage;
+import com.demo.upload.service.upload.StoredImage;
 import com.demo.upload.web.rest.errors.*;
 import com.demo.upload.web.rest.vm.KeyAndPasswordVM;
+import com.demo.upload.web.rest.util.StoredImageResponder;
+import com.demo.upload.web.rest.util.UploadFailureResponder;
 import com.demo.upload.web.rest.vm.ManagedUserVM;
 
 
@@ -24,6 +28,7 @@ import java.util.*;
 import java.util.stream.Stream;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
 
@@ -35,9 +40,11 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * REST controller for managing the current user's account.
@@ -55,16 +62,30 @@ public class AccountResource {
 
     private final Logger log = LoggerFactory.getLogger(AccountResource.class);
 
+    private static final String FILE_PART = "file";
+
     private final UserRepository userRepository;
 
     private final UserService userService;
 
-    private final MailService mailService;
+    private final MultipartUploadReader multipartUploadReader;
+
+    private final StoredImageResponder storedImageResponder;
+
+    private final UploadFailureResponder uploadFailureResponder;
 
-    public AccountResource(UserRepository userRepository, UserService userService, MailService mailService) {
+    public AccountResource(
+        UserRepository userRepository,
+        UserService userService,
+        MultipartUploadReader multipartUploadReader,
+        StoredImageResponder storedImageResponder,
+        UploadFailureResponder uploadFailureResponder
+    ) {
         this.userRepository = userRepository;
         this.userService = userService;
-        this.mailService = mailService;
+        this.multipartUploadReader = multipartUploadReader;
+        this.storedImageResponder = storedImageResponder;
+        this.uploadFailureResponder = uploadFailureResponder;
     }
 
     /**
@@ -81,11 +102,10 @@ public class AccountResource {
         if (isPasswordLengthInvalid(managedUserVM.getPassword())) {
             throw new InvalidPasswordException();
         }
-        User user = userService.registerUser(managedUserVM, 
+        userService.registerUser(managedUserVM, 
         									managedUserVM.getPassword(),
         									managedUserVM.getFrontImage(),
         									managedUserVM.getBackImage());
-        mailService.sendActivationEmail(user);
     }
 
     /**
@@ -185,9 +205,7 @@ public class AccountResource {
     @PostMapping(path = "/account/reset-password/init")
     public void requestPasswordReset(@RequestBody String mail) {
         Optional<User> user = userService.requestPasswordReset(mail);
-        if (user.isPresent()) {
-            mailService.sendPasswordResetMail(user.get());
-        } else {
+        if (user.isEmpty()) {
             // Pretend the request has been successful to prevent checking which emails really exist
             // but log that an invalid attempt has been made
             log.warn("Password reset requested for non existing mail");
@@ -226,89 +244,51 @@ public class AccountResource {
 
 //---------------------------------------------------------------
 
-//    private static final Path CURRENT_FOLDER = Paths.get(System.getProperty("user.dir"));
-//
-//    @PostMapping("/upload")
-//    @ResponseStatus(HttpStatus.CREATED)
-//    public void uploadImage(@Valid 
-//    						@RequestParam MultipartFile image) {
-//	      
-//    	try {
-//    		  Path staticPath = Paths.get("static");	       
-//	  	      Path imagePath = Paths.get("images");	      
-//	  	      if (!Files.exists(CURRENT_FOLDER.resolve(staticPath).resolve(imagePath))) {
-//	  	            Files.createDirectories(CURRENT_FOLDER.resolve(staticPath).resolve(imagePath));
-//	  	        }        
-//	  	        Path file = CURRENT_FOLDER.resolve(staticPath)
-//	  	                				  .resolve(imagePath)
-//	  	                				  .resolve(image.getOriginalFilename());        
-//	  	        try (OutputStream os = Files.newOutputStream(file)) {
-//	  	            os.write(image.getBytes());
-//	  	        }
-//	  	       
-//	  	        
-//	  	        String userLogin = SecurityUtils
-//	  								.getCurrentUserLogin()
-//	  								.orElseThrow(() -> new AccountResourceException("Current user login not found"));
-//	  	        
-//	  	        System.out.println(userRepository.findOneByLogin(userLogin));
-//	  	        
-//	  	        
-//	  	        userService.updateUserWithImage(
-//	  	        		imagePath.resolve(image.getOriginalFilename()).toString()
-//	  	        );
-//		} catch (Exception e) {
-//			
-//			System.out.println(e);
-//			
-//		}
-//    	
-//    	
-//    	
-//	    }
-	        
-    
-    
-  //---------------------------------------------------------------
-
-
     @PostMapping("/upload")
-    public ResponseEntity<ResponseMessage> uploadFile(@RequestParam("file") MultipartFile file) {
-    	System.out.println("HUY");
-
-    	String message = "";
-     
-      try {
-    	  userService.save(file);
-
-        message = "Uploaded the file successfully: " + file.getOriginalFilename();
-        
-
-		userService.updateUserWithImage(
-				Paths.get("uploads").resolve(file.getOriginalFilename()).toString());
-
-     
-        
-        return ResponseEntity.status(HttpStatus.OK)
-      		  .body(new ResponseMessage(message));
-      } 
-      catch (Exception e) {
-        message = "Could not upload the file: " + file.getOriginalFilename() + "!";
-        return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED)
-      		  				.body(new ResponseMessage(message));
-      }
+    @Transactional
+    public ResponseEntity<ResponseMessage> uploadFile(HttpServletRequest request) {
+        String message = "";
+
+        try {
+            StoredImage image = multipartUploadReader
+                .read(
+                    request,
+                    UploadEndpoint.ACCOUNT,
+                    (fieldName, filename, content) -> FILE_PART.equals(fieldName) ? userService.saveImage(filename, content) : null
+                )
+                .get(FILE_PART);
+            if (image == null) {
+                message = "The " + FILE_PART + " part is required!";
+                // Drops the references to the images already stored
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return uploadFailureResponder.missingPart(UploadEndpoint.ACCOUNT, message);
+            }
+
+            message = "Uploaded the file successfully: " + image.getOriginalFilename();
+
+            userService.updateUserWithImage(image.getContentKey());
+
+            return ResponseEntity.status(HttpStatus.OK).body(new ResponseMessage(message));
+        } catch (Exception e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return uploadFailureResponder.failure(UploadEndpoint.ACCOUNT, e);
+        }
     }
-    
- 
-    
-
-
-
-
-
-    
-
-
-
 
+    /**
+     * {@code GET  /account/image} : get the current user's profile image.
+     *
+     * @param size the name of the derivative size to get, or {@code null} for the original image.
+     * @param request the current request.
+     * @param response the response the image is written to.
+     * @throws ResponseStatusException {@code 404 (Not Found)} if the user has no stored profile image,
+     * or {@code 400 (Bad Request)} if the size is unknown.
+     * @throws IOException if the image could not be written.
+     */
+    @GetMapping("/account/image")
+    public void getAccountImage(@RequestParam(required = false) String size, HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+        Optional<String> contentKey = SecurityUtils.getCurrentUserLogin().flatMap(userRepository::findOneByLogin).map(User::getImageUrl);
+        storedImageResponder.respond(contentKey, size, request, response);
+    }
 }
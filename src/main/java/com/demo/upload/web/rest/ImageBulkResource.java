@@ -0,0 +1,78 @@
+package com.demo.upload.web.rest;
+
+import com.demo.upload.management.ImageBulkJobTracker;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.service.ImageBulkService;
+import com.demo.upload.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * REST controller importing and exporting the images of {@link com.demo.upload.domain.UserExtra} in bulk.
+ * <p>
+ * The progress of running jobs is available at {@code /management/imagebulk}.
+ */
+@RestController
+@RequestMapping("/api/admin/images")
+public class ImageBulkResource {
+
+    private static final String ENTITY_NAME = "imageBulk";
+
+    private static final String ZIP_MEDIA_TYPE = "application/zip";
+
+    private static final String TAR_MEDIA_TYPE = "application/x-tar";
+
+    private final Logger log = LoggerFactory.getLogger(ImageBulkResource.class);
+
+    private final ImageBulkService imageBulkService;
+
+    public ImageBulkResource(ImageBulkService imageBulkService) {
+        this.imageBulkService = imageBulkService;
+    }
+
+    /**
+     * {@code POST  /admin/images/import} : Import a zip or tar archive of images and its {@code manifest.csv}.
+     *
+     * @param request the HTTP request, whose body is the archive.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the progress of the finished job in body,
+     * or with status {@code 400 (Bad Request)} if the body is not a valid archive.
+     * @throws IOException if the archive could not be read.
+     */
+    @PostMapping(value = "/import", consumes = { ZIP_MEDIA_TYPE, TAR_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<ImageBulkJobTracker.Progress> importImages(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import images");
+        try {
+            return ResponseEntity.ok(imageBulkService.importArchive(request.getInputStream()));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidarchive");
+        }
+    }
+
+    /**
+     * {@code GET  /admin/images/export} : Export all the images as a zip archive.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the archive streamed in body.
+     */
+    @GetMapping(value = "/export", produces = ZIP_MEDIA_TYPE)
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<StreamingResponseBody> exportImages() {
+        log.debug("REST request to export images");
+        return ResponseEntity
+            .ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("images.zip").build().toString())
+            .body(imageBulkService::exportArchive);
+    }
+}
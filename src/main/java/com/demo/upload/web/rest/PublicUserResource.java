@@ -1,7 +1,11 @@
 package com.demo.upload.web.rest;
 
+import com.demo.upload.service.InvalidCursorException;
 import com.demo.upload.service.UserService;
+import com.demo.upload.service.dto.KeysetPage;
 import com.demo.upload.service.dto.UserDTO;
+import com.demo.upload.web.rest.errors.BadRequestAlertException;
+import com.demo.upload.web.rest.util.KeysetPaginationUtil;
 import java.util.*;
 import java.util.Collections;
 import org.slf4j.Logger;
@@ -34,17 +38,47 @@ public class PublicUserResource {
 
     /**
      * {@code GET /users} : get all users with only the public informations - calling this are allowed for anyone.
+     * <p>
+     * With a {@code cursor}, the users are paginated on a keyset instead of an offset, which keeps deep pages as fast as
+     * the first one: the sort is limited to {@code id}, {@code login} or {@code activated}, the "Link" header only holds
+     * the "next" page, and "X-Total-Count" is only sent if {@code count} is set.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all users.
+     * @param cursor the cursor of the page, from the "next" link of the previous page, or empty for the first page.
+     * @param count whether to count the users when paginating with a cursor.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all users,
+     * or with status {@code 400 (Bad Request)} if the sort or the cursor is invalid.
      */
     @GetMapping("/users")
-    public ResponseEntity<List<UserDTO>> getAllPublicUsers(@org.springdoc.api.annotations.ParameterObject Pageable pageable) {
+    public ResponseEntity<List<UserDTO>> getAllPublicUsers(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(name = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestParam(defaultValue = "false") boolean count
+    ) {
         log.debug("REST request to get all public User names");
         if (!onlyContainsAllowedProperties(pageable)) {
             return ResponseEntity.badRequest().build();
         }
 
+        if (cursor != null) {
+            Sort.Order order = KeysetPaginationUtil.getKeysetOrder(pageable);
+            if (order == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            KeysetPage<UserDTO> page;
+            try {
+                page = userService.getAllPublicUsers(cursor, order, pageable.getPageSize());
+            } catch (InvalidCursorException e) {
+                throw new BadRequestAlertException(e.getMessage(), "user", "cursorinvalid");
+            }
+            HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(
+                ServletUriComponentsBuilder.fromCurrentRequest(),
+                page,
+                count ? userService.countPublicUsers() : null
+            );
+            return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+        }
+
         final Page<UserDTO> page = userService.getAllPublicUsers(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
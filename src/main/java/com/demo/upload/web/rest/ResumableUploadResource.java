@@ -0,0 +1,229 @@
+package com.demo.upload.web.rest;
+
+import com.demo.upload.management.UploadMetersService;
+import com.demo.upload.management.UploadMetersService.FailureCause;
+import com.demo.upload.management.UploadMetersService.UploadEndpoint;
+import com.demo.upload.security.SecurityUtils;
+import com.demo.upload.service.UserExtraService;
+import com.demo.upload.service.upload.ResponseMessage;
+import com.demo.upload.service.upload.ResumableUploadStore;
+import com.demo.upload.service.upload.ResumableUploadStore.Session;
+import com.demo.upload.service.upload.StoredImage;
+import com.demo.upload.service.upload.ImageDecodeException;
+import com.demo.upload.service.upload.ImageDimensionLimitExceededException;
+import com.demo.upload.service.upload.UploadOffsetConflictException;
+import com.demo.upload.service.upload.UploadSizeLimitExceededException;
+import com.demo.upload.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * REST controller uploading the images of {@link com.demo.upload.domain.UserExtra} in chunks.
+ * <p>
+ * The protocol follows tus: {@code POST} creates an upload of a given {@code Upload-Length}, {@code PATCH} sends a chunk
+ * at the current {@code Upload-Offset}, {@code HEAD} tells where to resume after a failure, and a final {@code POST} to
+ * {@code /complete} stores the image and points the current user's extra information to it.
+ */
+@RestController
+@RequestMapping("/api/upload/user-extra/image/resumable")
+public class ResumableUploadResource {
+
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    public static final String UPLOAD_EXPIRES = "Upload-Expires";
+
+    public static final String TUS_RESUMABLE = "Tus-Resumable";
+
+    public static final String OFFSET_OCTET_STREAM = "application/offset+octet-stream";
+
+    private static final String TUS_VERSION = "1.0.0";
+
+    private static final String ENTITY_NAME = "resumableUpload";
+
+    private static final String FRONT_IMAGE_PART = "frontImage";
+
+    private static final String BACK_IMAGE_PART = "backImage";
+
+    private final Logger log = LoggerFactory.getLogger(ResumableUploadResource.class);
+
+    private final ResumableUploadStore resumableUploadStore;
+
+    private final UserExtraService userExtraService;
+
+    private final UploadMetersService uploadMetersService;
+
+    public ResumableUploadResource(
+        ResumableUploadStore resumableUploadStore,
+        UserExtraService userExtraService,
+        UploadMetersService uploadMetersService
+    ) {
+        this.resumableUploadStore = resumableUploadStore;
+        this.userExtraService = userExtraService;
+        this.uploadMetersService = uploadMetersService;
+    }
+
+    /**
+     * {@code POST  /upload/user-extra/image/resumable} : Create an upload.
+     *
+     * @param length the size of the image, in bytes.
+     * @param part the image being uploaded, {@code frontImage} or {@code backImage}.
+     * @param filename the original filename of the image.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and the location of the upload,
+     * or with status {@code 413 (Payload Too Large)} if the image is too large.
+     * @throws IOException if the upload could not be created.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping
+    public ResponseEntity<Void> createUpload(
+        @RequestHeader(UPLOAD_LENGTH) long length,
+        @RequestParam String part,
+        @RequestParam(required = false) String filename
+    ) throws IOException, URISyntaxException {
+        log.debug("REST request to create a resumable upload of {} bytes for {}", length, part);
+        if (!FRONT_IMAGE_PART.equals(part) && !BACK_IMAGE_PART.equals(part)) {
+            throw new BadRequestAlertException("Invalid image part", ENTITY_NAME, "partinvalid");
+        }
+        if (length < 0) {
+            throw new BadRequestAlertException("Invalid upload length", ENTITY_NAME, "lengthinvalid");
+        }
+        Session session;
+        try {
+            session = resumableUploadStore.create(currentUserLogin(), part, filename, length);
+        } catch (UploadSizeLimitExceededException e) {
+            uploadMetersService.trackFailure(UploadEndpoint.RESUMABLE, FailureCause.SIZE_LIMIT);
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        }
+        return ResponseEntity
+            .created(new URI("/api/upload/user-extra/image/resumable/" + session.getId()))
+            .headers(uploadHeaders(session))
+            .build();
+    }
+
+    /**
+     * {@code HEAD  /upload/user-extra/image/resumable/:id} : Get the offset to resume the "id" upload from.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the offset and length of the upload,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getUploadOffset(@PathVariable String id) {
+        Session session = getSession(id);
+        HttpHeaders headers = uploadHeaders(session);
+        headers.setCacheControl("no-store");
+        return ResponseEntity.ok().headers(headers).build();
+    }
+
+    /**
+     * {@code PATCH  /upload/user-extra/image/resumable/:id} : Send a chunk of the "id" upload.
+     *
+     * @param id the id of the upload.
+     * @param offset the offset of the chunk, which must be the current offset of the upload.
+     * @param request the HTTP request, whose body is the chunk.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)} and the new offset,
+     * or with status {@code 409 (Conflict)} if the offset is not the current one,
+     * or with status {@code 413 (Payload Too Large)} if the chunk goes past the length of the upload.
+     * @throws IOException if the chunk could not be written; the bytes written so far are kept.
+     */
+    @PatchMapping(value = "/{id}", consumes = OFFSET_OCTET_STREAM)
+    public ResponseEntity<Void> uploadChunk(@PathVariable String id, @RequestHeader(UPLOAD_OFFSET) long offset, HttpServletRequest request)
+        throws IOException {
+        Session session = getSession(id);
+        long start = System.nanoTime();
+        try {
+            long written = resumableUploadStore.append(session, offset, request.getInputStream());
+            uploadMetersService.trackBytesReceived(UploadEndpoint.RESUMABLE, written);
+        } catch (UploadOffsetConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (UploadSizeLimitExceededException e) {
+            uploadMetersService.trackFailure(UploadEndpoint.RESUMABLE, FailureCause.SIZE_LIMIT);
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        } finally {
+            uploadMetersService.trackDuration(UploadEndpoint.RESUMABLE, System.nanoTime() - start);
+        }
+        return ResponseEntity.noContent().headers(uploadHeaders(session)).build();
+    }
+
+    /**
+     * {@code POST  /upload/user-extra/image/resumable/:id/complete} : Store the image of the "id" upload.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)},
+     * or with status {@code 409 (Conflict)} if some bytes were not received yet,
+     * or with status {@code 413 (Payload Too Large)} if the image is larger than the configured limits,
+     * or with status {@code 415 (Unsupported Media Type)} if the upload is not an image.
+     * @throws IOException if the image could not be stored.
+     */
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<ResponseMessage> completeUpload(@PathVariable String id) throws IOException {
+        log.debug("REST request to complete resumable upload : {}", id);
+        Session session = getSession(id);
+        Path file;
+        try {
+            file = resumableUploadStore.complete(session);
+        } catch (UploadOffsetConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        StoredImage storedImage;
+        try {
+            storedImage =
+                FRONT_IMAGE_PART.equals(session.getPart())
+                    ? userExtraService.commitFrontImage(session.getFilename(), file)
+                    : userExtraService.commitBackImage(session.getFilename(), file);
+        } catch (ImageDimensionLimitExceededException e) {
+            uploadMetersService.trackFailure(UploadEndpoint.RESUMABLE, FailureCause.DIMENSION_LIMIT);
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        } catch (ImageDecodeException e) {
+            uploadMetersService.trackFailure(UploadEndpoint.RESUMABLE, FailureCause.DECODE);
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getMessage());
+        } finally {
+            resumableUploadStore.delete(session);
+        }
+        return ResponseEntity.ok(new ResponseMessage("Uploaded the file successfully: " + storedImage.getOriginalFilename()));
+    }
+
+    /**
+     * {@code DELETE  /upload/user-extra/image/resumable/:id} : Abandon the "id" upload.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     * @throws IOException if the upload could not be deleted.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteUpload(@PathVariable String id) throws IOException {
+        log.debug("REST request to delete resumable upload : {}", id);
+        resumableUploadStore.delete(getSession(id));
+        return ResponseEntity.noContent().header(TUS_RESUMABLE, TUS_VERSION).build();
+    }
+
+    private Session getSession(String id) {
+        return resumableUploadStore.get(id, currentUserLogin()).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    private static String currentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin().orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+    }
+
+    private static HttpHeaders uploadHeaders(Session session) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TUS_RESUMABLE, TUS_VERSION);
+        headers.set(UPLOAD_OFFSET, Long.toString(session.getOffset()));
+        headers.set(UPLOAD_LENGTH, Long.toString(session.getLength()));
+        headers.set(UPLOAD_EXPIRES, DateTimeFormatter.RFC_1123_DATE_TIME.format(session.getExpiresAt().atOffset(ZoneOffset.UTC)));
+        return headers;
+    }
+}
@@ -1,27 +1,43 @@
 package com.demo.upload.web.rest;
 
+import com.demo.upload.config.ApplicationProperties;
 import com.demo.upload.domain.UserExtra;
+import com.demo.upload.management.UploadMetersService.UploadEndpoint;
 import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.security.AuthoritiesConstants;
 import com.demo.upload.security.SecurityUtils;
 import com.demo.upload.service.UserExtraService;
 //import com.demo.upload.service.UserExtraService;
 import com.demo.upload.service.UserService;
+import com.demo.upload.service.dto.UserExtraDTO;
+import com.demo.upload.service.dto.UserExtraPatchResultDTO;
+import com.demo.upload.service.upload.MultipartUploadReader;
 import com.demo.upload.service.upload.ResponseMessage;
+import com.demo.upload.service.upload.StoredImage;
 import com.demo.upload.web.rest.errors.BadRequestAlertException;
+import com.demo.upload.web.rest.util.StoredImageResponder;
+import com.demo.upload.web.rest.util.UploadFailureResponder;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
@@ -38,6 +54,10 @@ public class UserExtraResource {
 
     private static final String ENTITY_NAME = "userExtra";
 
+    private static final String FRONT_IMAGE_PART = "frontImage";
+
+    private static final String BACK_IMAGE_PART = "backImage";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -45,30 +65,44 @@ public class UserExtraResource {
     
     private final UserExtraService userExtraService;
 
+    private final MultipartUploadReader multipartUploadReader;
 
-    
+    private final StoredImageResponder storedImageResponder;
+
+    private final ApplicationProperties applicationProperties;
 
-    public UserExtraResource( UserExtraRepository userExtraRepository, UserExtraService userExtraService) {
-		
-    	
-		this.userExtraRepository = userExtraRepository;
-		this.userExtraService = userExtraService;
-	}
+    private final UploadFailureResponder uploadFailureResponder;
+
+    public UserExtraResource(
+        UserExtraRepository userExtraRepository,
+        UserExtraService userExtraService,
+        MultipartUploadReader multipartUploadReader,
+        StoredImageResponder storedImageResponder,
+        ApplicationProperties applicationProperties,
+        UploadFailureResponder uploadFailureResponder
+    ) {
+        this.userExtraRepository = userExtraRepository;
+        this.userExtraService = userExtraService;
+        this.multipartUploadReader = multipartUploadReader;
+        this.storedImageResponder = storedImageResponder;
+        this.applicationProperties = applicationProperties;
+        this.uploadFailureResponder = uploadFailureResponder;
+    }
 
 	/**
      * {@code POST  /user-extras} : Create a new userExtra.
      *
-     * @param userExtra the userExtra to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new userExtra, or with status {@code 400 (Bad Request)} if the userExtra has already an ID.
+     * @param userExtraDTO the userExtraDTO to create.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new userExtraDTO, or with status {@code 400 (Bad Request)} if the userExtra has already an ID.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/user-extras")
-    public ResponseEntity<UserExtra> createUserExtra(@RequestBody UserExtra userExtra) throws URISyntaxException {
-        log.debug("REST request to save UserExtra : {}", userExtra);
-        if (userExtra.getId() != null) {
+    public ResponseEntity<UserExtraDTO> createUserExtra(@RequestBody UserExtraDTO userExtraDTO) throws URISyntaxException {
+        log.debug("REST request to save UserExtra : {}", userExtraDTO);
+        if (userExtraDTO.getId() != null) {
             throw new BadRequestAlertException("A new userExtra cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        UserExtra result = userExtraRepository.save(userExtra);
+        UserExtraDTO result = userExtraService.save(userExtraDTO);
         return ResponseEntity
             .created(new URI("/api/user-extras/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
@@ -78,25 +112,23 @@ public class UserExtraResource {
     /**
      * {@code PUT  /user-extras/:id} : Updates an existing userExtra.
      *
-     * @param id the id of the userExtra to save.
-     * @param userExtra the userExtra to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated userExtra,
-     * or with status {@code 400 (Bad Request)} if the userExtra is not valid,
-     * or with status {@code 500 (Internal Server Error)} if the userExtra couldn't be updated.
+     * @param id the id of the userExtraDTO to save.
+     * @param userExtraDTO the userExtraDTO to update.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated userExtraDTO,
+     * or with status {@code 400 (Bad Request)} if the userExtraDTO is not valid,
+     * or with status {@code 500 (Internal Server Error)} if the userExtraDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/user-extras/{id}")
-    public ResponseEntity<UserExtra> updateUserExtra(
+    public ResponseEntity<UserExtraDTO> updateUserExtra(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody UserExtra userExtra
+        @RequestBody UserExtraDTO userExtraDTO
     ) throws URISyntaxException {
-        log.debug("REST request to update UserExtra : {}, {}", id, userExtra);
-      
-        if (userExtra.getId() == null) {
+        log.debug("REST request to update UserExtra : {}, {}", id, userExtraDTO);
+        if (userExtraDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-       
-        if (!Objects.equals(id, userExtra.getId())) {
+        if (!Objects.equals(id, userExtraDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
@@ -104,37 +136,34 @@ public class UserExtraResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        
-        
-        
-        UserExtra result = userExtraRepository.save(userExtra);
+        UserExtraDTO result = userExtraService.update(userExtraDTO);
         return ResponseEntity
             .ok()
-            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, userExtra.getId().toString()))
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, userExtraDTO.getId().toString()))
             .body(result);
     }
 
     /**
      * {@code PATCH  /user-extras/:id} : Partial updates given fields of an existing userExtra, field will ignore if it is null
      *
-     * @param id the id of the userExtra to save.
-     * @param userExtra the userExtra to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated userExtra,
-     * or with status {@code 400 (Bad Request)} if the userExtra is not valid,
-     * or with status {@code 404 (Not Found)} if the userExtra is not found,
-     * or with status {@code 500 (Internal Server Error)} if the userExtra couldn't be updated.
+     * @param id the id of the userExtraDTO to save.
+     * @param userExtraDTO the userExtraDTO to update.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated userExtraDTO,
+     * or with status {@code 400 (Bad Request)} if the userExtraDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the userExtraDTO is not found,
+     * or with status {@code 500 (Internal Server Error)} if the userExtraDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/user-extras/{id}", consumes = { "application/json", "application/merge-patch+json" })
-    public ResponseEntity<UserExtra> partialUpdateUserExtra(
+    public ResponseEntity<UserExtraDTO> partialUpdateUserExtra(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody UserExtra userExtra
+        @RequestBody UserExtraDTO userExtraDTO
     ) throws URISyntaxException {
-        log.debug("REST request to partial update UserExtra partially : {}, {}", id, userExtra);
-        if (userExtra.getId() == null) {
+        log.debug("REST request to partial update UserExtra partially : {}, {}", id, userExtraDTO);
+        if (userExtraDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        if (!Objects.equals(id, userExtra.getId())) {
+        if (!Objects.equals(id, userExtraDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
@@ -142,48 +171,116 @@ public class UserExtraResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Optional<UserExtra> result = userExtraRepository
-            .findById(userExtra.getId())
-            .map(existingUserExtra -> {
-                if (userExtra.getFrontImage() != null) {
-                    existingUserExtra.setFrontImage(userExtra.getFrontImage());
-                }
-                if (userExtra.getBackImage() != null) {
-                    existingUserExtra.setBackImage(userExtra.getBackImage());
-                }
-
-                return existingUserExtra;
-            })
-            .map(userExtraRepository::save);
+        Optional<UserExtraDTO> result = userExtraService.partialUpdate(userExtraDTO);
 
         return ResponseUtil.wrapOrNotFound(
             result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, userExtra.getId().toString())
+            HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, userExtraDTO.getId().toString())
         );
     }
 
+    /**
+     * {@code POST  /user-extras/bulk} : Partial updates many userExtras at once, see {@link UserExtraService#partialUpdateAll(List)}.
+     *
+     * @param userExtraDTOs the patches to apply, in order.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the result of each patch,
+     * or with status {@code 400 (Bad Request)} if there are more than {@code application.bulk.max-patch-size} patches,
+     * or with status {@code 403 (Forbidden)} if the user is not an administrator.
+     */
+    @PostMapping("/user-extras/bulk")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<UserExtraPatchResultDTO>> partialUpdateUserExtras(@RequestBody List<UserExtraDTO> userExtraDTOs) {
+        log.debug("REST request to partial update {} UserExtras", userExtraDTOs.size());
+        if (userExtraDTOs.size() > applicationProperties.getBulk().getMaxPatchSize()) {
+            throw new BadRequestAlertException(
+                "At most " + applicationProperties.getBulk().getMaxPatchSize() + " userExtras can be patched at once",
+                ENTITY_NAME,
+                "toomanypatches"
+            );
+        }
+        return ResponseEntity.ok(userExtraService.partialUpdateAll(userExtraDTOs));
+    }
+
     /**
      * {@code GET  /user-extras} : get all the userExtras.
      *
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of userExtras in body.
      */
     @GetMapping("/user-extras")
-    public List<UserExtra> getAllUserExtras() {
+    public List<UserExtraDTO> getAllUserExtras() {
         log.debug("REST request to get all UserExtras");
-        return userExtraRepository.findAll();
+        return userExtraService.findAll();
+    }
+
+    /**
+     * {@code GET  /user-extras} : stream all the userExtras, when asked for {@code application/x-ndjson}.
+     * <p>
+     * Each userExtra is written on its own line as soon as it is read from the database, so unlike
+     * {@link #getAllUserExtras()} the whole table is never held in memory.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the userExtras streamed in body, one JSON document per line.
+     */
+    @GetMapping(value = "/user-extras", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUserExtras() {
+        log.debug("REST request to stream all UserExtras");
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(userExtraService::exportUserExtras);
     }
 
     /**
      * {@code GET  /user-extras/:id} : get the "id" userExtra.
      *
      * @param id the id of the userExtra to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the userExtra, or with status {@code 404 (Not Found)}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the userExtraDTO, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/user-extras/{id}")
-    public ResponseEntity<UserExtra> getUserExtra(@PathVariable Long id) {
+    public ResponseEntity<UserExtraDTO> getUserExtra(@PathVariable Long id) {
         log.debug("REST request to get UserExtra : {}", id);
-        Optional<UserExtra> userExtra = userExtraRepository.findById(id);
-        return ResponseUtil.wrapOrNotFound(userExtra);
+        Optional<UserExtraDTO> userExtraDTO = userExtraService.findOne(id);
+        return ResponseUtil.wrapOrNotFound(userExtraDTO);
+    }
+
+    /**
+     * {@code GET  /user-extras/:id/front-image} : get the front image of the "id" userExtra.
+     * <p>
+     * Supports {@code Range} and {@code If-None-Match} requests.
+     *
+     * @param id the id of the userExtra.
+     * @param size the name of the derivative size to get, or {@code null} for the original image.
+     * @param request the HTTP request.
+     * @param response the HTTP response the image is written to.
+     * @throws IOException if the image could not be written.
+     */
+    @GetMapping("/user-extras/{id}/front-image")
+    public void getUserExtraFrontImage(
+        @PathVariable Long id,
+        @RequestParam(required = false) String size,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to get the front image of UserExtra : {}, size : {}", id, size);
+        storedImageResponder.respond(userExtraRepository.findById(id).map(UserExtra::getFrontImage), size, request, response);
+    }
+
+    /**
+     * {@code GET  /user-extras/:id/back-image} : get the back image of the "id" userExtra.
+     * <p>
+     * Supports {@code Range} and {@code If-None-Match} requests.
+     *
+     * @param id the id of the userExtra.
+     * @param size the name of the derivative size to get, or {@code null} for the original image.
+     * @param request the HTTP request.
+     * @param response the HTTP response the image is written to.
+     * @throws IOException if the image could not be written.
+     */
+    @GetMapping("/user-extras/{id}/back-image")
+    public void getUserExtraBackImage(
+        @PathVariable Long id,
+        @RequestParam(required = false) String size,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        log.debug("REST request to get the back image of UserExtra : {}, size : {}", id, size);
+        storedImageResponder.respond(userExtraRepository.findById(id).map(UserExtra::getBackImage), size, request, response);
     }
 
     /**
@@ -195,7 +292,7 @@ public class UserExtraResource {
     @DeleteMapping("/user-extras/{id}")
     public ResponseEntity<Void> deleteUserExtra(@PathVariable Long id) {
         log.debug("REST request to delete UserExtra : {}", id);
-        userExtraRepository.deleteById(id);
+        userExtraService.delete(id);
         return ResponseEntity
             .noContent()
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
@@ -211,34 +308,41 @@ public class UserExtraResource {
 
 
     @PostMapping("/upload/user-extra/image")
-    public ResponseEntity<ResponseMessage> uploadFile(@RequestParam("frontImage") MultipartFile frontImage,
-    												  @RequestParam("backImage") MultipartFile backImage) {
-    	System.out.println("HUY");
-
-    	String message = "";
-     
-      try {
-    	  userExtraService.saveFrontImage(frontImage);
-    	  userExtraService.saveBackImage(backImage);
-
-
-    	  message = "Uploaded the file successfully: " + frontImage.getOriginalFilename();
-        
-        userExtraService.updateUserExtraWithImage(
-				Paths.get("uploadsFrontImage").resolve(frontImage.getOriginalFilename()).toString(),
-				Paths.get("uploadsBackImage").resolve(backImage.getOriginalFilename()).toString() );
-
-
-     
-        
-        return ResponseEntity.status(HttpStatus.OK)
-      		  .body(new ResponseMessage(message));
-      } 
-      catch (Exception e) {
-        message = "Could not upload the file: " + frontImage.getOriginalFilename() + "!";
-        return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED)
-      		  				.body(new ResponseMessage(message));
-      }
+    public ResponseEntity<ResponseMessage> uploadFile(HttpServletRequest request) {
+        String message = "";
+
+        try {
+            Map<String, StoredImage> images = multipartUploadReader.read(
+                request,
+                UploadEndpoint.USER_EXTRA,
+                (fieldName, filename, content) -> {
+                    if (FRONT_IMAGE_PART.equals(fieldName)) {
+                        return userExtraService.saveFrontImage(filename, content);
+                    }
+                    if (BACK_IMAGE_PART.equals(fieldName)) {
+                        return userExtraService.saveBackImage(filename, content);
+                    }
+                    return null;
+                }
+            );
+            StoredImage frontImage = images.get(FRONT_IMAGE_PART);
+            StoredImage backImage = images.get(BACK_IMAGE_PART);
+            if (frontImage == null || backImage == null) {
+                message = "Both the " + FRONT_IMAGE_PART + " and " + BACK_IMAGE_PART + " parts are required!";
+                // Drops the references to the images already stored
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return uploadFailureResponder.missingPart(UploadEndpoint.USER_EXTRA, message);
+            }
+
+            message = "Uploaded the file successfully: " + frontImage.getOriginalFilename();
+
+            userExtraService.updateUserExtraWithImage(frontImage.getContentKey(), backImage.getContentKey());
+
+            return ResponseEntity.status(HttpStatus.OK).body(new ResponseMessage(message));
+        } catch (Exception e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return uploadFailureResponder.failure(UploadEndpoint.USER_EXTRA, e);
+        }
     }
 
     
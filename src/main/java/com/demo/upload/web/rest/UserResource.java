@@ -4,12 +4,14 @@ import com.demo.upload.config.Constants;
 import com.demo.upload.domain.User;
 import com.demo.upload.repository.UserRepository;
 import com.demo.upload.security.AuthoritiesConstants;
-import com.demo.upload.service.MailService;
+import com.demo.upload.service.InvalidCursorException;
 import com.demo.upload.service.UserService;
 import com.demo.upload.service.dto.AdminUserDTO;
+import com.demo.upload.service.dto.KeysetPage;
 import com.demo.upload.web.rest.errors.BadRequestAlertException;
 import com.demo.upload.web.rest.errors.EmailAlreadyUsedException;
 import com.demo.upload.web.rest.errors.LoginAlreadyUsedException;
+import com.demo.upload.web.rest.util.KeysetPaginationUtil;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -85,12 +87,9 @@ public class UserResource {
 
     private final UserRepository userRepository;
 
-    private final MailService mailService;
-
-    public UserResource(UserService userService, UserRepository userRepository, MailService mailService) {
+    public UserResource(UserService userService, UserRepository userRepository) {
         this.userService = userService;
         this.userRepository = userRepository;
-        this.mailService = mailService;
     }
 
     /**
@@ -119,7 +118,6 @@ public class UserResource {
             throw new EmailAlreadyUsedException();
         } else {
             User newUser = userService.createUser(userDTO);
-            mailService.sendCreationEmail(newUser);
             return ResponseEntity
                 .created(new URI("/api/admin/users/" + newUser.getLogin()))
                 .headers(HeaderUtil.createAlert(applicationName, "userManagement.created", newUser.getLogin()))
@@ -157,18 +155,48 @@ public class UserResource {
 
     /**
      * {@code GET /admin/users} : get all users with all the details - calling this are only allowed for the administrators.
+     * <p>
+     * With a {@code cursor}, the users are paginated on a keyset instead of an offset, which keeps deep pages as fast as
+     * the first one: the sort is limited to {@code id}, {@code login} or {@code activated}, the "Link" header only holds
+     * the "next" page, and "X-Total-Count" is only sent if {@code count} is set.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all users.
+     * @param cursor the cursor of the page, from the "next" link of the previous page, or empty for the first page.
+     * @param count whether to count the users when paginating with a cursor.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all users,
+     * or with status {@code 400 (Bad Request)} if the sort or the cursor is invalid.
      */
     @GetMapping("/users")
     @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
-    public ResponseEntity<List<AdminUserDTO>> getAllUsers(@org.springdoc.api.annotations.ParameterObject Pageable pageable) {
+    public ResponseEntity<List<AdminUserDTO>> getAllUsers(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(name = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestParam(defaultValue = "false") boolean count
+    ) {
         log.debug("REST request to get all User for an admin");
         if (!onlyContainsAllowedProperties(pageable)) {
             return ResponseEntity.badRequest().build();
         }
 
+        if (cursor != null) {
+            Sort.Order order = KeysetPaginationUtil.getKeysetOrder(pageable);
+            if (order == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            KeysetPage<AdminUserDTO> page;
+            try {
+                page = userService.getAllManagedUsers(cursor, order, pageable.getPageSize());
+            } catch (InvalidCursorException e) {
+                throw new BadRequestAlertException(e.getMessage(), "userManagement", "cursorinvalid");
+            }
+            HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(
+                ServletUriComponentsBuilder.fromCurrentRequest(),
+                page,
+                count ? userService.countManagedUsers() : null
+            );
+            return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+        }
+
         final Page<AdminUserDTO> page = userService.getAllManagedUsers(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
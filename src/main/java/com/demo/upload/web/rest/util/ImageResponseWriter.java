@@ -0,0 +1,332 @@
+package com.demo.upload.web.rest.util;
+
+import com.demo.upload.service.storage.ByteBufferContent;
+import com.demo.upload.service.storage.FileRegionContent;
+import com.demo.upload.service.storage.ImageContent;
+import com.demo.upload.service.upload.ImageBytesCache;
+import io.undertow.io.BufferWritableOutputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.server.ResponseStatusException;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Writes stored images to the response without going through the MVC message converters.
+ * <p>
+ * The content key of an image is the hash of its bytes, so it is used as a strong {@code ETag} and
+ * the response can be cached for as long as static assets are. A single {@code Range} is honoured;
+ * multiple ranges are answered with the full content, as allowed by RFC 7233.
+ * <p>
+ * Hot images are served from the off-heap {@link ImageBytesCache}. Images already memory-mapped by the
+ * storage are written straight from their mapping, without going through the cache. Otherwise, images held
+ * in local files are sent on Undertow with {@code sendfile}, or written from a memory-mapped slice of the file
+ * for ranges and segment files, so the image bytes are never copied to the heap. Remote images are streamed.
+ */
+@Component
+public class ImageResponseWriter {
+
+    private static final String BYTES_UNIT = "bytes";
+
+    private static final int SNIFF_LENGTH = 12;
+
+    private final CacheControl cacheControl;
+
+    private final ImageBytesCache imageBytesCache;
+
+    public ImageResponseWriter(JHipsterProperties jHipsterProperties, ImageBytesCache imageBytesCache) {
+        // Images are only served to authenticated users, so shared caches must not keep them
+        this.cacheControl = CacheControl.maxAge(jHipsterProperties.getHttp().getCache().getTimeToLiveInDays(), TimeUnit.DAYS).cachePrivate();
+        this.imageBytesCache = imageBytesCache;
+    }
+
+    /**
+     * Opens the content of an image, only when it has to be sent.
+     */
+    @FunctionalInterface
+    public interface ImageContentSource {
+        ImageContent open() throws IOException;
+    }
+
+    /**
+     * Writes a stored image.
+     *
+     * @param request the current request.
+     * @param response the current response.
+     * @param contentKey the content key of the image.
+     * @param source the source of the image content.
+     * @throws ResponseStatusException {@code 404 (Not Found)} if the image does not exist.
+     * @throws IOException if the image could not be written.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, String contentKey, ImageContentSource source)
+        throws IOException {
+        write(request, response, contentKey, source, cacheControl);
+    }
+
+    /**
+     * Variant of {@link #write(HttpServletRequest, HttpServletResponse, String, ImageContentSource)} with a specific
+     * {@code Cache-Control}, for responses which may change, such as an original served while its
+     * derivative is being generated.
+     */
+    public void write(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        String contentKey,
+        ImageContentSource source,
+        CacheControl cacheControl
+    ) throws IOException {
+        String eTag = "\"" + contentKey + "\"";
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        ByteBuffer cached = imageBytesCache.get(contentKey);
+        if (cached == null) {
+            try (ImageContent content = open(source)) {
+                if (content instanceof ByteBufferContent) {
+                    writeBytes(request, response, eTag, ((ByteBufferContent) content).getBuffer());
+                    return;
+                }
+                cached = imageBytesCache.load(contentKey, content);
+                if (cached == null) {
+                    if (content instanceof FileRegionContent) {
+                        writeFileRegion(request, response, eTag, (FileRegionContent) content);
+                    } else {
+                        writeStream(request, response, eTag, content);
+                    }
+                    return;
+                }
+            }
+        }
+        writeBytes(request, response, eTag, cached);
+    }
+
+    private static void writeFileRegion(HttpServletRequest request, HttpServletResponse response, String eTag, FileRegionContent content)
+        throws IOException {
+        FileChannel channel = content.getChannel();
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(SNIFF_LENGTH, content.size()));
+        while (header.hasRemaining() && channel.read(header, content.getOffset() + header.position()) != -1) {
+            // read the magic bytes
+        }
+        header.flip();
+        long[] range = writeEntityHeaders(request, response, eTag, content.size(), sniffContentType(header));
+        if (range == null) {
+            return;
+        }
+        long length = range[1] - range[0] + 1;
+        boolean wholeFile = content.isDedicatedChannel() && content.getOffset() == 0 && length == channel.size();
+        transfer(response, channel, content.getOffset() + range[0], length, wholeFile);
+    }
+
+    private static void writeStream(HttpServletRequest request, HttpServletResponse response, String eTag, ImageContent content)
+        throws IOException {
+        try (InputStream in = new BufferedInputStream(content.openStream(0, content.size()))) {
+            in.mark(SNIFF_LENGTH);
+            byte[] header = in.readNBytes(SNIFF_LENGTH);
+            in.reset();
+            long[] range = writeEntityHeaders(request, response, eTag, content.size(), sniffContentType(ByteBuffer.wrap(header)));
+            if (range != null) {
+                StreamUtils.copyRange(in, response.getOutputStream(), range[0], range[1]);
+            }
+        }
+    }
+
+    private static void writeBytes(HttpServletRequest request, HttpServletResponse response, String eTag, ByteBuffer content)
+        throws IOException {
+        long[] range = writeEntityHeaders(request, response, eTag, content.remaining(), sniffContentType(content));
+        if (range == null) {
+            return;
+        }
+        content.position((int) range[0]).limit((int) range[1] + 1);
+        // Same as transfer, the headers must be committed through the wrappers first
+        response.flushBuffer();
+        OutputStream out = unwrap(response).getOutputStream();
+        if (out instanceof BufferWritableOutputStream) {
+            ((BufferWritableOutputStream) out).write(content);
+        } else {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (content.hasRemaining()) {
+                target.write(content);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Sets the status and the headers describing the content to send.
+     *
+     * @return the first and last byte to send, or {@code null} if there is no body to send.
+     */
+    private static long[] writeEntityHeaders(HttpServletRequest request, HttpServletResponse response, String eTag, long size, String contentType) {
+        long[] range = resolveRange(request, eTag, size);
+        if (range == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + size);
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return null;
+        }
+        long length = range[1] - range[0] + 1;
+        if (length != size) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + size);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+        response.setContentType(contentType);
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || length == 0) {
+            return null;
+        }
+        return range;
+    }
+
+    private static ImageContent open(ImageContentSource source) throws IOException {
+        try {
+            return source.open();
+        } catch (NoSuchFileException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(eTag) || value.equals("W/" + eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first and last byte to send, or {@code null} if the requested range cannot be satisfied.
+     */
+    static long[] resolveRange(HttpServletRequest request, String eTag, long size) {
+        long[] full = { 0, size - 1 };
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !rangeHeader.startsWith(BYTES_UNIT + "=") || rangeHeader.indexOf(',') >= 0) {
+            return full;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            return full;
+        }
+        String spec = rangeHeader.substring(BYTES_UNIT.length() + 1).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return full;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffixLength = Long.parseLong(spec.substring(1));
+                if (suffixLength == 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffixLength);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return full;
+        }
+    }
+
+    private static void transfer(HttpServletResponse response, FileChannel channel, long start, long length, boolean wholeFile)
+        throws IOException {
+        // Commit the headers through the wrappers (e.g. Spring Security's header writer) before using the native stream
+        response.flushBuffer();
+        OutputStream out = unwrap(response).getOutputStream();
+        if (out instanceof BufferWritableOutputStream) {
+            BufferWritableOutputStream undertowOut = (BufferWritableOutputStream) out;
+            if (wholeFile) {
+                channel.position(0);
+                undertowOut.transferFrom(channel);
+            } else {
+                undertowOut.write(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+            }
+        } else {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+        out.flush();
+    }
+
+    private static ServletResponse unwrap(ServletResponse response) {
+        ServletResponse current = response;
+        while (current instanceof ServletResponseWrapper) {
+            current = ((ServletResponseWrapper) current).getResponse();
+        }
+        return current;
+    }
+
+    private static String sniffContentType(ByteBuffer content) {
+        ByteBuffer header = content.duplicate();
+        if (startsWith(header, 0xFF, 0xD8, 0xFF)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(header, 0x89, 'P', 'N', 'G')) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(header, 'G', 'I', 'F', '8')) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (startsWith(header, 'B', 'M')) {
+            return "image/bmp";
+        }
+        if (header.remaining() >= SNIFF_LENGTH && startsWith(header, 'R', 'I', 'F', 'F') && header.get(8) == 'W' && header.get(9) == 'E') {
+            return "image/webp";
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private static boolean startsWith(ByteBuffer header, int... magic) {
+        if (header.remaining() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header.get(i) & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
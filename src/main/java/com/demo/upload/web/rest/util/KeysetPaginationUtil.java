@@ -0,0 +1,66 @@
+package com.demo.upload.web.rest.util;
+
+import com.demo.upload.service.dto.KeysetPage;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for handling keyset pagination, the cursor-based counterpart of {@link tech.jhipster.web.util.PaginationUtil}.
+ * <p>
+ * Pagination uses the same "Link" header as offset pagination, with only a "next" link carrying the cursor of the
+ * next page. The "X-Total-Count" header is only sent when asked for, as counting costs as much as a deep offset.
+ */
+public final class KeysetPaginationUtil {
+
+    public static final String CURSOR_PARAMETER = "cursor";
+
+    private static final String HEADER_X_TOTAL_COUNT = "X-Total-Count";
+
+    private static final String ID = "id";
+
+    private KeysetPaginationUtil() {}
+
+    /**
+     * Get the order of a keyset pagination: the first sort order, {@code id} by default, which may only be followed by {@code id}.
+     *
+     * @param pageable the pagination information.
+     * @return the order, or {@code null} if the sort cannot be paginated on a keyset.
+     */
+    public static Sort.Order getKeysetOrder(Pageable pageable) {
+        List<Sort.Order> orders = pageable.getSort().toList();
+        if (orders.isEmpty()) {
+            return Sort.Order.asc(ID);
+        }
+        boolean onlyTieBreaks = orders.stream().skip(1).map(Sort.Order::getProperty).allMatch(ID::equals);
+        return onlyTieBreaks ? orders.get(0) : null;
+    }
+
+    /**
+     * Generate pagination headers for a keyset page.
+     *
+     * @param uriBuilder the URI of the current page.
+     * @param page the page.
+     * @param totalCount the total number of elements, or {@code null} to leave it out.
+     * @param <T> the type of the elements.
+     * @return the headers.
+     */
+    public static <T> HttpHeaders generateKeysetPaginationHttpHeaders(UriComponentsBuilder uriBuilder, KeysetPage<T> page, Long totalCount) {
+        HttpHeaders headers = new HttpHeaders();
+        if (totalCount != null) {
+            headers.add(HEADER_X_TOTAL_COUNT, Long.toString(totalCount));
+        }
+        if (page.hasNext()) {
+            String next = uriBuilder
+                .replaceQueryParam(CURSOR_PARAMETER, page.getNextCursor())
+                .replaceQueryParam("page")
+                .toUriString()
+                .replace(",", "%2C")
+                .replace(";", "%3B");
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,68 @@
+package com.demo.upload.web.rest.util;
+
+import com.demo.upload.service.ImageDerivativeService;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import java.io.IOException;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Answers image download requests from the {@link ContentAddressedImageStore}, resolving the
+ * requested derivative size if any.
+ */
+@Component
+public class StoredImageResponder {
+
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final ImageResponseWriter imageResponseWriter;
+
+    public StoredImageResponder(
+        ContentAddressedImageStore imageStore,
+        ImageDerivativeService imageDerivativeService,
+        ImageResponseWriter imageResponseWriter
+    ) {
+        this.imageStore = imageStore;
+        this.imageDerivativeService = imageDerivativeService;
+        this.imageResponseWriter = imageResponseWriter;
+    }
+
+    /**
+     * Writes a stored image, or one of its derivatives.
+     *
+     * @param contentKey the content key of the image, if any.
+     * @param size the name of the derivative size to write, or {@code null} for the original image.
+     * @param request the current request.
+     * @param response the current response.
+     * @throws ResponseStatusException {@code 404 (Not Found)} if there is no stored image,
+     * or {@code 400 (Bad Request)} if the size is unknown.
+     * @throws IOException if the image could not be written.
+     */
+    public void respond(Optional<String> contentKey, String size, HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+        String key = contentKey
+            .filter(ContentAddressedImageStore::isContentKey)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (size == null) {
+            imageResponseWriter.write(request, response, key, () -> imageStore.open(key));
+            return;
+        }
+        if (!imageDerivativeService.getSizes().contains(size)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown image size: " + size);
+        }
+        Optional<String> derivativeKey = imageDerivativeService.resolveDerivative(key, size);
+        if (derivativeKey.isPresent()) {
+            imageResponseWriter.write(request, response, derivativeKey.get(), () -> imageStore.open(derivativeKey.get()));
+        } else {
+            // Serve the original until the derivative is ready, without letting clients cache it under this URL
+            imageResponseWriter.write(request, response, key, () -> imageStore.open(key), CacheControl.noCache());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.demo.upload.web.rest.util;
+
+import com.demo.upload.management.UploadMetersService;
+import com.demo.upload.management.UploadMetersService.FailureCause;
+import com.demo.upload.management.UploadMetersService.UploadEndpoint;
+import com.demo.upload.service.upload.DuplicatePartException;
+import com.demo.upload.service.upload.ImageDecodeException;
+import com.demo.upload.service.upload.ImageDimensionLimitExceededException;
+import com.demo.upload.service.upload.ResponseMessage;
+import com.demo.upload.service.upload.UploadSizeLimitExceededException;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.web.multipart.MultipartException;
+
+/**
+ * Answers failed multipart upload requests, with a status depending on the cause of the failure, which is counted
+ * by the {@link UploadMetersService}.
+ */
+@Component
+public class UploadFailureResponder {
+
+    private final Logger log = LoggerFactory.getLogger(UploadFailureResponder.class);
+
+    private final UploadMetersService uploadMetersService;
+
+    public UploadFailureResponder(UploadMetersService uploadMetersService) {
+        this.uploadMetersService = uploadMetersService;
+    }
+
+    /**
+     * @param endpoint the endpoint the request was received on.
+     * @param message the message describing the missing parts.
+     * @return the {@link ResponseEntity} with status {@code 400 (Bad Request)}.
+     */
+    public ResponseEntity<ResponseMessage> missingPart(UploadEndpoint endpoint, String message) {
+        uploadMetersService.trackFailure(endpoint, FailureCause.MISSING_PART);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ResponseMessage(message));
+    }
+
+    /**
+     * @param endpoint the endpoint the request was received on.
+     * @param e the exception the upload failed with.
+     * @return the {@link ResponseEntity} with status {@code 413 (Payload Too Large)} if a part or its image dimensions
+     * are too large,
+     * {@code 415 (Unsupported Media Type)} if a part is not an image, {@code 400 (Bad Request)} if the request is not
+     * a valid multipart request or has a duplicate part, or {@code 500 (Internal Server Error)}.
+     */
+    public ResponseEntity<ResponseMessage> failure(UploadEndpoint endpoint, Exception e) {
+        if (e instanceof UploadSizeLimitExceededException) {
+            return clientError(endpoint, FailureCause.SIZE_LIMIT, HttpStatus.PAYLOAD_TOO_LARGE, e);
+        }
+        if (e instanceof ImageDimensionLimitExceededException) {
+            return clientError(endpoint, FailureCause.DIMENSION_LIMIT, HttpStatus.PAYLOAD_TOO_LARGE, e);
+        }
+        if (e instanceof ImageDecodeException) {
+            return clientError(endpoint, FailureCause.DECODE, HttpStatus.UNSUPPORTED_MEDIA_TYPE, e);
+        }
+        if (e instanceof DuplicatePartException) {
+            return clientError(endpoint, FailureCause.DUPLICATE_PART, HttpStatus.BAD_REQUEST, e);
+        }
+        if (e instanceof MultipartException) {
+            return clientError(endpoint, FailureCause.MALFORMED, HttpStatus.BAD_REQUEST, e);
+        }
+        FailureCause cause;
+        if (e instanceof DataAccessException || e instanceof TransactionException) {
+            cause = FailureCause.DATABASE;
+        } else if (e instanceof IOException) {
+            cause = FailureCause.IO;
+        } else {
+            cause = FailureCause.OTHER;
+        }
+        log.warn("Could not upload the images of the {} endpoint, cause: {}", endpoint.getTag(), cause.getTag(), e);
+        uploadMetersService.trackFailure(endpoint, cause);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ResponseMessage("Could not upload the file!"));
+    }
+
+    private ResponseEntity<ResponseMessage> clientError(UploadEndpoint endpoint, FailureCause cause, HttpStatus status, Exception e) {
+        log.debug("Rejected upload to the {} endpoint, cause: {}: {}", endpoint.getTag(), cause.getTag(), e.getMessage());
+        uploadMetersService.trackFailure(endpoint, cause);
+        return ResponseEntity.status(status).body(new ResponseMessage("Could not upload the file: " + e.getMessage() + "!"));
+    }
+}
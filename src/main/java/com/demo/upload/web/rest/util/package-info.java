@@ -0,0 +1,4 @@
+/**
+ * Helpers used by Spring MVC REST controllers to write responses.
+ */
+package com.demo.upload.web.rest.util;
@@ -0,0 +1,222 @@
+package com.demo.upload.aop.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.demo.upload.config.LoggingAspectConfiguration;
+import com.demo.upload.domain.User;
+import com.demo.upload.service.mapper.UserMapper;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Unit tests for {@link MethodTimingInterceptor}.
+ */
+class MethodTimingInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private Logger logger;
+
+    private Level previousLevel;
+
+    private ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        logger = (Logger) LoggerFactory.getLogger(UserMapper.class);
+        previousLevel = logger.getLevel();
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        logger.detachAppender(appender);
+        logger.setLevel(previousLevel);
+    }
+
+    @Test
+    void testPointcutMatchesTheLoggedLayersOnly() throws Exception {
+        MethodTimingInterceptor interceptor = new MethodTimingInterceptor(meterRegistry, 1, 1, 0);
+
+        assertThat(
+            interceptor.advisor().getPointcut().getMethodMatcher().matches(UserMapper.class.getMethod("userToUserDTO", User.class), UserMapper.class)
+        )
+            .isTrue();
+        assertThat(interceptor.advisor().getPointcut().getClassFilter().matches(LoggingAspectConfiguration.class)).isFalse();
+    }
+
+    @Test
+    void testCallsAreTimedByOutcome() {
+        logger.setLevel(Level.INFO);
+        UserMapper userMapper = proxy(new MethodTimingInterceptor(meterRegistry, 1, 1, 0));
+
+        userMapper.userToUserDTO(user());
+        userMapper.userToUserDTO(user());
+        assertThatThrownBy(() -> userMapper.userToUserDTO(null)).isInstanceOf(NullPointerException.class);
+
+        assertThat(timer("success").count()).isEqualTo(2.0);
+        assertThat(timer("error").count()).isEqualTo(1.0);
+        assertThat(appender.list).isEmpty();
+    }
+
+    @Test
+    void testEveryCallIsCountedWhenOnlySomeAreTimed() {
+        logger.setLevel(Level.INFO);
+        UserMapper userMapper = proxy(new MethodTimingInterceptor(meterRegistry, 4, 1, 0));
+
+        for (int i = 0; i < 1000; i++) {
+            userMapper.userToUserDTO(user());
+        }
+
+        assertThat(timer("success").count()).isEqualTo(1000.0);
+        assertThat(timer("success").totalTime(TimeUnit.NANOSECONDS)).isPositive();
+    }
+
+    @Test
+    void testEveryCallIsLoggedWithoutSampling() {
+        logger.setLevel(Level.DEBUG);
+        UserMapper userMapper = proxy(new MethodTimingInterceptor(meterRegistry, 1, 1, 0));
+
+        for (int i = 0; i < 10; i++) {
+            userMapper.userToUserDTO(user());
+        }
+
+        assertThat(appender.list).hasSize(20);
+        assertThat(appender.list.get(0).getFormattedMessage()).startsWith("Enter: userToUserDTO() with argument[s] = [User{login='user'");
+        assertThat(appender.list.get(1).getFormattedMessage()).startsWith("Exit: userToUserDTO() with result = UserDTO{id='1', login='user'");
+    }
+
+    @Test
+    void testSamplesAreRateLimited() {
+        logger.setLevel(Level.DEBUG);
+        // One sample per second: only the first of these calls is logged
+        UserMapper userMapper = proxy(new MethodTimingInterceptor(meterRegistry, 1, 1, 1));
+
+        for (int i = 0; i < 100; i++) {
+            userMapper.userToUserDTO(user());
+        }
+
+        assertThat(appender.list).hasSize(2);
+        assertThat(timer("success").count()).isEqualTo(100.0);
+    }
+
+    @Test
+    void testNoCallIsLoggedWhenSamplingIsDisabled() {
+        logger.setLevel(Level.DEBUG);
+        UserMapper userMapper = proxy(new MethodTimingInterceptor(meterRegistry, 1, 0, 0));
+
+        for (int i = 0; i < 10; i++) {
+            userMapper.userToUserDTO(user());
+        }
+
+        assertThat(appender.list).isEmpty();
+        assertThat(timer("success").count()).isEqualTo(10.0);
+    }
+
+    @Test
+    void testInheritedMethodsAreTaggedWithTheTargetClass() {
+        MethodTimingInterceptor interceptor = new MethodTimingInterceptor(meterRegistry, 1, 0, 0);
+        Greeter english = (Greeter) proxy(new EnglishGreeter(), interceptor);
+        Greeter french = (Greeter) proxy(new FrenchGreeter(), interceptor);
+
+        english.greet();
+        french.greet();
+        french.greet();
+
+        assertThat(timer("service", "EnglishGreeter", "greet").count()).isEqualTo(1.0);
+        assertThat(timer("service", "FrenchGreeter", "greet").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testRepositoryMethodsAreTaggedWithTheRepositoryInterface() {
+        // Spring Data repositories are proxies, whose methods are mostly declared by its own interfaces
+        ProxyFactory repositoryFactory = new ProxyFactory(WidgetRepository.class, Repository.class);
+        repositoryFactory.addAdvice((MethodInterceptor) invocation -> 42L);
+        WidgetRepository widgetRepository = (WidgetRepository) proxy(repositoryFactory.getProxy(), new MethodTimingInterceptor(meterRegistry, 1, 0, 0));
+
+        assertThat(widgetRepository.count()).isEqualTo(42L);
+
+        assertThat(timer("repository", "WidgetRepository", "count").count()).isEqualTo(1.0);
+    }
+
+    private FunctionTimer timer(String outcome) {
+        return meterRegistry
+            .get(MethodTimingInterceptor.DURATION_METER_NAME)
+            .tag(MethodTimingInterceptor.LAYER_DIMENSION, "service")
+            .tag(MethodTimingInterceptor.CLASS_DIMENSION, "UserMapper")
+            .tag(MethodTimingInterceptor.METHOD_DIMENSION, "userToUserDTO")
+            .tag(MethodTimingInterceptor.OUTCOME_DIMENSION, outcome)
+            .functionTimer();
+    }
+
+    private FunctionTimer timer(String layer, String className, String method) {
+        return meterRegistry
+            .get(MethodTimingInterceptor.DURATION_METER_NAME)
+            .tag(MethodTimingInterceptor.LAYER_DIMENSION, layer)
+            .tag(MethodTimingInterceptor.CLASS_DIMENSION, className)
+            .tag(MethodTimingInterceptor.METHOD_DIMENSION, method)
+            .tag(MethodTimingInterceptor.OUTCOME_DIMENSION, "success")
+            .functionTimer();
+    }
+
+    /**
+     * @return a proxy applying the interceptor to all the methods of the target, whatever the pointcut.
+     */
+    private static Object proxy(Object target, MethodTimingInterceptor interceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy();
+    }
+
+    private static UserMapper proxy(MethodTimingInterceptor interceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(new UserMapper());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(interceptor.advisor());
+        return (UserMapper) proxyFactory.getProxy();
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(1L);
+        user.setLogin("user");
+        return user;
+    }
+
+    interface Greeter {
+        String greet();
+    }
+
+    abstract static class BaseGreeter implements Greeter {
+
+        @Override
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    static class EnglishGreeter extends BaseGreeter {}
+
+    static class FrenchGreeter extends BaseGreeter {}
+
+    interface CountingRepository extends Repository<User, Long> {
+        long count();
+    }
+
+    interface WidgetRepository extends CountingRepository {}
+}
@@ -1,6 +1,7 @@
 package com.demo.upload.config;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -13,4 +14,19 @@ public class AsyncSyncConfiguration {
     public Executor taskExecutor() {
         return new SyncTaskExecutor();
     }
+
+    @Bean(name = "imageDerivativeExecutor")
+    public Executor imageDerivativeExecutor() {
+        return new SyncTaskExecutor();
+    }
+
+    @Bean(name = "passwordHashingExecutor")
+    public Executor passwordHashingExecutor() {
+        return new SyncTaskExecutor();
+    }
+
+    @Bean(name = "imageBulkPool", destroyMethod = "shutdown")
+    public ForkJoinPool imageBulkPool() {
+        return new ForkJoinPool(2);
+    }
 }
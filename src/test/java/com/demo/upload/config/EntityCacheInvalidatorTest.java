@@ -0,0 +1,176 @@
+package com.demo.upload.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withNoContent;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+
+import com.demo.upload.domain.User;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.jwt.TokenProvider;
+import java.time.Duration;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+/**
+ * Unit tests for {@link EntityCacheInvalidator}.
+ */
+class EntityCacheInvalidatorTest {
+
+    private static final String USER_REGION = User.class.getName();
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private MockRestServiceServer server;
+
+    private EntityCacheInvalidator entityCacheInvalidator;
+
+    @BeforeEach
+    public void setup() {
+        cacheManager = new ConcurrentMapCacheManager(UserRepository.USERS_BY_LOGIN_CACHE, UserRepository.USERS_BY_EMAIL_CACHE);
+        applicationProperties = new ApplicationProperties();
+
+        DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+        when(discoveryClient.getInstances("uploadImage"))
+            .thenReturn(
+                List.of(
+                    new DefaultServiceInstance("self", "uploadImage", "localhost", 8080, false),
+                    new DefaultServiceInstance("peer", "uploadImage", "peer", 8081, false)
+                )
+            );
+        Registration registration = mock(Registration.class);
+        when(registration.getInstanceId()).thenReturn("self");
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("discoveryClient", discoveryClient);
+        beanFactory.addBean("registration", registration);
+        TokenProvider tokenProvider = mock(TokenProvider.class);
+        when(tokenProvider.createToken(any(), any(Duration.class))).thenReturn("token");
+
+        entityCacheInvalidator =
+            new EntityCacheInvalidator(
+                mock(EntityManagerFactory.class),
+                cacheManager,
+                applicationProperties,
+                beanFactory.getBeanProvider(DiscoveryClient.class),
+                beanFactory.getBeanProvider(Registration.class),
+                tokenProvider,
+                new RestTemplateBuilder(restTemplate -> server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build()),
+                "uploadImage",
+                "/management"
+            );
+    }
+
+    @Test
+    void testUserChangesEvictTheOldAndNewLoginsOnceCompleted() {
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).put("old-login", new User());
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).put("new-login", new User());
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).put("other", new User());
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).put("old@localhost", new User());
+
+        AfterTransactionCompletionProcess process = updateUser("old-login", "old@localhost", "new-login", "new@localhost");
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("old-login")).isNotNull();
+        process.doAfterTransactionCompletion(false, null);
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("old-login")).isNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("new-login")).isNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("other")).isNotNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).get("old@localhost")).isNull();
+    }
+
+    @Test
+    void testCommittedChangesClearTheCachesOfPeers() {
+        applicationProperties.getEntityCache().setPeerInvalidation(true);
+        updateUser("login", "login@localhost", "login", "login@localhost").doAfterTransactionCompletion(true, null);
+        for (String cache : List.of(
+            USER_REGION,
+            UserRepository.USERS_BY_LOGIN_CACHE,
+            UserRepository.USERS_BY_EMAIL_CACHE,
+            "default-query-results-region"
+        )) {
+            server
+                .expect(ExpectedCount.once(), requestTo("http://peer:8081/management/caches/" + cache))
+                .andExpect(method(HttpMethod.DELETE))
+                .andExpect(header("Authorization", "Bearer token"))
+                .andRespond(withNoContent());
+        }
+
+        entityCacheInvalidator.invalidatePeers();
+
+        server.verify();
+        // Nothing changed since
+        entityCacheInvalidator.invalidatePeers();
+    }
+
+    @Test
+    void testRolledBackChangesAreNotSentToPeers() {
+        applicationProperties.getEntityCache().setPeerInvalidation(true);
+        updateUser("login", "login@localhost", "login", "login@localhost").doAfterTransactionCompletion(false, null);
+
+        entityCacheInvalidator.invalidatePeers();
+
+        server.verify();
+    }
+
+    @Test
+    void testUnreachablePeersDoNotStopTheOthers() {
+        applicationProperties.getEntityCache().setPeerInvalidation(true);
+        updateUser("login", "login@localhost", "login", "login@localhost").doAfterTransactionCompletion(true, null);
+        server.expect(ExpectedCount.times(4), method(HttpMethod.DELETE)).andRespond(withServerError());
+
+        entityCacheInvalidator.invalidatePeers();
+
+        server.verify();
+    }
+
+    private AfterTransactionCompletionProcess updateUser(String oldLogin, String oldEmail, String login, String email) {
+        EntityMetamodel entityMetamodel = mock(EntityMetamodel.class);
+        when(entityMetamodel.getPropertyIndex("login")).thenReturn(0);
+        when(entityMetamodel.getPropertyIndex("email")).thenReturn(1);
+        DomainDataRegion region = mock(DomainDataRegion.class);
+        when(region.getName()).thenReturn(USER_REGION);
+        EntityDataAccess cacheAccess = mock(EntityDataAccess.class);
+        when(cacheAccess.getRegion()).thenReturn(region);
+        EntityPersister persister = mock(EntityPersister.class);
+        when(persister.getCacheAccessStrategy()).thenReturn(cacheAccess);
+        when(persister.getEntityMetamodel()).thenReturn(entityMetamodel);
+        ActionQueue actionQueue = mock(ActionQueue.class);
+        EventSource session = mock(EventSource.class);
+        when(session.getActionQueue()).thenReturn(actionQueue);
+
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(email);
+        Object[] oldState = new Object[] { oldLogin, oldEmail };
+        entityCacheInvalidator.onPostUpdate(new PostUpdateEvent(user, 1L, null, oldState, null, persister, session));
+
+        ArgumentCaptor<AfterTransactionCompletionProcess> process = ArgumentCaptor.forClass(AfterTransactionCompletionProcess.class);
+        verify(actionQueue).registerProcess(process.capture());
+        return process.getValue();
+    }
+}
@@ -0,0 +1,23 @@
+package com.demo.upload.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class ImageBlobTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(ImageBlob.class);
+        ImageBlob imageBlob1 = new ImageBlob();
+        imageBlob1.setContentKey("a".repeat(64));
+        ImageBlob imageBlob2 = new ImageBlob();
+        imageBlob2.setContentKey(imageBlob1.getContentKey());
+        assertThat(imageBlob1).isEqualTo(imageBlob2);
+        imageBlob2.setContentKey("b".repeat(64));
+        assertThat(imageBlob1).isNotEqualTo(imageBlob2);
+        imageBlob1.setContentKey(null);
+        assertThat(imageBlob1).isNotEqualTo(imageBlob2);
+    }
+}
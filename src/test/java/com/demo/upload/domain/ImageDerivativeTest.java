@@ -0,0 +1,23 @@
+package com.demo.upload.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class ImageDerivativeTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(ImageDerivative.class);
+        ImageDerivative imageDerivative1 = new ImageDerivative();
+        imageDerivative1.setId(1L);
+        ImageDerivative imageDerivative2 = new ImageDerivative();
+        imageDerivative2.setId(imageDerivative1.getId());
+        assertThat(imageDerivative1).isEqualTo(imageDerivative2);
+        imageDerivative2.setId(2L);
+        assertThat(imageDerivative1).isNotEqualTo(imageDerivative2);
+        imageDerivative1.setId(null);
+        assertThat(imageDerivative1).isNotEqualTo(imageDerivative2);
+    }
+}
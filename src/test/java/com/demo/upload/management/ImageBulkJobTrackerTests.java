@@ -0,0 +1,67 @@
+package com.demo.upload.management;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.management.ImageBulkJobTracker.Direction;
+import com.demo.upload.management.ImageBulkJobTracker.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ImageBulkJobTrackerTests {
+
+    private ImageBulkJobTracker imageBulkJobTracker;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getBulk().setRetainedJobs(1);
+        imageBulkJobTracker = new ImageBulkJobTracker(applicationProperties);
+    }
+
+    @Test
+    void testProgressReflectsJobCounters() {
+        ImageBulkJobTracker.Job job = imageBulkJobTracker.start(Direction.IMPORT);
+        job.imageTransferred(100);
+        job.imageTransferred(50);
+        job.userProcessed();
+        job.failed();
+
+        ImageBulkJobTracker.Progress progress = imageBulkJobTracker.getJob(job.getId()).orElseThrow();
+
+        assertThat(progress.getDirection()).isEqualTo(Direction.IMPORT);
+        assertThat(progress.getStatus()).isEqualTo(Status.RUNNING);
+        assertThat(progress.getImages()).isEqualTo(2);
+        assertThat(progress.getBytes()).isEqualTo(150);
+        assertThat(progress.getUsers()).isEqualTo(1);
+        assertThat(progress.getFailures()).isEqualTo(1);
+        assertThat(progress.getFinishedAt()).isNull();
+    }
+
+    @Test
+    void testFinishedJobsKeepTheirDuration() {
+        ImageBulkJobTracker.Job job = imageBulkJobTracker.start(Direction.EXPORT);
+        job.imageTransferred(1000);
+        job.fail(new IllegalStateException("broken"));
+
+        ImageBulkJobTracker.Progress progress = job.progress();
+
+        assertThat(progress.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(progress.getError()).isEqualTo("broken");
+        assertThat(progress.getFinishedAt()).isNotNull();
+        assertThat(job.progress().getElapsedSeconds()).isEqualTo(progress.getElapsedSeconds());
+    }
+
+    @Test
+    void testOldestFinishedJobsAreForgotten() {
+        ImageBulkJobTracker.Job first = imageBulkJobTracker.start(Direction.IMPORT);
+        first.complete();
+        ImageBulkJobTracker.Job second = imageBulkJobTracker.start(Direction.IMPORT);
+        second.complete();
+        ImageBulkJobTracker.Job running = imageBulkJobTracker.start(Direction.EXPORT);
+
+        assertThat(imageBulkJobTracker.getJobs())
+            .extracting(ImageBulkJobTracker.Progress::getId)
+            .containsExactly(running.getId(), second.getId());
+    }
+}
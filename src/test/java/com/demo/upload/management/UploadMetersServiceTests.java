@@ -0,0 +1,92 @@
+package com.demo.upload.management;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.management.UploadMetersService.FailureCause;
+import com.demo.upload.management.UploadMetersService.UploadEndpoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UploadMetersServiceTests {
+
+    private static final String BYTES_RECEIVED_METER_EXPECTED_NAME = "upload.bytes-received";
+    private static final String DURATION_METER_EXPECTED_NAME = "upload.duration";
+    private static final String TIME_TO_FIRST_BYTE_METER_EXPECTED_NAME = "upload.time-to-first-byte";
+    private static final String WRITE_METER_EXPECTED_NAME = "upload.write";
+    private static final String IMAGE_WIDTH_METER_EXPECTED_NAME = "upload.image.width";
+    private static final String IMAGE_HEIGHT_METER_EXPECTED_NAME = "upload.image.height";
+    private static final String FAILURES_METER_EXPECTED_NAME = "upload.failures";
+
+    private MeterRegistry meterRegistry;
+
+    private UploadMetersService uploadMetersService;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+
+        uploadMetersService = new UploadMetersService(meterRegistry);
+    }
+
+    @Test
+    void testUploadMetersByEndpointAreCreated() {
+        meterRegistry.get(BYTES_RECEIVED_METER_EXPECTED_NAME).tag("endpoint", "user-extra").summary();
+        meterRegistry.get(BYTES_RECEIVED_METER_EXPECTED_NAME).tag("endpoint", "account").summary();
+
+        meterRegistry.get(DURATION_METER_EXPECTED_NAME).tag("endpoint", "user-extra").timer();
+        meterRegistry.get(DURATION_METER_EXPECTED_NAME).tag("endpoint", "account").timer();
+
+        meterRegistry.get(TIME_TO_FIRST_BYTE_METER_EXPECTED_NAME).tag("endpoint", "account").timer();
+        meterRegistry.get(WRITE_METER_EXPECTED_NAME).tag("endpoint", "account").timer();
+        meterRegistry.get(IMAGE_WIDTH_METER_EXPECTED_NAME).tag("endpoint", "account").summary();
+        meterRegistry.get(IMAGE_HEIGHT_METER_EXPECTED_NAME).tag("endpoint", "account").summary();
+    }
+
+    @Test
+    void testFailureCountersByEndpointAndCauseAreCreated() {
+        for (UploadEndpoint endpoint : UploadEndpoint.values()) {
+            for (FailureCause cause : FailureCause.values()) {
+                assertThat(
+                    meterRegistry.get(FAILURES_METER_EXPECTED_NAME).tag("endpoint", endpoint.getTag()).tag("cause", cause.getTag()).counter().count()
+                )
+                    .isZero();
+            }
+        }
+    }
+
+    @Test
+    void testTrackMethodsShouldBeBoundToCorrectMeters() {
+        uploadMetersService.trackBytesReceived(UploadEndpoint.USER_EXTRA, 1024);
+        uploadMetersService.trackDuration(UploadEndpoint.USER_EXTRA, TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(meterRegistry.get(BYTES_RECEIVED_METER_EXPECTED_NAME).tag("endpoint", "user-extra").summary().totalAmount())
+            .isEqualTo(1024);
+        assertThat(meterRegistry.get(DURATION_METER_EXPECTED_NAME).tag("endpoint", "user-extra").timer().count()).isEqualTo(1);
+
+        assertThat(meterRegistry.get(BYTES_RECEIVED_METER_EXPECTED_NAME).tag("endpoint", "account").summary().count()).isZero();
+        assertThat(meterRegistry.get(DURATION_METER_EXPECTED_NAME).tag("endpoint", "account").timer().count()).isZero();
+    }
+
+    @Test
+    void testImageAndFailureTrackingShouldBeBoundToCorrectMeters() {
+        uploadMetersService.trackTimeToFirstByte(UploadEndpoint.ACCOUNT, TimeUnit.MILLISECONDS.toNanos(2));
+        uploadMetersService.trackWrite(UploadEndpoint.ACCOUNT, TimeUnit.MILLISECONDS.toNanos(3));
+        uploadMetersService.trackImageDimensions(UploadEndpoint.ACCOUNT, 640, 480);
+        uploadMetersService.trackFailure(UploadEndpoint.ACCOUNT, FailureCause.DECODE);
+
+        assertThat(meterRegistry.get(TIME_TO_FIRST_BYTE_METER_EXPECTED_NAME).tag("endpoint", "account").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(WRITE_METER_EXPECTED_NAME).tag("endpoint", "account").timer().totalTime(TimeUnit.MILLISECONDS))
+            .isEqualTo(3);
+        assertThat(meterRegistry.get(IMAGE_WIDTH_METER_EXPECTED_NAME).tag("endpoint", "account").summary().totalAmount()).isEqualTo(640);
+        assertThat(meterRegistry.get(IMAGE_HEIGHT_METER_EXPECTED_NAME).tag("endpoint", "account").summary().totalAmount()).isEqualTo(480);
+        assertThat(meterRegistry.get(FAILURES_METER_EXPECTED_NAME).tag("endpoint", "account").tag("cause", "decode").counter().count())
+            .isEqualTo(1);
+
+        assertThat(meterRegistry.get(FAILURES_METER_EXPECTED_NAME).tag("endpoint", "user-extra").tag("cause", "decode").counter().count())
+            .isZero();
+        assertThat(meterRegistry.get(IMAGE_WIDTH_METER_EXPECTED_NAME).tag("endpoint", "user-extra").summary().count()).isZero();
+    }
+}
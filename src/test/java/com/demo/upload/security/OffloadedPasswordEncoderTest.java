@@ -0,0 +1,109 @@
+package com.demo.upload.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.management.SecurityMetersService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for {@link OffloadedPasswordEncoder}.
+ */
+class OffloadedPasswordEncoderTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getPasswordHashing().setBcryptStrength(4);
+        applicationProperties.getPasswordHashing().setArgon2Memory(DataSize.ofKilobytes(1024));
+        applicationProperties.getPasswordHashing().setArgon2Iterations(1);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testBcryptRoundTrip() {
+        OffloadedPasswordEncoder encoder = newEncoder(new SyncTaskExecutor());
+
+        String hash = encoder.encode("secret");
+
+        assertThat(hash).startsWith("$2a$04$");
+        assertThat(encoder.matches("secret", hash)).isTrue();
+        assertThat(encoder.matches("other", hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    void testArgon2StillMatchesBcryptHashesAndUpgradesThem() {
+        String legacyHash = new BCryptPasswordEncoder(4).encode("secret");
+        applicationProperties.getPasswordHashing().setAlgorithm(ApplicationProperties.PasswordHashing.Algorithm.ARGON2);
+        OffloadedPasswordEncoder encoder = newEncoder(new SyncTaskExecutor());
+
+        String hash = encoder.encode("secret");
+
+        assertThat(hash).startsWith("$argon2id$").hasSizeLessThanOrEqualTo(128);
+        assertThat(encoder.matches("secret", hash)).isTrue();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+        assertThat(encoder.matches("secret", legacyHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacyHash)).isTrue();
+    }
+
+    @Test
+    void testLowerBcryptStrengthIsUpgraded() {
+        String weakHash = new BCryptPasswordEncoder(4).encode("secret");
+        applicationProperties.getPasswordHashing().setBcryptStrength(5);
+        OffloadedPasswordEncoder encoder = newEncoder(new SyncTaskExecutor());
+
+        assertThat(encoder.matches("secret", weakHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(weakHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("secret"))).isFalse();
+    }
+
+    @Test
+    void testHashesFailFastWhenTooManyArePending() {
+        applicationProperties.getPasswordHashing().setMaxPending(0);
+        OffloadedPasswordEncoder encoder = newEncoder(new SyncTaskExecutor());
+
+        assertThatThrownBy(() -> encoder.encode("secret")).isInstanceOf(PasswordHashingUnavailableException.class);
+        assertThat(meterRegistry.get(SecurityMetersService.PASSWORD_HASHING_REJECTED_METER_NAME).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testHashesFailFastWhenThePoolIsSaturated() {
+        OffloadedPasswordEncoder encoder = newEncoder(task -> {
+            throw new RejectedExecutionException("saturated");
+        });
+
+        assertThatThrownBy(() -> encoder.matches("secret", "$2a$04$invalid")).isInstanceOf(PasswordHashingUnavailableException.class);
+        assertThat(meterRegistry.get(SecurityMetersService.PASSWORD_HASHING_REJECTED_METER_NAME).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testHashingIsTimed() {
+        OffloadedPasswordEncoder encoder = newEncoder(new SyncTaskExecutor());
+
+        encoder.matches("secret", encoder.encode("secret"));
+
+        assertThat(meterRegistry.get(SecurityMetersService.PASSWORD_HASHING_METER_NAME).tag("operation", "encode").timer().count())
+            .isEqualTo(1);
+        assertThat(meterRegistry.get(SecurityMetersService.PASSWORD_HASHING_METER_NAME).tag("operation", "matches").timer().count())
+            .isEqualTo(1);
+        assertThat(meterRegistry.get(SecurityMetersService.PASSWORD_HASHING_QUEUE_METER_NAME).timer().count()).isEqualTo(2);
+    }
+
+    private OffloadedPasswordEncoder newEncoder(Executor executor) {
+        return new OffloadedPasswordEncoder(applicationProperties, executor, new SecurityMetersService(meterRegistry));
+    }
+}
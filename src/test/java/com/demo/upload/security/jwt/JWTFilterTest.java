@@ -2,6 +2,7 @@ package com.demo.upload.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.demo.upload.config.ApplicationProperties;
 import com.demo.upload.management.SecurityMetersService;
 import com.demo.upload.security.AuthoritiesConstants;
 import io.jsonwebtoken.io.Decoders;
@@ -34,7 +35,12 @@ class JWTFilterTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(
+            jHipsterProperties,
+            new ApplicationProperties(),
+            securityMetersService,
+            new JwtKeyRing(new ApplicationProperties(), jHipsterProperties)
+        );
         ReflectionTestUtils.setField(tokenProvider, "key", Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret)));
 
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 60000);
@@ -0,0 +1,211 @@
+package com.demo.upload.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.management.SecurityMetersService;
+import com.demo.upload.security.AuthoritiesConstants;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Unit tests for {@link JwtKeyRing}, and for {@link TokenProvider} signing with it.
+ */
+class JwtKeyRingTest {
+
+    private static final String BASE64_SECRET =
+        "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+
+    @TempDir
+    Path directory;
+
+    private MutableClock clock;
+
+    private ApplicationProperties applicationProperties;
+
+    private JHipsterProperties jHipsterProperties;
+
+    @BeforeEach
+    public void setup() {
+        clock = new MutableClock();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getJwt().setAlgorithm(ApplicationProperties.Jwt.Algorithm.ES256);
+        applicationProperties.getJwt().setKeyDirectory(directory.toString());
+        applicationProperties.getJwt().setRotationInterval(Duration.ofDays(1));
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setTokenValidityInSeconds(3600);
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setTokenValidityInSecondsForRememberMe(2 * 86400);
+    }
+
+    @Test
+    void testKeysRotateAndRetire() throws Exception {
+        JwtKeyRing jwtKeyRing = newKeyRing();
+        String first = jwtKeyRing.getSigningKey().getKeyId();
+
+        clock.advance(Duration.ofHours(12));
+        jwtKeyRing.refresh();
+        assertThat(jwtKeyRing.getSigningKey().getKeyId()).isEqualTo(first);
+
+        clock.advance(Duration.ofHours(12));
+        jwtKeyRing.refresh();
+        String second = jwtKeyRing.getSigningKey().getKeyId();
+        assertThat(second).isNotEqualTo(first);
+        assertThat(jwtKeyRing.getVerificationKey(first)).isNotNull();
+        assertThat(jwtKeyRing.getVerificationKey(second)).isNotNull();
+
+        // The first key signed its last token one day in, and remember-me tokens live two days
+        clock.advance(Duration.ofDays(2).plusSeconds(1));
+        jwtKeyRing.refresh();
+        assertThat(jwtKeyRing.getVerificationKey(first)).isNull();
+        assertThat(jwtKeyRing.getVerificationKey(second)).isNotNull();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).extracting(file -> file.getFileName().toString()).doesNotContain(first + ".pem");
+        }
+    }
+
+    @Test
+    void testNodesShareTheKeyDirectory() throws Exception {
+        JwtKeyRing node1 = newKeyRing();
+        JwtKeyRing node2 = newKeyRing();
+
+        assertThat(node2.getSigningKey().getKeyId()).isEqualTo(node1.getSigningKey().getKeyId());
+        assertThat(node2.getVerificationKey(node1.getSigningKey().getKeyId())).isEqualTo(node1.getVerificationKey(node1.getSigningKey().getKeyId()));
+    }
+
+    @Test
+    void testNextKeyIsPublishedBeforeItSigns() throws Exception {
+        applicationProperties.getJwt().setRefreshInterval(Duration.ofMinutes(1));
+        JwtKeyRing node1 = newKeyRing();
+        JwtKeyRing node2 = newKeyRing();
+        String first = node1.getSigningKey().getKeyId();
+
+        clock.advance(Duration.ofDays(1).minusSeconds(90));
+        node1.refresh();
+        node2.refresh();
+        assertThat(node1.getSigningKey().getKeyId()).isEqualTo(first);
+        assertThat(node1.getJsonWebKeys()).hasSize(2);
+
+        // The second node verifies tokens of the next key before its next refresh
+        clock.advance(Duration.ofSeconds(90));
+        node1.refresh();
+        String second = node1.getSigningKey().getKeyId();
+        assertThat(second).isNotEqualTo(first);
+        assertThat(node2.getVerificationKey(second)).isEqualTo(node1.getVerificationKey(second));
+        assertThat(node2.getSigningKey().getKeyId()).isEqualTo(first);
+    }
+
+    @Test
+    void testJsonWebKeys() throws Exception {
+        JwtKeyRing jwtKeyRing = newKeyRing();
+
+        List<Map<String, Object>> jsonWebKeys = jwtKeyRing.getJsonWebKeys();
+
+        assertThat(jsonWebKeys).hasSize(1);
+        assertThat(jsonWebKeys.get(0))
+            .containsEntry("kty", "EC")
+            .containsEntry("crv", "P-256")
+            .containsEntry("alg", "ES256")
+            .containsEntry("kid", jwtKeyRing.getSigningKey().getKeyId());
+        assertThat((String) jsonWebKeys.get(0).get("x")).hasSize(43);
+        assertThat((String) jsonWebKeys.get(0).get("y")).hasSize(43);
+    }
+
+    @Test
+    void testDisabledKeyRingDoesNotTouchTheDirectory() throws Exception {
+        applicationProperties.getJwt().setAlgorithm(ApplicationProperties.Jwt.Algorithm.HS512);
+        JwtKeyRing jwtKeyRing = newKeyRing();
+        jwtKeyRing.refresh();
+
+        assertThat(jwtKeyRing.isEnabled()).isFalse();
+        assertThat(jwtKeyRing.getJsonWebKeys()).isEmpty();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void testTokenProviderSignsWithTheCurrentKey() throws Exception {
+        JwtKeyRing jwtKeyRing = newKeyRing();
+        TokenProvider tokenProvider = newTokenProvider(jwtKeyRing);
+
+        String token = tokenProvider.createToken(authentication(), false);
+
+        String keyId = jwtKeyRing.getSigningKey().getKeyId();
+        assertThat(Jwts.parserBuilder().setSigningKey(jwtKeyRing.getVerificationKey(keyId)).build().parseClaimsJws(token).getHeader().getKeyId())
+            .isEqualTo(keyId);
+        assertThat(tokenProvider.authenticate(token)).hasValueSatisfying(result -> assertThat(result.getName()).isEqualTo("user"));
+    }
+
+    @Test
+    void testTokenProviderRejectsTokensOfOtherKeys() throws Exception {
+        TokenProvider tokenProvider = newTokenProvider(newKeyRing());
+        applicationProperties.getJwt().setAlgorithm(ApplicationProperties.Jwt.Algorithm.HS512);
+        String hmacToken = newTokenProvider(newKeyRing()).createToken(authentication(), false);
+        applicationProperties.getJwt().setAlgorithm(ApplicationProperties.Jwt.Algorithm.ES256);
+        applicationProperties.getJwt().setKeyDirectory(directory.resolve("other").toString());
+        String foreignToken = newTokenProvider(newKeyRing()).createToken(authentication(), false);
+
+        assertThat(tokenProvider.validateToken(hmacToken)).isFalse();
+        assertThat(tokenProvider.validateToken(foreignToken)).isFalse();
+    }
+
+    private JwtKeyRing newKeyRing() throws Exception {
+        JwtKeyRing jwtKeyRing = new JwtKeyRing(applicationProperties, jHipsterProperties, clock);
+        jwtKeyRing.init();
+        return jwtKeyRing;
+    }
+
+    private TokenProvider newTokenProvider(JwtKeyRing jwtKeyRing) {
+        return new TokenProvider(
+            jHipsterProperties,
+            applicationProperties,
+            new SecurityMetersService(new SimpleMeterRegistry()),
+            jwtKeyRing
+        );
+    }
+
+    private static UsernamePasswordAuthenticationToken authentication() {
+        return new UsernamePasswordAuthenticationToken("user", "user", List.of(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2022-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
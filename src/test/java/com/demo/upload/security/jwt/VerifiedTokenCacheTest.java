@@ -0,0 +1,86 @@
+package com.demo.upload.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * Unit tests for {@link VerifiedTokenCache}.
+ */
+class VerifiedTokenCacheTest {
+
+    private static final User PRINCIPAL = new User("user", "", List.of());
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void testEntriesExpireWithTheirToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, 60000, clock);
+        cache.put("short", PRINCIPAL, clock.millis() + 1000);
+        cache.put("long", PRINCIPAL, clock.millis() + 3600000);
+        cache.put("expired", PRINCIPAL, clock.millis());
+
+        clock.advance(1000);
+        assertThat(cache.get("short")).isNull();
+        assertThat(cache.get("long")).isSameAs(PRINCIPAL);
+        assertThat(cache.get("expired")).isNull();
+
+        clock.advance(59000);
+        assertThat(cache.get("long")).isNull();
+    }
+
+    @Test
+    void testCacheStaysBounded() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, 60000, clock);
+        for (int i = 0; i < 100; i++) {
+            cache.put("token-" + i, PRINCIPAL, null);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+        assertThat(cache.get("token-99")).isSameAs(PRINCIPAL);
+    }
+
+    @Test
+    void testDisabledCacheKeepsNothing() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0, 60000, clock);
+        cache.put("token", PRINCIPAL, null);
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get("token")).isNull();
+    }
+
+    @Test
+    void testKeyIsAHashOfTheToken() {
+        assertThat(VerifiedTokenCache.key("a.b.c")).isEqualTo(VerifiedTokenCache.key("a.b.c")).isNotEqualTo(VerifiedTokenCache.key("a.b.d")).doesNotContain("a.b.c");
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2022-01-01T00:00:00Z");
+
+        void advance(long millis) {
+            instant = instant.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
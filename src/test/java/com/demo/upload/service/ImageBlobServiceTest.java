@@ -0,0 +1,224 @@
+package com.demo.upload.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.demo.upload.domain.ImageBlob;
+import com.demo.upload.domain.ImageDerivative;
+import com.demo.upload.repository.ImageBlobRepository;
+import com.demo.upload.repository.ImageDerivativeRepository;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import com.demo.upload.service.upload.ImageBytesCache;
+import com.demo.upload.service.upload.StoredImage;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Unit tests for {@link ImageBlobService}, against an in-memory table of blobs.
+ */
+class ImageBlobServiceTest {
+
+    private static final String SOURCE_KEY = "a".repeat(64);
+
+    private static final String THUMB_KEY = "b".repeat(64);
+
+    private final Map<String, ImageBlob> blobs = new HashMap<>();
+
+    private ImageDerivativeRepository imageDerivativeRepository;
+
+    private ContentAddressedImageStore imageStore;
+
+    private ImageBytesCache imageBytesCache;
+
+    private ImageBlobService imageBlobService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ImageBlobRepository imageBlobRepository = mock(ImageBlobRepository.class);
+        doAnswer(invocation ->
+                blobs.putIfAbsent(
+                    invocation.getArgument(0),
+                    new ImageBlob().contentKey(invocation.getArgument(0)).size(invocation.getArgument(1)).refCount(0)
+                )
+            )
+            .when(imageBlobRepository)
+            .insertIfAbsent(anyString(), anyLong(), any());
+        when(imageBlobRepository.findOneForUpdate(anyString()))
+            .thenAnswer(invocation -> Optional.ofNullable(blobs.get(invocation.<String>getArgument(0))));
+        when(imageBlobRepository.findAllForUpdate(any()))
+            .thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().filter(blobs::containsKey).map(blobs::get).collect(Collectors.toList())
+            );
+        doAnswer(invocation -> blobs.remove(invocation.<ImageBlob>getArgument(0).getContentKey())).when(imageBlobRepository).delete(any());
+        imageDerivativeRepository = mock(ImageDerivativeRepository.class);
+        imageStore = mock(ContentAddressedImageStore.class);
+        when(imageStore.exists(anyString())).thenReturn(true);
+        imageBytesCache = mock(ImageBytesCache.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        imageBlobService =
+            new ImageBlobService(imageBlobRepository, imageDerivativeRepository, imageStore, imageBytesCache, transactionManager);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // Unbinds the blobs released by a failed test
+        TransactionSynchronizationManager
+            .getSynchronizations()
+            .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testRetainCountsReferences() {
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+        imageBlobService.retain(storedImage(SOURCE_KEY), 2);
+
+        assertThat(blobs.get(SOURCE_KEY).getRefCount()).isEqualTo(3);
+        assertThat(blobs.get(SOURCE_KEY).getSize()).isEqualTo(5);
+    }
+
+    @Test
+    void testRetainFailsWhenTheContentWasDeletedWhileBeingStored() throws Exception {
+        when(imageStore.exists(SOURCE_KEY)).thenReturn(false);
+
+        assertThatThrownBy(() -> imageBlobService.retain(storedImage(SOURCE_KEY))).isInstanceOf(ConcurrencyFailureException.class);
+    }
+
+    @Test
+    void testRetainReferencedAddsAReferencePerOccurrence() {
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+
+        imageBlobService.retainReferenced(Arrays.asList(SOURCE_KEY, null, "http://placehold.it/50x50", SOURCE_KEY));
+
+        assertThat(blobs.get(SOURCE_KEY).getRefCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testRetainReferencedRejectsImagesThatDoNotExist() {
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+
+        assertThatThrownBy(() -> imageBlobService.retainReferenced(List.of(SOURCE_KEY, THUMB_KEY)))
+            .isInstanceOf(InvalidImageReferenceException.class)
+            .hasMessageContaining(THUMB_KEY);
+        assertThat(blobs).doesNotContainKey(THUMB_KEY);
+    }
+
+    @Test
+    void testReleaseDeletesTheLastReferenceOnceCommitted() throws Exception {
+        imageBlobService.retain(storedImage(SOURCE_KEY), 2);
+
+        imageBlobService.release(SOURCE_KEY);
+        assertThat(blobs.get(SOURCE_KEY).getRefCount()).isEqualTo(1);
+        imageBlobService.release(SOURCE_KEY);
+        assertThat(blobs).doesNotContainKey(SOURCE_KEY);
+        verify(imageStore, never()).deleteAll(any());
+
+        commit();
+
+        verify(imageStore).deleteAll(List.of(SOURCE_KEY));
+        verify(imageBytesCache).invalidate(SOURCE_KEY);
+    }
+
+    @Test
+    void testReleaseIgnoresValuesThatAreNotContentKeys() throws Exception {
+        imageBlobService.release("http://placehold.it/50x50");
+        imageBlobService.release(null);
+
+        commit();
+
+        verify(imageStore, never()).deleteAll(any());
+    }
+
+    @Test
+    void testRetainAfterTheLastReleaseKeepsTheBlob() throws Exception {
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+        imageBlobService.release(SOURCE_KEY);
+
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+        commit();
+
+        assertThat(blobs.get(SOURCE_KEY).getRefCount()).isEqualTo(1);
+        verify(imageStore, never()).deleteAll(any());
+    }
+
+    @Test
+    void testDeletionSkipsBlobsRetainedAgainByAnotherTransaction() throws Exception {
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+        imageBlobService.release(SOURCE_KEY);
+
+        // Committed by another transaction before the deletion locks the key
+        blobs.put(SOURCE_KEY, new ImageBlob().contentKey(SOURCE_KEY).size(5L).refCount(1));
+        commit();
+
+        verify(imageStore).deleteAll(List.of());
+    }
+
+    @Test
+    void testRollbackDeletesTheBlobsItFirstReferenced() throws Exception {
+        blobs.put(THUMB_KEY, new ImageBlob().contentKey(THUMB_KEY).size(5L).refCount(1));
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+        imageBlobService.retain(storedImage(THUMB_KEY));
+
+        // The rows the transaction inserted are gone once it rolled back
+        blobs.remove(SOURCE_KEY);
+        blobs.get(THUMB_KEY).setRefCount(1);
+        rollback();
+
+        verify(imageStore).deleteAll(List.of(SOURCE_KEY));
+    }
+
+    @Test
+    void testReleasingTheLastReferenceReleasesTheDerivatives() throws Exception {
+        imageBlobService.retain(storedImage(SOURCE_KEY));
+        imageBlobService.retain(storedImage(THUMB_KEY));
+        ImageDerivative thumb = new ImageDerivative().sourceKey(SOURCE_KEY).variant("thumb").derivativeKey(THUMB_KEY);
+        // An image which did not need resizing is its own derivative
+        ImageDerivative medium = new ImageDerivative().sourceKey(SOURCE_KEY).variant("medium").derivativeKey(SOURCE_KEY);
+        when(imageDerivativeRepository.findAllBySourceKey(SOURCE_KEY)).thenReturn(List.of(thumb, medium));
+
+        imageBlobService.release(SOURCE_KEY);
+        commit();
+
+        verify(imageDerivativeRepository).delete(thumb);
+        verify(imageDerivativeRepository).delete(medium);
+        assertThat(blobs).isEmpty();
+        verify(imageStore).deleteAll(List.of(SOURCE_KEY, THUMB_KEY));
+    }
+
+    private static StoredImage storedImage(String contentKey) {
+        return new StoredImage("image.png", contentKey, 5);
+    }
+
+    private static void rollback() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+}
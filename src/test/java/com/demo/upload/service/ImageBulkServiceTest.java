@@ -0,0 +1,46 @@
+package com.demo.upload.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.management.ImageBulkJobTracker;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the manifest parsing of {@link ImageBulkService}.
+ */
+class ImageBulkServiceTest {
+
+    @Test
+    void testParseManifest() throws Exception {
+        ImageBulkJobTracker.Job job = new ImageBulkJobTracker(new ApplicationProperties()).start(ImageBulkJobTracker.Direction.IMPORT);
+        String manifest = String.join(
+            "\n",
+            ImageBulkService.MANIFEST_HEADER,
+            "User,./front.png,/back.png",
+            "",
+            "broken-line",
+            "other,,images/back.png",
+            "user,front-2.png,back-2.png"
+        );
+
+        List<ImageBulkService.ManifestRow> rows = ImageBulkService.parseManifest(new BufferedReader(new StringReader(manifest)), job);
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows)
+            .anySatisfy(row -> {
+                assertThat(row.login).isEqualTo("user");
+                assertThat(row.frontImage).isEqualTo("front-2.png");
+                assertThat(row.backImage).isEqualTo("back-2.png");
+            })
+            .anySatisfy(row -> {
+                assertThat(row.login).isEqualTo("other");
+                assertThat(row.frontImage).isNull();
+                assertThat(row.backImage).isEqualTo("images/back.png");
+            });
+        assertThat(job.progress().getFailures()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.demo.upload.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Unit tests for {@link KeysetCursor}.
+ */
+class KeysetCursorTest {
+
+    @Test
+    void testCursorRoundTrip() {
+        User user = new User();
+        user.setId(42L);
+        user.setLogin("john:doe");
+        Sort.Order order = Sort.Order.desc("login");
+
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.after(order, user).encode(), order);
+
+        assertThat(cursor.getId()).isEqualTo(42L);
+        assertThat(cursor.getValue()).isEqualTo("john:doe");
+        assertThat(cursor.getOrder()).isEqualTo(order);
+    }
+
+    @Test
+    void testCursorValuesKeepTheirType() {
+        User user = new User();
+        user.setId(42L);
+        user.setActivated(true);
+
+        assertThat(KeysetCursor.decode(KeysetCursor.after(Sort.Order.asc("activated"), user).encode(), Sort.Order.asc("activated")).getValue())
+            .isEqualTo(true);
+        assertThat(KeysetCursor.decode(KeysetCursor.after(Sort.Order.asc("id"), user).encode(), Sort.Order.asc("id")).getValue())
+            .isEqualTo(42L);
+    }
+
+    @Test
+    void testEmptyCursorStartsAtTheFirstPage() {
+        KeysetCursor cursor = KeysetCursor.decode("", Sort.Order.asc("login"));
+
+        assertThat(cursor.getId()).isNull();
+    }
+
+    @Test
+    void testCursorOnlyResumesItsOwnOrder() {
+        User user = new User();
+        user.setId(42L);
+        user.setLogin("john");
+        String token = KeysetCursor.after(Sort.Order.asc("login"), user).encode();
+
+        assertThatThrownBy(() -> KeysetCursor.decode(token, Sort.Order.desc("login"))).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(token, Sort.Order.asc("id"))).isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void testInvalidCursorsAreRejected() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not base64!", Sort.Order.asc("login"))).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("MTpsb2dpbjpBU0M6eDpqb2hu", Sort.Order.asc("login")))
+            .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("", Sort.Order.asc("lastName"))).isInstanceOf(InvalidCursorException.class);
+    }
+}
@@ -0,0 +1,188 @@
+package com.demo.upload.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.domain.MailOutboxMessage;
+import com.demo.upload.domain.enumeration.MailOutboxStatus;
+import com.demo.upload.management.MailMetersService;
+import com.demo.upload.repository.MailOutboxRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Unit tests for {@link MailDispatcher}, sending to a GreenMail SMTP server.
+ */
+class MailDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+
+    private MailOutboxRepository mailOutboxRepository;
+
+    private JavaMailSenderImpl javaMailSender;
+
+    private ApplicationProperties applicationProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MailDispatcher mailDispatcher;
+
+    @BeforeEach
+    public void setup() {
+        mailOutboxRepository = mock(MailOutboxRepository.class);
+        javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        javaMailSender.setPort(greenMail.getSmtp().getPort());
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getMailOutbox().setMaxAttempts(3);
+        applicationProperties.getMailOutbox().setInitialBackoff(Duration.ofSeconds(30));
+        applicationProperties.getMailOutbox().setMaxBackoff(Duration.ofMinutes(1));
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getMail().setFrom("uploadImage@localhost");
+        meterRegistry = new SimpleMeterRegistry();
+        mailDispatcher =
+            new MailDispatcher(
+                mailOutboxRepository,
+                javaMailSender,
+                jHipsterProperties,
+                applicationProperties,
+                new MailMetersService(meterRegistry),
+                mock(PlatformTransactionManager.class)
+            );
+    }
+
+    @Test
+    void testBatchIsSentAndDeleted() throws Exception {
+        List<MailOutboxMessage> batch = List.of(message("john.doe@example.com"), message("jane.doe@example.com"));
+        givenDue(batch);
+
+        mailDispatcher.dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(2);
+        assertThat(received[0].getSubject()).isEqualTo("testSubject");
+        assertThat(received[0].getFrom()[0]).hasToString("uploadImage@localhost");
+        verify(mailOutboxRepository).deleteAll(batch);
+        assertThat(meterRegistry.get(MailMetersService.RESULTS_METER_NAME).tag("result", "sent").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(MailMetersService.DELIVERY_METER_NAME).timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailedEmailIsRetriedWithBackoff() {
+        javaMailSender.setPort(greenMail.getSmtp().getPort() + 1);
+        MailOutboxMessage message = message("john.doe@example.com");
+        message.setAttempts(1);
+        givenDue(List.of(message));
+        Instant before = Instant.now();
+
+        mailDispatcher.dispatch();
+
+        assertThat(message.getStatus()).isEqualTo(MailOutboxStatus.PENDING);
+        assertThat(message.getAttempts()).isEqualTo(2);
+        assertThat(message.getLastError()).isNotBlank();
+        assertThat(message.getNextAttemptAt()).isBetween(before.plusSeconds(60), Instant.now().plusSeconds(60));
+        ArgumentCaptor<Iterable<MailOutboxMessage>> sent = ArgumentCaptor.forClass(Iterable.class);
+        verify(mailOutboxRepository).deleteAll(sent.capture());
+        assertThat(sent.getValue()).isEmpty();
+        assertThat(meterRegistry.get(MailMetersService.RESULTS_METER_NAME).tag("result", "retried").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testLastFailedAttemptIsDeadLettered() {
+        javaMailSender.setPort(greenMail.getSmtp().getPort() + 1);
+        MailOutboxMessage message = message("john.doe@example.com");
+        message.setAttempts(2);
+        givenDue(List.of(message));
+
+        mailDispatcher.dispatch();
+
+        assertThat(message.getStatus()).isEqualTo(MailOutboxStatus.DEAD);
+        assertThat(message.getAttempts()).isEqualTo(3);
+        assertThat(meterRegistry.get(MailMetersService.RESULTS_METER_NAME).tag("result", "dead").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testBatchIsClaimedBeforeBeingSent() {
+        applicationProperties.getMailOutbox().setSendLease(Duration.ofMinutes(2));
+        MailOutboxMessage message = message("john.doe@example.com");
+        Instant before = Instant.now();
+        when(mailOutboxRepository.findAllByStatusInAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(any(), any(), any()))
+            .thenReturn(List.of(message));
+        when(mailOutboxRepository.saveAll(any()))
+            .thenAnswer(invocation -> {
+                // Claimed, and committed, before the SMTP server is contacted
+                assertThat(greenMail.getReceivedMessages()).isEmpty();
+                assertThat(message.getStatus()).isEqualTo(MailOutboxStatus.SENDING);
+                assertThat(message.getNextAttemptAt()).isBetween(before.plusSeconds(119), Instant.now().plusSeconds(120));
+                return invocation.getArgument(0);
+            });
+
+        mailDispatcher.dispatch();
+
+        verify(mailOutboxRepository).saveAll(any());
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+    }
+
+    @Test
+    void testResultsOfAnExpiredLeaseAreNotRecorded() {
+        javaMailSender.setPort(greenMail.getSmtp().getPort() + 1);
+        MailOutboxMessage message = message("john.doe@example.com");
+        when(mailOutboxRepository.findAllByStatusInAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(any(), any(), any()))
+            .thenReturn(List.of(message));
+        // Claimed again by another instance once the lease expired
+        MailOutboxMessage reclaimed = message("john.doe@example.com");
+        reclaimed.setId(message.getId());
+        reclaimed.setStatus(MailOutboxStatus.SENDING);
+        when(mailOutboxRepository.findAllById(any())).thenReturn(List.of(reclaimed));
+
+        mailDispatcher.dispatch();
+
+        assertThat(reclaimed.getAttempts()).isZero();
+        assertThat(message.getAttempts()).isZero();
+        assertThat(meterRegistry.get(MailMetersService.RESULTS_METER_NAME).tag("result", "retried").counter().count()).isZero();
+    }
+
+    @Test
+    void testBackoffDoublesUpToTheMaximum() {
+        ApplicationProperties.MailOutbox mailOutbox = applicationProperties.getMailOutbox();
+
+        assertThat(MailDispatcher.backoff(1, mailOutbox)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(MailDispatcher.backoff(2, mailOutbox)).isEqualTo(Duration.ofMinutes(1));
+        assertThat(MailDispatcher.backoff(20, mailOutbox)).isEqualTo(Duration.ofMinutes(1));
+    }
+
+    private void givenDue(List<MailOutboxMessage> batch) {
+        when(mailOutboxRepository.findAllByStatusInAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(any(), any(), any())).thenReturn(batch);
+        when(mailOutboxRepository.findAllById(any())).thenReturn(batch);
+    }
+
+    private static MailOutboxMessage message(String recipient) {
+        Instant now = Instant.now();
+        MailOutboxMessage message = new MailOutboxMessage()
+            .recipient(recipient)
+            .subject("testSubject")
+            .content("testContent")
+            .nextAttemptAt(now)
+            .createdDate(now);
+        message.setId(ID_SEQUENCE.incrementAndGet());
+        return message;
+    }
+}
@@ -0,0 +1,170 @@
+package com.demo.upload.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.domain.User;
+import com.demo.upload.management.MailMetersService;
+import com.demo.upload.service.MailTemplateRenderer.RenderedEmail;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticMessageSource;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Unit tests for {@link MailTemplateRenderer}.
+ */
+class MailTemplateRendererTest {
+
+    private static final String RESET_TEMPLATE =
+        "<p th:text=\"#{email.greeting(${user.login})}\">Dear</p>" +
+        "<a th:with=\"url=(@{|${baseUrl}/account/reset/finish?key=${user.resetKey}|})\" th:href=\"${url}\" th:text=\"${url}\"></a>" +
+        "<em th:text=\"${user.firstName}\"></em>";
+
+    private static final String CONDITIONAL_TEMPLATE = "<p th:if=\"${user.firstName == 'john'}\">Hi John</p><p th:text=\"${user.login}\"></p>";
+
+    private JHipsterProperties jHipsterProperties;
+
+    private SpringTemplateEngine templateEngine;
+
+    private StaticMessageSource messageSource;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getMail().setBaseUrl("http://127.0.0.1:8080");
+        messageSource = new StaticMessageSource();
+        messageSource.addMessage("email.greeting", Locale.ENGLISH, "Dear {0}");
+        messageSource.addMessage("email.greeting", Locale.forLanguageTag("vi"), "Gửi {0}");
+        messageSource.addMessage("email.title", Locale.ENGLISH, "Password reset");
+        messageSource.addMessage("email.title", Locale.forLanguageTag("vi"), "Đặt lại mật khẩu");
+        StringTemplateResolver templateResolver = new StringTemplateResolver();
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setTemplateEngineMessageSource(messageSource);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testBatchRendersLikeTheTemplate() {
+        MailTemplateRenderer renderer = newRenderer(true);
+        List<User> users = List.of(user("john", "John", "en"), user("jane", "Jane", "vi"), user("bob", "Bob", "en"));
+
+        List<RenderedEmail> emails = renderer.render(users, RESET_TEMPLATE, "email.title");
+
+        assertThat(emails).hasSize(3);
+        for (int i = 0; i < users.size(); i++) {
+            assertThat(emails.get(i).getContent()).isEqualTo(process(RESET_TEMPLATE, users.get(i)));
+        }
+        assertThat(emails.get(0).getSubject()).isEqualTo("Password reset");
+        assertThat(emails.get(1).getSubject()).isEqualTo("Đặt lại mật khẩu");
+        assertThat(emails.get(1).getContent()).contains("Gửi jane", "key=jane-key", "Jane");
+        assertThat(renderCount("precompiled")).isEqualTo(3);
+        assertThat(cacheCount("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void testCompiledTemplatesAreCached() {
+        MailTemplateRenderer renderer = newRenderer(true);
+
+        renderer.render(user("john", "John", "en"), RESET_TEMPLATE, "email.title");
+        renderer.render(user("bob", "Bob", "en"), RESET_TEMPLATE, "email.title");
+
+        assertThat(cacheCount("miss")).isEqualTo(1);
+        assertThat(cacheCount("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void testCompiledTemplatesAreNotCachedWhenThymeleafCacheIsDisabled() {
+        MailTemplateRenderer renderer = newRenderer(false);
+
+        renderer.render(user("john", "John", "en"), RESET_TEMPLATE, "email.title");
+        renderer.render(user("bob", "Bob", "en"), RESET_TEMPLATE, "email.title");
+
+        assertThat(cacheCount("miss")).isEqualTo(2);
+        assertThat(cacheCount("hit")).isZero();
+    }
+
+    @Test
+    void testPropertiesToEscapeAreRenderedInFull() {
+        MailTemplateRenderer renderer = newRenderer(true);
+        User user = user("john", "<b>John</b>", "en");
+
+        RenderedEmail email = renderer.render(user, RESET_TEMPLATE, "email.title");
+
+        assertThat(email.getContent()).isEqualTo(process(RESET_TEMPLATE, user)).contains("&lt;b&gt;John&lt;/b&gt;");
+        assertThat(renderCount("full")).isEqualTo(1);
+    }
+
+    @Test
+    void testTemplatesBranchingOnTheUserAreRenderedInFull() {
+        MailTemplateRenderer renderer = newRenderer(true);
+        List<User> users = List.of(user("john", "john", "en"), user("jane", "jane", "en"));
+
+        List<RenderedEmail> emails = renderer.render(users, CONDITIONAL_TEMPLATE, "email.title");
+
+        assertThat(emails.get(0).getContent()).isEqualTo("<p>Hi John</p><p>john</p>");
+        assertThat(emails.get(1).getContent()).isEqualTo("<p>jane</p>");
+        assertThat(renderCount("precompiled")).isZero();
+        assertThat(renderCount("full")).isEqualTo(2);
+    }
+
+    @Test
+    void testTemplatesBranchingOnLaterUsersAreRenderedInFull() {
+        MailTemplateRenderer renderer = newRenderer(true);
+        List<User> users = List.of(user("jane", "jane", "en"), user("jim", "jim", "en"), user("john", "john", "en"));
+
+        List<RenderedEmail> emails = renderer.render(users, CONDITIONAL_TEMPLATE, "email.title");
+        RenderedEmail next = renderer.render(user("john", "john", "en"), CONDITIONAL_TEMPLATE, "email.title");
+
+        assertThat(emails.get(0).getContent()).isEqualTo("<p>jane</p>");
+        assertThat(emails.get(2).getContent()).isEqualTo("<p>Hi John</p><p>john</p>");
+        assertThat(next.getContent()).isEqualTo("<p>Hi John</p><p>john</p>");
+        assertThat(renderCount("precompiled")).isEqualTo(2);
+        assertThat(renderCount("full")).isEqualTo(2);
+    }
+
+    private MailTemplateRenderer newRenderer(boolean cacheEnabled) {
+        return new MailTemplateRenderer(
+            jHipsterProperties,
+            messageSource,
+            templateEngine,
+            new MailMetersService(meterRegistry),
+            cacheEnabled
+        );
+    }
+
+    private String process(String template, User user) {
+        Context context = new Context(Locale.forLanguageTag(user.getLangKey()));
+        context.setVariable("user", user);
+        context.setVariable("baseUrl", jHipsterProperties.getMail().getBaseUrl());
+        return templateEngine.process(template, context);
+    }
+
+    private long renderCount(String mode) {
+        return meterRegistry.get(MailMetersService.RENDER_METER_NAME).tag("mode", mode).timer().count();
+    }
+
+    private double cacheCount(String result) {
+        return meterRegistry.get(MailMetersService.RENDER_CACHE_METER_NAME).tag("result", result).counter().count();
+    }
+
+    private static User user(String login, String firstName, String langKey) {
+        User user = new User();
+        user.setLogin(login);
+        user.setFirstName(firstName);
+        user.setEmail(login + "@localhost");
+        user.setResetKey(login + "-key");
+        user.setLangKey(langKey);
+        return user;
+    }
+}
@@ -1,11 +1,14 @@
 package com.demo.upload.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
 import com.demo.upload.IntegrationTest;
 import com.demo.upload.config.Constants;
+import com.demo.upload.domain.ImageBlob;
 import com.demo.upload.domain.User;
+import com.demo.upload.repository.ImageBlobRepository;
 import com.demo.upload.repository.UserRepository;
 import com.demo.upload.service.dto.AdminUserDTO;
 import java.time.Instant;
@@ -47,6 +50,9 @@ class UserServiceIT {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
     @Autowired
     private UserService userService;
 
@@ -182,4 +188,27 @@ class UserServiceIT {
         Optional<User> maybeDbUser = userRepository.findById(dbUser.getId());
         assertThat(maybeDbUser).contains(dbUser);
     }
+
+    @Test
+    @Transactional
+    void assertThatUsersCannotReferenceImagesUploadedByOthers() {
+        String imageKey = "c".repeat(64);
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(imageKey).size(5L).refCount(1));
+        User victim = new User();
+        victim.setLogin("victim");
+        victim.setPassword(RandomStringUtils.randomAlphanumeric(60));
+        victim.setActivated(true);
+        victim.setEmail("victim@localhost");
+        victim.setImageUrl(imageKey);
+        userRepository.saveAndFlush(victim);
+        User attacker = userRepository.saveAndFlush(user);
+
+        // Referencing the key, then dropping it, would release the victim's reference
+        AdminUserDTO userDTO = new AdminUserDTO(attacker);
+        userDTO.setImageUrl(imageKey);
+        assertThatThrownBy(() -> userService.updateUser(userDTO)).isInstanceOf(InvalidImageReferenceException.class);
+
+        assertThat(userRepository.findById(attacker.getId()).map(User::getImageUrl)).contains(DEFAULT_IMAGEURL);
+        assertThat(imageBlobRepository.findById(imageKey).map(ImageBlob::getRefCount)).contains(1);
+    }
 }
@@ -0,0 +1,96 @@
+package com.demo.upload.service.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.domain.User;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.UserExtraSummary;
+import com.demo.upload.service.dto.UserDTO;
+import com.demo.upload.service.dto.UserExtraDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link UserExtraMapper}.
+ */
+class UserExtraMapperTest {
+
+    private UserExtraMapper userExtraMapper;
+
+    @BeforeEach
+    public void setUp() {
+        userExtraMapper = new UserExtraMapperImpl();
+    }
+
+    @Test
+    void testEntityToDtoKeepsOnlyTheIdAndLoginOfTheUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setLogin("johndoe");
+        user.setEmail("johndoe@localhost");
+        UserExtra userExtra = new UserExtra().id(2L).frontImage("front").backImage("back").user(user);
+
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
+        assertThat(userExtraDTO.getId()).isEqualTo(2L);
+        assertThat(userExtraDTO.getFrontImage()).isEqualTo("front");
+        assertThat(userExtraDTO.getBackImage()).isEqualTo("back");
+        assertThat(userExtraDTO.getUser().getId()).isEqualTo(1L);
+        assertThat(userExtraDTO.getUser().getLogin()).isEqualTo("johndoe");
+    }
+
+    @Test
+    void testSummaryToDto() {
+        assertThat(userExtraMapper.toDto(summary(1L, "johndoe")).getUser())
+            .extracting(UserDTO::getId, UserDTO::getLogin)
+            .containsExactly(1L, "johndoe");
+        assertThat(userExtraMapper.toDto(summary(null, null)).getUser()).isNull();
+        assertThat(userExtraMapper.toDto(summary(null, null)).getFrontImage()).isEqualTo("front");
+    }
+
+    @Test
+    void testPartialUpdateKeepsTheUserAndMissingFields() {
+        User user = new User();
+        user.setId(1L);
+        UserExtra userExtra = new UserExtra().id(2L).frontImage("front").backImage("back").user(user);
+        UserExtraDTO userExtraDTO = new UserExtraDTO();
+        userExtraDTO.setId(2L);
+        userExtraDTO.setFrontImage("new-front");
+        userExtraDTO.setUser(new UserDTO());
+
+        userExtraMapper.partialUpdate(userExtra, userExtraDTO);
+
+        assertThat(userExtra.getFrontImage()).isEqualTo("new-front");
+        assertThat(userExtra.getBackImage()).isEqualTo("back");
+        assertThat(userExtra.getUser()).isSameAs(user);
+    }
+
+    private static UserExtraSummary summary(Long userId, String userLogin) {
+        return new UserExtraSummary() {
+            @Override
+            public Long getId() {
+                return 2L;
+            }
+
+            @Override
+            public String getFrontImage() {
+                return "front";
+            }
+
+            @Override
+            public String getBackImage() {
+                return "back";
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getUserLogin() {
+                return userLogin;
+            }
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package com.demo.upload.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link S3ImageStorage}, against a minimal in-memory object store.
+ */
+class S3ImageStorageTest {
+
+    private static final String KEY = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    private static final String OBJECT_PATH = "/images/avatars/" + KEY;
+
+    private static final Pattern DELETE_KEY_PATTERN = Pattern.compile("<Key>([^<]*)</Key>");
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    private S3ImageStorage storage;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/images", this::handle);
+        server.start();
+        storage =
+            new S3ImageStorage(
+                HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(),
+                "http://localhost:" + server.getAddress().getPort(),
+                "us-east-1",
+                "images",
+                "avatars/",
+                "access",
+                "secret",
+                Duration.ofSeconds(5)
+            );
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testPutAndGet() throws Exception {
+        storage.put(KEY, Files.write(directory.resolve("hello"), "hello".getBytes(StandardCharsets.UTF_8))).join();
+
+        assertThat(objects).containsOnlyKeys(OBJECT_PATH);
+        assertThat(storage.exists(KEY).join()).isTrue();
+        try (ImageContent content = storage.get(KEY).join()) {
+            assertThat(content.size()).isEqualTo(5);
+            try (InputStream in = content.openStream(1, 3)) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("ell");
+            }
+        }
+        try (ImageContent content = storage.get(KEY).join(); InputStream in = content.openStream(0, content.size())) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("hello");
+        }
+    }
+
+    @Test
+    void testGetMissingObject() {
+        assertThat(storage.exists(KEY).join()).isFalse();
+        assertThatThrownBy(() -> storage.get(KEY).join()).isInstanceOf(CompletionException.class).hasCauseInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void testKeysAndDelete() throws Exception {
+        objects.put(OBJECT_PATH, new byte[1]);
+        objects.put("/images/avatars/other", new byte[1]);
+
+        assertThat(storage.keys()).containsExactlyInAnyOrder(KEY, "other");
+
+        storage.delete(List.of(KEY)).join();
+
+        assertThat(objects).containsOnlyKeys("/images/avatars/other");
+    }
+
+    @Test
+    void testRejectedRequestFails() {
+        server.removeContext("/images");
+        server.createContext("/images", exchange -> respond(exchange, 403, new byte[0]));
+
+        assertThatThrownBy(() -> storage.exists(KEY).join()).isInstanceOf(CompletionException.class).hasCauseInstanceOf(IOException.class);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestHeaders().getFirst("Authorization").startsWith("AWS4-HMAC-SHA256 Credential=access/")) {
+            respond(exchange, 403, new byte[0]);
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                objects.put(path, body);
+                respond(exchange, 200, new byte[0]);
+                break;
+            case "POST":
+                Matcher matcher = DELETE_KEY_PATTERN.matcher(new String(body, StandardCharsets.UTF_8));
+                while (matcher.find()) {
+                    objects.remove(path + "/" + matcher.group(1));
+                }
+                respond(exchange, 200, new byte[0]);
+                break;
+            case "HEAD":
+                exchange.sendResponseHeaders(objects.containsKey(path) ? 200 : 404, -1);
+                exchange.close();
+                break;
+            default:
+                if (query != null && query.contains("list-type=2")) {
+                    String keys = objects
+                        .keySet()
+                        .stream()
+                        .map(key -> "<Contents><Key>" + key.substring("/images/".length()) + "</Key></Contents>")
+                        .collect(Collectors.joining());
+                    respond(exchange, 200, ("<ListBucketResult>" + keys + "</ListBucketResult>").getBytes(StandardCharsets.UTF_8));
+                } else if (!objects.containsKey(path)) {
+                    respond(exchange, 404, new byte[0]);
+                } else {
+                    get(exchange, objects.get(path));
+                }
+        }
+    }
+
+    private static void get(HttpExchange exchange, byte[] object) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null) {
+            respond(exchange, 200, object);
+            return;
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Integer.parseInt(bounds[1]);
+        byte[] slice = new byte[end - start + 1];
+        System.arraycopy(object, start, slice, 0, slice.length);
+        respond(exchange, 206, slice);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.demo.upload.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link SegmentImageStorage}.
+ */
+class SegmentImageStorageTest {
+
+    private static final String KEY_A = "a".repeat(64);
+
+    private static final String KEY_B = "b".repeat(64);
+
+    private static final String KEY_C = "c".repeat(64);
+
+    @TempDir
+    Path directory;
+
+    private Path segments;
+
+    private SegmentImageStorage storage;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        segments = directory.resolve("segments");
+        storage = open(1024);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        storage.close();
+    }
+
+    @Test
+    void testPutAndGet() throws Exception {
+        storage.put(KEY_A, content("hello")).join();
+
+        assertThat(storage.exists(KEY_A).join()).isTrue();
+        assertThat(read(KEY_A)).isEqualTo("hello");
+        assertThat(storage.keys()).containsExactly(KEY_A);
+    }
+
+    @Test
+    void testGetMissingKey() {
+        assertThatThrownBy(() -> storage.get(KEY_A).join()).isInstanceOf(CompletionException.class).hasCauseInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void testDelete() throws Exception {
+        storage.put(KEY_A, content("hello")).join();
+
+        storage.delete(List.of(KEY_A)).join();
+
+        assertThat(storage.exists(KEY_A).join()).isFalse();
+        assertThat(storage.keys()).isEmpty();
+    }
+
+    @Test
+    void testPutRollsSegments() throws Exception {
+        storage.close();
+        storage = open(SegmentImageStorage.HEADER_SIZE + 8);
+
+        storage.put(KEY_A, content("first")).join();
+        storage.put(KEY_B, content("second")).join();
+
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(storage.get(KEY_A).join()).isInstanceOf(ByteBufferContent.class);
+        assertThat(storage.get(KEY_B).join()).isInstanceOf(FileRegionContent.class);
+        assertThat(read(KEY_A)).isEqualTo("first");
+        assertThat(read(KEY_B)).isEqualTo("second");
+    }
+
+    @Test
+    void testInitRecoversIndexAndTombstones() throws Exception {
+        storage.put(KEY_A, content("first")).join();
+        storage.put(KEY_B, content("second")).join();
+        storage.delete(List.of(KEY_A)).join();
+        storage.close();
+
+        storage = open(1024);
+
+        assertThat(storage.keys()).containsExactly(KEY_B);
+        assertThat(read(KEY_B)).isEqualTo("second");
+    }
+
+    @Test
+    void testInitDiscardsIncompleteRecord() throws Exception {
+        storage.put(KEY_A, content("first")).join();
+        storage.put(KEY_C, content("truncated")).join();
+        storage.close();
+        Path segment = segmentFiles().get(0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        storage = open(1024);
+
+        assertThat(storage.keys()).containsExactly(KEY_A);
+        assertThat(Files.size(segment)).isEqualTo(SegmentImageStorage.HEADER_SIZE + 5);
+        storage.put(KEY_B, content("second")).join();
+        assertThat(read(KEY_B)).isEqualTo("second");
+    }
+
+    @Test
+    void testInitLoadsSealedSegmentsFromHintFiles() throws Exception {
+        storage.close();
+        storage = open(SegmentImageStorage.HEADER_SIZE + 8);
+        storage.put(KEY_A, content("first")).join();
+        storage.put(KEY_B, content("second")).join();
+        storage.delete(List.of(KEY_A)).join();
+        storage.close();
+        assertThat(segments.resolve("segment-00000000.idx")).exists();
+        // Corrupt the content of the sealed segment: its index must come from the hint file
+        try (FileChannel channel = FileChannel.open(segments.resolve("segment-00000000.dat"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 0);
+        }
+
+        storage = open(SegmentImageStorage.HEADER_SIZE + 8);
+
+        assertThat(storage.keys()).containsExactly(KEY_B);
+    }
+
+    @Test
+    void testCompactMovesLiveImagesAndRemovesSegment() throws Exception {
+        storage.close();
+        storage = open(2 * SegmentImageStorage.HEADER_SIZE + 20);
+        storage.put(KEY_A, content("first-image")).join();
+        storage.put(KEY_B, content("second")).join();
+        storage.put(KEY_C, content("third")).join();
+        storage.delete(List.of(KEY_A)).join();
+        ImageContent before = storage.get(KEY_B).join();
+
+        storage.compact();
+
+        assertThat(segments.resolve("segment-00000000.dat")).doesNotExist();
+        assertThat(read(KEY_B)).isEqualTo("second");
+        assertThat(read(KEY_C)).isEqualTo("third");
+        assertThat(storage.exists(KEY_A).join()).isFalse();
+        try (InputStream in = before.openStream(0, before.size())) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("second");
+        }
+        storage.close();
+
+        storage = open(2 * SegmentImageStorage.HEADER_SIZE + 20);
+
+        assertThat(storage.keys()).containsExactlyInAnyOrder(KEY_B, KEY_C);
+        assertThat(read(KEY_B)).isEqualTo("second");
+    }
+
+    @Test
+    void testCompactKeepsTombstonesOfOlderSegments() throws Exception {
+        storage.close();
+        storage = open(2 * SegmentImageStorage.HEADER_SIZE + 16);
+        storage.put(KEY_A, content("first")).join();
+        storage.put(KEY_B, content("second")).join();
+        // the tombstone of A starts segment 1, which is then sealed holding nothing else
+        storage.delete(List.of(KEY_A)).join();
+        storage.put(KEY_C, content("a long third image")).join();
+
+        storage.compact();
+
+        assertThat(segments.resolve("segment-00000000.dat")).exists();
+        assertThat(segments.resolve("segment-00000001.dat")).doesNotExist();
+        storage.close();
+        storage = open(2 * SegmentImageStorage.HEADER_SIZE + 16);
+
+        assertThat(storage.keys()).containsExactlyInAnyOrder(KEY_B, KEY_C);
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(segments)) {
+            return files.filter(path -> path.toString().endsWith(".dat")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private SegmentImageStorage open(long maxSegmentSize) throws Exception {
+        SegmentImageStorage segmentImageStorage = new SegmentImageStorage(segments, maxSegmentSize, 0.5);
+        segmentImageStorage.init();
+        return segmentImageStorage;
+    }
+
+    private Path content(String value) throws Exception {
+        return Files.write(Files.createTempFile(directory, "content", ".part"), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String key) throws Exception {
+        try (ImageContent content = storage.get(key).join(); InputStream in = content.openStream(0, content.size())) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
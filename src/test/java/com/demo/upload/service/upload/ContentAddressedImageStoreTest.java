@@ -0,0 +1,193 @@
+package com.demo.upload.service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.storage.FileSystemImageStorage;
+import com.demo.upload.service.storage.ImageContent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for {@link ContentAddressedImageStore}.
+ */
+class ContentAddressedImageStoreTest {
+
+    // sha256("hello")
+    private static final String HELLO_KEY = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @TempDir
+    Path directory;
+
+    private ContentAddressedImageStore imageStore;
+
+    @BeforeEach
+    public void setup() {
+        imageStore = newImageStore(DataSize.ofBytes(16));
+    }
+
+    @Test
+    void testPutStoresContentUnderItsHash() throws Exception {
+        StoredImage storedImage = imageStore.put("hello.png", content("hello"));
+
+        assertThat(storedImage.getContentKey()).isEqualTo(HELLO_KEY);
+        assertThat(storedImage.getSize()).isEqualTo(5);
+        assertThat(storedImage.getOriginalFilename()).isEqualTo("hello.png");
+        try (ImageContent content = imageStore.open(HELLO_KEY); InputStream in = content.openStream(0, content.size())) {
+            assertThat(in.readAllBytes()).isEqualTo("hello".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testPutDeduplicatesIdenticalContent() throws Exception {
+        StoredImage first = imageStore.put("first.png", content("hello"));
+        StoredImage second = imageStore.put("second.png", content("hello"));
+
+        assertThat(second.getContentKey()).isEqualTo(first.getContentKey());
+        try (Stream<String> keys = imageStore.keys()) {
+            assertThat(keys.collect(Collectors.toList())).containsExactly(HELLO_KEY);
+        }
+        try (Stream<Path> temporaryFiles = Files.list(directory.resolve("store").resolve("tmp"))) {
+            assertThat(temporaryFiles).isEmpty();
+        }
+    }
+
+    @Test
+    void testPutRejectsOversizedContentWithoutLeavingFiles() throws Exception {
+        assertThatThrownBy(() -> imageStore.put("big.png", content("more than sixteen bytes")))
+            .isInstanceOf(UploadSizeLimitExceededException.class);
+
+        try (Stream<String> keys = imageStore.keys()) {
+            assertThat(keys).isEmpty();
+        }
+        try (Stream<Path> temporaryFiles = Files.list(directory.resolve("store").resolve("tmp"))) {
+            assertThat(temporaryFiles).isEmpty();
+        }
+    }
+
+    @Test
+    void testPutFileMovesFileUnderItsHash() throws Exception {
+        byte[] png = png(3, 2);
+        Path file = Files.write(directory.resolve("store").resolve("image.upload"), png);
+
+        StoredImage storedImage = imageStore.putFile("image.png", file);
+
+        assertThat(storedImage.getContentKey()).isEqualTo(imageStore.put("copy.png", new ByteArrayInputStream(png), png.length).getContentKey());
+        assertThat(storedImage.getSize()).isEqualTo(png.length);
+        assertThat(storedImage.getHeader().getWidth()).isEqualTo(3);
+        assertThat(imageStore.exists(storedImage.getContentKey())).isTrue();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void testPutFileRejectsContentThatIsNotAnImage() throws Exception {
+        Path file = Files.writeString(directory.resolve("store").resolve("hello.upload"), "hello");
+
+        assertThatThrownBy(() -> imageStore.putFile("hello.png", file)).isInstanceOf(ImageDecodeException.class);
+
+        assertThat(imageStore.exists(HELLO_KEY)).isFalse();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void testPutFileRejectsImagesLargerThanTheLimits() throws Exception {
+        Path file = Files.write(directory.resolve("store").resolve("bomb.upload"), ImageDecoderTest.pngDeclaring(100_000, 100_000));
+
+        assertThatThrownBy(() -> imageStore.putFile("bomb.png", file)).isInstanceOf(ImageDimensionLimitExceededException.class);
+
+        try (Stream<String> keys = imageStore.keys()) {
+            assertThat(keys).isEmpty();
+        }
+    }
+
+    @Test
+    void testDeleteRemovesBlob() throws Exception {
+        StoredImage storedImage = imageStore.put("hello.png", content("hello"));
+
+        imageStore.delete(storedImage.getContentKey());
+
+        assertThat(imageStore.exists(storedImage.getContentKey())).isFalse();
+    }
+
+    @Test
+    void testOpenRejectsInvalidKeys() throws Exception {
+        assertThatThrownBy(() -> imageStore.open("../../etc/passwd")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(imageStore.exists("uploadsFrontImage/front.png")).isFalse();
+    }
+
+    @Test
+    void testPutImageReadsTheImageHeader() throws Exception {
+        imageStore = newImageStore(DataSize.ofKilobytes(1));
+
+        StoredImage storedImage = imageStore.putImage("image.png", new ByteArrayInputStream(png(3, 2)));
+
+        assertThat(storedImage.getHeader()).isNotNull();
+        assertThat(storedImage.getHeader().getFormat()).isEqualTo("png");
+        assertThat(storedImage.getHeader().getWidth()).isEqualTo(3);
+        assertThat(storedImage.getHeader().getHeight()).isEqualTo(2);
+        assertThat(imageStore.exists(storedImage.getContentKey())).isTrue();
+    }
+
+    @Test
+    void testPutImageRejectsContentThatIsNotAnImage() throws Exception {
+        assertThatThrownBy(() -> imageStore.putImage("hello.png", content("hello"))).isInstanceOf(ImageDecodeException.class);
+
+        try (Stream<String> keys = imageStore.keys()) {
+            assertThat(keys).isEmpty();
+        }
+        try (Stream<Path> temporaryFiles = Files.list(directory.resolve("store").resolve("tmp"))) {
+            assertThat(temporaryFiles).isEmpty();
+        }
+    }
+
+    @Test
+    void testPutImageRejectsImagesLargerThanTheLimits() throws Exception {
+        imageStore = newImageStore(DataSize.ofKilobytes(1));
+
+        assertThatThrownBy(() -> imageStore.putImage("bomb.png", new ByteArrayInputStream(ImageDecoderTest.pngDeclaring(100_000, 100_000))))
+            .isInstanceOf(ImageDimensionLimitExceededException.class);
+
+        try (Stream<String> keys = imageStore.keys()) {
+            assertThat(keys).isEmpty();
+        }
+    }
+
+    private ContentAddressedImageStore newImageStore(DataSize maxPartSize) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUpload().setStoreDirectory(directory.resolve("store").toString());
+        applicationProperties.getUpload().setMaxPartSize(maxPartSize);
+        ContentAddressedImageStore store = new ContentAddressedImageStore(
+            applicationProperties,
+            new StreamingFileWriter(applicationProperties),
+            new FileSystemImageStorage(directory.resolve("store")),
+            new ImageDecoder(applicationProperties, new SimpleMeterRegistry())
+        );
+        store.init();
+        return store;
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+        return output.toByteArray();
+    }
+
+    private static ByteArrayInputStream content(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
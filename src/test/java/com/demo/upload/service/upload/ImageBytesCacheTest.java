@@ -0,0 +1,90 @@
+package com.demo.upload.service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.storage.ImageContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for {@link ImageBytesCache}.
+ */
+class ImageBytesCacheTest {
+
+    private MeterRegistry meterRegistry;
+
+    private ImageBytesCache imageBytesCache;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getImageCache().setMaxSize(DataSize.ofBytes(10));
+        applicationProperties.getImageCache().setMaxEntrySize(DataSize.ofBytes(6));
+        meterRegistry = new SimpleMeterRegistry();
+        imageBytesCache = new ImageBytesCache(applicationProperties, meterRegistry);
+    }
+
+    @Test
+    void testGetServesLoadedContentFromMemory() throws Exception {
+        assertThat(imageBytesCache.get("a")).isNull();
+        ByteBuffer loaded = imageBytesCache.load("a", content(4));
+        ByteBuffer cached = imageBytesCache.get("a");
+
+        assertThat(loaded.isDirect()).isTrue();
+        assertThat(cached).isEqualTo(loaded);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.bytes").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void testLoadEvictsLeastRecentlyUsedEntries() throws Exception {
+        imageBytesCache.load("a", content(4));
+        imageBytesCache.load("b", content(4));
+        imageBytesCache.get("a");
+        imageBytesCache.load("c", content(4));
+
+        assertThat(imageBytesCache.size()).isEqualTo(8);
+        assertThat(imageBytesCache.entryCount()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.evictions").functionCounter().count()).isEqualTo(1);
+        assertThat(imageBytesCache.get("a")).isNotNull();
+        assertThat(imageBytesCache.get("b")).isNull();
+    }
+
+    @Test
+    void testLoadSkipsLargeImages() throws Exception {
+        assertThat(imageBytesCache.load("large", content(7))).isNull();
+        assertThat(imageBytesCache.entryCount()).isZero();
+    }
+
+    @Test
+    void testInvalidateRemovesEntry() throws Exception {
+        imageBytesCache.load("a", content(4));
+
+        imageBytesCache.invalidate("a");
+
+        assertThat(imageBytesCache.size()).isZero();
+        assertThat(imageBytesCache.get("a")).isNull();
+    }
+
+    private static ImageContent content(int size) {
+        return new ImageContent() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public InputStream openStream(long position, long length) {
+                return new ByteArrayInputStream(new byte[size], (int) position, (int) length);
+            }
+        };
+    }
+}
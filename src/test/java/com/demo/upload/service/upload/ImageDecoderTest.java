@@ -0,0 +1,163 @@
+package com.demo.upload.service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.upload.ImageDecoder.DecodedImage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link ImageDecoder}.
+ */
+class ImageDecoderTest {
+
+    @TempDir
+    Path directory;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testDecodeReturnsImageAndFormat() throws Exception {
+        ImageDecoder imageDecoder = newImageDecoder();
+
+        try (DecodedImage decoded = imageDecoder.decode(new ByteArrayInputStream(image(40, 20, "png")))) {
+            assertThat(decoded.getFormatName()).isEqualTo("png");
+            assertThat(decoded.getImage().getWidth()).isEqualTo(40);
+            assertThat(decoded.getImage().getHeight()).isEqualTo(20);
+        }
+    }
+
+    @Test
+    void testDecodeRejectsUnknownContent() {
+        ImageDecoder imageDecoder = newImageDecoder();
+        InputStream in = new ByteArrayInputStream("not an image".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> imageDecoder.decode(in)).isInstanceOf(ImageDecodeException.class);
+    }
+
+    @Test
+    void testInspectRejectsFormatsThatAreNotAccepted() throws Exception {
+        applicationProperties.getUpload().setImageFormats(List.of("png"));
+        ImageDecoder imageDecoder = newImageDecoder();
+        Path file = Files.write(directory.resolve("image.png"), image(4, 4, "gif"));
+
+        assertThatThrownBy(() -> imageDecoder.inspect(file)).isInstanceOf(ImageDecodeException.class).hasMessageContaining("gif");
+    }
+
+    @Test
+    void testHeadersDeclaringHugeDimensionsAreRejected() throws Exception {
+        ImageDecoder imageDecoder = newImageDecoder();
+        // A few dozen bytes declaring 100000x100000 pixels, 40GB once decoded
+        byte[] bomb = pngDeclaring(100_000, 100_000);
+        Path file = Files.write(directory.resolve("bomb.png"), bomb);
+
+        assertThatThrownBy(() -> imageDecoder.inspect(file)).isInstanceOf(ImageDimensionLimitExceededException.class);
+        assertThatThrownBy(() -> imageDecoder.decode(new ByteArrayInputStream(bomb)))
+            .isInstanceOf(ImageDimensionLimitExceededException.class);
+    }
+
+    @Test
+    void testHeadersDeclaringTooManyPixelsAreRejected() throws Exception {
+        applicationProperties.getUpload().setMaxImagePixels(1000);
+        ImageDecoder imageDecoder = newImageDecoder();
+        Path file = Files.write(directory.resolve("image.png"), pngDeclaring(100, 100));
+
+        assertThatThrownBy(() -> imageDecoder.inspect(file)).isInstanceOf(ImageDimensionLimitExceededException.class);
+        assertThat(imageDecoder.inspect(Files.write(directory.resolve("small.png"), image(10, 10, "png"))).getPixels()).isEqualTo(100);
+    }
+
+    @Test
+    void testDecodesWaitForThePixelBudget() throws Exception {
+        applicationProperties.getUpload().setMaxImagePixels(100);
+        applicationProperties.getUpload().setDecodePixelBudget(100);
+        ImageDecoder imageDecoder = newImageDecoder();
+        byte[] image = image(10, 10, "png");
+
+        DecodedImage first = imageDecoder.decode(new ByteArrayInputStream(image));
+        CompletableFuture<DecodedImage> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return imageDecoder.decode(new ByteArrayInputStream(image));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+        assertThat(meterRegistry.get(ImageDecoder.DECODED_PIXELS_METER_NAME).gauge().value()).isEqualTo(100);
+
+        first.close();
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertThat(meterRegistry.get(ImageDecoder.DECODED_PIXELS_METER_NAME).gauge().value()).isZero();
+    }
+
+    @Test
+    void testDecodesWaitingTooLongForThePixelBudgetAreRejected() throws Exception {
+        applicationProperties.getUpload().setMaxImagePixels(100);
+        applicationProperties.getUpload().setDecodePixelBudget(100);
+        applicationProperties.getUpload().setDecodeWaitTimeout(Duration.ofMillis(100));
+        ImageDecoder imageDecoder = newImageDecoder();
+        byte[] image = image(10, 10, "png");
+
+        try (DecodedImage first = imageDecoder.decode(new ByteArrayInputStream(image))) {
+            assertThatThrownBy(() -> imageDecoder.decode(new ByteArrayInputStream(image))).isInstanceOf(ImageDecodeTimeoutException.class);
+        }
+        imageDecoder.decode(new ByteArrayInputStream(image)).close();
+        assertThat(meterRegistry.get(ImageDecoder.DECODED_PIXELS_METER_NAME).gauge().value()).isZero();
+    }
+
+    private ImageDecoder newImageDecoder() {
+        return new ImageDecoder(applicationProperties, meterRegistry);
+    }
+
+    private static byte[] image(int width, int height, String format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * @return a 1x1 PNG image whose header declares the given dimensions.
+     */
+    static byte[] pngDeclaring(int width, int height) throws IOException {
+        byte[] png = image(1, 1, "png");
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        // The IHDR chunk follows the 8 bytes signature: length, type, then width and height
+        buffer.putInt(16, width);
+        buffer.putInt(20, height);
+        CRC32 crc = new CRC32();
+        crc.update(png, 12, 4 + 13);
+        buffer.putInt(12 + 4 + 13, (int) crc.getValue());
+        return png;
+    }
+}
@@ -0,0 +1,34 @@
+package com.demo.upload.service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ImageResizer}.
+ */
+class ImageResizerTest {
+
+    @Test
+    void testScaleDownKeepsAspectRatio() {
+        BufferedImage scaled = ImageResizer.scaleDown(new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB), 128);
+
+        assertThat(scaled.getWidth()).isEqualTo(128);
+        assertThat(scaled.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    void testScaleDownReturnsNullWhenImageFits() {
+        assertThat(ImageResizer.scaleDown(new BufferedImage(128, 64, BufferedImage.TYPE_INT_RGB), 128)).isNull();
+    }
+
+    @Test
+    void testEncodeKeepsJpegForOpaqueJpegSources() throws Exception {
+        byte[] jpeg = ImageResizer.encode(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "JPEG");
+        byte[] png = ImageResizer.encode(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB), "JPEG");
+
+        assertThat(jpeg).startsWith((byte) 0xFF, (byte) 0xD8);
+        assertThat(png).startsWith((byte) 0x89, (byte) 'P', (byte) 'N', (byte) 'G');
+    }
+}
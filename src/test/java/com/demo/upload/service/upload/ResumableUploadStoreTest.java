@@ -0,0 +1,204 @@
+package com.demo.upload.service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.upload.ResumableUploadStore.Session;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for {@link ResumableUploadStore}.
+ */
+class ResumableUploadStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private MutableClock clock;
+
+    private ResumableUploadStore resumableUploadStore;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUpload().setStoreDirectory(directory.toString());
+        applicationProperties.getResumableUpload().setMaxSize(DataSize.ofBytes(16));
+        applicationProperties.getResumableUpload().setExpiry(Duration.ofMinutes(10));
+        clock = new MutableClock();
+        resumableUploadStore = new ResumableUploadStore(applicationProperties, clock);
+    }
+
+    @Test
+    void testChunksAreWrittenAtTheirOffset() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 11);
+
+        assertThat(resumableUploadStore.append(session, 0, content("hello"))).isEqualTo(5);
+        assertThat(resumableUploadStore.get(session.getId(), "user")).hasValueSatisfying(s -> assertThat(s.getOffset()).isEqualTo(5));
+        resumableUploadStore.append(session, 5, content(" world"));
+        Path file = resumableUploadStore.complete(session);
+
+        assertThat(Files.readString(file)).isEqualTo("hello world");
+        assertThat(resumableUploadStore.get(session.getId(), "user")).isEmpty();
+    }
+
+    @Test
+    void testPurgeKeepsCompletedUploadsUntilTheyAreDeleted() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 5);
+        resumableUploadStore.append(session, 0, content("hello"));
+        Path file = resumableUploadStore.complete(session);
+        clock.advance(Duration.ofMinutes(11));
+
+        resumableUploadStore.purge();
+        assertThat(file).exists();
+
+        resumableUploadStore.delete(session);
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void testPurgeOnlyDiscardsUnknownFilesOnceTheyExpired() throws Exception {
+        Path resumable = Files.createDirectories(directory.resolve("resumable"));
+        // Left by a previous run, or being written by another instance sharing the directory
+        Path stale = Files.writeString(resumable.resolve("stale.upload"), "hello");
+        Files.setLastModifiedTime(stale, FileTime.from(clock.instant().minus(Duration.ofMinutes(11))));
+        Path fresh = Files.writeString(resumable.resolve("fresh.upload"), "hello");
+        Files.setLastModifiedTime(fresh, FileTime.from(clock.instant().minus(Duration.ofMinutes(9))));
+
+        resumableUploadStore.purge();
+
+        assertThat(stale).doesNotExist();
+        assertThat(fresh).exists();
+    }
+
+    @Test
+    void testAppendRejectsUnexpectedOffset() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 11);
+        resumableUploadStore.append(session, 0, content("hello"));
+
+        assertThatThrownBy(() -> resumableUploadStore.append(session, 0, content("hello"))).isInstanceOf(UploadOffsetConflictException.class);
+        assertThat(session.getOffset()).isEqualTo(5);
+    }
+
+    @Test
+    void testAppendKeepsBytesReceivedBeforeAFailure() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 11);
+        InputStream interrupted = new InputStream() {
+            private final InputStream content = content("hello");
+
+            @Override
+            public int read() throws IOException {
+                int read = content.read();
+                if (read == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = content.read(b, off, len);
+                if (read == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+        };
+
+        assertThatThrownBy(() -> resumableUploadStore.append(session, 0, interrupted)).isInstanceOf(IOException.class);
+        assertThat(session.getOffset()).isEqualTo(5);
+        resumableUploadStore.append(session, 5, content(" world"));
+        assertThat(Files.readString(resumableUploadStore.complete(session))).isEqualTo("hello world");
+    }
+
+    @Test
+    void testAppendRejectsBytesPastTheLength() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 4);
+
+        assertThatThrownBy(() -> resumableUploadStore.append(session, 0, content("hello")))
+            .isInstanceOf(UploadSizeLimitExceededException.class);
+    }
+
+    @Test
+    void testCreateRejectsOversizedUploads() {
+        assertThatThrownBy(() -> resumableUploadStore.create("user", "frontImage", "big.png", 17))
+            .isInstanceOf(UploadSizeLimitExceededException.class);
+    }
+
+    @Test
+    void testCompleteRejectsIncompleteUploads() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 11);
+        resumableUploadStore.append(session, 0, content("hello"));
+
+        assertThatThrownBy(() -> resumableUploadStore.complete(session)).isInstanceOf(UploadOffsetConflictException.class);
+        resumableUploadStore.append(session, 5, content(" world"));
+        assertThat(resumableUploadStore.complete(session)).exists();
+    }
+
+    @Test
+    void testUploadsAreOnlyVisibleToTheirOwner() throws Exception {
+        Session session = resumableUploadStore.create("user", "frontImage", "hello.png", 11);
+
+        assertThat(resumableUploadStore.get(session.getId(), "admin")).isEmpty();
+    }
+
+    @Test
+    void testPurgeDiscardsExpiredUploads() throws Exception {
+        Session expired = resumableUploadStore.create("user", "frontImage", "hello.png", 11);
+        clock.advance(Duration.ofMinutes(6));
+        Session active = resumableUploadStore.create("user", "backImage", "hello.png", 11);
+        clock.advance(Duration.ofMinutes(6));
+
+        resumableUploadStore.purge();
+
+        assertThat(resumableUploadStore.get(expired.getId(), "user")).isEmpty();
+        assertThat(resumableUploadStore.get(active.getId(), "user")).isPresent();
+        try (Stream<Path> files = Files.list(directory.resolve("resumable"))) {
+            assertThat(files).extracting(file -> file.getFileName().toString()).containsExactly(active.getId() + ".upload");
+        }
+    }
+
+    private static ByteArrayInputStream content(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2022-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
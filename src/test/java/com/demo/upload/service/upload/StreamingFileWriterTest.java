@@ -0,0 +1,79 @@
+package com.demo.upload.service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.config.ApplicationProperties;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for {@link StreamingFileWriter}.
+ */
+class StreamingFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private StreamingFileWriter streamingFileWriter;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUpload().setBufferSize(DataSize.ofBytes(1024));
+        applicationProperties.getUpload().setBufferCount(1);
+        applicationProperties.getUpload().setMaxPartSize(DataSize.ofKilobytes(10));
+        streamingFileWriter = new StreamingFileWriter(applicationProperties);
+    }
+
+    @Test
+    void testWriteCopiesContentAcrossSeveralBuffers() throws Exception {
+        byte[] content = randomBytes(5000);
+        Path target = directory.resolve("image.png");
+
+        long written = streamingFileWriter.write(new ByteArrayInputStream(content), target);
+
+        assertThat(written).isEqualTo(content.length);
+        assertThat(Files.readAllBytes(target)).isEqualTo(content);
+    }
+
+    @Test
+    void testWriteReusesReleasedBuffer() throws Exception {
+        streamingFileWriter.write(new ByteArrayInputStream(randomBytes(10)), directory.resolve("first.png"));
+        streamingFileWriter.write(new ByteArrayInputStream(randomBytes(10)), directory.resolve("second.png"));
+
+        assertThat(directory.resolve("second.png")).hasSize(10);
+    }
+
+    @Test
+    void testWriteRejectsOversizedContentAndRemovesPartialFile() {
+        Path target = directory.resolve("too-big.png");
+
+        assertThatThrownBy(() -> streamingFileWriter.write(new ByteArrayInputStream(randomBytes(20 * 1024)), target))
+            .isInstanceOf(UploadSizeLimitExceededException.class);
+        assertThat(target).doesNotExist();
+    }
+
+    @Test
+    void testWriteDoesNotOverwriteExistingFile() throws Exception {
+        Path target = directory.resolve("existing.png");
+        Files.write(target, randomBytes(10));
+
+        assertThatThrownBy(() -> streamingFileWriter.write(new ByteArrayInputStream(randomBytes(10)), target))
+            .isInstanceOf(FileAlreadyExistsException.class);
+        assertThat(target).hasSize(10);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
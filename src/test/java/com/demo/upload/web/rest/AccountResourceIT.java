@@ -8,7 +8,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.demo.upload.IntegrationTest;
 import com.demo.upload.config.Constants;
 import com.demo.upload.domain.User;
+import com.demo.upload.management.UploadMetersService;
 import com.demo.upload.repository.AuthorityRepository;
+import com.demo.upload.repository.ImageBlobRepository;
 import com.demo.upload.repository.UserRepository;
 import com.demo.upload.security.AuthoritiesConstants;
 import com.demo.upload.service.UserService;
@@ -17,6 +19,7 @@ import com.demo.upload.service.dto.PasswordChangeDTO;
 import com.demo.upload.service.dto.UserDTO;
 import com.demo.upload.web.rest.vm.KeyAndPasswordVM;
 import com.demo.upload.web.rest.vm.ManagedUserVM;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Instant;
 import java.util.*;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -24,6 +27,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -54,6 +58,12 @@ class AccountResourceIT {
     @Autowired
     private MockMvc restAccountMockMvc;
 
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     @WithUnauthenticatedMockUser
     void testNonAuthenticatedUser() throws Exception {
@@ -759,4 +769,31 @@ class AccountResourceIT {
             )
             .andExpect(status().isInternalServerError());
     }
+
+    @Test
+    @Transactional
+    @WithMockUser("upload-image")
+    void testUploadImage() throws Exception {
+        User user = new User();
+        user.setLogin("upload-image");
+        user.setEmail("upload-image@example.com");
+        user.setPassword(RandomStringUtils.randomAlphanumeric(60));
+        user.setActivated(true);
+        userRepository.saveAndFlush(user);
+        byte[] image = TestUtil.createPngImage(8, 4);
+        long uploads = meterRegistry.get(UploadMetersService.BYTES_RECEIVED_METER_NAME).tag("endpoint", "account").summary().count();
+        long writes = meterRegistry.get(UploadMetersService.WRITE_METER_NAME).tag("endpoint", "account").timer().count();
+
+        restAccountMockMvc
+            .perform(multipart("/api/upload").file(new MockMultipartFile("file", "avatar.png", MediaType.IMAGE_PNG_VALUE, image)))
+            .andExpect(status().isOk());
+
+        User updatedUser = userRepository.findOneByLogin(user.getLogin()).orElseThrow();
+        assertThat(updatedUser.getImageUrl()).hasSize(64);
+        assertThat(imageBlobRepository.findById(updatedUser.getImageUrl()))
+            .hasValueSatisfying(blob -> assertThat(blob.getRefCount()).isEqualTo(1));
+        assertThat(meterRegistry.get(UploadMetersService.BYTES_RECEIVED_METER_NAME).tag("endpoint", "account").summary().count())
+            .isEqualTo(uploads + 1);
+        assertThat(meterRegistry.get(UploadMetersService.WRITE_METER_NAME).tag("endpoint", "account").timer().count()).isEqualTo(writes + 1);
+    }
 }
@@ -0,0 +1,165 @@
+package com.demo.upload.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.demo.upload.IntegrationTest;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.ImageBlobRepository;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.service.ImageBulkService;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Integration tests for the {@link ImageBulkResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+class ImageBulkResourceIT {
+
+    private static final String IMPORT_URL = "/api/admin/images/import";
+
+    private static final String EXPORT_URL = "/api/admin/images/export";
+
+    private static final byte[] FRONT_IMAGE = TestUtil.createPngImage(8, 4);
+
+    private static final byte[] BACK_IMAGE = TestUtil.createPngImage(4, 8);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserExtraRepository userExtraRepository;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private MockMvc restImageBulkMockMvc;
+
+    @AfterEach
+    public void cleanup() {
+        userRepository.findOneByLogin("user").flatMap(user -> userExtraRepository.findByUserId(user.getId())).ifPresent(userExtraRepository::delete);
+        imageBlobRepository.deleteAll();
+    }
+
+    @Test
+    void importAndExportImages() throws Exception {
+        byte[] archive = zip(
+            Map.of(
+                ImageBulkService.MANIFEST_NAME,
+                "login,front_image,back_image\nuser,front.png,./back.png\nunknown-login,front.png,back.png\n".getBytes(StandardCharsets.UTF_8),
+                "front.png",
+                FRONT_IMAGE,
+                "back.png",
+                BACK_IMAGE
+            )
+        );
+
+        restImageBulkMockMvc
+            .perform(post(IMPORT_URL).contentType("application/zip").content(archive))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("COMPLETED"))
+            .andExpect(jsonPath("$.images").value(2))
+            .andExpect(jsonPath("$.users").value(1))
+            .andExpect(jsonPath("$.failures").value(1));
+
+        UserExtra userExtra = userRepository
+            .findOneByLogin("user")
+            .flatMap(user -> userExtraRepository.findByUserId(user.getId()))
+            .orElseThrow();
+        assertThat(userExtra.getFrontImage()).hasSize(64);
+        assertThat(userExtra.getBackImage()).hasSize(64).isNotEqualTo(userExtra.getFrontImage());
+        assertThat(imageBlobRepository.findById(userExtra.getFrontImage())).hasValueSatisfying(blob -> assertThat(blob.getRefCount()).isEqualTo(1));
+
+        MvcResult export = restImageBulkMockMvc.perform(get(EXPORT_URL)).andExpect(request().asyncStarted()).andReturn();
+        byte[] exported = restImageBulkMockMvc.perform(asyncDispatch(export)).andExpect(status().isOk()).andReturn().getResponse().getContentAsByteArray();
+
+        Map<String, byte[]> entries = unzip(exported);
+        assertThat(new String(entries.get(ImageBulkService.MANIFEST_NAME), StandardCharsets.UTF_8))
+            .contains("user,images/" + userExtra.getFrontImage() + ",images/" + userExtra.getBackImage());
+        assertThat(entries.get("images/" + userExtra.getFrontImage())).isEqualTo(FRONT_IMAGE);
+        assertThat(entries.get("images/" + userExtra.getBackImage())).isEqualTo(BACK_IMAGE);
+    }
+
+    @Test
+    void importDiscardsImagesTheManifestDoesNotReference() throws Exception {
+        byte[] before = TestUtil.createPngImage(3, 3);
+        byte[] after = TestUtil.createPngImage(5, 5);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("before.png", before);
+        entries.put(ImageBulkService.MANIFEST_NAME, "login,front_image,back_image\nuser,front.png,\n".getBytes(StandardCharsets.UTF_8));
+        entries.put("front.png", FRONT_IMAGE);
+        entries.put("after.png", after);
+
+        restImageBulkMockMvc
+            .perform(post(IMPORT_URL).contentType("application/zip").content(zip(entries)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("COMPLETED"))
+            .andExpect(jsonPath("$.users").value(1))
+            .andExpect(jsonPath("$.failures").value(0));
+
+        assertThat(imageStore.exists(TestUtil.contentKey(FRONT_IMAGE))).isTrue();
+        assertThat(imageStore.exists(TestUtil.contentKey(before))).isFalse();
+        assertThat(imageStore.exists(TestUtil.contentKey(after))).isFalse();
+    }
+
+    @Test
+    void importRejectsInvalidArchive() throws Exception {
+        restImageBulkMockMvc
+            .perform(post(IMPORT_URL).contentType("application/zip").content("not an archive".getBytes(StandardCharsets.UTF_8)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void importRequiresAdmin() throws Exception {
+        restImageBulkMockMvc.perform(post(IMPORT_URL).contentType("application/zip").content(new byte[0])).andExpect(status().isForbidden());
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, byte[]> unzip(byte[] archive) throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
@@ -1,7 +1,9 @@
 package com.demo.upload.web.rest;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -9,11 +11,14 @@ import com.demo.upload.IntegrationTest;
 import com.demo.upload.domain.User;
 import com.demo.upload.repository.UserRepository;
 import com.demo.upload.security.AuthoritiesConstants;
+import com.jayway.jsonpath.JsonPath;
+import java.net.URI;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -86,4 +91,46 @@ class PublicUserResourceIT {
             .andExpect(status().isBadRequest());
         restUserMockMvc.perform(get("/api/users?sort=id,desc").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
     }
+
+    @Test
+    @Transactional
+    void getAllPublicUsersWithCursor() throws Exception {
+        // Initialize the database
+        userRepository.saveAndFlush(user);
+
+        String link = restUserMockMvc
+            .perform(get("/api/users?cursor=&size=1&sort=login,asc&count=true").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LINK);
+        String firstLogin = JsonPath.read(
+            restUserMockMvc
+                .perform(get("/api/users?cursor=&size=1&sort=login,asc").accept(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(),
+            "$[0].login"
+        );
+        String next = link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+
+        restUserMockMvc
+            .perform(get(URI.create(next)).accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].login").value(not(firstLogin)));
+    }
+
+    @Test
+    @Transactional
+    void getAllPublicUsersWithInvalidCursor() throws Exception {
+        restUserMockMvc.perform(get("/api/users?cursor=invalid&sort=login,asc").accept(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest());
+        restUserMockMvc.perform(get("/api/users?cursor=&sort=firstName,asc").accept(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest());
+        restUserMockMvc
+            .perform(get("/api/users?cursor=&sort=login,asc&sort=firstName,asc").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,165 @@
+package com.demo.upload.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.demo.upload.IntegrationTest;
+import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.ImageBlobRepository;
+import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link ResumableUploadResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser("user")
+class ResumableUploadResourceIT {
+
+    private static final String UPLOAD_API_URL = "/api/upload/user-extra/image/resumable";
+
+    private static final byte[] IMAGE = TestUtil.createPngImage(8, 4);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserExtraRepository userExtraRepository;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private MockMvc restResumableUploadMockMvc;
+
+    @AfterEach
+    public void cleanup() {
+        userRepository.findOneByLogin("user").flatMap(user -> userExtraRepository.findByUserId(user.getId())).ifPresent(userExtraRepository::delete);
+        imageBlobRepository.deleteAll();
+    }
+
+    @Test
+    void uploadImageInChunks() throws Exception {
+        String location = restResumableUploadMockMvc
+            .perform(
+                post(UPLOAD_API_URL)
+                    .header(ResumableUploadResource.UPLOAD_LENGTH, IMAGE.length)
+                    .param("part", "frontImage")
+                    .param("filename", "front.png")
+            )
+            .andExpect(status().isCreated())
+            .andExpect(header().string(ResumableUploadResource.UPLOAD_OFFSET, "0"))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LOCATION);
+
+        restResumableUploadMockMvc
+            .perform(
+                patch(location)
+                    .contentType(ResumableUploadResource.OFFSET_OCTET_STREAM)
+                    .header(ResumableUploadResource.UPLOAD_OFFSET, 0)
+                    .content(Arrays.copyOfRange(IMAGE, 0, 10))
+            )
+            .andExpect(status().isNoContent())
+            .andExpect(header().string(ResumableUploadResource.UPLOAD_OFFSET, "10"));
+
+        restResumableUploadMockMvc
+            .perform(post(location + "/complete"))
+            .andExpect(status().isConflict());
+
+        restResumableUploadMockMvc
+            .perform(head(location))
+            .andExpect(status().isOk())
+            .andExpect(header().string(ResumableUploadResource.UPLOAD_OFFSET, "10"));
+
+        restResumableUploadMockMvc
+            .perform(
+                patch(location)
+                    .contentType(ResumableUploadResource.OFFSET_OCTET_STREAM)
+                    .header(ResumableUploadResource.UPLOAD_OFFSET, 0)
+                    .content(IMAGE)
+            )
+            .andExpect(status().isConflict());
+
+        restResumableUploadMockMvc
+            .perform(
+                patch(location)
+                    .contentType(ResumableUploadResource.OFFSET_OCTET_STREAM)
+                    .header(ResumableUploadResource.UPLOAD_OFFSET, 10)
+                    .content(Arrays.copyOfRange(IMAGE, 10, IMAGE.length))
+            )
+            .andExpect(status().isNoContent())
+            .andExpect(header().string(ResumableUploadResource.UPLOAD_OFFSET, Integer.toString(IMAGE.length)));
+
+        restResumableUploadMockMvc.perform(post(location + "/complete")).andExpect(status().isOk());
+
+        UserExtra userExtra = userRepository
+            .findOneByLogin("user")
+            .flatMap(user -> userExtraRepository.findByUserId(user.getId()))
+            .orElseThrow();
+        assertThat(userExtra.getFrontImage()).hasSize(64);
+        assertThat(imageBlobRepository.findById(userExtra.getFrontImage())).hasValueSatisfying(blob -> assertThat(blob.getRefCount()).isEqualTo(1));
+        restResumableUploadMockMvc.perform(head(location)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void completeUploadRejectsContentThatIsNotAnImage() throws Exception {
+        byte[] content = "not an image".getBytes(StandardCharsets.UTF_8);
+        String location = restResumableUploadMockMvc
+            .perform(post(UPLOAD_API_URL).header(ResumableUploadResource.UPLOAD_LENGTH, content.length).param("part", "frontImage"))
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LOCATION);
+        restResumableUploadMockMvc
+            .perform(
+                patch(location)
+                    .contentType(ResumableUploadResource.OFFSET_OCTET_STREAM)
+                    .header(ResumableUploadResource.UPLOAD_OFFSET, 0)
+                    .content(content)
+            )
+            .andExpect(status().isNoContent());
+
+        restResumableUploadMockMvc.perform(post(location + "/complete")).andExpect(status().isUnsupportedMediaType());
+
+        assertThat(imageBlobRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void createUploadRejectsOversizedImage() throws Exception {
+        restResumableUploadMockMvc
+            .perform(post(UPLOAD_API_URL).header(ResumableUploadResource.UPLOAD_LENGTH, Long.MAX_VALUE).param("part", "frontImage"))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void createUploadRejectsUnknownPart() throws Exception {
+        restResumableUploadMockMvc
+            .perform(post(UPLOAD_API_URL).header(ResumableUploadResource.UPLOAD_LENGTH, 1).param("part", "sideImage"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void deleteUpload() throws Exception {
+        String location = restResumableUploadMockMvc
+            .perform(post(UPLOAD_API_URL).header(ResumableUploadResource.UPLOAD_LENGTH, 1).param("part", "backImage"))
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LOCATION);
+
+        restResumableUploadMockMvc.perform(delete(location)).andExpect(status().isNoContent());
+        restResumableUploadMockMvc.perform(head(location)).andExpect(status().isNotFound());
+    }
+}
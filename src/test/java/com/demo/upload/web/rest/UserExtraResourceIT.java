@@ -6,19 +6,33 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.demo.upload.IntegrationTest;
+import com.demo.upload.domain.ImageBlob;
+import com.demo.upload.domain.User;
 import com.demo.upload.domain.UserExtra;
+import com.demo.upload.repository.ImageBlobRepository;
 import com.demo.upload.repository.UserExtraRepository;
+import com.demo.upload.repository.UserRepository;
+import com.demo.upload.security.AuthoritiesConstants;
+import com.demo.upload.service.dto.UserDTO;
+import com.demo.upload.service.dto.UserExtraDTO;
+import com.demo.upload.service.mapper.UserExtraMapper;
+import com.demo.upload.service.upload.ContentAddressedImageStore;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -35,8 +49,12 @@ class UserExtraResourceIT {
     private static final String DEFAULT_BACK_IMAGE = "AAAAAAAAAA";
     private static final String UPDATED_BACK_IMAGE = "BBBBBBBBBB";
 
+    private static final String STORED_IMAGE = "c".repeat(64);
+    private static final String OTHER_STORED_IMAGE = "d".repeat(64);
+
     private static final String ENTITY_API_URL = "/api/user-extras";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
+    private static final String UPLOAD_API_URL = "/api/upload/user-extra/image";
 
     private static Random random = new Random();
     private static AtomicLong count = new AtomicLong(random.nextInt() + (2 * Integer.MAX_VALUE));
@@ -44,6 +62,18 @@ class UserExtraResourceIT {
     @Autowired
     private UserExtraRepository userExtraRepository;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserExtraMapper userExtraMapper;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
     @Autowired
     private EntityManager em;
 
@@ -84,8 +114,9 @@ class UserExtraResourceIT {
     void createUserExtra() throws Exception {
         int databaseSizeBeforeCreate = userExtraRepository.findAll().size();
         // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
         restUserExtraMockMvc
-            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(userExtra)))
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(userExtraDTO)))
             .andExpect(status().isCreated());
 
         // Validate the UserExtra in the database
@@ -101,12 +132,13 @@ class UserExtraResourceIT {
     void createUserExtraWithExistingId() throws Exception {
         // Create the UserExtra with an existing ID
         userExtra.setId(1L);
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
 
         int databaseSizeBeforeCreate = userExtraRepository.findAll().size();
 
         // An entity with an existing ID cannot be created, so this API call must fail
         restUserExtraMockMvc
-            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(userExtra)))
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(userExtraDTO)))
             .andExpect(status().isBadRequest());
 
         // Validate the UserExtra in the database
@@ -130,6 +162,36 @@ class UserExtraResourceIT {
             .andExpect(jsonPath("$.[*].backImage").value(hasItem(DEFAULT_BACK_IMAGE)));
     }
 
+    @Test
+    void streamAllUserExtras() throws Exception {
+        // The rows are streamed from another thread, so they must be committed
+        userExtraRepository.saveAndFlush(userExtra);
+        try {
+            MvcResult result = restUserExtraMockMvc
+                .perform(get(ENTITY_API_URL).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            String body = restUserExtraMockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+            assertThat(body).endsWith("\n");
+            assertThat(body.split("\n"))
+                .anySatisfy(line ->
+                    assertThat(line)
+                        .startsWith("{")
+                        .contains("\"id\":" + userExtra.getId())
+                        .contains("\"frontImage\":\"" + DEFAULT_FRONT_IMAGE + "\"")
+                );
+        } finally {
+            userExtraRepository.deleteById(userExtra.getId());
+        }
+    }
+
     @Test
     @Transactional
     void getUserExtra() throws Exception {
@@ -146,6 +208,28 @@ class UserExtraResourceIT {
             .andExpect(jsonPath("$.backImage").value(DEFAULT_BACK_IMAGE));
     }
 
+    @Test
+    @Transactional
+    void getUserExtrasWithTheirUser() throws Exception {
+        // Initialize the database
+        User user = UserResourceIT.createEntity(em);
+        em.persist(user);
+        userExtra.setUser(user);
+        userExtraRepository.saveAndFlush(userExtra);
+        em.clear();
+
+        restUserExtraMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].user.login").value(hasItem(user.getLogin())));
+        restUserExtraMockMvc
+            .perform(get(ENTITY_API_URL_ID, userExtra.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.user.id").value(user.getId().intValue()))
+            .andExpect(jsonPath("$.user.login").value(user.getLogin()))
+            .andExpect(jsonPath("$.user.email").doesNotExist());
+    }
+
     @Test
     @Transactional
     void getNonExistingUserExtra() throws Exception {
@@ -166,12 +250,13 @@ class UserExtraResourceIT {
         // Disconnect from session so that the updates on updatedUserExtra are not directly saved in db
         em.detach(updatedUserExtra);
         updatedUserExtra.frontImage(UPDATED_FRONT_IMAGE).backImage(UPDATED_BACK_IMAGE);
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(updatedUserExtra);
 
         restUserExtraMockMvc
             .perform(
-                put(ENTITY_API_URL_ID, updatedUserExtra.getId())
+                put(ENTITY_API_URL_ID, userExtraDTO.getId())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .content(TestUtil.convertObjectToJsonBytes(updatedUserExtra))
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
             )
             .andExpect(status().isOk());
 
@@ -189,12 +274,15 @@ class UserExtraResourceIT {
         int databaseSizeBeforeUpdate = userExtraRepository.findAll().size();
         userExtra.setId(count.incrementAndGet());
 
+        // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
         // If the entity doesn't have an ID, it will throw BadRequestAlertException
         restUserExtraMockMvc
             .perform(
-                put(ENTITY_API_URL_ID, userExtra.getId())
+                put(ENTITY_API_URL_ID, userExtraDTO.getId())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .content(TestUtil.convertObjectToJsonBytes(userExtra))
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -209,12 +297,15 @@ class UserExtraResourceIT {
         int databaseSizeBeforeUpdate = userExtraRepository.findAll().size();
         userExtra.setId(count.incrementAndGet());
 
+        // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restUserExtraMockMvc
             .perform(
                 put(ENTITY_API_URL_ID, count.incrementAndGet())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .content(TestUtil.convertObjectToJsonBytes(userExtra))
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -229,9 +320,12 @@ class UserExtraResourceIT {
         int databaseSizeBeforeUpdate = userExtraRepository.findAll().size();
         userExtra.setId(count.incrementAndGet());
 
+        // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restUserExtraMockMvc
-            .perform(put(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(userExtra)))
+            .perform(put(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(userExtraDTO)))
             .andExpect(status().isMethodNotAllowed());
 
         // Validate the UserExtra in the database
@@ -299,18 +393,119 @@ class UserExtraResourceIT {
         assertThat(testUserExtra.getBackImage()).isEqualTo(UPDATED_BACK_IMAGE);
     }
 
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void partialUpdateUserExtrasInBulk() throws Exception {
+        // Initialize the database
+        userExtraRepository.saveAndFlush(userExtra);
+        User user = UserResourceIT.createEntity(em);
+        em.persist(user);
+        em.flush();
+
+        UserExtraDTO update = new UserExtraDTO();
+        update.setId(userExtra.getId());
+        update.setFrontImage(UPDATED_FRONT_IMAGE);
+        UserExtraDTO create = new UserExtraDTO();
+        create.setUser(new UserDTO(user));
+        create.setBackImage(UPDATED_BACK_IMAGE);
+        UserExtraDTO missing = new UserExtraDTO();
+        missing.setId(count.incrementAndGet());
+        UserExtraDTO invalid = new UserExtraDTO();
+        invalid.setFrontImage(UPDATED_FRONT_IMAGE);
+
+        restUserExtraMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(update, create, missing, invalid)))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].status").value("UPDATED"))
+            .andExpect(jsonPath("$.[0].id").value(userExtra.getId().intValue()))
+            .andExpect(jsonPath("$.[1].status").value("CREATED"))
+            .andExpect(jsonPath("$.[1].id").isNumber())
+            .andExpect(jsonPath("$.[2].status").value("NOT_FOUND"))
+            .andExpect(jsonPath("$.[3].status").value("INVALID"));
+
+        em.clear();
+        UserExtra testUserExtra = userExtraRepository.findById(userExtra.getId()).get();
+        assertThat(testUserExtra.getFrontImage()).isEqualTo(UPDATED_FRONT_IMAGE);
+        assertThat(testUserExtra.getBackImage()).isEqualTo(DEFAULT_BACK_IMAGE);
+        assertThat(userExtraRepository.findByUserId(user.getId())).hasValueSatisfying(created -> {
+            assertThat(created.getFrontImage()).isNull();
+            assertThat(created.getBackImage()).isEqualTo(UPDATED_BACK_IMAGE);
+        });
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void partialUpdateTooManyUserExtrasInBulk() throws Exception {
+        List<UserExtraDTO> patches = Stream.generate(UserExtraDTO::new).limit(1001).collect(Collectors.toList());
+
+        restUserExtraMockMvc
+            .perform(post(ENTITY_API_URL + "/bulk").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(patches)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void partialUpdateUserExtraImagesInBulk() throws Exception {
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(STORED_IMAGE).size(5L).refCount(1));
+        userExtraRepository.saveAndFlush(userExtra.frontImage(STORED_IMAGE));
+
+        UserExtraDTO swap = new UserExtraDTO();
+        swap.setId(userExtra.getId());
+        swap.setFrontImage(UPDATED_FRONT_IMAGE);
+        swap.setBackImage(STORED_IMAGE);
+        UserExtraDTO missingImage = new UserExtraDTO();
+        missingImage.setId(userExtra.getId());
+        missingImage.setFrontImage(OTHER_STORED_IMAGE);
+
+        restUserExtraMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(swap, missingImage)))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].status").value("UPDATED"))
+            .andExpect(jsonPath("$.[1].status").value("INVALID"));
+
+        em.clear();
+        UserExtra testUserExtra = userExtraRepository.findById(userExtra.getId()).get();
+        assertThat(testUserExtra.getFrontImage()).isEqualTo(UPDATED_FRONT_IMAGE);
+        assertThat(testUserExtra.getBackImage()).isEqualTo(STORED_IMAGE);
+        assertThat(imageBlobRepository.findById(STORED_IMAGE).map(ImageBlob::getRefCount)).contains(1);
+    }
+
+    @Test
+    @Transactional
+    void partialUpdateUserExtrasInBulkAsUser() throws Exception {
+        restUserExtraMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/bulk").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(List.of()))
+            )
+            .andExpect(status().isForbidden());
+    }
+
     @Test
     @Transactional
     void patchNonExistingUserExtra() throws Exception {
         int databaseSizeBeforeUpdate = userExtraRepository.findAll().size();
         userExtra.setId(count.incrementAndGet());
 
+        // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
         // If the entity doesn't have an ID, it will throw BadRequestAlertException
         restUserExtraMockMvc
             .perform(
-                patch(ENTITY_API_URL_ID, userExtra.getId())
+                patch(ENTITY_API_URL_ID, userExtraDTO.getId())
                     .contentType("application/merge-patch+json")
-                    .content(TestUtil.convertObjectToJsonBytes(userExtra))
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -325,12 +520,15 @@ class UserExtraResourceIT {
         int databaseSizeBeforeUpdate = userExtraRepository.findAll().size();
         userExtra.setId(count.incrementAndGet());
 
+        // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restUserExtraMockMvc
             .perform(
                 patch(ENTITY_API_URL_ID, count.incrementAndGet())
                     .contentType("application/merge-patch+json")
-                    .content(TestUtil.convertObjectToJsonBytes(userExtra))
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -345,10 +543,13 @@ class UserExtraResourceIT {
         int databaseSizeBeforeUpdate = userExtraRepository.findAll().size();
         userExtra.setId(count.incrementAndGet());
 
+        // Create the UserExtra
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restUserExtraMockMvc
             .perform(
-                patch(ENTITY_API_URL).contentType("application/merge-patch+json").content(TestUtil.convertObjectToJsonBytes(userExtra))
+                patch(ENTITY_API_URL).contentType("application/merge-patch+json").content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
             )
             .andExpect(status().isMethodNotAllowed());
 
@@ -374,4 +575,129 @@ class UserExtraResourceIT {
         List<UserExtra> userExtraList = userExtraRepository.findAll();
         assertThat(userExtraList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void putUserExtraRetainsNewImagesAndReleasesReplacedOnes() throws Exception {
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(STORED_IMAGE).size(5L).refCount(1));
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(OTHER_STORED_IMAGE).size(5L).refCount(1));
+        userExtraRepository.saveAndFlush(userExtra.frontImage(STORED_IMAGE));
+
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+        userExtraDTO.setFrontImage(OTHER_STORED_IMAGE);
+        userExtraDTO.setBackImage(STORED_IMAGE);
+        restUserExtraMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, userExtraDTO.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
+            )
+            .andExpect(status().isOk());
+
+        assertThat(imageBlobRepository.findById(STORED_IMAGE).map(ImageBlob::getRefCount)).contains(1);
+        assertThat(imageBlobRepository.findById(OTHER_STORED_IMAGE).map(ImageBlob::getRefCount)).contains(2);
+
+        userExtraDTO.setBackImage(UPDATED_BACK_IMAGE);
+        restUserExtraMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, userExtraDTO.getId())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
+            )
+            .andExpect(status().isOk());
+
+        assertThat(imageBlobRepository.findById(STORED_IMAGE)).isEmpty();
+        assertThat(imageBlobRepository.findById(OTHER_STORED_IMAGE).map(ImageBlob::getRefCount)).contains(2);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void putUserExtraWithMissingImage() throws Exception {
+        userExtraRepository.saveAndFlush(userExtra);
+
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+        userExtraDTO.setFrontImage(STORED_IMAGE);
+        restUserExtraMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, userExtraDTO.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
+            )
+            .andExpect(status().isBadRequest());
+
+        assertThat(imageBlobRepository.findById(STORED_IMAGE)).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser("user")
+    void putUserExtraRejectsImagesUploadedByOthers() throws Exception {
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(STORED_IMAGE).size(5L).refCount(1));
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(OTHER_STORED_IMAGE).size(5L).refCount(1));
+        userExtraRepository.saveAndFlush(userExtra.user(userRepository.findOneByLogin("user").orElseThrow()).frontImage(STORED_IMAGE));
+
+        UserExtraDTO userExtraDTO = userExtraMapper.toDto(userExtra);
+        userExtraDTO.setBackImage(STORED_IMAGE);
+        restUserExtraMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, userExtraDTO.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
+            )
+            .andExpect(status().isOk());
+
+        userExtraDTO.setFrontImage(OTHER_STORED_IMAGE);
+        restUserExtraMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, userExtraDTO.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(userExtraDTO))
+            )
+            .andExpect(status().isBadRequest());
+
+        assertThat(imageBlobRepository.findById(STORED_IMAGE).map(ImageBlob::getRefCount)).contains(2);
+        assertThat(imageBlobRepository.findById(OTHER_STORED_IMAGE).map(ImageBlob::getRefCount)).contains(1);
+    }
+
+    @Test
+    @Transactional
+    void deleteUserExtraReleasesItsImages() throws Exception {
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(STORED_IMAGE).size(5L).refCount(2));
+        userExtraRepository.saveAndFlush(userExtra.frontImage(STORED_IMAGE).backImage(STORED_IMAGE));
+
+        restUserExtraMockMvc
+            .perform(delete(ENTITY_API_URL_ID, userExtra.getId()).accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNoContent());
+
+        assertThat(imageBlobRepository.findById(STORED_IMAGE)).isEmpty();
+    }
+
+    @Test
+    @WithMockUser("user")
+    void failedUploadsDropTheReferencesToTheImagesAlreadyStored() throws Exception {
+        byte[] storedImage = TestUtil.createPngImage(8, 4);
+        byte[] newImage = TestUtil.createPngImage(4, 8);
+        imageBlobRepository.saveAndFlush(new ImageBlob().contentKey(TestUtil.contentKey(storedImage)).size(5L).refCount(1));
+        try {
+            restUserExtraMockMvc
+                .perform(multipart(UPLOAD_API_URL).file(new MockMultipartFile("frontImage", "front.png", MediaType.IMAGE_PNG_VALUE, storedImage)))
+                .andExpect(status().isBadRequest());
+            restUserExtraMockMvc
+                .perform(
+                    multipart(UPLOAD_API_URL)
+                        .file(new MockMultipartFile("frontImage", "front.png", MediaType.IMAGE_PNG_VALUE, newImage))
+                        .file(new MockMultipartFile("backImage", "back.png", MediaType.IMAGE_PNG_VALUE, "not an image".getBytes(StandardCharsets.UTF_8)))
+                )
+                .andExpect(status().isUnsupportedMediaType());
+
+            assertThat(imageBlobRepository.findById(TestUtil.contentKey(storedImage)).map(ImageBlob::getRefCount)).contains(1);
+            assertThat(imageBlobRepository.findById(TestUtil.contentKey(newImage))).isEmpty();
+            assertThat(imageStore.exists(TestUtil.contentKey(newImage))).isFalse();
+        } finally {
+            imageBlobRepository.deleteAll();
+            imageStore.delete(TestUtil.contentKey(storedImage));
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package com.demo.upload.web.rest.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.demo.upload.config.ApplicationProperties;
+import com.demo.upload.service.storage.FileRegionContent;
+import com.demo.upload.service.storage.ImageContent;
+import com.demo.upload.service.upload.ImageBytesCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Unit tests for {@link ImageResponseWriter}.
+ */
+class ImageResponseWriterTest {
+
+    private static final String KEY = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    private static final String ETAG = "\"" + KEY + "\"";
+
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3, 4 };
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    private ImageResponseWriter imageResponseWriter;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        file = Files.write(directory.resolve(KEY), PNG);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getImageCache().setMaxSize(DataSize.ofBytes(0));
+        imageResponseWriter = new ImageResponseWriter(new JHipsterProperties(), imageBytesCache(applicationProperties));
+    }
+
+    @Test
+    void testWriteFullContent() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        imageResponseWriter.write(new MockHttpServletRequest("GET", "/image"), response, KEY, this::open);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getContentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("max-age=126230400, private");
+        assertThat(response.getContentLengthLong()).isEqualTo(PNG.length);
+        assertThat(response.getContentAsByteArray()).isEqualTo(PNG);
+    }
+
+    @Test
+    void testWriteAnswersNotModifiedWhenETagMatches() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        imageResponseWriter.write(request, response, KEY, this::open);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void testWriteRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.RANGE, "bytes=8-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        imageResponseWriter.write(request, response, KEY, this::open);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PARTIAL_CONTENT.value());
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 8-11/12");
+        assertThat(response.getContentAsByteArray()).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void testWriteRejectsUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        imageResponseWriter.write(request, response, KEY, this::open);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */12");
+    }
+
+    @Test
+    void testWriteMissingFile() throws Exception {
+        Files.delete(file);
+
+        assertThatThrownBy(() ->
+                imageResponseWriter.write(new MockHttpServletRequest("GET", "/image"), new MockHttpServletResponse(), KEY, this::open)
+            )
+            .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void testResolveRange() {
+        assertThat(range("bytes=0-3")).containsExactly(0, 3);
+        assertThat(range("bytes=-4")).containsExactly(8, 11);
+        assertThat(range("bytes=4-100")).containsExactly(4, 11);
+        assertThat(range("bytes=0-1,4-5")).containsExactly(0, 11);
+        assertThat(range("items=0-1")).containsExactly(0, 11);
+        assertThat(range("bytes=-0")).isNull();
+    }
+
+    @Test
+    void testResolveRangeIgnoresRangeWhenIfRangeDoesNotMatch() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+
+        assertThat(ImageResponseWriter.resolveRange(request, ETAG, PNG.length)).containsExactly(0, 11);
+    }
+
+    @Test
+    void testWriteFromCache() throws Exception {
+        imageResponseWriter = new ImageResponseWriter(new JHipsterProperties(), imageBytesCache(new ApplicationProperties()));
+        imageResponseWriter.write(new MockHttpServletRequest("GET", "/image"), new MockHttpServletResponse(), KEY, this::open);
+        Files.delete(file);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        imageResponseWriter.write(request, response, KEY, this::open);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PARTIAL_CONTENT.value());
+        assertThat(response.getContentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+        assertThat(response.getContentAsByteArray()).containsExactly(0x89, 'P', 'N', 'G');
+    }
+
+    @Test
+    void testWriteStreamedContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.RANGE, "bytes=-4");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        imageResponseWriter.write(request, response, KEY, () -> new ByteArrayImageContent(PNG));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PARTIAL_CONTENT.value());
+        assertThat(response.getContentType()).isEqualTo(MediaType.IMAGE_PNG_VALUE);
+        assertThat(response.getContentAsByteArray()).containsExactly(1, 2, 3, 4);
+    }
+
+    private ImageContent open() throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new FileRegionContent(channel, 0, channel.size(), true);
+    }
+
+    private static ImageBytesCache imageBytesCache(ApplicationProperties applicationProperties) {
+        return new ImageBytesCache(applicationProperties, new SimpleMeterRegistry());
+    }
+
+    private static long[] range(String header) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image");
+        request.addHeader(HttpHeaders.RANGE, header);
+        return ImageResponseWriter.resolveRange(request, ETAG, PNG.length);
+    }
+
+    private static class ByteArrayImageContent implements ImageContent {
+
+        private final byte[] bytes;
+
+        ByteArrayImageContent(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public InputStream openStream(long position, long length) {
+            return new ByteArrayInputStream(bytes, (int) position, (int) length);
+        }
+    }
+}